@@ -21,6 +21,7 @@ package org.apache.jmeter.assertions;
 import java.io.Serializable;
 import java.text.MessageFormat;
 
+import org.apache.jmeter.engine.util.ShareableElement;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.testelement.AbstractScopedAssertion;
 import org.apache.jmeter.util.JMeterUtils;
@@ -30,7 +31,7 @@ import org.apache.jmeter.util.JMeterUtils;
  * is larger than the timeframe the Assertion is considered a failure.
  * 
  */
-public class DurationAssertion extends AbstractScopedAssertion implements Serializable, Assertion {
+public class DurationAssertion extends AbstractScopedAssertion implements Serializable, Assertion, ShareableElement {
     private static final long serialVersionUID = 240L;
 
     /** Key for storing assertion-information in the jmx-file. */
@@ -30,6 +30,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
 
+import org.apache.jmeter.engine.util.ShareableElement;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.testelement.property.StringProperty;
@@ -38,7 +39,7 @@ import org.apache.jorphan.logging.LoggingManager;
 import org.apache.jorphan.util.JOrphanUtils;
 import org.apache.log.Logger;
 
-public class MD5HexAssertion extends AbstractTestElement implements Serializable, Assertion {
+public class MD5HexAssertion extends AbstractTestElement implements Serializable, Assertion, ShareableElement {
 
     private static final long serialVersionUID = 240L;
 
@@ -23,6 +23,7 @@ import java.net.URL;
 import java.util.ArrayList;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.engine.util.ShareableElement;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.testelement.AbstractScopedAssertion;
 import org.apache.jmeter.testelement.property.CollectionProperty;
@@ -44,7 +45,7 @@ import org.apache.oro.text.regex.Perl5Matcher;
 /**
  * Test element to handle Response Assertions, @see AssertionGui
  */
-public class ResponseAssertion extends AbstractScopedAssertion implements Serializable, Assertion {
+public class ResponseAssertion extends AbstractScopedAssertion implements Serializable, Assertion, ShareableElement {
     private static final Logger log = LoggingManager.getLoggerForClass();
 
     private static final long serialVersionUID = 240L;
@@ -21,6 +21,7 @@ package org.apache.jmeter.assertions;
 import java.io.Serializable;
 import java.text.MessageFormat;
 
+import org.apache.jmeter.engine.util.ShareableElement;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.testelement.AbstractScopedAssertion;
 import org.apache.jmeter.testelement.property.IntegerProperty;
@@ -32,7 +33,7 @@ import org.apache.jmeter.util.JMeterUtils;
  * Checks if the results of a Sample matches a particular size.
  * 
  */
-public class SizeAssertion extends AbstractScopedAssertion implements Serializable, Assertion {
+public class SizeAssertion extends AbstractScopedAssertion implements Serializable, Assertion, ShareableElement {
 
     private static final long serialVersionUID = 241L;
 
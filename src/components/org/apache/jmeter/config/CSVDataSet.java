@@ -28,6 +28,7 @@ import org.apache.jmeter.engine.event.LoopIterationEvent;
 import org.apache.jmeter.engine.event.LoopIterationListener;
 import org.apache.jmeter.engine.util.NoConfigMerge;
 import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jmeter.services.CSVDataSource;
 import org.apache.jmeter.services.FileServer;
 import org.apache.jmeter.testbeans.TestBean;
 import org.apache.jmeter.testbeans.gui.GenericTestBeanCustomizer;
@@ -65,6 +66,22 @@ import org.apache.log.Logger;
  * Or the user can provide their own suffix, in which case the file is shared between all
  * threads with the same suffix.
  *
+ * Files up to the size set by the property csvdataset.preload.max_size are
+ * read once into a {@link CSVDataSource}, which hands out the rows of each
+ * alias without locking. Larger files are read line by line by the FileServer.
+ *
+ * The accessMode can be set to:
+ * <ul>
+ * <li>Sequential - default, as described above</li>
+ * <li>Random row - any row, which may have been read already</li>
+ * <li>Shuffled - each row once before EOF, in a random order for each alias</li>
+ * <li>Partition - each thread reads its own slice of the rows, which depends
+ * on its number in the thread group and on the number of the injector set by
+ * the properties csvdataset.partition.injector and csvdataset.partition.injectors;
+ * the shareMode is not used</li>
+ * </ul>
+ * Except for sequential, the file is mapped into memory, so it can be large.
+ *
  */
 public class CSVDataSet extends ConfigTestElement 
     implements TestBean, LoopIterationListener, NoConfigMerge {
@@ -75,6 +92,15 @@ public class CSVDataSet extends ConfigTestElement
     private static final String EOFVALUE = // value to return at EOF
         JMeterUtils.getPropDefault("csvdataset.eofstring", "<EOF>"); //$NON-NLS-1$ //$NON-NLS-2$
 
+    private static final long PRELOAD_MAX_SIZE = // files read into memory, 0 to read them line by line
+        JMeterUtils.getPropDefault("csvdataset.preload.max_size", 10485760L); //$NON-NLS-1$
+
+    private static final int PARTITION_INJECTORS = // number of injectors sharing the files in partition mode
+        JMeterUtils.getPropDefault("csvdataset.partition.injectors", 1); //$NON-NLS-1$
+
+    private static final int PARTITION_INJECTOR = // number of this injector, from 0
+        JMeterUtils.getPropDefault("csvdataset.partition.injector", 0); //$NON-NLS-1$
+
     private transient String filename;
 
     private transient String fileEncoding;
@@ -94,6 +120,19 @@ public class CSVDataSet extends ConfigTestElement
     private transient String alias;
 
     private transient String shareMode;
+
+    private transient String accessMode;
+
+    private transient CSVDataSource dataSource;
+
+    private transient int accessModeInt;
+
+    // Rows of the thread in partition mode, from partitionStart to partitionEnd excluded
+    private transient long partitionStart;
+
+    private transient long partitionEnd;
+
+    private transient long partitionCursor;
     
     private boolean firstLineIsNames = false;
 
@@ -174,7 +213,33 @@ public class CSVDataSet extends ConfigTestElement
                     break;
             }
             final String names = getVariableNames();
-            if (names == null || names.length()==0) {
+            final boolean hasHeader = names == null || names.length()==0;
+            accessModeInt = CSVDataSetBeanInfo.getAccessModeAsInt(getAccessMode());
+            try {
+                if (accessModeInt != CSVDataSetBeanInfo.ACCESS_SEQUENTIAL) {
+                    dataSource = server.reserveMappedDataSource(_fileName, getFileEncoding(), alias, delim,
+                            getQuotedData(), hasHeader);
+                } else if (PRELOAD_MAX_SIZE > 0) {
+                    dataSource = server.reserveDataSource(_fileName, getFileEncoding(), alias, delim,
+                            getQuotedData(), hasHeader, PRELOAD_MAX_SIZE);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not read file:" + _fileName, e);
+            }
+            if (accessModeInt == CSVDataSetBeanInfo.ACCESS_PARTITION) {
+                setPartition(context);
+            }
+            if (dataSource != null) {
+                if (hasHeader) {
+                    try {
+                        vars = CSVSaveService.csvSplitString(dataSource.getHeaderLine(), delim.charAt(0));
+                    } catch (IOException e) {
+                        throw new IllegalArgumentException("Could not split CSV header line from file:" + _fileName,e);
+                    }
+                } else {
+                    vars = JOrphanUtils.split(names, ","); // $NON-NLS-1$
+                }
+            } else if (hasHeader) {
                 String header = server.reserveFile(_fileName, getFileEncoding(), alias, true);
                 try {
                     vars = CSVSaveService.csvSplitString(header, delim.charAt(0));
@@ -192,7 +257,9 @@ public class CSVDataSet extends ConfigTestElement
         JMeterVariables threadVars = context.getVariables();
         String[] lineValues = {};
         try {
-            if (getQuotedData()) {
+            if (dataSource != null) {
+                lineValues = nextRow();
+            } else if (getQuotedData()) {
                 lineValues = server.getParsedLine(alias, recycle, firstLineIsNames, delim.charAt(0));
             } else {
                 String line = server.readLine(alias, recycle, firstLineIsNames);
@@ -215,6 +282,52 @@ public class CSVDataSet extends ConfigTestElement
         }
     }
 
+    /**
+     * Compute the slice of the rows of the thread: the rows are split
+     * between the injectors, then between the threads of the thread group.
+     */
+    private void setPartition(JMeterContext context) {
+        if (PARTITION_INJECTOR < 0 || PARTITION_INJECTOR >= PARTITION_INJECTORS) {
+            throw new IllegalArgumentException("csvdataset.partition.injector=" + PARTITION_INJECTOR
+                    + " must be from 0 to csvdataset.partition.injectors-1=" + (PARTITION_INJECTORS - 1));
+        }
+        int threads = 1;
+        int thread = 0;
+        if (context.getThreadGroup() != null) {
+            threads = Math.max(context.getThreadGroup().getNumThreads(), 1);
+            thread = context.getThreadNum() % threads;
+        }
+        long parts = (long) PARTITION_INJECTORS * threads;
+        long part = (long) PARTITION_INJECTOR * threads + thread;
+        long rows = dataSource.getRowCount();
+        partitionStart = rows * part / parts;
+        partitionEnd = rows * (part + 1) / parts;
+        partitionCursor = partitionStart;
+        if (log.isDebugEnabled()) {
+            log.debug("Partition of thread " + context.getThreadNum() + " of " + getFilename()
+                    + ": rows " + partitionStart + " to " + partitionEnd);
+        }
+    }
+
+    private String[] nextRow() throws IOException {
+        switch (accessModeInt) {
+            case CSVDataSetBeanInfo.ACCESS_RANDOM:
+                return dataSource.nextRandom();
+            case CSVDataSetBeanInfo.ACCESS_SHUFFLE:
+                return dataSource.nextShuffled(recycle);
+            case CSVDataSetBeanInfo.ACCESS_PARTITION:
+                if (partitionCursor == partitionEnd && recycle) {
+                    partitionCursor = partitionStart;
+                }
+                if (partitionCursor == partitionEnd) {
+                    return new String[0];
+                }
+                return dataSource.get(partitionCursor++);
+            default:
+                return dataSource.next(recycle);
+        }
+    }
+
     /**
      * @return Returns the filename.
      */
@@ -299,4 +412,20 @@ public class CSVDataSet extends ConfigTestElement
     public void setShareMode(String value) {
         this.shareMode = value;
     }
+
+    /**
+     * @return the order in which the rows are read, see {@link CSVDataSetBeanInfo}
+     * @since 3.1
+     */
+    public String getAccessMode() {
+        return accessMode;
+    }
+
+    /**
+     * @param value the order in which the rows are read
+     * @since 3.1
+     */
+    public void setAccessMode(String value) {
+        this.accessMode = value;
+    }
 }
@@ -34,6 +34,7 @@ public class CSVDataSetBeanInfo extends BeanInfoSupport {
     private static final String STOPTHREAD = "stopThread";           //$NON-NLS-1$
     private static final String QUOTED_DATA = "quotedData";          //$NON-NLS-1$
     private static final String SHAREMODE = "shareMode";             //$NON-NLS-1$
+    private static final String ACCESSMODE = "accessMode";           //$NON-NLS-1$
 
     // Access needed from CSVDataSet
     static final String[] SHARE_TAGS = new String[3];
@@ -41,18 +42,28 @@ public class CSVDataSetBeanInfo extends BeanInfoSupport {
     static final int SHARE_GROUP  = 1;
     static final int SHARE_THREAD = 2;
 
+    static final String[] ACCESS_TAGS = new String[4];
+    static final int ACCESS_SEQUENTIAL = 0;
+    static final int ACCESS_RANDOM     = 1;
+    static final int ACCESS_SHUFFLE    = 2;
+    static final int ACCESS_PARTITION  = 3;
+
     // Store the resource keys
     static {
         SHARE_TAGS[SHARE_ALL]    = "shareMode.all"; //$NON-NLS-1$
         SHARE_TAGS[SHARE_GROUP]  = "shareMode.group"; //$NON-NLS-1$
         SHARE_TAGS[SHARE_THREAD] = "shareMode.thread"; //$NON-NLS-1$        
+        ACCESS_TAGS[ACCESS_SEQUENTIAL] = "accessMode.sequential"; //$NON-NLS-1$
+        ACCESS_TAGS[ACCESS_RANDOM]     = "accessMode.random"; //$NON-NLS-1$
+        ACCESS_TAGS[ACCESS_SHUFFLE]    = "accessMode.shuffle"; //$NON-NLS-1$
+        ACCESS_TAGS[ACCESS_PARTITION]  = "accessMode.partition"; //$NON-NLS-1$
     }
 
     public CSVDataSetBeanInfo() {
         super(CSVDataSet.class);
 
         createPropertyGroup("csv_data",             //$NON-NLS-1$
-                new String[] { FILENAME, FILE_ENCODING, VARIABLE_NAMES, DELIMITER, QUOTED_DATA, RECYCLE, STOPTHREAD, SHAREMODE });
+                new String[] { FILENAME, FILE_ENCODING, VARIABLE_NAMES, DELIMITER, QUOTED_DATA, RECYCLE, STOPTHREAD, SHAREMODE, ACCESSMODE });
 
         PropertyDescriptor p = property(FILENAME);
         p.setValue(NOT_UNDEFINED, Boolean.TRUE);
@@ -93,6 +104,14 @@ public class CSVDataSetBeanInfo extends BeanInfoSupport {
         p.setValue(NOT_OTHER, Boolean.FALSE);
         p.setValue(NOT_EXPRESSION, Boolean.FALSE);
         p.setValue(TAGS, SHARE_TAGS);
+
+        p = property(ACCESSMODE, TypeEditor.ComboStringEditor);
+        p.setValue(RESOURCE_BUNDLE, getBeanDescriptor().getValue(RESOURCE_BUNDLE));
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ACCESS_TAGS[ACCESS_SEQUENTIAL]);
+        p.setValue(NOT_OTHER, Boolean.TRUE);
+        p.setValue(NOT_EXPRESSION, Boolean.TRUE);
+        p.setValue(TAGS, ACCESS_TAGS);
     }
 
     public static int getShareModeAsInt(String mode) {
@@ -106,4 +125,16 @@ public class CSVDataSetBeanInfo extends BeanInfoSupport {
         }
         return -1;
     }
+
+    public static int getAccessModeAsInt(String mode) {
+        if (mode == null || mode.length() == 0){
+            return ACCESS_SEQUENTIAL; // default (e.g. if test plan does not have definition)
+        }
+        for (int i = 0; i < ACCESS_TAGS.length; i++) {
+            if (ACCESS_TAGS[i].equals(mode)) {
+                return i;
+            }
+        }
+        return ACCESS_SEQUENTIAL;
+    }
 }
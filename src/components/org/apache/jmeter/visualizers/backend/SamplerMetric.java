@@ -18,41 +18,110 @@
 
 package org.apache.jmeter.visualizers.backend;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.jmeter.control.TransactionController;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.math.HistogramStatCalculator;
 
 /**
  * Sampler metric
+ * <p>
+ * By default Percentiles, Min and Max are computed on a sliding window of
+ * the last <code>backend_metrics_window</code> samples. If property
+ * <code>backend_metrics_window_mode</code> is <code>timed</code>, they are
+ * computed on all the samples of the time interval, using histograms which
+ * are striped by thread on the add path and merged when the interval is read.
  * @since 2.13
  */
 public class SamplerMetric {
     private static final int SLIDING_WINDOW_SIZE = JMeterUtils.getPropDefault("backend_metrics_window", 100); //$NON-NLS-1$
-    
+
+    private static final boolean TIMED_WINDOW_MODE =
+            "timed".equalsIgnoreCase(JMeterUtils.getPropDefault("backend_metrics_window_mode", "fixed")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    /** Precision of the percentiles in timed mode */
+    private static final int HISTOGRAM_DIGITS = 3;
+
+    /** Number of stripes of the timed mode statistics, must be a power of 2 */
+    private static final int STRIPES =
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+
+    private final boolean timedWindow;
+
     // Response times for OK samples
     // Limit to sliding window of SLIDING_WINDOW_SIZE values 
-    private DescriptiveStatistics okResponsesStats = new DescriptiveStatistics(SLIDING_WINDOW_SIZE);
+    private DescriptiveStatistics okResponsesStats;
     // Response times for KO samples
     // Limit to sliding window of SLIDING_WINDOW_SIZE values 
-    private DescriptiveStatistics koResponsesStats = new DescriptiveStatistics(SLIDING_WINDOW_SIZE);
+    private DescriptiveStatistics koResponsesStats;
     // Response times for All samples
     // Limit to sliding window of SLIDING_WINDOW_SIZE values 
-    private DescriptiveStatistics allResponsesStats = new DescriptiveStatistics(SLIDING_WINDOW_SIZE);
+    private DescriptiveStatistics allResponsesStats;
     private int successes;
     private int failures;
     private int hits;
+
+    // Timed mode: statistics of the interval being recorded
+    private volatile StripedIntervalStats currentInterval;
+    // Timed mode: statistics of the interval being read, guarded by this
+    private IntervalStats readInterval;
+
     /**
-     * 
+     * Create a metric using the mode set by property <code>backend_metrics_window_mode</code>
      */
     public SamplerMetric() {
+        this(TIMED_WINDOW_MODE);
+    }
+
+    /**
+     * @param timedWindow true to compute statistics on time intervals,
+     *            false to compute them on a sliding window of samples
+     */
+    SamplerMetric(boolean timedWindow) {
+        this.timedWindow = timedWindow;
+        if (timedWindow) {
+            currentInterval = new StripedIntervalStats();
+        } else {
+            okResponsesStats = new DescriptiveStatistics(SLIDING_WINDOW_SIZE);
+            koResponsesStats = new DescriptiveStatistics(SLIDING_WINDOW_SIZE);
+            allResponsesStats = new DescriptiveStatistics(SLIDING_WINDOW_SIZE);
+        }
+    }
+
+    /**
+     * @return true if property <code>backend_metrics_window_mode</code> is
+     *         <code>timed</code>, in which case {@link SamplerMetric}
+     *         instances need no external synchronization
+     */
+    public static boolean isTimedWindowMode() {
+        return TIMED_WINDOW_MODE;
     }
 
     /**
      * Add a {@link SampleResult} to be used in the statistics
      * @param result {@link SampleResult} to be used
      */
-    public synchronized void add(SampleResult result) {
+    public void add(SampleResult result) {
+        if (timedWindow) {
+            int resultHits = countHits(result);
+            while (true) {
+                IntervalStats stats = currentInterval.getStripe();
+                synchronized (stats) {
+                    // Stripe may have been closed by a concurrent read
+                    if (!stats.closed) {
+                        stats.add(result, resultHits);
+                        return;
+                    }
+                }
+            }
+        }
+        addToWindow(result);
+    }
+
+    private synchronized void addToWindow(SampleResult result) {
         if(result.isSuccessful()) {
             successes+=result.getSampleCount()-result.getErrorCount();
         } else {
@@ -67,27 +136,41 @@ public class SamplerMetric {
         }else {
             koResponsesStats.addValue(time);
         }
-        addHits(result);
+        hits += countHits(result);
     }
 
     /**
      * Compute hits from res
      * @param res {@link SampleResult}
+     * @return the number of hits
      */
-    private void addHits(SampleResult res) {     
+    private static int countHits(SampleResult res) {
+        int count = 0;
         SampleResult[] subResults = res.getSubResults();
         if (!TransactionController.isFromTransactionController(res)) {
-            hits += 1;                 
+            count += 1;
         }
         for (SampleResult subResult : subResults) {
-            addHits(subResult);
+            count += countHits(subResult);
         }
+        return count;
     }
     
     /**
-     * Reset metric except for percentile related data
+     * Reset metric except for percentile related data.
+     * <p>
+     * In timed mode, percentile related data is reset too: the next read
+     * will return the statistics of the samples added since the last read.
      */
     public synchronized void resetForTimeInterval() {
+        if (timedWindow) {
+            if (readInterval == null) {
+                // Nobody read the interval, drop it
+                closeInterval();
+            }
+            readInterval = null;
+            return;
+        }
         // We don't clear responsesStats nor usersStats as it will slide as per my understanding of 
         // http://commons.apache.org/proper/commons-math/userguide/stat.html
         successes = 0;
@@ -95,12 +178,54 @@ public class SamplerMetric {
         hits = 0;
     }
 
+    /**
+     * Start a new interval and merge the stripes of the previous one
+     * @return the statistics of the previous interval
+     */
+    private IntervalStats closeInterval() {
+        StripedIntervalStats closed = currentInterval;
+        currentInterval = new StripedIntervalStats();
+        return closed.close();
+    }
+
+    /**
+     * Timed mode: the statistics of the current interval, frozen at the first
+     * read so that all values are consistent until {@link #resetForTimeInterval()}
+     * @return the statistics of the interval
+     */
+    private synchronized IntervalStats getReadInterval() {
+        if (readInterval == null) {
+            readInterval = closeInterval();
+        }
+        return readInterval;
+    }
+
+    private static double getMax(HistogramStatCalculator stats) {
+        return stats.getCount() == 0 ? Double.NaN : stats.getMax().doubleValue();
+    }
+
+    private static double getMin(HistogramStatCalculator stats) {
+        return stats.getCount() == 0 ? Double.NaN : stats.getMin().doubleValue();
+    }
+
+    private static double getMean(HistogramStatCalculator stats) {
+        return stats.getCount() == 0 ? Double.NaN : stats.getMean();
+    }
+
+    private static double getPercentile(HistogramStatCalculator stats, double percentile) {
+        return stats.getCount() == 0 ? Double.NaN : stats.getPercentPoint(percentile / 100).doubleValue();
+    }
+
     /**
      * Get the number of total requests for the current time slot
      * 
      * @return number of total requests
      */
     public int getTotal() {
+        if (timedWindow) {
+            IntervalStats stats = getReadInterval();
+            return stats.successes+stats.failures;
+        }
         return successes+failures;
     }
     
@@ -110,6 +235,9 @@ public class SamplerMetric {
      * @return number of successful requests
      */
     public int getSuccesses() {
+        if (timedWindow) {
+            return getReadInterval().successes;
+        }
         return successes;
     }
 
@@ -119,6 +247,9 @@ public class SamplerMetric {
      * @return number of failed requests
      */
     public int getFailures() {
+        if (timedWindow) {
+            return getReadInterval().failures;
+        }
         return failures;
     }
 
@@ -129,6 +260,9 @@ public class SamplerMetric {
      *         been added yet
      */
     public double getOkMaxTime() {
+        if (timedWindow) {
+            return getMax(getReadInterval().okResponsesStats);
+        }
         return okResponsesStats.getMax();
     }
 
@@ -139,6 +273,9 @@ public class SamplerMetric {
      *         added yet
      */
     public double getOkMinTime() {
+        if (timedWindow) {
+            return getMin(getReadInterval().okResponsesStats);
+        }
         return okResponsesStats.getMin();
     }
     
@@ -148,6 +285,9 @@ public class SamplerMetric {
      * @return The arithmetic mean of the stored values
      */
     public double getOkMean() {
+        if (timedWindow) {
+            return getMean(getReadInterval().okResponsesStats);
+        }
         return okResponsesStats.getMean();
     }
     
@@ -160,6 +300,9 @@ public class SamplerMetric {
      *         values.
      */
     public double getOkPercentile(double percentile) {
+        if (timedWindow) {
+            return getPercentile(getReadInterval().okResponsesStats, percentile);
+        }
         return okResponsesStats.getPercentile(percentile);
     }
 
@@ -170,6 +313,9 @@ public class SamplerMetric {
      *         been added yet
      */
     public double getKoMaxTime() {
+        if (timedWindow) {
+            return getMax(getReadInterval().koResponsesStats);
+        }
         return koResponsesStats.getMax();
     }
 
@@ -180,6 +326,9 @@ public class SamplerMetric {
      *         added yet
      */
     public double getKoMinTime() {
+        if (timedWindow) {
+            return getMin(getReadInterval().koResponsesStats);
+        }
         return koResponsesStats.getMin();
     }
     
@@ -189,6 +338,9 @@ public class SamplerMetric {
      * @return The arithmetic mean of the stored values
      */
     public double getKoMean() {
+        if (timedWindow) {
+            return getMean(getReadInterval().koResponsesStats);
+        }
         return koResponsesStats.getMean();
     }
     
@@ -201,6 +353,9 @@ public class SamplerMetric {
      *         values.
      */
     public double getKoPercentile(double percentile) {
+        if (timedWindow) {
+            return getPercentile(getReadInterval().koResponsesStats, percentile);
+        }
         return koResponsesStats.getPercentile(percentile);
     }
     
@@ -211,6 +366,9 @@ public class SamplerMetric {
      *         been added yet
      */
     public double getAllMaxTime() {
+        if (timedWindow) {
+            return getMax(getReadInterval().allResponsesStats);
+        }
         return allResponsesStats.getMax();
     }
 
@@ -221,6 +379,9 @@ public class SamplerMetric {
      *         added yet
      */
     public double getAllMinTime() {
+        if (timedWindow) {
+            return getMin(getReadInterval().allResponsesStats);
+        }
         return allResponsesStats.getMin();
     }
     
@@ -230,6 +391,9 @@ public class SamplerMetric {
      * @return The arithmetic mean of the stored values
      */
     public double getAllMean() {
+        if (timedWindow) {
+            return getMean(getReadInterval().allResponsesStats);
+        }
         return allResponsesStats.getMean();
     }
     
@@ -242,6 +406,9 @@ public class SamplerMetric {
      *         values.
      */
     public double getAllPercentile(double percentile) {
+        if (timedWindow) {
+            return getPercentile(getReadInterval().allResponsesStats, percentile);
+        }
         return allResponsesStats.getPercentile(percentile);
     }
 
@@ -250,6 +417,90 @@ public class SamplerMetric {
      * @return the hits
      */
     public int getHits() {
+        if (timedWindow) {
+            return getReadInterval().hits;
+        }
         return hits;
     }
+
+    /**
+     * Statistics of the samples of a time interval, for timed mode
+     */
+    private static final class IntervalStats {
+        private final HistogramStatCalculator okResponsesStats = new HistogramStatCalculator(HISTOGRAM_DIGITS);
+        private final HistogramStatCalculator koResponsesStats = new HistogramStatCalculator(HISTOGRAM_DIGITS);
+        private final HistogramStatCalculator allResponsesStats = new HistogramStatCalculator(HISTOGRAM_DIGITS);
+        private int successes;
+        private int failures;
+        private int hits;
+        // Set when the stripe has been merged, it must not be updated anymore
+        private boolean closed;
+
+        private void add(SampleResult result, int resultHits) {
+            long time = result.getTime();
+            allResponsesStats.addValue(time);
+            if(result.isSuccessful()) {
+                successes+=result.getSampleCount()-result.getErrorCount();
+                okResponsesStats.addValue(time);
+            } else {
+                failures+=result.getErrorCount();
+                koResponsesStats.addValue(time);
+            }
+            hits += resultHits;
+        }
+
+        private void addAll(IntervalStats other) {
+            okResponsesStats.addAll(other.okResponsesStats);
+            koResponsesStats.addAll(other.koResponsesStats);
+            allResponsesStats.addAll(other.allResponsesStats);
+            successes += other.successes;
+            failures += other.failures;
+            hits += other.hits;
+        }
+    }
+
+    /**
+     * Statistics of the interval being recorded, split in stripes chosen by
+     * thread so that concurrent adds rarely contend on the same lock.
+     * Stripes are created on first use.
+     */
+    private static final class StripedIntervalStats {
+        private static final IntervalStats CLOSED_STRIPE = new IntervalStats();
+        static {
+            CLOSED_STRIPE.closed = true;
+        }
+
+        private final AtomicReferenceArray<IntervalStats> stripes = new AtomicReferenceArray<>(STRIPES);
+
+        private IntervalStats getStripe() {
+            int index = (int) Thread.currentThread().getId() & (STRIPES - 1);
+            IntervalStats stripe = stripes.get(index);
+            if (stripe == null) {
+                stripe = new IntervalStats();
+                if (!stripes.compareAndSet(index, null, stripe)) {
+                    stripe = stripes.get(index);
+                }
+            }
+            return stripe;
+        }
+
+        /**
+         * Close all stripes, adds in progress will retry on the next interval
+         * @return the merged statistics
+         */
+        private IntervalStats close() {
+            IntervalStats merged = new IntervalStats();
+            for (int i = 0; i < STRIPES; i++) {
+                if (stripes.compareAndSet(i, null, CLOSED_STRIPE)) {
+                    continue;
+                }
+                IntervalStats stripe = stripes.get(i);
+                synchronized (stripe) {
+                    stripe.closed = true;
+                    merged.addAll(stripe);
+                }
+            }
+            return merged;
+        }
+    }
 }
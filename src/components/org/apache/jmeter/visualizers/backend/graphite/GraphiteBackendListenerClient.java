@@ -234,26 +234,35 @@ public class GraphiteBackendListenerClient extends AbstractBackendListenerClient
     @Override
     public void handleSampleResults(List<SampleResult> sampleResults,
             BackendListenerContext context) {
+        if (SamplerMetric.isTimedWindowMode()) {
+            // Metrics are consistent by themselves, no need to block sendMetrics
+            addSampleResults(sampleResults);
+        } else {
+            synchronized (LOCK) {
+                addSampleResults(sampleResults);
+            }
+        }
+    }
+
+    private void addSampleResults(List<SampleResult> sampleResults) {
         boolean samplersToFilterMatch;
-        synchronized (LOCK) {
-            for (SampleResult sampleResult : sampleResults) {
-                getUserMetrics().add(sampleResult);
-                
-                if(!summaryOnly) {
-                    if (useRegexpForSamplersList) {
-                        Matcher matcher = pattern.matcher(sampleResult.getSampleLabel());
-                        samplersToFilterMatch = matcher.matches();
-                    } else {
-                        samplersToFilterMatch = samplersToFilter.contains(sampleResult.getSampleLabel()); 
-                    }
-                    if (samplersToFilterMatch) {
-                        SamplerMetric samplerMetric = getSamplerMetric(sampleResult.getSampleLabel());
-                        samplerMetric.add(sampleResult);
-                    }
+        for (SampleResult sampleResult : sampleResults) {
+            getUserMetrics().add(sampleResult);
+            
+            if(!summaryOnly) {
+                if (useRegexpForSamplersList) {
+                    Matcher matcher = pattern.matcher(sampleResult.getSampleLabel());
+                    samplersToFilterMatch = matcher.matches();
+                } else {
+                    samplersToFilterMatch = samplersToFilter.contains(sampleResult.getSampleLabel()); 
+                }
+                if (samplersToFilterMatch) {
+                    SamplerMetric samplerMetric = getSamplerMetric(sampleResult.getSampleLabel());
+                    samplerMetric.add(sampleResult);
                 }
-                SamplerMetric cumulatedMetrics = getSamplerMetric(CUMULATED_METRICS);
-                cumulatedMetrics.add(sampleResult);                    
             }
+            SamplerMetric cumulatedMetrics = getSamplerMetric(CUMULATED_METRICS);
+            cumulatedMetrics.add(sampleResult);                    
         }
     }
 
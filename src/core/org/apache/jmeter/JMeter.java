@@ -1098,12 +1098,28 @@ public class JMeter implements JMeterPlugin {
             started.incrementAndGet();
             long now=System.currentTimeMillis();
             log.info("Started remote host:  " + host + " ("+now+")");
+            startReportStreaming();
         }
 
         @Override
         public void testStarted() {
             long now=System.currentTimeMillis();
             log.info(JMeterUtils.getResString("running_test")+" ("+now+")");//$NON-NLS-1$
+            startReportStreaming();
+        }
+
+        /**
+         * Start processing samples for the report if it is generated while the test runs
+         */
+        private void startReportStreaming() {
+            if(reportGenerator != null) {
+                try {
+                    reportGenerator.startStreaming();
+                } catch (GenerationException ex) {
+                    log.error("Error starting dashboard generation, it will be generated from results file:"
+                            +ex.getMessage(), ex);
+                }
+            }
         }
 
         /**
@@ -21,11 +21,18 @@ package org.apache.jmeter.engine;
 import java.util.Map;
 
 import org.apache.jmeter.config.Arguments;
+import org.apache.jmeter.engine.util.NoThreadClone;
+import org.apache.jmeter.engine.util.ShareableElement;
 import org.apache.jmeter.engine.util.ValueReplacer;
 import org.apache.jmeter.functions.InvalidVariableException;
 import org.apache.jmeter.reporters.ResultCollector;
+import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.testelement.TestPlan;
+import org.apache.jmeter.testelement.property.FunctionProperty;
+import org.apache.jmeter.testelement.property.JMeterProperty;
+import org.apache.jmeter.testelement.property.MultiProperty;
+import org.apache.jmeter.testelement.property.PropertyIterator;
 import org.apache.jmeter.threads.JMeterContextService;
 import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jorphan.collections.HashTree;
@@ -80,6 +87,10 @@ public class PreCompiler implements HashTreeTraverser {
                 log.error("invalid variables", e);
             }
         }
+        if (node instanceof AbstractTestElement) {
+            AbstractTestElement element = (AbstractTestElement) node;
+            element.setSharedByThreads(isShareable(element));
+        }
         if (node instanceof TestPlan) {
             ((TestPlan)node).prepareForPreCompile(); //A hack to make user-defined variables in the testplan element more dynamic
             Map<String, String> args = ((TestPlan) node).getUserDefinedVariables();
@@ -97,6 +108,27 @@ public class PreCompiler implements HashTreeTraverser {
         }
     }
 
+    /**
+     * @param element element whose functions and variables have been replaced
+     * @return true if the element can be used by all the threads instead of
+     *         being cloned for each thread
+     */
+    private static boolean isShareable(TestElement element) {
+        return element instanceof ShareableElement && !(element instanceof NoThreadClone)
+                && !hasFunction(element.propertyIterator());
+    }
+
+    private static boolean hasFunction(PropertyIterator iter) {
+        while (iter.hasNext()) {
+            JMeterProperty property = iter.next();
+            if (property instanceof FunctionProperty
+                    || (property instanceof MultiProperty && hasFunction(((MultiProperty) property).iterator()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void subtractNode() {
@@ -21,13 +21,15 @@ package org.apache.jmeter.engine;
 import java.util.LinkedList;
 
 import org.apache.jmeter.engine.util.NoThreadClone;
+import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jorphan.collections.HashTree;
 import org.apache.jorphan.collections.HashTreeTraverser;
 import org.apache.jorphan.collections.ListedHashTree;
 
 /**
- * Clones the test tree,  skipping test elements that implement {@link NoThreadClone} by default.
+ * Clones the test tree,  skipping test elements that implement {@link NoThreadClone} by default,
+ * and those shared by the threads, see {@link AbstractTestElement#isSharedByThreads()}.
  */
 public class TreeCloner implements HashTreeTraverser {
 
@@ -71,7 +73,7 @@ public class TreeCloner implements HashTreeTraverser {
     protected Object addNodeToTree(Object node) {
         if ( (node instanceof TestElement) // Check can cast for clone
            // Don't clone NoThreadClone unless honourNoThreadClone == false
-          && (!honourNoThreadClone || !(node instanceof NoThreadClone))
+          && (!honourNoThreadClone || !(node instanceof NoThreadClone || isSharedByThreads(node)))
         ) {
             node = ((TestElement) node).clone();
             newTree.add(objects, node);
@@ -80,6 +82,10 @@ public class TreeCloner implements HashTreeTraverser {
         }
         return node;
     }
+
+    private static boolean isSharedByThreads(Object node) {
+        return node instanceof AbstractTestElement && ((AbstractTestElement) node).isSharedByThreads();
+    }
     
     /**
      * add node to objects LinkedList
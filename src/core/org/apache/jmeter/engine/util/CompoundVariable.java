@@ -18,6 +18,7 @@
 
 package org.apache.jmeter.engine.util;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -49,12 +50,20 @@ public class CompoundVariable implements Function {
     // Created during class init; not modified thereafter 
     private static final Map<String, Class<? extends Function>> functions = new HashMap<>();
 
-    private boolean hasFunction, isDynamic;
+    private static final String[] NO_VARIABLES = new String[0];
+
+    private static final Expression EMPTY = new ConstantExpression(""); // $NON-NLS-1$
 
-    private String permanentResults;
+    private boolean hasFunction, isDynamic;
 
     private LinkedList<Object> compiledComponents = new LinkedList<>();
 
+    /** Evaluator specialised for the compiled components */
+    private Expression expression = EMPTY;
+
+    /** Variables used by the components, or null if they contain functions */
+    private String[] variableNames = NO_VARIABLES;
+
     static {
         try {
             final String contain = // Classnames must contain this string [.functions.]
@@ -110,13 +119,13 @@ public class CompoundVariable implements Function {
     }
 
     public String execute() {
-        if (isDynamic || permanentResults == null) {
+        if (isDynamic) {
             JMeterContext context = JMeterContextService.getContext();
             SampleResult previousResult = context.getPreviousResult();
             Sampler currentSampler = context.getCurrentSampler();
             return execute(previousResult, currentSampler);
         }
-        return permanentResults; // $NON-NLS-1$
+        return expression.evaluate(null, null);
     }
 
     /**
@@ -131,31 +140,20 @@ public class CompoundVariable implements Function {
     /** {@inheritDoc} */
     @Override
     public String execute(SampleResult previousResult, Sampler currentSampler) {
-        if (compiledComponents == null || compiledComponents.size() == 0) {
-            return ""; // $NON-NLS-1$
-        }
-        
-        StringBuilder results = new StringBuilder();
-        for (Object item : compiledComponents) {
-            if (item instanceof Function) {
-                try {
-                    results.append(((Function) item).execute(previousResult, currentSampler));
-                } catch (InvalidVariableException e) {
-                    // TODO should level be more than debug ?
-                    if(log.isDebugEnabled()) {
-                        log.debug("Invalid variable:"+item, e);
-                    }
-                }
-            } else if (item instanceof SimpleVariable) {
-                results.append(((SimpleVariable) item).toString());
-            } else {
-                results.append(item);
-            }
-        }
-        if (!isDynamic) {
-            permanentResults = results.toString();
-        }
-        return results.toString();
+        return expression.evaluate(previousResult, currentSampler);
+    }
+
+    /**
+     * Names of the variables used by the compiled string, so that callers can
+     * reuse its value while the variables keep the same values.
+     *
+     * @return the names of the variables, empty if the string has none, or
+     *         <code>null</code> if it also calls functions, as their value can
+     *         change on each call
+     * @since 3.1
+     */
+    public String[] getVariableNames() {
+        return variableNames;
     }
 
     @SuppressWarnings("unchecked") // clone will produce correct type
@@ -165,6 +163,8 @@ public class CompoundVariable implements Function {
         func.rawParameters = rawParameters;
         func.hasFunction = hasFunction;
         func.isDynamic = isDynamic;
+        func.expression = expression;
+        func.variableNames = variableNames;
         return func;
     }
 
@@ -175,9 +175,12 @@ public class CompoundVariable implements Function {
     }
 
     public void clear() {
-        // TODO should this also clear isDynamic, rawParameters, permanentResults?
+        // TODO should this also clear rawParameters?
         hasFunction = false;
+        isDynamic = false;
         compiledComponents.clear();
+        expression = EMPTY;
+        variableNames = NO_VARIABLES;
     }
 
     public void setParameters(String parameters) throws InvalidVariableException {
@@ -190,14 +193,39 @@ public class CompoundVariable implements Function {
         if (compiledComponents.size() > 1 || !(compiledComponents.get(0) instanceof String)) {
             hasFunction = true;
         }
-        permanentResults = null; // To be calculated and cached on first execution
         isDynamic = false;
+        List<String> names = new ArrayList<>();
         for (Object item : compiledComponents) {
-            if (item instanceof Function || item instanceof SimpleVariable) {
+            if (item instanceof Function) {
+                isDynamic = true;
+                names = null;
+            } else if (item instanceof SimpleVariable) {
                 isDynamic = true;
-                break;
+                if (names != null) {
+                    names.add(((SimpleVariable) item).getName());
+                }
             }
         }
+        variableNames = names == null ? null : names.toArray(new String[names.size()]);
+        expression = compile(compiledComponents, isDynamic);
+    }
+
+    /**
+     * Turn the components into the cheapest evaluator for them: a constant, a
+     * single variable or a concatenation.
+     */
+    private static Expression compile(List<Object> components, boolean isDynamic) {
+        if (!isDynamic) {
+            StringBuilder value = new StringBuilder();
+            for (Object item : components) {
+                value.append(item);
+            }
+            return new ConstantExpression(value.toString());
+        }
+        if (components.size() == 1 && components.get(0) instanceof SimpleVariable) {
+            return new VariableExpression((SimpleVariable) components.get(0));
+        }
+        return new ConcatenationExpression(components);
     }
 
     static Object getNamedFunction(String functionName) throws InvalidVariableException {
@@ -238,4 +266,87 @@ public class CompoundVariable implements Function {
     @Override
     public void setParameters(Collection<CompoundVariable> parameters) throws InvalidVariableException {
     }
+
+    /**
+     * Evaluates compiled components; shared by the copies made by
+     * {@link #getFunction()}, so used by several threads
+     */
+    private abstract static class Expression {
+        abstract String evaluate(SampleResult previousResult, Sampler currentSampler);
+    }
+
+    /**
+     * Text without variables nor functions
+     */
+    private static final class ConstantExpression extends Expression {
+        private final String value;
+
+        ConstantExpression(String value) {
+            this.value = value;
+        }
+
+        @Override
+        String evaluate(SampleResult previousResult, Sampler currentSampler) {
+            return value;
+        }
+    }
+
+    /**
+     * A single variable, looked up without copying its value
+     */
+    private static final class VariableExpression extends Expression {
+        private final SimpleVariable variable;
+
+        VariableExpression(SimpleVariable variable) {
+            this.variable = variable;
+        }
+
+        @Override
+        String evaluate(SampleResult previousResult, Sampler currentSampler) {
+            return variable.toString();
+        }
+    }
+
+    /**
+     * Text, variables and functions appended to a buffer sized from the
+     * previous results
+     */
+    private static final class ConcatenationExpression extends Expression {
+        private final Object[] items;
+
+        // Not synchronized, it is only a hint
+        private int sizeHint;
+
+        ConcatenationExpression(List<Object> components) {
+            items = components.toArray();
+            for (Object item : items) {
+                sizeHint += item instanceof String ? ((String) item).length() : 16;
+            }
+        }
+
+        @Override
+        String evaluate(SampleResult previousResult, Sampler currentSampler) {
+            StringBuilder results = new StringBuilder(sizeHint);
+            for (Object item : items) {
+                if (item instanceof Function) {
+                    try {
+                        results.append(((Function) item).execute(previousResult, currentSampler));
+                    } catch (InvalidVariableException e) {
+                        // TODO should level be more than debug ?
+                        if(log.isDebugEnabled()) {
+                            log.debug("Invalid variable:"+item, e);
+                        }
+                    }
+                } else if (item instanceof SimpleVariable) {
+                    results.append(((SimpleVariable) item).toString());
+                } else {
+                    results.append(item);
+                }
+            }
+            if (results.length() > sizeHint) {
+                sizeHint = results.length();
+            }
+            return results.toString();
+        }
+    }
 }
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.engine.util;
+
+/**
+ * Implement this method-less interface to indicate that your test element
+ * keeps no state other than its properties and never changes them while the
+ * test runs, so that one instance can be used by all the threads.
+ * <p>
+ * Unlike {@link NoThreadClone}, the element is still cloned for each thread
+ * when one of its properties contains a function or a variable, as these are
+ * evaluated per thread. The {@link org.apache.jmeter.engine.PreCompiler
+ * PreCompiler} decides it when the test starts, see
+ * {@link org.apache.jmeter.testelement.AbstractTestElement#isSharedByThreads()}.
+ * The element must get the context of the thread from
+ * {@link org.apache.jmeter.testelement.TestElement#getThreadContext()}.
+ * </p>
+ * @since 3.1
+ */
+public interface ShareableElement {
+}
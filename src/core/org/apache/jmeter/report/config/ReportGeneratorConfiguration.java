@@ -67,6 +67,21 @@ public class ReportGeneratorConfiguration {
             + KEY_DELIMITER + "apdex_tolerated_threshold";
     private static final Long REPORT_GENERATOR_KEY_APDEX_TOLERATED_THRESHOLD_DEFAULT = Long.valueOf(1500L);
 
+    // Number of threads running the consumers
+    private static final String REPORT_GENERATOR_KEY_PARALLEL_THREADS = REPORT_GENERATOR_KEY_PREFIX
+            + KEY_DELIMITER + "parallel_threads";
+    private static final Integer REPORT_GENERATOR_KEY_PARALLEL_THREADS_DEFAULT = Integer.valueOf(1);
+
+    // Process samples during the test instead of reading the results file at its end
+    private static final String REPORT_GENERATOR_KEY_STREAMING = REPORT_GENERATOR_KEY_PREFIX
+            + KEY_DELIMITER + "streaming";
+    private static final Boolean REPORT_GENERATOR_KEY_STREAMING_DEFAULT = Boolean.FALSE;
+
+    // Ratio of the max heap the samples sorted for a graph may use before being written to files
+    private static final String REPORT_GENERATOR_KEY_SORT_MAX_HEAP_RATIO = REPORT_GENERATOR_KEY_PREFIX
+            + KEY_DELIMITER + "sort_max_heap_ratio";
+    private static final Double REPORT_GENERATOR_KEY_SORT_MAX_HEAP_RATIO_DEFAULT = Double.valueOf(0.5);
+
     // Sample Filter
     private static final String REPORT_GENERATOR_KEY_SAMPLE_FILTER = REPORT_GENERATOR_KEY_PREFIX
             + KEY_DELIMITER + "sample_filter";
@@ -279,6 +294,9 @@ public class ReportGeneratorConfiguration {
     private File tempDirectory;
     private long apdexSatisfiedThreshold;
     private long apdexToleratedThreshold;
+    private int parallelThreads;
+    private boolean streaming;
+    private double sortMaxHeapRatio;
     private Pattern filteredSamplesPattern;
     private Map<String, ExporterConfiguration> exportConfigurations = new HashMap<>();
     private Map<String, GraphConfiguration> graphConfigurations = new HashMap<>();
@@ -359,6 +377,67 @@ public class ReportGeneratorConfiguration {
         this.apdexToleratedThreshold = apdexToleratedThreshold;
     }
 
+    /**
+     * Gets the number of threads used to run the graph and summary consumers.
+     *
+     * @return the number of threads, 1 if samples are processed sequentially
+     */
+    public final int getParallelThreads() {
+        return parallelThreads;
+    }
+
+    /**
+     * Sets the number of threads used to run the graph and summary consumers.
+     *
+     * @param parallelThreads
+     *            the number of threads to set
+     */
+    public final void setParallelThreads(int parallelThreads) {
+        this.parallelThreads = parallelThreads;
+    }
+
+    /**
+     * Indicates whether samples are processed while the test runs, when the
+     * report is generated at the end of the test.
+     *
+     * @return true if samples are processed while the test runs
+     */
+    public final boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Sets whether samples are processed while the test runs, when the report
+     * is generated at the end of the test.
+     *
+     * @param streaming
+     *            true to process samples while the test runs
+     */
+    public final void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Gets the ratio of the maximum heap size that the samples sorted for a
+     * graph may use before they are written to temporary files.
+     *
+     * @return the ratio, between 0 and 1
+     */
+    public final double getSortMaxHeapRatio() {
+        return sortMaxHeapRatio;
+    }
+
+    /**
+     * Sets the ratio of the maximum heap size that the samples sorted for a
+     * graph may use before they are written to temporary files.
+     *
+     * @param sortMaxHeapRatio
+     *            the ratio to set, 0 always writes temporary files
+     */
+    public final void setSortMaxHeapRatio(double sortMaxHeapRatio) {
+        this.sortMaxHeapRatio = sortMaxHeapRatio;
+    }
+
     /**
      * Gets the export configurations.
      *
@@ -619,6 +698,27 @@ public class ReportGeneratorConfiguration {
                 long.class).longValue();
         configuration.setApdexToleratedThreshold(apdexToleratedThreshold);
 
+        // Load number of parallel threads
+        final int parallelThreads = getRequiredProperty(props,
+                REPORT_GENERATOR_KEY_PARALLEL_THREADS,
+                REPORT_GENERATOR_KEY_PARALLEL_THREADS_DEFAULT,
+                int.class).intValue();
+        configuration.setParallelThreads(parallelThreads);
+
+        // Load streaming mode
+        final boolean streaming = getRequiredProperty(props,
+                REPORT_GENERATOR_KEY_STREAMING,
+                REPORT_GENERATOR_KEY_STREAMING_DEFAULT,
+                Boolean.class).booleanValue();
+        configuration.setStreaming(streaming);
+
+        // Load heap ratio of the sorts
+        final double sortMaxHeapRatio = getRequiredProperty(props,
+                REPORT_GENERATOR_KEY_SORT_MAX_HEAP_RATIO,
+                REPORT_GENERATOR_KEY_SORT_MAX_HEAP_RATIO_DEFAULT,
+                double.class).doubleValue();
+        configuration.setSortMaxHeapRatio(sortMaxHeapRatio);
+
         // Load sample filter
         final String sampleFilter = getOptionalProperty(props,
                 REPORT_GENERATOR_KEY_SAMPLE_FILTER, String.class);
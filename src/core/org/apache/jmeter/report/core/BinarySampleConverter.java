@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.File;
+
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * Converts results files between the CSV format and the binary format written
+ * by {@link BinarySampleWriter}.
+ * <p>
+ * It can be run from the JMeter home directory with:
+ * </p>
+ * <pre>
+ * java -cp "lib/*:lib/ext/*" org.apache.jmeter.report.core.BinarySampleConverter bin2csv results.bin results.csv
+ * java -cp "lib/*:lib/ext/*" org.apache.jmeter.report.core.BinarySampleConverter csv2bin results.csv results.bin
+ * </pre>
+ * <p>
+ * (with <code>;</code> instead of <code>:</code> on Windows), or from another
+ * directory with <code>-Djmeter.home=</code> the JMeter home directory. The
+ * CSV fields and delimiter are those of <code>bin/jmeter.properties</code>,
+ * which can be changed with <code>-D</code> options, e.g.
+ * <code>-Djmeter.save.saveservice.default_delimiter=;</code>
+ * </p>
+ *
+ * @since 3.1
+ */
+public final class BinarySampleConverter {
+
+    private static final String CSV_TO_BINARY = "csv2bin"; // $NON-NLS-1$
+
+    private static final String BINARY_TO_CSV = "bin2csv"; // $NON-NLS-1$
+
+    private BinarySampleConverter() {
+        super();
+    }
+
+    /**
+     * Convert a results file.
+     *
+     * @param args
+     *            <code>csv2bin</code> or <code>bin2csv</code>, the file to
+     *            read and the file to write
+     */
+    public static void main(String[] args) {
+        if (args.length != 3 || !(CSV_TO_BINARY.equals(args[0]) || BINARY_TO_CSV.equals(args[0]))) {
+            System.err.println("Usage: BinarySampleConverter " // NOSONAR
+                    + CSV_TO_BINARY + "|" + BINARY_TO_CSV + " <input file> <output file>");
+            System.exit(1); // NOSONAR
+        }
+        // The CSV fields are read and written with the save service, which needs the JMeter home directory
+        JMeterUtils.setJMeterHome(System.getProperty("jmeter.home", ".")); // $NON-NLS-1$ // $NON-NLS-2$
+        JMeterUtils.loadJMeterProperties(JMeterUtils.getJMeterBinDir() + File.separator + "jmeter.properties"); // $NON-NLS-1$
+        File input = new File(args[1]);
+        File output = new File(args[2]);
+        long count;
+        if (CSV_TO_BINARY.equals(args[0])) {
+            char separator = JMeterUtils.getPropDefault("jmeter.save.saveservice.default_delimiter", ",").charAt(0); //$NON-NLS-1$ //$NON-NLS-2$
+            count = csvToBinary(input, output, separator);
+        } else {
+            count = binaryToCsv(input, output);
+        }
+        System.out.println("Converted " + count + " samples of " + input + " into " + output); // NOSONAR
+    }
+
+    /**
+     * Convert a CSV results file to the binary format.
+     *
+     * @param csvFile
+     *            the CSV file to read, with or without field names header
+     * @param binaryFile
+     *            the binary file to write
+     * @param separator
+     *            the separator of the CSV file
+     * @return the number of converted samples
+     */
+    public static long csvToBinary(File csvFile, File binaryFile, char separator) {
+        long count = 0;
+        try (CsvSampleReader reader = new CsvSampleReader(csvFile, separator, true);
+                BinarySampleWriter writer = new BinarySampleWriter(binaryFile, reader.getMetadata())) {
+            Sample sample;
+            while ((sample = reader.readSample()) != null) {
+                count = writer.write(sample);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Convert a binary results file to the CSV format. The CSV file always
+     * contains the field names header.
+     *
+     * @param binaryFile
+     *            the binary file to read
+     * @param csvFile
+     *            the CSV file to write
+     * @return the number of converted samples
+     */
+    public static long binaryToCsv(File binaryFile, File csvFile) {
+        long count = 0;
+        try (BinarySampleReader reader = new BinarySampleReader(binaryFile);
+                CsvSampleWriter writer = new CsvSampleWriter(csvFile, reader.getMetadata())) {
+            writer.writeHeader();
+            Sample sample;
+            while ((sample = reader.readSample()) != null) {
+                count = writer.write(sample);
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.jmeter.save.CSVSaveService;
+
+/**
+ * Constants and encoding helpers shared by {@link BinarySampleWriter} and
+ * {@link BinarySampleReader}.
+ * <p>
+ * Layout of a binary results file:
+ * </p>
+ * <pre>
+ * header: "JTLB" version:byte separator:char columnCount:int
+ *         (name:UTF encoding:byte) * columnCount
+ * block:  recordCount:int rawLength:int compressedLength:int deflated data
+ * </pre>
+ * <p>
+ * The raw data of a block is stored column by column, each column being
+ * preceded by its length as a varint. Numbers are stored as zig-zag varints,
+ * time stamps as deltas from the previous record and other values through a
+ * dictionary. Dictionaries and deltas are reset for each block, so that blocks
+ * can be decoded independently and a file can be appended to.
+ * </p>
+ *
+ * @since 3.1
+ */
+final class BinarySampleFormat {
+
+    static final byte[] MAGIC = { 'J', 'T', 'L', 'B' };
+
+    static final byte VERSION = 1;
+
+    /** Value stored as the delta from the value of the previous record */
+    static final byte ENCODING_DELTA = 0;
+
+    /** Value stored as a number */
+    static final byte ENCODING_NUMBER = 1;
+
+    /** Value stored through a dictionary */
+    static final byte ENCODING_DICTIONARY = 2;
+
+    /** Tag of values which cannot be stored as numbers, dictionary id of values not stored in the dictionary */
+    static final long LITERAL = 0;
+
+    /** Maximum number of entries of a dictionary, per column and block */
+    static final int MAX_DICTIONARY_SIZE = 65536;
+
+    /** Columns which always contain integers */
+    private static final String[] NUMBER_COLUMNS = {
+        CSVSaveService.CSV_ELAPSED,
+        CSVSaveService.CSV_BYTES,
+        CSVSaveService.CSV_THREAD_COUNT1,
+        CSVSaveService.CSV_THREAD_COUNT2,
+        CSVSaveService.CSV_SAMPLE_COUNT,
+        CSVSaveService.CSV_ERROR_COUNT,
+        CSVSaveService.CSV_LATENCY,
+        CSVSaveService.CSV_IDLETIME,
+        CSVSaveService.CSV_CONNECT_TIME,
+    };
+
+    private BinarySampleFormat() {
+        super();
+    }
+
+    /**
+     * @param column the name of the column
+     * @return the encoding to use for the column
+     */
+    static byte getEncoding(String column) {
+        if (CSVSaveService.TIME_STAMP.equals(column)) {
+            return ENCODING_DELTA;
+        }
+        for (String numberColumn : NUMBER_COLUMNS) {
+            if (numberColumn.equals(column)) {
+                return ENCODING_NUMBER;
+            }
+        }
+        return ENCODING_DICTIONARY;
+    }
+
+    /**
+     * Parse a value which is expected to be a number. Values which would not
+     * be restored unchanged (e.g. formatted time stamps, leading zeros) are
+     * not parsed.
+     *
+     * @param value the value
+     * @param number holder for the parsed number
+     * @return true if the value has been parsed
+     */
+    static boolean parseNumber(String value, long[] number) {
+        int length = value.length();
+        if (length == 0) {
+            return false;
+        }
+        int start = value.charAt(0) == '-' ? 1 : 0;
+        // At most 18 digits, so that neither the value nor a delta can overflow
+        if (start == length || length - start > 18
+                || (value.charAt(start) == '0' && length > start + 1)) {
+            return false;
+        }
+        long result = 0;
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            result = result * 10 + (c - '0');
+        }
+        if (start == 1) {
+            if (result == 0) {
+                return false; // "-0"
+            }
+            result = -result;
+        }
+        number[0] = result;
+        return true;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads values from the raw data of a block
+     */
+    static final class Cursor {
+        private final byte[] data;
+        private int position;
+
+        Cursor(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        int getPosition() {
+            return position;
+        }
+
+        void skip(int length) {
+            position += length;
+        }
+
+        long readVarLong() {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                byte b = data[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+                if (shift > 63) {
+                    throw new SampleException("Malformed varint at position " + position);
+                }
+            }
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            String result = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return result;
+        }
+    }
+}
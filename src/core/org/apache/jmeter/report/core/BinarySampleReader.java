@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Reader class for reading files written by {@link BinarySampleWriter}.
+ * <p>
+ * Samples are streamed: only the current block is kept in memory.
+ * </p>
+ *
+ * @since 3.1
+ */
+public class BinarySampleReader implements SampleReader {
+
+    private static final Logger LOG = LoggingManager.getLoggerForClass();
+
+    private static final int BUF_SIZE = 65536;
+
+    private final File file;
+
+    private final DataInputStream input;
+
+    private final SampleMetadata metadata;
+
+    private final byte[] encodings;
+
+    private final Inflater inflater = new Inflater();
+
+    private byte[] compressed = new byte[BUF_SIZE];
+
+    /** Values of the samples of the current block, by column */
+    private String[][] columns;
+
+    /** Number of samples in the current block */
+    private int blockCount;
+
+    /** Index of the next sample in the current block */
+    private int blockIndex;
+
+    private long row;
+
+    private Sample lastSampleRead;
+
+    /**
+     * Instantiates a new binary sample reader.
+     *
+     * @param inputFile
+     *            the input file (must not be {@code null})
+     */
+    public BinarySampleReader(File inputFile) {
+        if (!(inputFile.isFile() && inputFile.canRead())) {
+            throw new IllegalArgumentException(inputFile.getAbsolutePath()
+                    + " does not exist or is not readable");
+        }
+        this.file = inputFile;
+        try {
+            this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUF_SIZE));
+        } catch (IOException ex) {
+            throw new SampleException("Could not create file reader !", ex);
+        }
+        try {
+            byte[] magic = new byte[BinarySampleFormat.MAGIC.length];
+            input.readFully(magic);
+            if (!Arrays.equals(magic, BinarySampleFormat.MAGIC)) {
+                throw new SampleException("File '" + file.getAbsolutePath() + "' is not a binary results file");
+            }
+            byte version = input.readByte();
+            if (version != BinarySampleFormat.VERSION) {
+                throw new SampleException("Unsupported version " + version + " of binary results file '"
+                        + file.getAbsolutePath() + "'");
+            }
+            char separator = input.readChar();
+            int columnCount = input.readInt();
+            String[] names = new String[columnCount];
+            encodings = new byte[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                names[i] = input.readUTF();
+                encodings[i] = input.readByte();
+            }
+            metadata = new SampleMetadata(separator, names);
+            this.row = 0;
+            this.lastSampleRead = nextSample();
+        } catch (IOException e) {
+            close();
+            throw new SampleException("Could not read metadata !", e);
+        } catch (RuntimeException e) {
+            // SampleException included, e.g. if the first block cannot be read
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether a file has been written by {@link BinarySampleWriter}.
+     *
+     * @param file
+     *            the file to check
+     * @return true if the file starts with the header of binary results files
+     */
+    public static boolean isBinaryFile(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        byte[] magic = new byte[BinarySampleFormat.MAGIC.length];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(magic);
+            return Arrays.equals(magic, BinarySampleFormat.MAGIC);
+        } catch (IOException e) { // includes EOFException for short files
+            return false;
+        }
+    }
+
+    @Override
+    public SampleMetadata getMetadata() {
+        return metadata;
+    }
+
+    private Sample nextSample() {
+        if (blockIndex == blockCount && !readBlock()) {
+            return null;
+        }
+        String[] data = new String[columns.length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = columns[i][blockIndex];
+        }
+        blockIndex++;
+        return new Sample(row++, metadata, data);
+    }
+
+    /**
+     * Read and decode the next block
+     * @return false if the end of the file has been reached
+     */
+    private boolean readBlock() {
+        int count;
+        byte[] raw;
+        try {
+            try {
+                count = input.readInt();
+            } catch (EOFException e) { // NOSONAR Normal end of the file
+                return false;
+            }
+            raw = new byte[input.readInt()];
+            int length = input.readInt();
+            if (compressed.length < length) {
+                compressed = new byte[length];
+            }
+            input.readFully(compressed, 0, length);
+            inflater.reset();
+            inflater.setInput(compressed, 0, length);
+            int inflated = 0;
+            while (inflated < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, inflated, raw.length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Incomplete compressed data");
+                }
+                inflated += n;
+            }
+        } catch (EOFException e) {
+            // Writer probably did not complete, keep what has been read
+            LOG.warn("Truncated block at end of file '" + file.getAbsolutePath() + "', ignoring it");
+            return false;
+        } catch (IOException | DataFormatException e) {
+            throw new SampleException("Could not read block after sample <" + row + ">", e);
+        }
+        int columnCount = encodings.length;
+        if (columns == null || (columnCount > 0 && columns[0].length < count)) {
+            columns = new String[columnCount][count];
+        }
+        BinarySampleFormat.Cursor cursor = new BinarySampleFormat.Cursor(raw, 0);
+        for (int i = 0; i < columnCount; i++) {
+            int length = (int) cursor.readVarLong();
+            BinarySampleFormat.Cursor column = new BinarySampleFormat.Cursor(raw, cursor.getPosition());
+            decodeColumn(column, encodings[i], columns[i], count);
+            cursor.skip(length);
+            if (column.getPosition() != cursor.getPosition()) {
+                throw new SampleException("Malformed block after sample <" + row + ">");
+            }
+        }
+        blockCount = count;
+        blockIndex = 0;
+        return count > 0 || readBlock();
+    }
+
+    private static void decodeColumn(BinarySampleFormat.Cursor cursor, byte encoding, String[] values, int count) {
+        switch (encoding) {
+        case BinarySampleFormat.ENCODING_DELTA:
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                long tag = cursor.readVarLong();
+                if (tag == BinarySampleFormat.LITERAL) {
+                    values[i] = cursor.readString();
+                } else {
+                    previous += BinarySampleFormat.unZigZag(tag - 1);
+                    values[i] = Long.toString(previous);
+                }
+            }
+            break;
+        case BinarySampleFormat.ENCODING_NUMBER:
+            for (int i = 0; i < count; i++) {
+                long tag = cursor.readVarLong();
+                if (tag == BinarySampleFormat.LITERAL) {
+                    values[i] = cursor.readString();
+                } else {
+                    values[i] = Long.toString(BinarySampleFormat.unZigZag(tag - 1));
+                }
+            }
+            break;
+        case BinarySampleFormat.ENCODING_DICTIONARY:
+            List<String> dictionary = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                long id = cursor.readVarLong();
+                if (id == BinarySampleFormat.LITERAL) {
+                    values[i] = cursor.readString();
+                } else if (id == dictionary.size() + 1) {
+                    values[i] = cursor.readString();
+                    dictionary.add(values[i]);
+                } else if (id > dictionary.size()) {
+                    throw new SampleException("Unknown dictionary entry " + id);
+                } else {
+                    values[i] = dictionary.get((int) id - 1);
+                }
+            }
+            break;
+        default:
+            throw new SampleException("Unknown column encoding " + encoding);
+        }
+    }
+
+    @Override
+    public Sample readSample() {
+        Sample out = lastSampleRead;
+        lastSampleRead = nextSample();
+        return out;
+    }
+
+    @Override
+    public Sample peek() {
+        return lastSampleRead;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return lastSampleRead != null;
+    }
+
+    @Override
+    public void close() {
+        inflater.end();
+        JOrphanUtils.closeQuietly(input);
+    }
+
+    /**
+     * Check that the columns of a binary file match the metadata, e.g. before
+     * appending samples to it.
+     *
+     * @param file
+     *            the binary file
+     * @param metadata
+     *            the expected metadata
+     * @return true if the file has the expected columns
+     */
+    public static boolean hasMetadata(File file, SampleMetadata metadata) {
+        try {
+            BinarySampleReader reader = new BinarySampleReader(file);
+            try {
+                SampleMetadata fileMetadata = reader.getMetadata();
+                if (fileMetadata.getColumnCount() != metadata.getColumnCount()) {
+                    return false;
+                }
+                for (int i = 0; i < metadata.getColumnCount(); i++) {
+                    if (!fileMetadata.getColumnName(i).equals(metadata.getColumnName(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                reader.close();
+            }
+        } catch (IllegalArgumentException | SampleException e) {
+            LOG.warn("Could not read header of '" + file.getAbsolutePath() + "': " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.jorphan.util.JOrphanUtils;
+
+/**
+ * Class to be used to write samples to a compact binary destination
+ * (OutputStream or File).
+ * <p>
+ * Samples are buffered in blocks of {@link #DEFAULT_BLOCK_SIZE} records, which
+ * are stored column by column and compressed, see {@link BinarySampleFormat}.
+ * Files written by this class can be read with {@link BinarySampleReader}.
+ * </p>
+ * <p>
+ * The write methods are synchronized, so that an instance can be shared by
+ * several threads.
+ * </p>
+ *
+ * @since 3.1
+ */
+public class BinarySampleWriter extends SampleWriter {
+
+    /** Default number of samples per block */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private static final int BUF_SIZE = 65536;
+
+    /** Description of the columns */
+    private final SampleMetadata metadata;
+
+    private final int columnCount;
+
+    private final int blockSize;
+
+    private final DataOutputStream output;
+
+    private final ColumnEncoder[] encoders;
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+    private final ByteArrayOutputStream rawBlock = new ByteArrayOutputStream(BUF_SIZE);
+
+    private byte[] compressed = new byte[BUF_SIZE];
+
+    /** Number of samples in the current block */
+    private int blockCount;
+
+    /** Number of samples written */
+    private long sampleCount;
+
+    /**
+     * Constructor for a BinarySampleWriter.
+     *
+     * @param output
+     *            the output stream to write data to. (Must not be {@code null})
+     * @param metadata
+     *            the description for data that this writer will write. (
+     *            {@code metadata} must not be {@code null}.)
+     * @param writeHeader
+     *            false if the stream is appended to an existing binary file
+     *            with the same metadata
+     * @param blockSize
+     *            the number of samples per block
+     */
+    public BinarySampleWriter(OutputStream output, SampleMetadata metadata, boolean writeHeader, int blockSize) {
+        Validate.notNull(output, "output must not be null");
+        Validate.notNull(metadata, "metadata must not be null");
+        this.metadata = metadata;
+        this.columnCount = metadata.getColumnCount();
+        this.blockSize = Math.max(1, blockSize);
+        this.output = new DataOutputStream(new BufferedOutputStream(output, BUF_SIZE));
+        this.encoders = new ColumnEncoder[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            encoders[i] = new ColumnEncoder(BinarySampleFormat.getEncoding(metadata.getColumnName(i)));
+        }
+        if (writeHeader) {
+            try {
+                writeHeader();
+            } catch (IOException e) {
+                throw new SampleException("Could not write header", e);
+            }
+        }
+    }
+
+    /**
+     * Constructor for a BinarySampleWriter.
+     *
+     * @param output
+     *            the output stream to write data to. (Must not be {@code null})
+     * @param metadata
+     *            the description for data that this writer will write. (
+     *            {@code metadata} must not be {@code null}.)
+     */
+    public BinarySampleWriter(OutputStream output, SampleMetadata metadata) {
+        this(output, metadata, true, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor for a BinarySampleWriter.
+     *
+     * @param output
+     *            the output file to write data to. (Must not be {@code null})
+     * @param metadata
+     *            the description for data that this writer will write. (
+     *            {@code metadata} must not be {@code null}.)
+     */
+    public BinarySampleWriter(File output, SampleMetadata metadata) {
+        this(openFile(output), metadata);
+    }
+
+    private static OutputStream openFile(File output) {
+        try {
+            return new FileOutputStream(output);
+        } catch (IOException e) {
+            throw new SampleException(e.getMessage(), e);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        output.write(BinarySampleFormat.MAGIC);
+        output.writeByte(BinarySampleFormat.VERSION);
+        output.writeChar(metadata.getSeparator());
+        output.writeInt(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            output.writeUTF(metadata.getColumnName(i));
+            output.writeByte(encoders[i].encoding);
+        }
+    }
+
+    @Override
+    public long write(Sample sample) {
+        String[] data = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            data[i] = sample.getData(i);
+        }
+        return write(data);
+    }
+
+    /**
+     * Write a sample given as the values of its columns.
+     *
+     * @param data
+     *            the values, in the order of the metadata columns
+     * @return The number of samples written at this time
+     */
+    public synchronized long write(String... data) {
+        if (data.length != columnCount) {
+            throw new SampleException("Mismatch between expected number of columns:" + columnCount
+                    + " and columns in sample:" + data.length);
+        }
+        for (int i = 0; i < columnCount; i++) {
+            encoders[i].encode(data[i]);
+        }
+        blockCount++;
+        sampleCount++;
+        if (blockCount >= blockSize) {
+            writeBlock();
+        }
+        return sampleCount;
+    }
+
+    /**
+     * Write the samples of the current block and flush the underlying stream.
+     */
+    public synchronized void flush() {
+        writeBlock();
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new SampleException("Could not flush samples", e);
+        }
+    }
+
+    private void writeBlock() {
+        if (blockCount == 0) {
+            return;
+        }
+        rawBlock.reset();
+        for (ColumnEncoder encoder : encoders) {
+            BinarySampleFormat.writeVarLong(rawBlock, encoder.data.size());
+            try {
+                encoder.data.writeTo(rawBlock);
+            } catch (IOException e) { // cannot happen with a ByteArrayOutputStream
+                throw new SampleException("Could not build block", e);
+            }
+            encoder.reset();
+        }
+        byte[] raw = rawBlock.toByteArray();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                byte[] larger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, larger, 0, length);
+                compressed = larger;
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        try {
+            output.writeInt(blockCount);
+            output.writeInt(raw.length);
+            output.writeInt(length);
+            output.write(compressed, 0, length);
+        } catch (IOException e) {
+            throw new SampleException("Could not write block of " + blockCount + " samples", e);
+        } finally {
+            blockCount = 0;
+        }
+    }
+
+    /**
+     * Write the current block and close the underlying stream.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            writeBlock();
+        } finally {
+            deflater.end();
+            JOrphanUtils.closeQuietly(output);
+        }
+    }
+
+    /**
+     * Encodes the values of a column for the current block
+     */
+    private static final class ColumnEncoder {
+        private final byte encoding;
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream(1024);
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final long[] number = new long[1];
+        private long previous;
+
+        ColumnEncoder(byte encoding) {
+            this.encoding = encoding;
+        }
+
+        void reset() {
+            data.reset();
+            dictionary.clear();
+            previous = 0;
+        }
+
+        void encode(String value) {
+            switch (encoding) {
+            case BinarySampleFormat.ENCODING_DELTA:
+                if (BinarySampleFormat.parseNumber(value, number)) {
+                    BinarySampleFormat.writeVarLong(data, BinarySampleFormat.zigZag(number[0] - previous) + 1);
+                    previous = number[0];
+                } else {
+                    writeLiteral(value);
+                }
+                break;
+            case BinarySampleFormat.ENCODING_NUMBER:
+                if (BinarySampleFormat.parseNumber(value, number)) {
+                    BinarySampleFormat.writeVarLong(data, BinarySampleFormat.zigZag(number[0]) + 1);
+                } else {
+                    writeLiteral(value);
+                }
+                break;
+            default:
+                Integer id = dictionary.get(value);
+                if (id != null) {
+                    BinarySampleFormat.writeVarLong(data, id.longValue());
+                } else if (dictionary.size() < BinarySampleFormat.MAX_DICTIONARY_SIZE) {
+                    // Ids start at 1, the next id announces a new entry
+                    id = Integer.valueOf(dictionary.size() + 1);
+                    dictionary.put(value, id);
+                    BinarySampleFormat.writeVarLong(data, id.longValue());
+                    BinarySampleFormat.writeString(data, value);
+                } else {
+                    writeLiteral(value);
+                }
+                break;
+            }
+        }
+
+        private void writeLiteral(String value) {
+            BinarySampleFormat.writeVarLong(data, BinarySampleFormat.LITERAL);
+            BinarySampleFormat.writeString(data, value);
+        }
+    }
+}
@@ -18,7 +18,6 @@
 package org.apache.jmeter.report.core;
 
 import java.io.BufferedReader;
-import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -43,7 +42,7 @@ import org.apache.log.Logger;
  * 
  * @since 3.0
  */
-public class CsvSampleReader implements Closeable{
+public class CsvSampleReader implements SampleReader {
 
     private static final Logger LOG = LoggingManager.getLoggerForClass();
     private static final int BUF_SIZE = 10000;
@@ -154,6 +153,7 @@ public class CsvSampleReader implements Closeable{
      *
      * @return the metadata
      */
+    @Override
     public SampleMetadata getMetadata() {
         return metadata;
     }
@@ -181,6 +181,7 @@ public class CsvSampleReader implements Closeable{
      *
      * @return the sample
      */
+    @Override
     public Sample readSample() {
         Sample out = lastSampleRead;
         lastSampleRead = nextSample();
@@ -192,6 +193,7 @@ public class CsvSampleReader implements Closeable{
      *
      * @return the sample
      */
+    @Override
     public Sample peek() {
         return lastSampleRead;
     }
@@ -201,6 +203,7 @@ public class CsvSampleReader implements Closeable{
      *
      * @return true, if the file contains more samples
      */
+    @Override
     public boolean hasNext() {
         return lastSampleRead != null;
     }
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.Closeable;
+
+/**
+ * Describes sample reader basic operations.<br>
+ * <br>
+ * A sample reader reads samples sequentially from a results file.
+ * 
+ * @since 3.1
+ */
+public interface SampleReader extends Closeable {
+
+    /**
+     * Gets the metadata.
+     *
+     * @return the metadata
+     */
+    SampleMetadata getMetadata();
+
+    /**
+     * Gets next sample from the file.
+     *
+     * @return the sample or {@code null} when the end of the file is reached
+     */
+    Sample readSample();
+
+    /**
+     * Gets next sample from file but keep the reading file position.
+     *
+     * @return the sample
+     */
+    Sample peek();
+
+    /**
+     * Indicates whether the file contains more samples
+     *
+     * @return true, if the file contains more samples
+     */
+    boolean hasNext();
+
+    /**
+     * Close the reader.
+     */
+    @Override
+    void close();
+}
@@ -37,6 +37,8 @@ import org.apache.jmeter.report.core.ConvertException;
 import org.apache.jmeter.report.core.Converters;
 import org.apache.jmeter.report.core.Sample;
 import org.apache.jmeter.report.core.SampleException;
+import org.apache.jmeter.report.core.SampleMetaDataParser;
+import org.apache.jmeter.report.core.SampleMetadata;
 import org.apache.jmeter.report.core.SamplePredicate;
 import org.apache.jmeter.report.core.SampleSelector;
 import org.apache.jmeter.report.core.StringConverter;
@@ -46,17 +48,26 @@ import org.apache.jmeter.report.processor.ApdexSummaryConsumer;
 import org.apache.jmeter.report.processor.ApdexThresholdsInfo;
 import org.apache.jmeter.report.processor.CsvFileSampleSource;
 import org.apache.jmeter.report.processor.ErrorsSummaryConsumer;
+import org.apache.jmeter.report.processor.ExternalSampleSorter;
 import org.apache.jmeter.report.processor.FilterConsumer;
 import org.apache.jmeter.report.processor.MaxAggregator;
 import org.apache.jmeter.report.processor.MinAggregator;
 import org.apache.jmeter.report.processor.NormalizerSampleConsumer;
+import org.apache.jmeter.report.processor.OrderedSampleConsumer;
+import org.apache.jmeter.report.processor.ParallelSampleConsumer;
 import org.apache.jmeter.report.processor.RequestsSummaryConsumer;
+import org.apache.jmeter.report.processor.SampleConsumer;
 import org.apache.jmeter.report.processor.SampleContext;
 import org.apache.jmeter.report.processor.SampleSource;
 import org.apache.jmeter.report.processor.StatisticsSummaryConsumer;
+import org.apache.jmeter.report.processor.StreamingSampleSource;
 import org.apache.jmeter.report.processor.ThresholdSelector;
 import org.apache.jmeter.report.processor.graph.AbstractGraphConsumer;
 import org.apache.jmeter.reporters.ResultCollector;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.save.CSVSaveService;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
@@ -72,9 +83,12 @@ public class ReportGenerator {
 
     private static final Logger LOG = LoggingManager.getLoggerForClass();
 
-    private static final boolean CSV_OUTPUT_FORMAT = "csv"
-            .equalsIgnoreCase(JMeterUtils.getPropDefault(
-                    "jmeter.save.saveservice.output_format", "csv"));
+    private static final String OUTPUT_FORMAT = JMeterUtils.getPropDefault(
+            "jmeter.save.saveservice.output_format", "csv");
+
+    // Binary files contain the CSV fields
+    private static final boolean CSV_OUTPUT_FORMAT = "csv".equalsIgnoreCase(OUTPUT_FORMAT)
+            || "binary".equalsIgnoreCase(OUTPUT_FORMAT);
 
     private static final char CSV_DEFAULT_SEPARATOR =
             JMeterUtils.getPropDefault("jmeter.save.saveservice.default_delimiter", ",").charAt(0); //$NON-NLS-1$ //$NON-NLS-2$
@@ -93,6 +107,11 @@ public class ReportGenerator {
     public static final String REQUESTS_SUMMARY_CONSUMER_NAME = "requestsSummary";
     public static final String STATISTICS_SUMMARY_CONSUMER_NAME = "statisticsSummary";
     public static final String START_INTERVAL_CONTROLLER_FILTER_CONSUMER_NAME = "startIntervalControlerFilter";
+    public static final String PARALLEL_CONSUMER_NAME = "parallelConsumers";
+    public static final String SORTER_CONSUMER_NAME_SUFFIX = "Sorter";
+
+    /** Number of samples queued while the test runs, see {@link #startStreaming()} */
+    private static final int STREAMING_QUEUE_CAPACITY = 10000;
 
     private static final Pattern POTENTIAL_CAMEL_CASE_PATTERN = Pattern.compile("_(.)");
 
@@ -104,6 +123,12 @@ public class ReportGenerator {
      */
     private final ResultCollector resultCollector;
 
+    /** Source of the samples processed while the test runs, null if not streaming */
+    private StreamingSampleSource streamingSource;
+    private Thread streamingThread;
+    private volatile SampleException streamingError;
+    private boolean streamingTmpDirCreated;
+
     /**
      * Instantiates a new report generator.
      *
@@ -117,7 +142,7 @@ public class ReportGenerator {
             throws ConfigurationException {
         if (!CSV_OUTPUT_FORMAT) {
             throw new IllegalArgumentException(
-                    "Report generation requires csv output format, check 'jmeter.save.saveservice.output_format' property");
+                    "Report generation requires csv or binary output format, check 'jmeter.save.saveservice.output_format' property");
         }
 
         LOG.info("ReportGenerator will use for Parsing the separator:'"+CSV_DEFAULT_SEPARATOR+"'");
@@ -187,7 +212,9 @@ public class ReportGenerator {
     }
 
     /**
-     * Generate dashboard reports using the data from the specified CSV File.
+     * Generate dashboard reports using the data from the specified CSV File,
+     * or from the samples processed while the test ran if
+     * {@link #startStreaming()} has been called.
      *
      * @throws GenerationException
      *             when the generation failed
@@ -198,19 +225,135 @@ public class ReportGenerator {
             LOG.info("Flushing result collector before report Generation");
             resultCollector.flushFile();
         }
+        if (streamingSource != null) {
+            generateFromStream();
+            return;
+        }
         LOG.debug("Start report generation");
 
         File tmpDir = configuration.getTempDirectory();
         boolean tmpDirCreated = createTempDir(tmpDir);
 
-        // Build consumers chain
-        SampleContext sampleContext = new SampleContext();
-        sampleContext.setWorkingDirectory(tmpDir);
         SampleSource source = new CsvFileSampleSource(testFile, JMeterUtils
                 .getPropDefault("jmeter.save.saveservice.default_delimiter",
                         ",").charAt(0));
-        source.setSampleContext(sampleContext);
+        source.setSampleContext(createSampleContext(tmpDir));
+        source.addSampleConsumer(createConsumersChain());
+
+        // Generate data
+        LOG.debug("Start samples processing");
+        try {
+            source.run();
+        } catch (SampleException ex) {
+            throw new GenerationException("Error while processing samples:"+ex.getMessage(), ex);
+        }
+        LOG.debug("End of samples processing");
+
+        exportData(source.getSampleContext());
+
+        removeTempDir(tmpDir, tmpDirCreated);
+
+        LOG.debug("End of report generation");
+
+    }
+
+    /**
+     * Start processing the samples saved by the result collector while the
+     * test runs, when property <code>jmeter.reportgenerator.streaming</code>
+     * is true. {@link #generate()} then exports the report without reading the
+     * results file. Does nothing if it is not enabled or already started.
+     *
+     * @throws GenerationException
+     *             when the processing of samples cannot be started
+     */
+    public synchronized void startStreaming() throws GenerationException {
+        if (resultCollector == null || !configuration.isStreaming()
+                || streamingSource != null) {
+            return;
+        }
+        LOG.info("Samples will be processed for report generation while the test runs");
+        // Same columns as the CSV header of the results file
+        SampleSaveConfiguration saveConfig = resultCollector.getSaveConfig();
+        SampleMetadata metadata = new SampleMetaDataParser(saveConfig.getDelimiter().charAt(0))
+                .parse(CSVSaveService.printableFieldNamesToString(saveConfig));
+        final StreamingSampleSource source = new StreamingSampleSource(metadata,
+                STREAMING_QUEUE_CAPACITY);
+        File tmpDir = configuration.getTempDirectory();
+        source.setSampleContext(createSampleContext(tmpDir));
+        source.addSampleConsumer(createConsumersChain());
+        streamingTmpDirCreated = createTempDir(tmpDir);
+
+        streamingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    source.run();
+                } catch (SampleException ex) {
+                    streamingError = ex;
+                }
+            }
+        }, "ReportGeneratorStreaming"); // $NON-NLS-1$
+        streamingThread.setDaemon(true);
+        streamingThread.start();
+        streamingSource = source;
+
+        resultCollector.setSavedSampleListener(new SampleListener() {
+
+            @Override
+            public void sampleOccurred(SampleEvent event) {
+                source.push(CSVSaveService.resultToFields(event));
+            }
+
+            @Override
+            public void sampleStarted(SampleEvent event) {
+            }
+
+            @Override
+            public void sampleStopped(SampleEvent event) {
+            }
+        });
+    }
+
+    /**
+     * Generate the report from the samples processed while the test ran.
+     */
+    private void generateFromStream() throws GenerationException {
+        LOG.debug("Start report generation from streamed samples");
+        resultCollector.setSavedSampleListener(null);
+        streamingSource.stop();
+        try {
+            streamingThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new GenerationException("Interrupted while processing streamed samples", ex);
+        }
+        if (streamingError != null) {
+            throw new GenerationException("Error while processing samples:"
+                    + streamingError.getMessage(), streamingError);
+        }
+        LOG.info("End of samples processing, " + streamingSource.getSampleCount() + " samples processed");
+
+        exportData(streamingSource.getSampleContext());
+
+        removeTempDir(configuration.getTempDirectory(), streamingTmpDirCreated);
+
+        LOG.debug("End of report generation");
+    }
+
+    private static SampleContext createSampleContext(File tmpDir) {
+        SampleContext sampleContext = new SampleContext();
+        sampleContext.setWorkingDirectory(tmpDir);
+        return sampleContext;
+    }
 
+    /**
+     * Build the chain of consumers computing the graphs and statistics
+     *
+     * @return the first consumer of the chain
+     * @throws GenerationException
+     *             when a graph cannot be created
+     */
+    private SampleConsumer createConsumersChain() throws GenerationException {
         NormalizerSampleConsumer normalizer = new NormalizerSampleConsumer();
         normalizer.setName(NORMALIZER_CONSUMER_NAME);
         
@@ -220,15 +363,27 @@ public class ReportGenerator {
 
         FilterConsumer nameFilter = createNameFilter();
 
+        // In parallel mode, summaries and graphs run on worker threads
+        ParallelSampleConsumer parallelConsumer = null;
+        AbstractSampleConsumer nameFilterOutput = nameFilter;
+        if (configuration.getParallelThreads() > 1) {
+            parallelConsumer = new ParallelSampleConsumer(configuration.getParallelThreads());
+            parallelConsumer.setName(PARALLEL_CONSUMER_NAME);
+            nameFilter.addSampleConsumer(parallelConsumer);
+            nameFilterOutput = parallelConsumer;
+        }
+        nameFilterOutput.addSampleConsumer(createApdexSummaryConsumer());
+        nameFilterOutput.addSampleConsumer(createRequestsSummaryConsumer());
+        nameFilterOutput.addSampleConsumer(createStatisticsSummaryConsumer());
+
         FilterConsumer excludeControllerFilter = createExcludeControllerFilter();
+        excludeControllerFilter.addSampleConsumer(createErrorsSummaryConsumer());
 
-        nameFilter.addSampleConsumer(excludeControllerFilter);
+        nameFilterOutput.addSampleConsumer(excludeControllerFilter);
 
         dateRangeConsumer.addSampleConsumer(nameFilter);
         
         normalizer.addSampleConsumer(dateRangeConsumer);
-        
-        source.addSampleConsumer(normalizer);
 
         // Get graph configurations
         Map<String, GraphConfiguration> graphConfigurations = configuration
@@ -237,19 +392,21 @@ public class ReportGenerator {
         // Process configuration to build graph consumers
         for (Map.Entry<String, GraphConfiguration> entryGraphCfg : graphConfigurations
                 .entrySet()) {
-            addGraphConsumer(nameFilter, excludeControllerFilter,
+            AbstractSampleConsumer excludeControllerEntryPoint = excludeControllerFilter;
+            if (parallelConsumer != null && entryGraphCfg.getValue().excludesControllers()) {
+                // Use a filter per graph so that graphs are spread on threads
+                FilterConsumer graphFilter = createExcludeControllerFilter();
+                graphFilter.setName(START_INTERVAL_CONTROLLER_FILTER_CONSUMER_NAME + "-" + entryGraphCfg.getKey());
+                parallelConsumer.addSampleConsumer(graphFilter);
+                excludeControllerEntryPoint = graphFilter;
+            }
+            addGraphConsumer(nameFilterOutput, excludeControllerEntryPoint,
                     entryGraphCfg);
         }
+        return normalizer;
+    }
 
-        // Generate data
-        LOG.debug("Start samples processing");
-        try {
-            source.run();
-        } catch (SampleException ex) {
-            throw new GenerationException("Error while processing samples:"+ex.getMessage(), ex);
-        }
-        LOG.debug("End of samples processing");
-
+    private void exportData(SampleContext sampleContext) throws GenerationException {
         LOG.debug("Start data exporting");
 
         // Process configuration to build data exporters
@@ -261,11 +418,6 @@ public class ReportGenerator {
         }
 
         LOG.debug("End of data exporting");
-
-        removeTempDir(tmpDir, tmpDirCreated);
-
-        LOG.debug("End of report generation");
-
     }
 
     /**
@@ -326,8 +478,8 @@ public class ReportGenerator {
         return tmpDirCreated;
     }
 
-    private void addGraphConsumer(FilterConsumer nameFilter,
-            FilterConsumer excludeControllerFilter,
+    private void addGraphConsumer(AbstractSampleConsumer nameFilter,
+            AbstractSampleConsumer excludeControllerFilter,
             Map.Entry<String, GraphConfiguration> entryGraphCfg)
             throws GenerationException {
         String graphName = entryGraphCfg.getKey();
@@ -360,7 +512,18 @@ public class ReportGenerator {
             AbstractSampleConsumer entryPoint = graphConfiguration
                     .excludesControllers() ? excludeControllerFilter
                     : nameFilter;
-            entryPoint.addSampleConsumer(graph);
+            if (graph instanceof OrderedSampleConsumer) {
+                // Only sort samples for the graphs which need it
+                ExternalSampleSorter sorter = new ExternalSampleSorter(
+                        ((OrderedSampleConsumer) graph).getSampleComparator());
+                sorter.setName(graphName + SORTER_CONSUMER_NAME_SUFFIX);
+                sorter.setMaxHeapRatio(configuration.getSortMaxHeapRatio());
+                sorter.addSampleConsumer(graph);
+                LOG.info("Samples will be sorted for graph:" + graphName);
+                entryPoint.addSampleConsumer(sorter);
+            } else {
+                entryPoint.addSampleConsumer(graph);
+            }
         } catch (ClassNotFoundException | IllegalAccessException
                 | InstantiationException | ClassCastException ex) {
             String error = String.format(INVALID_CLASS_FMT, className);
@@ -407,7 +570,6 @@ public class ReportGenerator {
         excludeControllerFilter
                 .setSamplePredicate(new ControllerSamplePredicate());
         excludeControllerFilter.setReverseFilter(true);
-        excludeControllerFilter.addSampleConsumer(createErrorsSummaryConsumer());
         return excludeControllerFilter;
     }
 
@@ -462,9 +624,6 @@ public class ReportGenerator {
                         || filteredSamplesPattern.matcher(sample.getName()).matches();
             }
         });
-        nameFilter.addSampleConsumer(createApdexSummaryConsumer());
-        nameFilter.addSampleConsumer(createRequestsSummaryConsumer());
-        nameFilter.addSampleConsumer(createStatisticsSummaryConsumer());
         return nameFilter;
     }
 
@@ -19,16 +19,17 @@ package org.apache.jmeter.report.processor;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.jmeter.report.core.BinarySampleReader;
+import org.apache.jmeter.report.core.BinarySampleWriter;
 import org.apache.jmeter.report.core.CsvSampleReader;
 import org.apache.jmeter.report.core.Sample;
 import org.apache.jmeter.report.core.SampleException;
-import org.apache.jmeter.report.core.SampleMetadata;
+import org.apache.jmeter.report.core.SampleReader;
 import org.apache.jmeter.report.core.TimeHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,6 +60,8 @@ import org.slf4j.LoggerFactory;
  * <li>If the input file is named <code>results.csv</code> then it will
  * be produced on the channel 0.</li>
  * </ul>
+ * Files written in the binary format (see {@link BinarySampleWriter}) are
+ * detected by their header and read with a {@link BinarySampleReader}.<br>
  *
  * @since 3.0
  */
@@ -72,11 +75,11 @@ public class CsvFileSampleSource extends AbstractSampleSource {
     /** input csv files to be produced */
     private File[] inputFiles;
 
-    /** csv readers corresponding to the input files */
-    private CsvSampleReader[] csvReaders;
+    /** csv or binary readers corresponding to the input files */
+    private SampleReader[] csvReaders;
 
     /** mock producer to produce samples to its consumers */
-    private PrivateProducer producer;
+    private SampleSourceProducer producer;
 
     /**
      * Build a sample source from the specified input file and character
@@ -115,18 +118,25 @@ public class CsvFileSampleSource extends AbstractSampleSource {
             secondaryInputs = new File[0];
         }
         inputFiles = new File[secondaryInputs.length + 1];
-        csvReaders = new CsvSampleReader[secondaryInputs.length + 1];
+        csvReaders = new SampleReader[secondaryInputs.length + 1];
         int k = 0;
         // primary input file (ex. input.csv)
-        csvReaders[k] = new CsvSampleReader(inputFile, separator, true);
+        csvReaders[k] = createReader(inputFile, separator);
         inputFiles[k] = inputFile;
         // secondary input files (ex. input-1.csv, input-2.csv, input-3.csv)
         for (File input : secondaryInputs) {
             k++;
-            csvReaders[k] = new CsvSampleReader(input, separator, true);
+            csvReaders[k] = createReader(input, separator);
             inputFiles[k] = secondaryInputs[k - 1];
         }
-        producer = new PrivateProducer();
+        producer = new SampleSourceProducer();
+    }
+
+    private static SampleReader createReader(File input, char separator) {
+        if (BinarySampleReader.isBinaryFile(input)) {
+            return new BinarySampleReader(input);
+        }
+        return new CsvSampleReader(input, separator, true);
     }
 
     private static String getFileRootName(String fName) {
@@ -177,7 +187,7 @@ public class CsvFileSampleSource extends AbstractSampleSource {
         for (int i = 0; i < csvReaders.length; i++) {
             long sampleCount = 0;
             long start = now();
-            CsvSampleReader csvReader = csvReaders[i];
+            SampleReader csvReader = csvReaders[i];
             producer.setSampleContext(context);
             producer.setProducedMetadata(csvReader.getMetadata(), i);
             producer.setChannelAttribute(i, SOURCE_FILE_ATTRIBUTE,
@@ -245,112 +255,4 @@ public class CsvFileSampleSource extends AbstractSampleSource {
     public void run() {
         produce();
     }
-
-    private class PrivateProducer extends AbstractSampleProcessor implements
-            SampleProducer {
-
-        private List<SampleConsumer> sampleConsumers = new ArrayList<>();
-
-        /**
-         * Set the consumers for the samples that are to be consumed
-         *
-         * @param consumers
-         *            list of consumers for the samples (must not be
-         *            {@code null})
-         */
-        public void setSampleConsumers(List<SampleConsumer> consumers) {
-            Validate.notNull(consumers, "consumers must not be null");
-
-            this.sampleConsumers = consumers;
-        }
-
-        public void addSampleConsumer(SampleConsumer consumer) {
-            if (consumer == null) {
-                return;
-            }
-            this.sampleConsumers.add(consumer);
-        }
-
-        public void removeSampleConsumer(SampleConsumer consumer) {
-            if (consumer == null) {
-                return;
-            }
-            this.sampleConsumers.remove(consumer);
-        }
-
-        @Override
-        public void setSampleContext(SampleContext context) {
-            for (SampleConsumer consumer : this.sampleConsumers) {
-                try {
-                    consumer.setSampleContext(context);
-                } catch (Exception e) {
-                    throw new SampleException("Consumer failed with message :"
-                            + e.getMessage(), e);
-                }
-            }
-        }
-
-        @Override
-        public void setProducedMetadata(SampleMetadata metadata, int channel) {
-            for (SampleConsumer consumer : this.sampleConsumers) {
-                try {
-                    consumer.setConsumedMetadata(metadata, channel);
-                } catch (Exception e) {
-                    throw new SampleException("Consumer failed with message :"
-                            + e.getMessage(), e);
-                }
-            }
-        }
-
-        @Override
-        public void setChannelAttribute(int channel, String key, Object value) {
-            super.setChannelAttribute(channel, key, value);
-            // propagate to this mock producer's consumers
-            for (SampleConsumer consumer : this.sampleConsumers) {
-                try {
-                    consumer.setChannelAttribute(channel, key, value);
-                } catch (Exception e) {
-                    throw new SampleException("Consumer failed with message :"
-                            + e.getMessage(), e);
-                }
-            }
-        }
-
-        @Override
-        public void startProducing() {
-            for (SampleConsumer consumer : this.sampleConsumers) {
-                try {
-                    consumer.startConsuming();
-                } catch (Exception e) {
-                    throw new SampleException("Consumer failed with message :"
-                            + e.getMessage(), e);
-                }
-            }
-        }
-
-        @Override
-        public void produce(Sample s, int channel) {
-            for (SampleConsumer consumer : this.sampleConsumers) {
-                try {
-                    consumer.consume(s, channel);
-                } catch (Exception e) {
-                    throw new SampleException("Consumer failed with message :"
-                            + e.getMessage(), e);
-                }
-            }
-        }
-
-        @Override
-        public void stopProducing() {
-            for (SampleConsumer consumer : this.sampleConsumers) {
-                try {
-                    consumer.stopConsuming();
-                } catch (Exception e) {
-                    throw new SampleException("Consumer failed with message :"
-                            + e.getMessage(), e);
-                }
-            }
-        }
-    }
-
 }
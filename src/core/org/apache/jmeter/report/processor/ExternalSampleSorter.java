@@ -58,6 +58,11 @@ import org.slf4j.LoggerFactory;
  * performance
  * </p>
  * <p>
+ * Chunks are only written when the heap used exceeds the ratio set by
+ * {@link #setMaxHeapRatio(double)}, so samples which fit in memory are sorted
+ * without any file I/O.
+ * </p>
+ * <p>
  * When <b>parallel mode</b> is enabled and several CPU are available to the
  * JVM, this sorter uses multiple CPU to reduce sort time.<br>
  * The <b>parallel mode</b> can be disabled if some sort of concurrency issue is
@@ -86,8 +91,12 @@ public class ExternalSampleSorter extends AbstractSampleConsumer {
 
     private static final int DEFAULT_CHUNK_SIZE = 50000;
 
+    private static final double DEFAULT_MAX_HEAP_RATIO = 0.5;
+
     private long chunkSize = DEFAULT_CHUNK_SIZE;
 
+    private double maxHeapRatio = DEFAULT_MAX_HEAP_RATIO;
+
     private SampleComparator sampleComparator;
 
     private final BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<>();
@@ -104,7 +113,7 @@ public class ExternalSampleSorter extends AbstractSampleConsumer {
 
     private LinkedList<File> chunks;
 
-    private LinkedList<Sample> samples;
+    private List<Sample> samples;
 
     private SampleMetadata sampleMetadata;
 
@@ -144,6 +153,19 @@ public class ExternalSampleSorter extends AbstractSampleConsumer {
         this.chunkSize = chunkSize;
     }
 
+    /**
+     * Set the ratio of the maximum heap size that the samples kept in memory
+     * may use. Samples are written to chunk files of <code>chunkSize</code>
+     * samples only when the used heap exceeds this ratio, so that samples are
+     * sorted without any file I/O when they fit in memory.
+     * 
+     * @param maxHeapRatio
+     *            ratio between 0 and 1, 0 always writes chunk files
+     */
+    public void setMaxHeapRatio(double maxHeapRatio) {
+        this.maxHeapRatio = maxHeapRatio;
+    }
+
     /**
      * Set the sample comparator that will define sample ordering
      * 
@@ -282,7 +304,7 @@ public class ExternalSampleSorter extends AbstractSampleConsumer {
         inputSampleCount.set(0);
         chunkedSampleCount.set(0);
         chunks = new LinkedList<>();
-        samples = new LinkedList<>();
+        samples = new ArrayList<>();
         sampleMetadata = getConsumedMetadata(0);
         sampleComparator.initialize(sampleMetadata);
     }
@@ -291,30 +313,52 @@ public class ExternalSampleSorter extends AbstractSampleConsumer {
     public void consume(Sample s, int channel) {
         samples.add(s);
         inputSampleCount.incrementAndGet();
-        if (samples.size() >= chunkSize) {
+        if (samples.size() % chunkSize == 0 && !isHeapAvailable()) {
             chunks.add(sortAndDump(samples, sampleMetadata));
-            samples.clear();
+            samples = new ArrayList<>();
         }
     }
 
+    /**
+     * @return true if more samples can be kept in memory
+     */
+    private boolean isHeapAvailable() {
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+        return usedHeap < runtime.maxMemory() * maxHeapRatio;
+    }
+
     @Override
     public void stopConsuming() {
-        if (!samples.isEmpty()) {
-            chunks.add(sortAndDump(samples, sampleMetadata));
-        }
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("sort(): " + inputSampleCount.longValue()
-                    + " samples read from input, " + chunkedSampleCount.longValue()
-                    + " samples written to chunk files");
-            if (inputSampleCount.get() != chunkedSampleCount.get()) {
-                LOG.error("Failure! Number of samples read from input and written to chunk files differ");
-            } else {
-                LOG.info("dumping of samples chunk succeeded.");
-            }
-        }
         super.setProducedMetadata(sampleMetadata, 0);
         super.startProducing();
-        sortFilesParallel(chunks, sampleMetadata, this);
+        if (chunks.isEmpty()) {
+            // All samples fit in memory, no need for chunk files
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("sort(): " + inputSampleCount.longValue()
+                        + " samples read from input, sorting them in memory");
+            }
+            for (Sample sample : sortSamplesParallel(samples)) {
+                super.produce(sample, 0);
+            }
+            samples = null;
+        } else {
+            if (!samples.isEmpty()) {
+                chunks.add(sortAndDump(samples, sampleMetadata));
+            }
+            samples = null;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("sort(): " + inputSampleCount.longValue()
+                        + " samples read from input, " + chunkedSampleCount.longValue()
+                        + " samples written to chunk files");
+                if (inputSampleCount.get() != chunkedSampleCount.get()) {
+                    LOG.error("Failure! Number of samples read from input and written to chunk files differ");
+                } else {
+                    LOG.info("dumping of samples chunk succeeded.");
+                }
+            }
+            sortFilesParallel(chunks, sampleMetadata, this);
+        }
         super.stopProducing();
         if (this.pool != null) {
             this.pool.shutdown();
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import org.apache.jmeter.report.core.SampleComparator;
+
+/**
+ * Defines a {@link SampleConsumer} which needs to consume the samples in a
+ * given order.
+ * <p>
+ * Other consumers must not depend on the order of the samples, so that the
+ * report generator only sorts the samples, through an
+ * {@link ExternalSampleSorter}, for the consumers implementing this interface.
+ * </p>
+ *
+ * @since 3.1
+ */
+public interface OrderedSampleConsumer extends SampleConsumer {
+
+    /**
+     * Gets the comparator defining the order of the consumed samples.
+     *
+     * @return the comparator, must not be {@code null}
+     */
+    SampleComparator getSampleComparator();
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consumer which runs its consumers on several worker threads.
+ * <p>
+ * Each consumer is bound to a single worker, so it still consumes the samples
+ * in the order they have been produced and keeps its own state: results need
+ * no merge. Samples are handed to the workers by batches to limit
+ * synchronization.
+ * </p>
+ * <p>
+ * {@link SampleConsumer#startConsuming()} of the consumers is called on the
+ * producer thread, {@link SampleConsumer#stopConsuming()} on the worker
+ * thread as some consumers do most of their work at that time. It returns
+ * once all consumers have been stopped.
+ * </p>
+ *
+ * @since 3.1
+ */
+public class ParallelSampleConsumer extends AbstractSampleConsumer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelSampleConsumer.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    /** Number of batches a worker can lag behind the producer */
+    private static final int QUEUE_CAPACITY = 32;
+
+    /** Marks the end of the samples */
+    private static final Batch END_BATCH = new Batch(0);
+
+    private final int threadCount;
+
+    private Worker[] workers;
+
+    private Batch batch;
+
+    /**
+     * @param threadCount
+     *            maximum number of worker threads, the number of consumers
+     *            limits it too
+     */
+    public ParallelSampleConsumer(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be positive: " + threadCount);
+        }
+        this.threadCount = threadCount;
+    }
+
+    @Override
+    public void startConsuming() {
+        // Broadcast metadata to consumers for each channel
+        int channelCount = getConsumedChannelCount();
+        for (int i = 0; i < channelCount; i++) {
+            super.setProducedMetadata(getConsumedMetadata(i), i);
+        }
+        super.startProducing();
+
+        List<SampleConsumer> consumers = new ArrayList<>();
+        SampleConsumer consumer;
+        while ((consumer = getConsumer(consumers.size())) != null) {
+            consumers.add(consumer);
+        }
+        int workerCount = Math.max(1, Math.min(threadCount, consumers.size()));
+        workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(getName() + "-" + i);
+        }
+        for (int i = 0; i < consumers.size(); i++) {
+            workers[i % workerCount].consumers.add(consumers.get(i));
+        }
+        for (Worker worker : workers) {
+            worker.start();
+        }
+        batch = new Batch(BATCH_SIZE);
+        if (LOG.isInfoEnabled()) {
+            LOG.info(getName() + " dispatches samples to " + consumers.size()
+                    + " consumers on " + workerCount + " threads");
+        }
+    }
+
+    @Override
+    public void consume(Sample sample, int channel) {
+        batch.samples[batch.size] = sample;
+        batch.channels[batch.size] = channel;
+        batch.size++;
+        if (batch.size == BATCH_SIZE) {
+            dispatch(batch);
+            batch = new Batch(BATCH_SIZE);
+        }
+    }
+
+    @Override
+    public void stopConsuming() {
+        if (batch.size > 0) {
+            dispatch(batch);
+        }
+        batch = null;
+        dispatch(END_BATCH);
+        try {
+            for (Worker worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SampleException("Interrupted while waiting for " + getName() + " workers", e);
+        }
+        for (Worker worker : workers) {
+            if (worker.error != null) {
+                throw new SampleException("Consumer failed with message :"
+                        + worker.error.getMessage(), worker.error);
+            }
+        }
+        workers = null;
+        if (LOG.isInfoEnabled()) {
+            LOG.info(getName() + " stopped its consumers");
+        }
+    }
+
+    private void dispatch(Batch samples) {
+        try {
+            for (Worker worker : workers) {
+                worker.queue.put(samples);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SampleException("Interrupted while dispatching samples to " + getName() + " workers", e);
+        }
+    }
+
+    /**
+     * Samples shared by all the workers, must not be modified once dispatched
+     */
+    private static final class Batch {
+        private final Sample[] samples;
+        private final int[] channels;
+        private int size;
+
+        private Batch(int capacity) {
+            samples = new Sample[capacity];
+            channels = new int[capacity];
+        }
+    }
+
+    private static final class Worker extends Thread {
+        private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final List<SampleConsumer> consumers = new ArrayList<>();
+        // Read once the thread has been joined
+        private Throwable error;
+
+        private Worker(String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                Batch samples;
+                while ((samples = queue.take()) != END_BATCH) {
+                    // Keep draining after a failure so that the producer is never blocked
+                    if (error == null) {
+                        consume(samples);
+                    }
+                }
+                if (error == null) {
+                    stopConsumers();
+                }
+            } catch (InterruptedException e) { // NOSONAR Thread ends
+                error = e;
+            }
+        }
+
+        private void stopConsumers() {
+            try {
+                for (SampleConsumer consumer : consumers) {
+                    consumer.stopConsuming();
+                }
+            } catch (Exception e) { // NOSONAR Reported by stopConsuming
+                LOG.error("Error in thread " + getName() + " while stopping consumers", e);
+                error = e;
+            }
+        }
+
+        private void consume(Batch samples) {
+            try {
+                for (int i = 0; i < samples.size; i++) {
+                    for (SampleConsumer consumer : consumers) {
+                        consumer.consume(samples.samples[i], samples.channels[i]);
+                    }
+                }
+            } catch (Exception e) { // NOSONAR Reported by stopConsuming
+                LOG.error("Error in thread " + getName() + " while consuming samples", e);
+                error = e;
+            }
+        }
+    }
+}
@@ -38,6 +38,10 @@ import org.apache.jmeter.report.core.SampleMetadata;
  * <code>startConsuming()</code> is called.
  * </p>
  * <p>
+ * Samples are consumed in the order of the results file, consumers which
+ * need another order must implement {@link OrderedSampleConsumer}.
+ * </p>
+ * <p>
  * The following sequence must be observed when consuming samples :
  * </p>
  * <ul>
@@ -18,6 +18,7 @@
 package org.apache.jmeter.report.processor;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -30,7 +31,8 @@ import java.util.Map;
 public class SampleContext {
 
     private File workingDirectory;
-    private Map<String, Object> data = new HashMap<>();
+    // Synchronized as consumers may store their results from several threads
+    private Map<String, Object> data = Collections.synchronizedMap(new HashMap<String, Object>());
 
     /**
      * Return the root directory that consumers are authorized to use for
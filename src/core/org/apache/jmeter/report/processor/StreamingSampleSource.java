@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleException;
+import org.apache.jmeter.report.core.SampleMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sample source which produces the samples pushed while a test runs, so that
+ * the results file does not have to be read again to generate the report.
+ * <p>
+ * The sampling threads push the fields of their samples with
+ * {@link #push(String[])}, the samples are queued and produced on the channel
+ * 0 by the thread running this source until {@link #stop()} is called. The
+ * queue is bounded: pushing waits while the consumers lag behind.
+ * </p>
+ * <p>
+ * If a consumer fails, the remaining samples are discarded and
+ * {@link #run()} throws the error once the source has been stopped.
+ * </p>
+ *
+ * @since 3.1
+ */
+public class StreamingSampleSource extends AbstractSampleSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingSampleSource.class);
+
+    /** How long a push waits for room in the queue before checking the source is still running */
+    private static final long PUSH_WAIT_MILLIS = 100L;
+
+    /** Marks the end of the samples */
+    private static final String[] END_OF_SAMPLES = new String[0];
+
+    private final SampleMetadata metadata;
+
+    private final BlockingQueue<String[]> queue;
+
+    /** mock producer to produce samples to its consumers */
+    private final SampleSourceProducer producer = new SampleSourceProducer();
+
+    /** Set once no more sample will be taken from the queue */
+    private volatile boolean finished;
+
+    private long sampleCount;
+
+    /**
+     * Build a sample source for samples with the specified columns.
+     *
+     * @param metadata
+     *            the columns of the pushed samples (must not be
+     *            {@code null})
+     * @param capacity
+     *            the maximum number of queued samples
+     */
+    public StreamingSampleSource(SampleMetadata metadata, int capacity) {
+        Validate.notNull(metadata, "metadata must not be null");
+        this.metadata = metadata;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Queue a sample to be produced. Called concurrently by the sampling
+     * threads, it waits while the queue is full.
+     *
+     * @param data
+     *            the fields of the sample, in the order of the metadata
+     * @return false if the sample has been discarded because the source is
+     *         not running anymore
+     */
+    public boolean push(String[] data) {
+        try {
+            while (!finished) {
+                if (queue.offer(data, PUSH_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Signal that no more sample will be pushed. The samples already queued
+     * are produced before {@link #run()} returns.
+     */
+    public void stop() {
+        push(END_OF_SAMPLES);
+    }
+
+    /**
+     * @return the number of samples produced
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    @Override
+    public void setSampleConsumers(List<SampleConsumer> consumers) {
+        producer.setSampleConsumers(consumers);
+    }
+
+    @Override
+    public void addSampleConsumer(SampleConsumer consumer) {
+        producer.addSampleConsumer(consumer);
+    }
+
+    @Override
+    public void removeSampleConsumer(SampleConsumer consumer) {
+        producer.removeSampleConsumer(consumer);
+    }
+
+    /**
+     * Run this sample source.<br>
+     * It produces the pushed samples to its consumers until the source is
+     * stopped.
+     */
+    @Override
+    public void run() {
+        SampleContext context = getSampleContext();
+        Validate.validState(context != null, "Set a sample context before producing samples.");
+
+        SampleException error = null;
+        try {
+            producer.setSampleContext(context);
+            producer.setProducedMetadata(metadata, 0);
+            producer.startProducing();
+            String[] data;
+            while ((data = queue.take()) != END_OF_SAMPLES) {
+                // Keep draining after a failure so that the sampling threads are never blocked
+                if (error == null) {
+                    try {
+                        producer.produce(new Sample(sampleCount, metadata, data), 0);
+                        sampleCount++;
+                    } catch (SampleException e) {
+                        LOG.error("Error while producing streamed samples, next samples are discarded", e);
+                        error = e;
+                    }
+                }
+            }
+            if (error == null) {
+                producer.stopProducing();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = new SampleException("Interrupted while waiting for streamed samples", e);
+        } finally {
+            finished = true;
+            queue.clear();
+        }
+        if (error != null) {
+            throw error;
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("run(): " + sampleCount + " streamed samples produced");
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.reporters;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Writes records to a results file from a single background thread.
+ * <p>
+ * Sampling threads format their records in their own buffers and hand the
+ * encoded bytes to a lock-free queue, so they never contend on a shared writer.
+ * The writer thread drains the queue into a large buffer and writes it to the
+ * {@link FileChannel} in batches.
+ * <p>
+ * The number of queued records is bounded. When the queue is full, producers either
+ * wait for the writer (policy {@link Policy#BLOCK}) or the record is dropped
+ * (policy {@link Policy#DROP}). Waits and drops are counted and logged on close.
+ */
+public class AsyncResultWriter {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** How long the writer thread parks when there is nothing to write */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /** How long a producer parks when the queue is full */
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * What to do with a record when the queue is full
+     */
+    public enum Policy {
+        /** Wait until the writer has made room in the queue */
+        BLOCK,
+        /** Discard the record */
+        DROP
+    }
+
+    private final String filename;
+
+    private final FileChannel channel;
+
+    private final Charset charset;
+
+    private final Queue<byte[]> queue = new ConcurrentLinkedQueue<>();
+
+    private final int capacity;
+
+    private final Policy policy;
+
+    private final ByteBuffer buffer;
+
+    private final Thread writerThread;
+
+    /** Number of records in the queue */
+    private final AtomicLong queued = new AtomicLong();
+
+    /** Number of records accepted */
+    private final AtomicLong enqueued = new AtomicLong();
+
+    /** Number of records dropped because the queue was full or the writer failed */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Number of records that had to wait for room in the queue */
+    private final AtomicLong queueWaits = new AtomicLong();
+
+    /** Total time spent by producers waiting for room in the queue */
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+
+    /** Number of records written to the channel, only updated by the writer thread */
+    private volatile long written;
+
+    private volatile boolean writerIdle;
+
+    private volatile boolean closed;
+
+    private volatile IOException error;
+
+    /**
+     * Opens the file and starts the writer thread.
+     *
+     * @param filename the name of the file to write
+     * @param append true if records should be appended to an existing file
+     * @param charset the encoding of the file
+     * @param capacity the maximum number of queued records
+     * @param policy what to do when the queue is full
+     * @param bufferSize the size of the batches written to the file
+     * @throws IOException if the file cannot be opened
+     */
+    public AsyncResultWriter(String filename, boolean append, Charset charset,
+            int capacity, Policy policy, int bufferSize) throws IOException {
+        this.filename = filename;
+        this.charset = charset;
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(4096, bufferSize));
+        this.channel = append
+                ? FileChannel.open(Paths.get(filename),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                : FileChannel.open(Paths.get(filename),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "AsyncResultWriter-" + filename); // $NON-NLS-1$
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queue a formatted record for writing. Called concurrently by the sampling threads.
+     *
+     * @param record the formatted record, including any line terminator
+     * @return false if the record was dropped
+     */
+    public boolean write(CharSequence record) {
+        if (closed || error != null) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        byte[] bytes = record.toString().getBytes(charset);
+        // The bound is checked without locking, so it may be exceeded by a few concurrent producers
+        if (queued.get() >= capacity) {
+            if (policy == Policy.DROP) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            long start = System.nanoTime();
+            queueWaits.incrementAndGet();
+            do {
+                wakeUpWriter();
+                LockSupport.parkNanos(this, FULL_PARK_NANOS);
+            } while (queued.get() >= capacity && !closed && error == null);
+            queueWaitNanos.addAndGet(System.nanoTime() - start);
+        }
+        queued.incrementAndGet();
+        queue.offer(bytes);
+        enqueued.incrementAndGet();
+        wakeUpWriter();
+        return true;
+    }
+
+    /**
+     * Wait until all the records queued before the call have been written to the file.
+     */
+    public void flush() {
+        final long target = enqueued.get();
+        while (written < target && writerThread.isAlive() && error == null) {
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Write all queued records, stop the writer thread and close the file.
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        JOrphanUtils.closeQuietly(channel);
+        log.info("Closed " + filename + ": records written=" + written
+                + ", dropped=" + dropped.get()
+                + ", queue waits=" + queueWaits.get()
+                + ", total wait(ms)=" + TimeUnit.NANOSECONDS.toMillis(queueWaitNanos.get()));
+    }
+
+    /**
+     * @return true if writing to the file failed
+     */
+    public boolean checkError() {
+        return error != null;
+    }
+
+    /**
+     * @return the number of records written to the file
+     */
+    public long getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * @return the number of records dropped
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of records which had to wait for room in the queue
+     */
+    public long getQueueWaitCount() {
+        return queueWaits.get();
+    }
+
+    /**
+     * @return the total time spent waiting for room in the queue, in milliseconds
+     */
+    public long getQueueWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(queueWaitNanos.get());
+    }
+
+    private void wakeUpWriter() {
+        if (writerIdle) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Writer thread loop: batch the queued records and write them.
+     */
+    private void drain() {
+        long batched = 0;
+        while (true) {
+            byte[] bytes = queue.poll();
+            if (bytes == null) {
+                batched = writeBuffer(batched);
+                if (closed && queue.isEmpty()) {
+                    break;
+                }
+                writerIdle = true;
+                if (queue.isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerIdle = false;
+                continue;
+            }
+            queued.decrementAndGet();
+            if (error != null) {
+                dropped.incrementAndGet();
+                written++; // Don't let flush() wait for it
+                continue;
+            }
+            if (bytes.length > buffer.remaining()) {
+                batched = writeBuffer(batched);
+                if (bytes.length > buffer.capacity()) {
+                    writeFully(ByteBuffer.wrap(bytes));
+                    written++;
+                    continue;
+                }
+            }
+            buffer.put(bytes);
+            batched++;
+        }
+    }
+
+    /**
+     * Write the batch buffer to the channel
+     * @param batched number of records in the buffer
+     * @return the number of records left in the buffer (0)
+     */
+    private long writeBuffer(long batched) {
+        if (buffer.position() > 0) {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+        written += batched;
+        return 0;
+    }
+
+    private void writeFully(ByteBuffer src) {
+        try {
+            while (src.hasRemaining()) {
+                channel.write(src);
+            }
+        } catch (IOException e) {
+            if (error == null) {
+                log.error("Error writing to " + filename + ", further records will be dropped", e);
+            }
+            error = e;
+        }
+    }
+}
@@ -31,14 +31,23 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 import org.apache.jmeter.engine.util.NoThreadClone;
 import org.apache.jmeter.gui.GuiPackage;
+import org.apache.jmeter.report.core.BinarySampleReader;
+import org.apache.jmeter.report.core.BinarySampleWriter;
+import org.apache.jmeter.report.core.SampleException;
+import org.apache.jmeter.report.core.SampleMetaDataParser;
+import org.apache.jmeter.report.core.SampleMetadata;
 import org.apache.jmeter.samplers.Clearable;
 import org.apache.jmeter.samplers.Remoteable;
+import org.apache.jmeter.samplers.ResponseDataAware;
 import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
@@ -47,6 +56,7 @@ import org.apache.jmeter.save.CSVSaveService;
 import org.apache.jmeter.save.SaveService;
 import org.apache.jmeter.services.FileServer;
 import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestPlan;
 import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.property.BooleanProperty;
 import org.apache.jmeter.testelement.property.ObjectProperty;
@@ -62,7 +72,7 @@ import org.apache.log.Logger;
  * The class must be thread-safe because it is shared between threads (NoThreadClone).
  */
 public class ResultCollector extends AbstractListenerElement implements SampleListener, Clearable, Serializable,
-        TestStateListener, Remoteable, NoThreadClone {
+        TestStateListener, Remoteable, NoThreadClone, ResponseDataAware {
 
     private static final Logger log = LoggingManager.getLoggerForClass();
 
@@ -96,11 +106,43 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
     /** AutoFlush on each line */
     private static final boolean SAVING_AUTOFLUSH = JMeterUtils.getPropDefault("jmeter.save.saveservice.autoflush", false); //$NON-NLS-1$
 
+    private static final boolean SAVING_RESPONSE_DATA_ON_ERROR =
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.response_data.on_error", false); //$NON-NLS-1$
+
+    /** Write CSV results in the compact binary format, see {@link BinarySampleWriter} */
+    private static final boolean SAVING_BINARY = "binary".equalsIgnoreCase( //$NON-NLS-1$
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.output_format", "csv")); //$NON-NLS-1$ //$NON-NLS-2$
+
+    /** Write results from a background thread, see {@link AsyncResultWriter} */
+    private static final boolean SAVING_ASYNC = JMeterUtils.getPropDefault("jmeter.save.saveservice.async", false); //$NON-NLS-1$
+
+    /** Maximum number of results waiting to be written by the background thread */
+    private static final int SAVING_ASYNC_QUEUE_SIZE =
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.async.queue_size", 100000); //$NON-NLS-1$
+
+    /** What to do with a result when the queue is full: block or drop */
+    private static final AsyncResultWriter.Policy SAVING_ASYNC_POLICY = getAsyncPolicy(
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.async.policy", "block")); //$NON-NLS-1$ //$NON-NLS-2$
+
+    /** Size in bytes of the batches written by the background thread */
+    private static final int SAVING_ASYNC_BUFFER_SIZE =
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.async.buffer_size", 256 * 1024); //$NON-NLS-1$
+
+    /** Per-thread buffer used to format results outside of any lock in async mode */
+    private static final ThreadLocal<StringWriter> FORMAT_BUFFER = new ThreadLocal<StringWriter>() {
+        @Override
+        protected StringWriter initialValue() {
+            return new StringWriter(1024);
+        }
+    };
+
     // Static variables
 
     // Lock used to guard static mutable variables
     private static final Object LOCK = new Object();
 
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator"); // $NON-NLS-1$
+
     //@GuardedBy("LOCK")
     private static final Map<String, FileEntry> files = new HashMap<>();
 
@@ -117,9 +159,25 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
      */
     private static class FileEntry{
         final PrintWriter pw;
+        final AsyncResultWriter asyncWriter; // only used in async mode, pw is null then
+        final BinarySampleWriter binaryWriter; // only used in binary mode, pw is null then
         final SampleSaveConfiguration config;
         FileEntry(PrintWriter _pw, SampleSaveConfiguration _config){
             pw =_pw;
+            asyncWriter = null;
+            binaryWriter = null;
+            config = _config;
+        }
+        FileEntry(AsyncResultWriter _asyncWriter, SampleSaveConfiguration _config){
+            pw = null;
+            asyncWriter = _asyncWriter;
+            binaryWriter = null;
+            config = _config;
+        }
+        FileEntry(BinarySampleWriter _binaryWriter, SampleSaveConfiguration _config){
+            pw = null;
+            asyncWriter = null;
+            binaryWriter = _binaryWriter;
             config = _config;
         }
     }
@@ -137,6 +195,10 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
 
     private transient volatile PrintWriter out;
 
+    private transient volatile AsyncResultWriter asyncOut;
+
+    private transient volatile BinarySampleWriter binaryOut;
+
     private volatile boolean inTest = false;
 
     private volatile boolean isStats = false;
@@ -144,6 +206,9 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
     /** the summarizer to which this result collector will forward the samples */
     private volatile Summariser summariser;
 
+    /** the listener to which this result collector will forward the samples it saves */
+    private transient volatile SampleListener savedSampleListener;
+
     private static final class ShutdownHook implements Runnable {
 
         @Override
@@ -156,6 +221,15 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         }     
     }
     
+    private static AsyncResultWriter.Policy getAsyncPolicy(String policy) {
+        try {
+            return AsyncResultWriter.Policy.valueOf(policy.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid value '" + policy + "' for jmeter.save.saveservice.async.policy, using block");
+            return AsyncResultWriter.Policy.BLOCK;
+        }
+    }
+
     /**
      * No-arg constructor.
      */
@@ -182,6 +256,7 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         clone.setSaveConfig((SampleSaveConfiguration)clone.getSaveConfig().clone());
         // Unfortunately AbstractTestElement does not call super.clone()
         clone.summariser = this.summariser;
+        clone.savedSampleListener = this.savedSampleListener;
         return clone;
     }
 
@@ -376,6 +451,10 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
                 dataReader = null;
                 if (line == null) {
                     log.warn(filename+" is empty");
+                } else if (BinarySampleReader.isBinaryFile(file)) {
+                    log.warn(filename+" is a binary results file, which can only be read by the report generator,"
+                            + " convert it to CSV with: java -cp \"lib/*:lib/ext/*\""
+                            + " org.apache.jmeter.report.core.BinarySampleConverter bin2csv <input file> <output file>");
                 } else {
                     if (!line.startsWith("<?xml ")){// No, must be CSV //$NON-NLS-1$
                         CSVSaveService.processSamples(filename, visualizer, this);
@@ -450,23 +529,7 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         boolean trimmed = true;
 
         if (fe == null) {
-            if (saveConfig.saveAsXml()) {
-                trimmed = trimLastLine(filename);
-            } else {
-                trimmed = new File(filename).exists();
-            }
-            // Find the name of the directory containing the file
-            // and create it - if there is one
-            File pdir = new File(filename).getParentFile();
-            if (pdir != null) {
-                // returns false if directory already exists, so need to check again
-                if(pdir.mkdirs()){
-                    log.info("Folder "+pdir.getAbsolutePath()+" was created");
-                } // else if might have been created by another process so not a problem
-                if (!pdir.exists()){
-                    log.warn("Error creating directories for "+pdir.toString());
-                }
-            }
+            trimmed = prepareFile(filename, saveConfig);
             writer = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(filename,
                     trimmed)), SaveService.getFileEncoding(StandardCharsets.UTF_8.name())), SAVING_AUTOFLUSH);
             log.debug("Opened file: "+filename);
@@ -480,6 +543,91 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         return writer;
     }
 
+    /**
+     * Get the background writer for the file, creating it if necessary.
+     * The writer is shared by all collectors using the same file.
+     */
+    private static AsyncResultWriter getAsyncFileWriter(String filename, SampleSaveConfiguration saveConfig)
+            throws IOException {
+        if (filename == null || filename.length() == 0) {
+            return null;
+        }
+        filename = FileServer.resolveBaseRelativeName(filename);
+        FileEntry fe = files.get(filename);
+        if (fe != null) {
+            return fe.asyncWriter;
+        }
+        boolean trimmed = prepareFile(filename, saveConfig);
+        AsyncResultWriter writer = new AsyncResultWriter(filename, trimmed,
+                Charset.forName(SaveService.getFileEncoding(StandardCharsets.UTF_8.name())),
+                SAVING_ASYNC_QUEUE_SIZE, SAVING_ASYNC_POLICY, SAVING_ASYNC_BUFFER_SIZE);
+        log.debug("Opened file: "+filename+" for asynchronous writing");
+        files.put(filename, new FileEntry(writer, saveConfig));
+        if (!trimmed) {
+            StringWriter start = new StringWriter();
+            PrintWriter startWriter = new PrintWriter(start);
+            writeFileStart(startWriter, saveConfig);
+            startWriter.flush();
+            writer.write(start.getBuffer());
+        }
+        return writer;
+    }
+
+    /**
+     * Get the binary writer for the file, creating it if necessary.
+     * The writer is shared by all collectors using the same file.
+     */
+    private static BinarySampleWriter getBinaryFileWriter(String filename, SampleSaveConfiguration saveConfig)
+            throws IOException {
+        if (filename == null || filename.length() == 0) {
+            return null;
+        }
+        filename = FileServer.resolveBaseRelativeName(filename);
+        FileEntry fe = files.get(filename);
+        if (fe != null) {
+            return fe.binaryWriter;
+        }
+        // Same columns as the CSV header, so that the report generator sees the same metadata
+        SampleMetadata metadata = new SampleMetaDataParser(saveConfig.getDelimiter().charAt(0))
+                .parse(CSVSaveService.printableFieldNamesToString(saveConfig));
+        boolean append = prepareFile(filename, saveConfig) && new File(filename).length() > 0;
+        if (append && !BinarySampleReader.hasMetadata(new File(filename), metadata)) {
+            throw new IOException("Cannot append results to " + filename
+                    + ", it is not a binary results file with the same columns");
+        }
+        BinarySampleWriter writer = new BinarySampleWriter(new FileOutputStream(filename, append),
+                metadata, !append, BinarySampleWriter.DEFAULT_BLOCK_SIZE);
+        log.debug("Opened file: "+filename+" for binary writing");
+        files.put(filename, new FileEntry(writer, saveConfig));
+        return writer;
+    }
+
+    /**
+     * Trim the XML terminator of an existing file and create its parent directories.
+     * @return true if results should be appended to the file (i.e. no file header is needed)
+     */
+    private static boolean prepareFile(String filename, SampleSaveConfiguration saveConfig) {
+        boolean trimmed;
+        if (saveConfig.saveAsXml()) {
+            trimmed = trimLastLine(filename);
+        } else {
+            trimmed = new File(filename).exists();
+        }
+        // Find the name of the directory containing the file
+        // and create it - if there is one
+        File pdir = new File(filename).getParentFile();
+        if (pdir != null) {
+            // returns false if directory already exists, so need to check again
+            if(pdir.mkdirs()){
+                log.info("Folder "+pdir.getAbsolutePath()+" was created");
+            } // else if might have been created by another process so not a problem
+            if (!pdir.exists()){
+                log.warn("Error creating directories for "+pdir.toString());
+            }
+        }
+        return trimmed;
+    }
+
     // returns false if the file did not contain the terminator
     private static boolean trimLastLine(String filename) {
         RandomAccessFile raf = null;
@@ -535,6 +683,17 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
     public void sampleStopped(SampleEvent e) {
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The response data is used by the visualizer, and when it is saved to the file.
+     */
+    @Override
+    public boolean isResponseDataUsed() {
+        return getVisualizer() != null || getSaveConfig().saveResponseData()
+                || SAVING_RESPONSE_DATA_ON_ERROR || TestPlan.getFunctionalMode();
+    }
+
     /**
      * When a test result is received, display it and save it.
      *
@@ -547,18 +706,29 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
 
         if (isSampleWanted(result.isSuccessful())) {
             sendToVisualizer(result);
-            if (out != null && !isResultMarked(result) && !this.isStats) {
-                SampleSaveConfiguration config = getSaveConfig();
-                result.setSaveConfig(config);
-                try {
-                    if (config.saveAsXml()) {
-                        SaveService.saveSampleResult(event, out);
-                    } else { // !saveAsXml
-                        String savee = CSVSaveService.resultToDelimitedString(event);
-                        out.println(savee);
+            if ((binaryOut != null || asyncOut != null || out != null)
+                    && !isResultMarked(result) && !this.isStats) {
+                if (binaryOut != null) {
+                    writeBinary(event, result);
+                } else if (asyncOut != null) {
+                    writeAsync(event, result);
+                } else {
+                    SampleSaveConfiguration config = getSaveConfig();
+                    result.setSaveConfig(config);
+                    try {
+                        if (config.saveAsXml()) {
+                            SaveService.saveSampleResult(event, out);
+                        } else { // !saveAsXml
+                            String savee = CSVSaveService.resultToDelimitedString(event);
+                            out.println(savee);
+                        }
+                    } catch (Exception err) {
+                        log.error("Error trying to record a sample", err); // should throw exception back to caller
                     }
-                } catch (Exception err) {
-                    log.error("Error trying to record a sample", err); // should throw exception back to caller
+                }
+                SampleListener listener = savedSampleListener;
+                if (listener != null) {
+                    listener.sampleOccurred(event);
                 }
             }
         }
@@ -568,6 +738,39 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         }
     }
 
+    private void writeBinary(SampleEvent event, SampleResult result) {
+        result.setSaveConfig(getSaveConfig());
+        try {
+            binaryOut.write(CSVSaveService.resultToFields(event));
+            if (SAVING_AUTOFLUSH) {
+                binaryOut.flush();
+            }
+        } catch (Exception err) {
+            log.error("Error trying to record a sample", err); // should throw exception back to caller
+        }
+    }
+
+    /**
+     * Format the result in a buffer of the calling thread and hand it over to the background writer
+     */
+    private void writeAsync(SampleEvent event, SampleResult result) {
+        SampleSaveConfiguration config = getSaveConfig();
+        result.setSaveConfig(config);
+        StringWriter buffer = FORMAT_BUFFER.get();
+        buffer.getBuffer().setLength(0);
+        try {
+            if (config.saveAsXml()) {
+                SaveService.saveSampleResult(event, buffer);
+            } else { // !saveAsXml
+                buffer.write(CSVSaveService.resultToDelimitedString(event));
+                buffer.write(LINE_SEPARATOR);
+            }
+            asyncOut.write(buffer.getBuffer());
+        } catch (Exception err) {
+            log.error("Error trying to record a sample", err); // should throw exception back to caller
+        }
+    }
+
     protected final void sendToVisualizer(SampleResult r) {
         if (getVisualizer() != null) {
             getVisualizer().add(r);
@@ -582,9 +785,13 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
      */
     // Used by: MonitorHealthVisualizer.add(SampleResult res)
     public void recordStats(TestElement e) throws IOException {
-        if (out != null) {
+        if (asyncOut != null) {
+            StringWriter buffer = new StringWriter();
+            SaveService.saveTestElement(e, buffer);
+            asyncOut.write(buffer.getBuffer());
+        } else if (out != null) {
             SaveService.saveTestElement(e, out);
-        }
+        } // statistics are XML only, so cannot be written to a binary file
     }
 
     /**
@@ -601,7 +808,15 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
 
         String filename = getFilename();
         if (filename != null) {
-            if (out == null) {
+            if (SAVING_BINARY && !getSaveConfig().saveAsXml()) {
+                if (binaryOut == null) {
+                    binaryOut = getBinaryFileWriter(filename, getSaveConfig());
+                }
+            } else if (SAVING_ASYNC) {
+                if (asyncOut == null) {
+                    asyncOut = getAsyncFileWriter(filename, getSaveConfig());
+                }
+            } else if (out == null) {
                 try {
                     out = getFileWriter(filename, getSaveConfig());
                 } catch (FileNotFoundException e) {
@@ -611,11 +826,29 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         }
     }
 
+    /**
+     * Set the listener which receives the samples once they have been saved
+     * to the file, with the save configuration of this collector.
+     * Used to generate the report while the test runs.
+     *
+     * @param listener
+     *            the listener, null to remove it
+     */
+    public void setSavedSampleListener(SampleListener listener) {
+        savedSampleListener = listener;
+    }
+
     /**
      * Flush PrintWriter to synchronize file contents
      */
     public void flushFile() {
-        if (out != null) {
+        if (binaryOut != null) {
+            log.info("forced flush through ResultCollector#flushFile");
+            binaryOut.flush();
+        } else if (asyncOut != null) {
+            log.info("forced flush through ResultCollector#flushFile");
+            asyncOut.flush();
+        } else if (out != null) {
             log.info("forced flush through ResultCollector#flushFile");
             out.flush();
         }
@@ -628,6 +861,21 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         for(Map.Entry<String,ResultCollector.FileEntry> me : files.entrySet()){
             log.debug("Flushing: "+me.getKey());
             FileEntry fe = me.getValue();
+            if (fe.binaryWriter != null) {
+                try {
+                    fe.binaryWriter.flush();
+                } catch (SampleException e) {
+                    log.warn("Problem detected during use of "+me.getKey(), e);
+                }
+                continue;
+            }
+            if (fe.asyncWriter != null) {
+                fe.asyncWriter.flush();
+                if (fe.asyncWriter.checkError()) {
+                    log.warn("Problem detected during use of "+me.getKey());
+                }
+                continue;
+            }
             fe.pw.flush();
             if (fe.pw.checkError()){
                 log.warn("Problem detected during use of "+me.getKey());
@@ -639,6 +887,26 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         for(Map.Entry<String,ResultCollector.FileEntry> me : files.entrySet()){
             log.debug("Closing: "+me.getKey());
             FileEntry fe = me.getValue();
+            if (fe.binaryWriter != null) {
+                try {
+                    fe.binaryWriter.close();
+                } catch (SampleException e) {
+                    log.warn("Problem detected during use of "+me.getKey(), e);
+                }
+                continue;
+            }
+            if (fe.asyncWriter != null) {
+                StringWriter end = new StringWriter();
+                PrintWriter endWriter = new PrintWriter(end);
+                writeFileEnd(endWriter, fe.config);
+                endWriter.flush();
+                fe.asyncWriter.write(end.getBuffer());
+                fe.asyncWriter.close();
+                if (fe.asyncWriter.checkError()) {
+                    log.warn("Problem detected during use of "+me.getKey());
+                }
+                continue;
+            }
             writeFileEnd(fe.pw, fe.config);
             fe.pw.close();
             if (fe.pw.checkError()){
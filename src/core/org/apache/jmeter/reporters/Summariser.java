@@ -27,6 +27,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.jmeter.engine.util.NoThreadClone;
 import org.apache.jmeter.samplers.Remoteable;
+import org.apache.jmeter.samplers.ResponseDataAware;
 import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
@@ -59,7 +60,7 @@ import org.apache.log.Logger;
  *
  */
 public class Summariser extends AbstractTestElement
-    implements Serializable, SampleListener, TestStateListener, NoThreadClone, Remoteable {
+    implements Serializable, SampleListener, TestStateListener, NoThreadClone, Remoteable, ResponseDataAware {
 
     /*
      * N.B. NoThreadClone is used to ensure that the testStarted() methods will share the same
@@ -281,6 +282,12 @@ public class Summariser extends AbstractTestElement
         // not used
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public boolean isResponseDataUsed() {
+        return false;
+    }
+
     /*
      * The testStarted/testEnded methods are called at the start and end of a test.
      *
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+/**
+ * {@link SampleListener}s which can tell whether they use the response data of
+ * the samples should implement this interface, so that samplers may not keep
+ * data which nothing uses. Listeners which do not implement it are considered
+ * to use the response data.
+ *
+ * @since 3.1
+ */
+public interface ResponseDataAware {
+
+    /**
+     * @return <code>true</code> if the listener may use the response data of
+     *         the samples it is notified of
+     */
+    boolean isResponseDataUsed();
+}
@@ -786,11 +786,34 @@ public final class CSVSaveService {
                 .getDelimiter());
     }
     
+    /*
+     * Receives the fields of a result, in the order of the CSV columns
+     */
+    abstract static class FieldAppender {
+        public abstract void append(String s);
+
+        public void append(Object obj) {
+            append(String.valueOf(obj));
+        }
+
+        public void append(int i) {
+            append(Integer.toString(i));
+        }
+
+        public void append(long l) {
+            append(Long.toString(l));
+        }
+
+        public void append(boolean b) {
+            append(Boolean.toString(b));
+        }
+    }
+
     /*
      * Class to handle generating the delimited string. - adds the delimiter
      * if not the first call - quotes any strings that require it
      */
-    static final class StringQuoter {
+    static final class StringQuoter extends FieldAppender {
         private final StringBuilder sb;
         private final char[] specials;
         private boolean addDelim;
@@ -812,28 +835,28 @@ public final class CSVSaveService {
 
         // These methods handle parameters that could contain delimiters or
         // quotes:
+        @Override
         public void append(String s) {
             addDelim();
             // if (s == null) return;
             sb.append(quoteDelimiters(s, specials));
         }
 
-        public void append(Object obj) {
-            append(String.valueOf(obj));
-        }
-
         // These methods handle parameters that cannot contain delimiters or
         // quotes
+        @Override
         public void append(int i) {
             addDelim();
             sb.append(i);
         }
 
+        @Override
         public void append(long l) {
             addDelim();
             sb.append(l);
         }
 
+        @Override
         public void append(boolean b) {
             addDelim();
             sb.append(b);
@@ -845,6 +868,22 @@ public final class CSVSaveService {
         }
     }
 
+    /*
+     * Collects the unquoted fields
+     */
+    private static final class FieldList extends FieldAppender {
+        private final List<String> fields = new ArrayList<>(32);
+
+        @Override
+        public void append(String s) {
+            fields.add(String.valueOf(s)); // same as StringQuoter for null
+        }
+
+        public String[] toArray() {
+            return fields.toArray(new String[fields.size()]);
+        }
+    }
+
     /**
      * Convert a result into a string, where the fields of the result are
      * separated by a specified String.
@@ -858,7 +897,25 @@ public final class CSVSaveService {
     public static String resultToDelimitedString(SampleEvent event,
             final String delimiter) {
         StringQuoter text = new StringQuoter(delimiter.charAt(0));
+        appendFields(event, text);
+        return text.toString();
+    }
 
+    /**
+     * Convert a result into its unquoted CSV fields, in the order of the
+     * columns written by {@link #resultToDelimitedString(SampleEvent, String)}.
+     * 
+     * @param event
+     *            the sample event to be converted
+     * @return the fields of the result
+     */
+    public static String[] resultToFields(SampleEvent event) {
+        FieldList fields = new FieldList();
+        appendFields(event, fields);
+        return fields.toArray();
+    }
+
+    private static void appendFields(SampleEvent event, FieldAppender text) {
         SampleResult sample = event.getResult();
         SampleSaveConfiguration saveConfig = sample.getSaveConfig();
 
@@ -967,8 +1024,6 @@ public final class CSVSaveService {
         for (int i = 0; i < SampleEvent.getVarCount(); i++) {
             text.append(event.getVarValue(i));
         }
-
-        return text.toString();
     }
 
     // =================================== CSV quote/unquote handling
@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.services;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jorphan.util.JOrphanUtils;
+
+/**
+ * Rows of a CSV file handed out to the threads through an atomic cursor, so
+ * that they do not wait for each other as with
+ * {@link FileServer#readLine(String, boolean, boolean)}.
+ * <p>
+ * There is one data source per alias, see
+ * {@link FileServer#reserveDataSource(String, String, String, String, boolean, boolean, long)}
+ * and {@link FileServer#reserveMappedDataSource(String, String, String, String, boolean, boolean)},
+ * and the aliases of the same file share its rows.
+ * </p>
+ * @since 3.1
+ */
+public final class CSVDataSource {
+
+    private static final String[] EOF = new String[0];
+
+    private final Rows rows;
+
+    private final AtomicLong cursor = new AtomicLong();
+
+    // Shuffled order of the rows of this alias, see shuffle()
+    private final long multiplier;
+
+    private final long increment;
+
+    CSVDataSource(Rows rows) {
+        this.rows = rows;
+        long size = rows.size();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (size > 1) {
+            long m;
+            do {
+                m = 1 + random.nextLong(size - 1);
+            } while (gcd(m, size) != 1);
+            multiplier = m;
+            increment = random.nextLong(size);
+        } else {
+            multiplier = 1;
+            increment = 0;
+        }
+    }
+
+    /**
+     * The rows of a file, which can be read by several threads
+     */
+    interface Rows {
+        /**
+         * @return the first line of the file if it was read as a header, else <code>null</code>
+         */
+        String getHeaderLine();
+
+        /**
+         * @return the number of rows, without the header
+         */
+        long size();
+
+        /**
+         * @param index of the row, from 0 to size - 1
+         * @return the values of the row, which must not be modified
+         * @throws IOException if the row cannot be read or parsed
+         */
+        String[] get(long index) throws IOException;
+    }
+
+    /**
+     * @return the first line of the file if it was read as a header, else
+     *         <code>null</code>
+     */
+    public String getHeaderLine() {
+        return rows.getHeaderLine();
+    }
+
+    /**
+     * @return the number of rows, without the header; a row which could not
+     *         be parsed is counted
+     */
+    public long getRowCount() {
+        return rows.size();
+    }
+
+    /**
+     * Get a row; the returned array is shared and must not be modified.
+     *
+     * @param index of the row, from 0 to {@link #getRowCount()} - 1
+     * @return the values of the row
+     * @throws IOException if the row cannot be read or parsed
+     */
+    public String[] get(long index) throws IOException {
+        return rows.get(index);
+    }
+
+    /**
+     * Get the next row; the returned array is shared and must not be modified.
+     *
+     * @param recycle whether to start again from the first row after the last one
+     * @return the values of the row, empty at the end of the file
+     * @throws IOException if the row cannot be read or parsed, reported each
+     *         time the cursor gets to it
+     */
+    public String[] next(boolean recycle) throws IOException {
+        long index = nextIndex(recycle);
+        return index < 0 ? EOF : rows.get(index);
+    }
+
+    /**
+     * Get a row chosen at random, which may have already been returned.
+     *
+     * @return the values of the row, empty if the file has no rows
+     * @throws IOException if the row cannot be read or parsed
+     */
+    public String[] nextRandom() throws IOException {
+        long size = rows.size();
+        return size == 0 ? EOF : rows.get(ThreadLocalRandom.current().nextLong(size));
+    }
+
+    /**
+     * Get the next row in a shuffled order, which returns each row once
+     * before the end of the file. The order is different for each alias
+     * but the same after recycling.
+     *
+     * @param recycle whether to start again after all the rows were returned
+     * @return the values of the row, empty at the end of the file
+     * @throws IOException if the row cannot be read or parsed
+     */
+    public String[] nextShuffled(boolean recycle) throws IOException {
+        long index = nextIndex(recycle);
+        return index < 0 ? EOF : rows.get(shuffle(index));
+    }
+
+    private long nextIndex(boolean recycle) {
+        long size = rows.size();
+        if (size == 0) {
+            return -1;
+        }
+        long index = cursor.getAndIncrement();
+        if (recycle) {
+            return index % size;
+        }
+        return index < size ? index : -1;
+    }
+
+    /**
+     * Permutation of the indexes: i -> (multiplier * i + increment) mod size,
+     * which returns each index once as the multiplier and the size are
+     * coprime, without keeping an array of all the indexes.
+     */
+    long shuffle(long index) {
+        long size = rows.size();
+        long product;
+        if (size <= Integer.MAX_VALUE) {
+            product = multiplier * index % size;
+        } else {
+            product = BigInteger.valueOf(multiplier).multiply(BigInteger.valueOf(index))
+                    .mod(BigInteger.valueOf(size)).longValue();
+        }
+        return (product + increment) % size;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * The parsed rows of a file read into memory, which are not modified
+     * once read
+     */
+    static final class Table implements Rows {
+        private final String headerLine;
+
+        private final String[][] rows;
+
+        // Why the rows after the last one could not be parsed
+        private final IOException error;
+
+        private Table(String headerLine, String[][] rows, IOException error) {
+            this.headerLine = headerLine;
+            this.rows = rows;
+            this.error = error;
+        }
+
+        @Override
+        public String getHeaderLine() {
+            return headerLine;
+        }
+
+        @Override
+        public long size() {
+            return error == null ? rows.length : rows.length + 1;
+        }
+
+        @Override
+        public String[] get(long index) throws IOException {
+            if (index == rows.length) {
+                throw error;
+            }
+            return rows[(int) index];
+        }
+    }
+
+    /**
+     * Read and split all the rows of a file the same way as
+     * {@link FileServer#readLine(String, boolean, boolean)} and
+     * {@link FileServer#getParsedLine(String, boolean, boolean, char)}.
+     */
+    static Table load(File file, String charsetName, String delimiter, boolean quoted, boolean hasHeader)
+            throws IOException {
+        if (!file.canRead() || !file.isFile()) {
+            throw new IllegalArgumentException("File "+ file.getName()+ " must exist and be readable");
+        }
+        FileInputStream fis = new FileInputStream(file);
+        InputStreamReader isr;
+        if (!JOrphanUtils.isBlank(charsetName)) {
+            isr = new InputStreamReader(fis, charsetName);
+        } else {
+            isr = new InputStreamReader(fis);
+        }
+        try (BufferedReader reader = new BufferedReader(isr)) {
+            String headerLine = null;
+            if (hasHeader) {
+                headerLine = reader.readLine();
+                if (headerLine == null) {
+                    throw new IllegalArgumentException("Could not read file header line for file " + file,
+                            new EOFException("File is empty: " + file));
+                }
+            }
+            List<String[]> rows = new ArrayList<>();
+            IOException error = null;
+            if (quoted) {
+                char delim = delimiter.charAt(0);
+                String[] row;
+                try {
+                    while ((row = CSVSaveService.csvReadFile(reader, delim)).length > 0) {
+                        rows.add(row);
+                    }
+                } catch (IOException e) { // keep the rows before, as when reading line by line
+                    error = e;
+                }
+            } else {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    rows.add(JOrphanUtils.split(line, delimiter, false));
+                }
+            }
+            return new Table(headerLine, rows.toArray(new String[rows.size()][]), error);
+        }
+    }
+}
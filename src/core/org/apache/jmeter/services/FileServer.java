@@ -35,6 +35,11 @@ import java.io.Reader;
 import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.commons.collections.ArrayStack;
@@ -81,6 +86,12 @@ public class FileServer {
     //@GuardedBy("this") NOTE this also guards against possible window in checkForOpenFiles()
     private final Map<String, FileEntry> files = new HashMap<>();
 
+    // Not guarded by this, see reserveDataSource
+    private final ConcurrentMap<String, CSVDataSource> dataSources = new ConcurrentHashMap<>();
+
+    // Rows of the files read by the data sources, shared by their aliases
+    private final ConcurrentMap<String, FutureTask<CSVDataSource.Rows>> dataTables = new ConcurrentHashMap<>();
+
     private static final FileServer server = new FileServer();
 
     // volatile needed to ensure safe publication
@@ -292,6 +303,148 @@ public class FileServer {
         return fileEntry.headerLine;
     }
 
+    /**
+     * Creates a data source which reads all the rows of a file at once and
+     * hands them out without locking, and stores it for later use - unless it
+     * is already stored. The data sources are removed by {@link #closeFiles()}.
+     *
+     * @param filename - relative (to base) or absolute file name (must not be null or empty)
+     * @param charsetName - the character set encoding to use for the file (may be null)
+     * @param alias - the name to be used to access the object (must not be null)
+     * @param delimiter - the delimiter of the values
+     * @param quoted - whether the values may be quoted, see {@link #getParsedLine(String, boolean, boolean, char)}
+     * @param hasHeader - true if the file has a header line describing the contents
+     * @param maxSize - size in bytes above which the file is not read into memory
+     * @return the data source, or <code>null</code> if the file is bigger
+     *         than maxSize, in which case it must be read with
+     *         {@link #readLine(String, boolean, boolean)}
+     * @throws IOException when reading of the file fails
+     * @throws IllegalArgumentException if the file cannot be read or has no header line
+     * @since 3.1
+     */
+    public CSVDataSource reserveDataSource(String filename, String charsetName, String alias,
+            final String delimiter, final boolean quoted, final boolean hasHeader, long maxSize) throws IOException {
+        CSVDataSource source = getDataSource(filename, alias);
+        if (source != null) {
+            return source;
+        }
+        final File file = resolveDataFile(filename);
+        if (file.length() > maxSize) {
+            return null;
+        }
+        final String charset = JOrphanUtils.isBlank(charsetName) ? null : charsetName;
+        return reserveDataSource(filename, alias, file, charset, delimiter, quoted, hasHeader, false,
+                new Callable<CSVDataSource.Rows>() {
+            @Override
+            public CSVDataSource.Rows call() throws IOException {
+                log.info("Reading: "+file);
+                return CSVDataSource.load(file, charset, delimiter, quoted, hasHeader);
+            }
+        });
+    }
+
+    /**
+     * Creates a data source which maps a file into memory and reads its rows
+     * when they are asked for, so that large files can be read in any order,
+     * and stores it for later use - unless it is already stored. The data
+     * sources are removed by {@link #closeFiles()}.
+     * <p>
+     * Only the start of each line is indexed, so quoted values cannot
+     * contain new lines, and the encoding must write new lines as single bytes.
+     * </p>
+     *
+     * @param filename - relative (to base) or absolute file name (must not be null or empty)
+     * @param charsetName - the character set encoding to use for the file (may be null)
+     * @param alias - the name to be used to access the object (must not be null)
+     * @param delimiter - the delimiter of the values
+     * @param quoted - whether the values may be quoted
+     * @param hasHeader - true if the file has a header line describing the contents
+     * @return the data source
+     * @throws IOException when mapping the file fails
+     * @throws IllegalArgumentException if the file cannot be read, has no header line or its encoding is not supported
+     * @since 3.1
+     */
+    public CSVDataSource reserveMappedDataSource(String filename, String charsetName, String alias,
+            final String delimiter, final boolean quoted, final boolean hasHeader) throws IOException {
+        CSVDataSource source = getDataSource(filename, alias);
+        if (source != null) {
+            return source;
+        }
+        final File file = resolveDataFile(filename);
+        final String charset = JOrphanUtils.isBlank(charsetName) ? null : charsetName;
+        return reserveDataSource(filename, alias, file, charset, delimiter, quoted, hasHeader, true,
+                new Callable<CSVDataSource.Rows>() {
+            @Override
+            public CSVDataSource.Rows call() throws IOException {
+                log.info("Mapping: "+file);
+                MappedCSVFile rows = MappedCSVFile.open(file, charset, delimiter, quoted, hasHeader);
+                log.info("Mapped: "+file+" rows: "+rows.size());
+                return rows;
+            }
+        });
+    }
+
+    private CSVDataSource getDataSource(String filename, String alias) {
+        if (filename == null || filename.isEmpty()){
+            throw new IllegalArgumentException("Filename must not be null or empty");
+        }
+        if (alias == null){
+            throw new IllegalArgumentException("Alias must not be null");
+        }
+        return dataSources.get(alias);
+    }
+
+    private synchronized File resolveDataFile(String filename) {
+        return resolveFileFromPath(filename);
+    }
+
+    /**
+     * Get the rows of the file from the data sources of the other aliases,
+     * or from the loader which is run once for concurrent calls, and store a
+     * data source for the alias.
+     */
+    private CSVDataSource reserveDataSource(String filename, String alias, File file, String charset,
+            String delimiter, boolean quoted, boolean hasHeader, boolean mapped, Callable<CSVDataSource.Rows> loader)
+            throws IOException {
+        String key = file.getAbsolutePath() + '|' + charset + '|' + delimiter + '|' + quoted + '|' + hasHeader
+                + '|' + mapped;
+        FutureTask<CSVDataSource.Rows> load = new FutureTask<>(loader);
+        FutureTask<CSVDataSource.Rows> previous = dataTables.putIfAbsent(key, load);
+        if (previous == null) {
+            load.run(); // the other threads wait for this one to read the file
+        } else {
+            load = previous;
+        }
+        CSVDataSource.Rows table;
+        try {
+            table = load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + file, e);
+        } catch (ExecutionException e) {
+            dataTables.remove(key, load); // so that it can be retried
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Could not read " + file, cause);
+        }
+        CSVDataSource source = new CSVDataSource(table);
+        CSVDataSource current = dataSources.putIfAbsent(alias, source);
+        if (current != null) {
+            return current;
+        }
+        if (filename.equals(alias)){
+            log.info("Stored data source: "+filename);
+        } else {
+            log.info("Stored data source: "+filename+" Alias: "+alias);
+        }
+        return source;
+    }
+
     /**
      * Resolves file name into {@link File} instance.
      * When filename is not absolute and not found from current workind dir,
@@ -467,6 +620,8 @@ public class FileServer {
             closeFile(me.getKey(),me.getValue() );
         }
         files.clear();
+        dataSources.clear();
+        dataTables.clear();
     }
 
     /**
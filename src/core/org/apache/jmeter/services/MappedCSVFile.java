@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.services;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jorphan.util.JOrphanUtils;
+
+/**
+ * Rows of a CSV file mapped into memory, which are read and split when
+ * asked for, so that files with tens of millions of rows can be read in any
+ * order without being loaded.
+ * <p>
+ * The start of each line is kept in a <code>long[]</code>, 8 bytes per row.
+ * Lines end with LF or CR LF, so the encoding must write them as single bytes
+ * like ASCII, ISO-8859-x or UTF-8, and quoted values cannot contain new lines.
+ * The operating system pages the file in and out as needed.
+ * </p>
+ * @since 3.1
+ */
+final class MappedCSVFile implements CSVDataSource.Rows {
+
+    /** Files are mapped in segments of this size, as a buffer is limited to 2 GB */
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    private final MappedByteBuffer[] segments;
+
+    /** Offset of the start of each line, then of the end of the file */
+    private final long[] starts;
+
+    /** Index in starts of the first row, 1 when the first line is a header */
+    private final int first;
+
+    private final long rowCount;
+
+    private final Charset charset;
+
+    private final String delimiter;
+
+    private final boolean quoted;
+
+    private final String headerLine;
+
+    private MappedCSVFile(MappedByteBuffer[] segments, long[] starts, int first, Charset charset,
+            String delimiter, boolean quoted, String headerLine) {
+        this.segments = segments;
+        this.starts = starts;
+        this.first = first;
+        this.rowCount = starts.length - 1L - first;
+        this.charset = charset;
+        this.delimiter = delimiter;
+        this.quoted = quoted;
+        this.headerLine = headerLine;
+    }
+
+    /**
+     * Map a file and index the start of its lines.
+     *
+     * @param file the file to map
+     * @param charsetName the encoding of the file, or <code>null</code> for the platform default
+     * @param delimiter the delimiter of the values
+     * @param quoted whether the values may be quoted
+     * @param hasHeader true if the first line is a header, which is not a row
+     * @return the rows of the file
+     * @throws IOException when the file cannot be mapped
+     * @throws IllegalArgumentException if the file cannot be read, has no
+     *         header line or uses an encoding which is not supported
+     */
+    static MappedCSVFile open(File file, String charsetName, String delimiter, boolean quoted, boolean hasHeader)
+            throws IOException {
+        if (!file.canRead() || !file.isFile()) {
+            throw new IllegalArgumentException("File "+ file.getName()+ " must exist and be readable");
+        }
+        Charset charset = JOrphanUtils.isBlank(charsetName) ? Charset.defaultCharset() : Charset.forName(charsetName);
+        if (!Arrays.equals(new byte[] { '\n' }, "\n".getBytes(charset))) {
+            throw new IllegalArgumentException("Encoding " + charset + " of file " + file.getName()
+                    + " is not supported, line ends must be single bytes");
+        }
+        MappedByteBuffer[] segments;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); // $NON-NLS-1$
+                FileChannel channel = raf.getChannel()) {
+            long length = channel.size();
+            segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(SEGMENT_SIZE, length - position));
+            }
+            // The mapping stays valid once the channel is closed
+        }
+        long[] starts = new long[1024];
+        int count = 0;
+        long offset = 0;
+        boolean lineStart = true;
+        for (MappedByteBuffer segment : segments) {
+            int limit = segment.limit();
+            for (int i = 0; i < limit; i++) {
+                if (lineStart) {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count << 1);
+                    }
+                    starts[count++] = offset + i;
+                    lineStart = false;
+                }
+                if (segment.get(i) == '\n') {
+                    lineStart = true;
+                }
+            }
+            offset += limit;
+        }
+        // The end of the last line, as for the other lines the start of the next one
+        starts = Arrays.copyOf(starts, count + 1);
+        starts[count] = offset;
+        String headerLine = null;
+        if (hasHeader) {
+            if (count == 0) {
+                throw new IllegalArgumentException("Could not read file header line for file " + file,
+                        new EOFException("File is empty: " + file));
+            }
+            headerLine = readLine(segments, starts[0], starts[1], charset);
+        }
+        return new MappedCSVFile(segments, starts, hasHeader ? 1 : 0, charset, delimiter, quoted, headerLine);
+    }
+
+    @Override
+    public String getHeaderLine() {
+        return headerLine;
+    }
+
+    @Override
+    public long size() {
+        return rowCount;
+    }
+
+    @Override
+    public String[] get(long index) throws IOException {
+        int line = first + (int) index;
+        String values = readLine(segments, starts[line], starts[line + 1], charset);
+        if (quoted) {
+            // With its end of line, so that an empty line is one empty value as when reading the file
+            return CSVSaveService.csvSplitString(values + '\n', delimiter.charAt(0));
+        }
+        return JOrphanUtils.split(values, delimiter, false);
+    }
+
+    /**
+     * Decode a line without its end of line
+     */
+    private static String readLine(MappedByteBuffer[] segments, long start, long end, Charset charset) {
+        if (end > start && byteAt(segments, end - 1) == '\n') {
+            end--;
+        }
+        if (end > start && byteAt(segments, end - 1) == '\r') {
+            end--;
+        }
+        byte[] bytes = new byte[(int) (end - start)];
+        int copied = 0;
+        while (copied < bytes.length) {
+            long offset = start + copied;
+            // duplicate, so that the buffers can be read by several threads
+            ByteBuffer segment = segments[(int) (offset / SEGMENT_SIZE)].duplicate();
+            segment.position((int) (offset % SEGMENT_SIZE));
+            int length = Math.min(bytes.length - copied, segment.remaining());
+            segment.get(bytes, copied, length);
+            copied += length;
+        }
+        return new String(bytes, charset);
+    }
+
+    private static byte byteAt(MappedByteBuffer[] segments, long offset) {
+        return segments[(int) (offset / SEGMENT_SIZE)].get((int) (offset % SEGMENT_SIZE));
+    }
+}
@@ -20,15 +20,23 @@ import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.jmeter.testbeans.gui.GenericTestBeanCustomizer;
 import org.apache.jmeter.testbeans.gui.TableEditor;
+import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.testelement.property.CollectionProperty;
+import org.apache.jmeter.testelement.property.FunctionProperty;
 import org.apache.jmeter.testelement.property.JMeterProperty;
 import org.apache.jmeter.testelement.property.MultiProperty;
 import org.apache.jmeter.testelement.property.NullProperty;
@@ -51,10 +59,18 @@ import org.apache.log.Logger;
 public class TestBeanHelper {
     protected static final Logger log = LoggingManager.getLoggerForClass();
 
+    /**
+     * Setter plans by bean class, built once from the BeanInfo
+     */
+    private static final ConcurrentMap<Class<?>, PropertySetter[]> SETTERS = new ConcurrentHashMap<>();
+
     /**
      * Prepare the bean for work by populating the bean's properties from the
      * property value map.
      * <p>
+     * If the element is a running version and none of its properties contains
+     * a function or variable, the bean is only populated once, until one of its
+     * properties is changed.
      *
      * @param el the TestElement to be prepared
      */
@@ -62,40 +78,45 @@ public class TestBeanHelper {
         if (!(el instanceof TestBean)) {
             return;
         }
+        AbstractTestElement ate = el instanceof AbstractTestElement ? (AbstractTestElement) el : null;
+        if (ate != null && ate.isTestBeanPrepared()) {
+            return;
+        }
         try {
-            BeanInfo beanInfo = Introspector.getBeanInfo(el.getClass());
-            PropertyDescriptor[] descs = beanInfo.getPropertyDescriptors();
+            PropertySetter[] setters = getSetters(el.getClass());
 
             if (log.isDebugEnabled()) {
                 log.debug("Preparing " + el.getClass());
             }
 
-            for (PropertyDescriptor desc : descs) {
-                if (isDescriptorIgnored(desc)) {
+            boolean expertMode = JMeterUtils.isExpertMode();
+            boolean staticProperties = true;
+            for (PropertySetter setter : setters) {
+                if (setter.expert && !expertMode) {
                     if (log.isDebugEnabled()) {
-                        log.debug("Ignoring property '" + desc.getName() + "' in " + el.getClass().getCanonicalName());
+                        log.debug("Ignoring property '" + setter.name + "' in " + el.getClass().getCanonicalName());
                     }
                     continue;
                 }
                 // Obtain a value of the appropriate type for this property.
-                JMeterProperty jprop = el.getProperty(desc.getName());
-                Class<?> type = desc.getPropertyType();
-                Object value = unwrapProperty(desc, jprop, type);
+                JMeterProperty jprop = el.getProperty(setter.name);
+                staticProperties = staticProperties && isStatic(jprop);
+                Object value = unwrapProperty(jprop, setter.type, setter.notUndefined, setter.collectionType);
 
                 if (log.isDebugEnabled()) {
                     log.debug("Setting " + jprop.getName() + "=" + value);
                 }
 
                 // Set the bean's property to the value we just obtained:
-                if (value != null || !type.isPrimitive())
+                if (value != null || !setter.type.isPrimitive())
                 // We can't assign null to primitive types.
                 {
-                    Method writeMethod = desc.getWriteMethod();
-                    if (writeMethod!=null) {
-                        invokeOrBailOut(el, writeMethod, new Object[] {value});
-                    }
+                    setter.set(el, value);
                 }
             }
+            if (ate != null && staticProperties && el.isRunningVersion()) {
+                ate.setTestBeanPrepared(true);
+            }
         } catch (IntrospectionException e) {
             log.error("Couldn't set properties for " + el.getClass().getName(), e);
         } catch (UnsatisfiedLinkError ule) { // Can occur running headless on Jenkins
@@ -104,7 +125,53 @@ public class TestBeanHelper {
         }
     }
 
-    private static Object unwrapProperty(PropertyDescriptor desc, JMeterProperty jprop, Class<?> type) {
+    /**
+     * Get the setter plan of a bean class, building it on first use.
+     * Ignored descriptors are excluded, except expert ones which depend on the current mode.
+     */
+    private static PropertySetter[] getSetters(Class<?> beanClass) throws IntrospectionException {
+        PropertySetter[] setters = SETTERS.get(beanClass);
+        if (setters == null) {
+            BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
+            List<PropertySetter> list = new ArrayList<>();
+            for (PropertyDescriptor desc : beanInfo.getPropertyDescriptors()) {
+                if (desc.isHidden() || desc.getReadMethod() == null || desc.getWriteMethod() == null) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Ignoring property '" + desc.getName() + "' in " + beanClass.getCanonicalName());
+                    }
+                    continue;
+                }
+                list.add(new PropertySetter(desc));
+            }
+            setters = list.toArray(new PropertySetter[list.size()]);
+            PropertySetter[] previous = SETTERS.putIfAbsent(beanClass, setters);
+            if (previous != null) {
+                setters = previous;
+            }
+        }
+        return setters;
+    }
+
+    /**
+     * @param prop the property to check
+     * @return true if the property (and any nested property) contains no function or variable
+     */
+    private static boolean isStatic(JMeterProperty prop) {
+        if (prop instanceof FunctionProperty) {
+            return false;
+        }
+        if (prop instanceof MultiProperty) {
+            for (JMeterProperty nested : (MultiProperty) prop) {
+                if (!isStatic(nested)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Object unwrapProperty(JMeterProperty jprop, Class<?> type, boolean notUndefined,
+            String collectionType) {
         Object value;
         if(jprop instanceof TestElementProperty)
         {
@@ -117,12 +184,10 @@ public class TestBeanHelper {
         }
         else if(jprop instanceof MultiProperty)
         {
-            value = unwrapCollection((MultiProperty)jprop,(String)desc.getValue(TableEditor.CLASSNAME));
+            value = unwrapCollection((MultiProperty)jprop, collectionType);
         }
         // value was not provided, and this is allowed
-        else if (jprop instanceof NullProperty &&
-                // use negative condition so missing (null) value is treated as FALSE
-                ! Boolean.TRUE.equals(desc.getValue(GenericTestBeanCustomizer.NOT_UNDEFINED))) {    
+        else if (jprop instanceof NullProperty && !notUndefined) {
             value=null;
         } else {
             value = Converter.convert(jprop.getStringValue(), type);
@@ -137,7 +202,7 @@ public class TestBeanHelper {
             Collection<Object> values = new LinkedList<>();
             for (JMeterProperty jMeterProperty : prop) {
                 try {
-                    values.add(unwrapProperty(null, jMeterProperty, Class.forName(type)));
+                    values.add(unwrapProperty(jMeterProperty, Class.forName(type), true, null));
                 }
                 catch(Exception e) {
                     log.error("Couldn't convert object: " + prop.getObjectValue() + " to " + type,e);
@@ -148,26 +213,6 @@ public class TestBeanHelper {
         return null;
     }
 
-    /**
-     * Utility method that invokes a method and does the error handling around
-     * the invocation.
-     *
-     * @param invokee
-     *            the object on which the method should be invoked
-     * @param method
-     *            the method which should be invoked
-     * @param params
-     *            the parameters for the method
-     * @return the result of the method invocation.
-     */
-    private static Object invokeOrBailOut(Object invokee, Method method, Object[] params) {
-        try {
-            return method.invoke(invokee, params);
-        } catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException e) {
-            throw new Error(createMessage(invokee, method, params), e);
-        }
-    }
-
     private static String createMessage(Object invokee, Method method, Object[] params){
         StringBuilder sb = new StringBuilder();
         sb.append("This should never happen. Tried to invoke:\n");
@@ -187,6 +232,58 @@ public class TestBeanHelper {
         return sb.toString();
     }
 
+    /**
+     * Setter plan of a single bean property, compiled once per bean class.
+     * The write method is invoked through a {@link MethodHandle}, falling back to
+     * reflection if the method cannot be looked up.
+     */
+    private static final class PropertySetter {
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final String name;
+        private final Class<?> type;
+        private final boolean expert;
+        private final boolean notUndefined;
+        private final String collectionType;
+        private final Method writeMethod;
+        private final MethodHandle setterHandle;
+
+        PropertySetter(PropertyDescriptor desc) {
+            this.name = desc.getName();
+            this.type = desc.getPropertyType();
+            this.expert = desc.isExpert();
+            // use negative condition so missing (null) value is treated as FALSE
+            this.notUndefined = Boolean.TRUE.equals(desc.getValue(GenericTestBeanCustomizer.NOT_UNDEFINED));
+            this.collectionType = (String) desc.getValue(TableEditor.CLASSNAME);
+            this.writeMethod = desc.getWriteMethod();
+            MethodHandle handle = null;
+            try {
+                handle = MethodHandles.publicLookup().unreflect(writeMethod).asType(SETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                log.debug("Using reflection to invoke " + writeMethod + ": " + e.getMessage());
+            }
+            this.setterHandle = handle;
+        }
+
+        /**
+         * Invokes the write method and does the error handling around the invocation.
+         *
+         * @param invokee the object on which the method should be invoked
+         * @param value the value to set
+         */
+        void set(Object invokee, Object value) {
+            try {
+                if (setterHandle != null) {
+                    setterHandle.invokeExact(invokee, value);
+                } else {
+                    writeMethod.invoke(invokee, value);
+                }
+            } catch (Throwable e) { // invokeExact throws whatever the setter throws
+                throw new Error(createMessage(invokee, writeMethod, new Object[] {value}), e);
+            }
+        }
+    }
+
     /**
      * Checks whether the descriptor should be ignored, i.e.
      * <ul>
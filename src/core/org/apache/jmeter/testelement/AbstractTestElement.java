@@ -53,7 +53,9 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
 
     private static final Logger log = LoggingManager.getLoggerForClass();
 
-    private final Map<String, JMeterProperty> propMap =
+    // Replaced by a CompactPropertyMap in the running copies made for each thread
+    // and in the elements shared by the threads, until setRunningVersion(false)
+    private Map<String, JMeterProperty> propMap =
         Collections.synchronizedMap(new LinkedHashMap<String, JMeterProperty>());
 
     /**
@@ -68,6 +70,16 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
 
     private transient String threadName = null;
 
+    // Set once a TestBean has been populated from properties that contain no functions,
+    // cleared whenever a property changes
+    private transient boolean testBeanPrepared = false;
+
+    // Whether properties have been changed since the last recoverRunningVersion()
+    private transient boolean propertiesChanged = false;
+
+    // Set by the PreCompiler when all the threads use this element instead of a copy
+    private transient boolean sharedByThreads = false;
+
     @Override
     public Object clone() {
         try {
@@ -77,6 +89,11 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
             while (iter.hasNext()) {
                 clonedElement.setProperty(iter.next().clone());
             }
+            if (runningVersion && clonedElement instanceof AbstractTestElement) {
+                // The running copy is only used by one thread
+                AbstractTestElement runningCopy = (AbstractTestElement) clonedElement;
+                runningCopy.propMap = new CompactPropertyMap(runningCopy.propMap);
+            }
             clonedElement.setRunningVersion(runningVersion);
             return clonedElement;
         } catch (InstantiationException | IllegalAccessException e) {
@@ -89,6 +106,7 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
      */
     @Override
     public void clear() {
+        markPropertiesChanged();
         propMap.clear();
     }
 
@@ -107,6 +125,7 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
      */
     @Override
     public void removeProperty(String key) {
+        markPropertiesChanged();
         propMap.remove(key);
     }
 
@@ -293,6 +312,7 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
      * @param clone clone property
      */
     protected void addProperty(JMeterProperty property, boolean clone) {
+        markPropertiesChanged();
         JMeterProperty propertyToPut = property;
         if(clone) {
             propertyToPut = property.clone();
@@ -347,6 +367,7 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
 
     @Override
     public void setProperty(JMeterProperty property) {
+        markPropertiesChanged();
         if (isRunningVersion()) {
             if (getProperty(property.getName()) instanceof NullProperty) {
                 addProperty(property);
@@ -492,6 +513,10 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
     @Override
     public void setRunningVersion(boolean runningVersion) {
         this.runningVersion = runningVersion;
+        if (!runningVersion && propMap instanceof CompactPropertyMap) {
+            propMap = Collections.synchronizedMap(new LinkedHashMap<String, JMeterProperty>(propMap));
+        }
+        testBeanPrepared = false;
         PropertyIterator iter = propertyIterator();
         while (iter.hasNext()) {
             iter.next().setRunningVersion(runningVersion);
@@ -503,6 +528,11 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
      */
     @Override
     public void recoverRunningVersion() {
+        if (propertiesChanged) {
+            // the restored values may differ from those used to prepare the bean
+            testBeanPrepared = false;
+            propertiesChanged = false;
+        }
         Iterator<Map.Entry<String, JMeterProperty>>  iter = propMap.entrySet().iterator();
         while (iter.hasNext()) {
             Map.Entry<String, JMeterProperty> entry = iter.next();
@@ -559,6 +589,9 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
      */
     @Override
     public JMeterContext getThreadContext() {
+        if (sharedByThreads) {
+            return JMeterContextService.getContext();
+        }
         if (threadContext == null) {
             /*
              * Only samplers have the thread context set up by JMeterThread at
@@ -608,6 +641,60 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
         this.threadName = inthreadName;
     }
 
+    /**
+     * Used by {@link org.apache.jmeter.testbeans.TestBeanHelper TestBeanHelper}
+     * to avoid populating a running TestBean again when none of its properties
+     * contains a function or variable and none has changed.
+     *
+     * @return true if the bean fields are up to date with its static properties
+     */
+    public boolean isTestBeanPrepared() {
+        return testBeanPrepared;
+    }
+
+    /**
+     * Set whether the bean fields are up to date with its static properties.
+     * The flag is reset whenever a property of this element is changed.
+     *
+     * @param prepared true if the bean fields are up to date
+     */
+    public void setTestBeanPrepared(boolean prepared) {
+        this.testBeanPrepared = prepared;
+    }
+
+    /**
+     * Whether this element is used by all the threads of the test instead of
+     * being cloned for each thread, see
+     * {@link org.apache.jmeter.engine.util.ShareableElement ShareableElement}.
+     * Its properties are then not changed and not recovered while running.
+     *
+     * @return true if the element is shared by the threads
+     * @since 3.1
+     */
+    public boolean isSharedByThreads() {
+        return sharedByThreads;
+    }
+
+    /**
+     * Set whether this element is used by all the threads of the test
+     * instead of being cloned for each thread.
+     *
+     * @param shared true if the element is shared by the threads
+     * @since 3.1
+     */
+    public void setSharedByThreads(boolean shared) {
+        this.sharedByThreads = shared;
+        if (shared && !(propMap instanceof CompactPropertyMap)) {
+            // Only read by the threads, which would otherwise all contend for the lock of the synchronized map
+            propMap = new CompactPropertyMap(propMap);
+        }
+    }
+
+    private void markPropertiesChanged() {
+        testBeanPrepared = false;
+        propertiesChanged = true;
+    }
+
     public AbstractTestElement() {
         super();
     }
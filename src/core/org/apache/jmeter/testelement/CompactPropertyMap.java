@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.testelement;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.jmeter.testelement.property.JMeterProperty;
+
+/**
+ * Properties of the running copy of a test element made for one thread,
+ * see {@link AbstractTestElement#clone()}, or of an element shared by the
+ * threads, see {@link AbstractTestElement#setSharedByThreads(boolean)}.
+ * <p>
+ * The properties are kept in arrays in the order they were added, which
+ * uses less memory than a {@link java.util.LinkedHashMap} for the few
+ * properties of an element, and the names are interned so that the
+ * constants used to get them usually match by reference. It is not
+ * synchronized as the copy is only used by its thread, and the properties of
+ * a shared element are only read while the test runs.
+ * </p>
+ * @since 3.1
+ */
+final class CompactPropertyMap extends AbstractMap<String, JMeterProperty> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String[] keys;
+
+    private JMeterProperty[] values;
+
+    private int size;
+
+    /**
+     * Create a map with the properties of the given map.
+     *
+     * @param properties properties to copy
+     */
+    CompactPropertyMap(Map<String, JMeterProperty> properties) {
+        int capacity = Math.max(properties.size(), 2);
+        keys = new String[capacity];
+        values = new JMeterProperty[capacity];
+        for (Map.Entry<String, JMeterProperty> entry : properties.entrySet()) {
+            keys[size] = entry.getKey().intern();
+            values[size] = entry.getValue();
+            size++;
+        }
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) { // NOSONAR Interned names, checked by equals below otherwise
+                return i;
+            }
+        }
+        if (key != null) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public JMeterProperty get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public JMeterProperty put(String key, JMeterProperty value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            JMeterProperty previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        if (size == keys.length) {
+            int capacity = size + (size >> 1) + 1;
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        keys[size] = key.intern();
+        values[size] = value;
+        size++;
+        return null;
+    }
+
+    @Override
+    public JMeterProperty remove(Object key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        JMeterProperty previous = values[index];
+        removeAt(index);
+        return previous;
+    }
+
+    private void removeAt(int index) {
+        int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(keys, index + 1, keys, index, moved);
+            System.arraycopy(values, index + 1, values, index, moved);
+        }
+        size--;
+        keys[size] = null;
+        values[size] = null;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, JMeterProperty>> entrySet() {
+        return new AbstractSet<Map.Entry<String, JMeterProperty>>() {
+            @Override
+            public Iterator<Map.Entry<String, JMeterProperty>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Collection<JMeterProperty> values() {
+        return new AbstractCollection<JMeterProperty>() {
+            @Override
+            public Iterator<JMeterProperty> iterator() {
+                return new ArrayIterator<JMeterProperty>() {
+                    @Override
+                    JMeterProperty get(int index) {
+                        return values[index];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private final class EntryIterator extends ArrayIterator<Map.Entry<String, JMeterProperty>> {
+        @Override
+        Map.Entry<String, JMeterProperty> get(int index) {
+            return new SimpleImmutableEntry<>(keys[index], values[index]);
+        }
+    }
+
+    /**
+     * Iterator over the arrays, which does not copy them
+     */
+    private abstract class ArrayIterator<T> implements Iterator<T> {
+        private int next;
+
+        private int last = -1;
+
+        abstract T get(int index);
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public T next() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return get(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+        }
+    }
+}
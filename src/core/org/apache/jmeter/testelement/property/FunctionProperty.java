@@ -22,6 +22,7 @@ import org.apache.jmeter.engine.util.CompoundVariable;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
 
 /**
  * Class that implements the Function property
@@ -35,6 +36,11 @@ public class FunctionProperty extends AbstractProperty {
 
     private String cacheValue;
 
+    // Values of the variables cacheValue was computed from, when the function only uses variables
+    private transient Object[] cacheInputs;
+
+    private transient JMeterVariables cacheVariables;
+
     public FunctionProperty(String name, CompoundVariable func) {
         super(name);
         function = func;
@@ -50,6 +56,7 @@ public class FunctionProperty extends AbstractProperty {
             function = (CompoundVariable) v;
         } else {
             cacheValue = v.toString();
+            cacheInputs = null;
         }
     }
 
@@ -76,6 +83,10 @@ public class FunctionProperty extends AbstractProperty {
      * Executes the function (and caches the value for the duration of the test
      * iteration) if the property is a running version. Otherwise, the raw
      * string representation of the function is provided.
+     * <p>
+     * When the function only uses variables, the value is cached as long as
+     * the variables keep the same values.
+     * </p>
      *
      * @see JMeterProperty#getStringValue()
      */
@@ -92,6 +103,17 @@ public class FunctionProperty extends AbstractProperty {
             return function.execute();
         }
         log.debug("Running version, executing function");
+        String[] variableNames = function.getVariableNames();
+        if (variableNames != null) {
+            JMeterVariables vars = ctx.getVariables();
+            // cacheInputs is null when the value was set by setObjectValue
+            if (cacheValue == null || (cacheInputs != null && !isCacheValid(vars, variableNames))) {
+                cacheInputs = valuesOf(vars, variableNames);
+                cacheVariables = vars;
+                cacheValue = function.execute();
+            }
+            return cacheValue;
+        }
         int iter = ctx.getVariables() != null ? ctx.getVariables().getIteration() : -1;
         if (iter < testIteration) {
             testIteration = -1;
@@ -104,6 +126,29 @@ public class FunctionProperty extends AbstractProperty {
 
     }
 
+    private boolean isCacheValid(JMeterVariables vars, String[] variableNames) {
+        if (vars != cacheVariables) {
+            return false;
+        }
+        for (int i = 0; i < variableNames.length; i++) {
+            // Variables are replaced rather than modified, so compare references
+            if (vars != null && vars.getObject(variableNames[i]) != cacheInputs[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object[] valuesOf(JMeterVariables vars, String[] variableNames) {
+        Object[] values = new Object[variableNames.length];
+        if (vars != null) {
+            for (int i = 0; i < variableNames.length; i++) {
+                values[i] = vars.getObject(variableNames[i]);
+            }
+        }
+        return values;
+    }
+
     /**
      * @see JMeterProperty#getObjectValue()
      */
@@ -117,6 +162,8 @@ public class FunctionProperty extends AbstractProperty {
         FunctionProperty prop = (FunctionProperty) super.clone();
         prop.cacheValue = cacheValue;
         prop.testIteration = testIteration;
+        prop.cacheInputs = cacheInputs;
+        prop.cacheVariables = cacheVariables;
         prop.function = function;
         return prop;
     }
@@ -126,6 +173,9 @@ public class FunctionProperty extends AbstractProperty {
      */
     @Override
     public void recoverRunningVersion(TestElement owner) {
-        cacheValue = null;
+        if (cacheInputs == null) {
+            cacheValue = null;
+        }
+        // else checked against the variables on next use
     }
 }
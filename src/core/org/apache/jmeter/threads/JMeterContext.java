@@ -52,6 +52,8 @@ public class JMeterContext {
 
     private boolean restartNextLoop = false;
 
+    private boolean responseDataUsed = true;
+
     private ConcurrentHashMap<String, Object> samplerContext = new ConcurrentHashMap<>(5);
 
     JMeterContext() {
@@ -68,6 +70,7 @@ public class JMeterContext {
         currentSampler = null;
         previousSampler = null;
         samplingStarted = false;
+        responseDataUsed = true;
         threadNum = 0;
         thread = null;
         samplerContext.clear();
@@ -181,6 +184,27 @@ public class JMeterContext {
         return restartNextLoop;
     }
 
+    /**
+     * Indicates whether the response data of the current sample may be used by
+     * its assertions, post processors or listeners.
+     * Samplers may not keep response data which nothing uses.
+     *
+     * @return <code>false</code> if nothing uses the response data of the
+     *         current sample
+     * @see SamplePackage#isResponseDataUsed()
+     */
+    public boolean isResponseDataUsed() {
+        return responseDataUsed;
+    }
+
+    /**
+     * @param responseDataUsed
+     *            whether the response data of the current sample may be used
+     */
+    public void setResponseDataUsed(boolean responseDataUsed) {
+        this.responseDataUsed = responseDataUsed;
+    }
+
     /**
      * Clean cached data after sample
      */
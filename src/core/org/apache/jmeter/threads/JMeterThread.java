@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.jmeter.assertions.Assertion;
@@ -133,6 +134,8 @@ public class JMeterThread implements Runnable, Interruptible {
 
     private volatile Sampler currentSampler;
 
+    private volatile Thread runningThread; // the JVM thread executing run(), used to wake it up from timer pauses
+
     private final ReentrantLock interruptLock = new ReentrantLock(); // ensure that interrupt cannot overlap with shutdown
 
     public JMeterThread(HashTree test, JMeterThreadMonitor monitor, ListenerNotifier note) {
@@ -232,6 +235,7 @@ public class JMeterThread implements Runnable, Interruptible {
         // threadContext is not thread-safe, so keep within thread
         JMeterContext threadContext = JMeterContextService.getContext();
         LoopIterationListener iterationListener = null;
+        runningThread = Thread.currentThread();
 
         try {
             iterationListener = initRun(threadContext);
@@ -289,6 +293,7 @@ public class JMeterThread implements Runnable, Interruptible {
             log.error("Test failed!", e);
         } finally {
             currentSampler = null; // prevent any further interrupts
+            runningThread = null;
             try {
                 interruptLock.lock();  // make sure current interrupt is finished, prevent another starting yet
                 threadContext.clear();
@@ -448,12 +453,19 @@ public class JMeterThread implements Runnable, Interruptible {
         threadVars.putObject(PACKAGE_OBJECT, pack);
 
         delay(pack.getTimers());
+        if (!running) {
+            // Thread was stopped while pausing in timers, don't start a new sample
+            compiler.done(pack);
+            return;
+        }
         Sampler sampler = pack.getSampler();
         sampler.setThreadContext(threadContext);
         // TODO should this set the thread names for all the subsamples?
         // might be more efficient than fetching the name elsewhere
         sampler.setThreadName(threadName);
         TestBeanHelper.prepare(sampler);
+        threadContext.setResponseDataUsed(pack.isResponseDataUsed()
+                || (transactionPack != null && transactionPack.isResponseDataUsed()));
 
         // Perform the actual sample
         currentSampler = sampler;
@@ -671,6 +683,10 @@ public class JMeterThread implements Runnable, Interruptible {
     public void stop() { // Called by StandardJMeterEngine, TestAction and AccessLogSampler
         running = false;
         log.info("Stopping: " + threadName);
+        Thread thread = runningThread;
+        if (thread != null) {
+            LockSupport.unpark(thread); // end any pause in timers
+        }
     }
 
     /** {@inheritDoc} */
@@ -798,16 +814,34 @@ public class JMeterThread implements Runnable, Interruptible {
             totalDelay += timer.delay();
         }
         if (totalDelay > 0) {
-            try {
-                if(scheduler) {
-                    long now = System.currentTimeMillis();
-                    if(now + totalDelay > endTime) {
-                        totalDelay = endTime - now;
-                    }
+            if(scheduler) {
+                long now = System.currentTimeMillis();
+                if(now + totalDelay > endTime) {
+                    totalDelay = endTime - now;
                 }
-                TimeUnit.MILLISECONDS.sleep(totalDelay);
-            } catch (InterruptedException e) {
+            }
+            pause(totalDelay);
+        }
+    }
+
+    /**
+     * Pause the thread until the delay has elapsed, the thread is stopped or interrupted.
+     * <p>
+     * The thread is parked rather than sleeping, so {@link #stop()} ends the pause
+     * without having to interrupt the thread.
+     * When running on virtual threads, a parked user does not hold any carrier (OS) thread:
+     * it is queued on the JVM scheduler until its deadline and then resumed on the carrier pool.
+     *
+     * @param delay the delay in milliseconds
+     */
+    private void pause(long delay) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        long remaining;
+        while (running && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
                 log.warn("The delay timer was interrupted - probably did not wait as long as intended.");
+                break;
             }
         }
     }
@@ -25,8 +25,10 @@ import org.apache.jmeter.config.ConfigTestElement;
 import org.apache.jmeter.control.Controller;
 import org.apache.jmeter.processor.PostProcessor;
 import org.apache.jmeter.processor.PreProcessor;
+import org.apache.jmeter.samplers.ResponseDataAware;
 import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.Sampler;
+import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.timers.Timer;
 
@@ -61,6 +63,9 @@ public class SamplePackage {
 
     private Sampler sampler;
 
+    /** Computed on first use, see {@link #isResponseDataUsed()} */
+    private Boolean responseDataUsed;
+
     public SamplePackage(
             List<ConfigTestElement> configs,
             List<SampleListener> listeners,
@@ -100,7 +105,9 @@ public class SamplePackage {
         @SuppressWarnings("unchecked") // all implementations extend TestElement
         List<TestElement> telist = (List<TestElement>)list;
         for (TestElement te : telist) {
-            te.setRunningVersion(running);
+            if (!isSharedByThreads(te)) {
+                te.setRunningVersion(running);
+            }
         }
     }
 
@@ -108,10 +115,20 @@ public class SamplePackage {
         @SuppressWarnings("unchecked") // All implementations extend TestElement
         List<TestElement> telist = (List<TestElement>)list;
         for (TestElement te : telist) {
-            te.recoverRunningVersion();
+            if (!isSharedByThreads(te)) {
+                te.recoverRunningVersion();
+            }
         }
     }
 
+    /**
+     * Elements shared by the threads are already running versions and are not
+     * changed while running, so other threads would only race to recover them
+     */
+    private static boolean isSharedByThreads(TestElement te) {
+        return te instanceof AbstractTestElement && ((AbstractTestElement) te).isSharedByThreads();
+    }
+
     /**
      * Recover each member of SamplePackage to the state before the call of setRunningVersion(true)
      * @see TestElement#recoverRunningVersion()
@@ -127,6 +144,36 @@ public class SamplePackage {
         sampler.recoverRunningVersion();
     }
 
+    /**
+     * Indicates whether the response data of the sample may be used by the
+     * assertions, post processors or listeners of this package.
+     * <p>
+     * Computed once, when the package is complete.
+     *
+     * @return <code>false</code> if there are no assertions and post
+     *         processors, and all the listeners are {@link ResponseDataAware}
+     *         listeners which do not use the response data
+     */
+    public boolean isResponseDataUsed() {
+        if (responseDataUsed == null) {
+            responseDataUsed = Boolean.valueOf(computeResponseDataUsed());
+        }
+        return responseDataUsed.booleanValue();
+    }
+
+    private boolean computeResponseDataUsed() {
+        if (!assertions.isEmpty() || !postProcessors.isEmpty()) {
+            return true;
+        }
+        for (SampleListener listener : sampleListeners) {
+            if (!(listener instanceof ResponseDataAware)
+                    || ((ResponseDataAware) listener).isResponseDataUsed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * @return List of {@link SampleListener}s
      */
@@ -89,6 +89,11 @@ public class ThreadGroup extends AbstractThreadGroup {
      */
     private boolean delayedStartup;
 
+    /**
+     * Are the JMeterThreads run on virtual threads (if supported by the JVM)?
+     */
+    private boolean virtualThreads;
+
     /**
      * No-arg constructor.
      */
@@ -272,11 +277,13 @@ public class ThreadGroup extends AbstractThreadGroup {
         float perThreadDelayInMillis = ((float) (rampUpPeriodInSeconds * 1000) / (float) getNumThreads());
 
         delayedStartup = isDelayedStartup(); // Fetch once; needs to stay constant
+        virtualThreads = VirtualThreadSupport.isEnabled();
         log.info("Starting thread group number " + groupCount
                 + " threads " + numThreads
                 + " ramp-up " + rampUpPeriodInSeconds
                 + " perThread " + perThreadDelayInMillis
-                + " delayedStart=" + delayedStartup);
+                + " delayedStart=" + delayedStartup
+                + " virtualThreads=" + virtualThreads);
         if (delayedStartup) {
             threadStarter = new Thread(new ThreadStarter(groupCount, notifier, threadGroupTree, engine), getName()+"-ThreadStarter");
             threadStarter.setDaemon(true);
@@ -289,7 +296,7 @@ public class ThreadGroup extends AbstractThreadGroup {
                 JMeterThread jmThread = makeThread(groupCount, notifier, threadGroupTree, engine, i, context);
                 scheduleThread(jmThread, now); // set start and end time
                 jmThread.setInitialDelay((int)(i * perThreadDelayInMillis));
-                Thread newThread = new Thread(jmThread, jmThread.getThreadName());
+                Thread newThread = VirtualThreadSupport.newThread(jmThread, virtualThreads);
                 registerStartedThread(jmThread, newThread);
                 newThread.start();
             }
@@ -572,8 +579,8 @@ public class ThreadGroup extends AbstractThreadGroup {
                     jmThread.setScheduled(true);
                     jmThread.setEndTime(endtime);
                 }
-                Thread newThread = new Thread(jmThread, jmThread.getThreadName());
-                newThread.setDaemon(false); // ThreadStarter is daemon, but we don't want sampler threads to be so too
+                // ThreadStarter is daemon, but sampler platform threads are not (virtual threads always are)
+                Thread newThread = VirtualThreadSupport.newThread(jmThread, virtualThreads);
                 registerStartedThread(jmThread, newThread);
                 newThread.start();
             }
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Creates the JVM threads that run {@link JMeterThread}s.
+ * <p>
+ * When enabled with property <code>jmeterthread.virtual.threads</code>, each
+ * JMeterThread is run on a virtual thread (Java 21+), which is scheduled on a
+ * small pool of carrier threads. A virtual thread that sleeps in a timer or
+ * blocks on socket I/O releases its carrier, so an injector can hold a very
+ * large number of users that spend most of their time in think time.
+ * The size of the carrier pool is controlled by the JVM system property
+ * <code>jdk.virtualThreadScheduler.parallelism</code>.
+ * <p>
+ * Uses Reflection so that the code compiles on Java 7.
+ * If virtual threads are not supported by the running JVM, platform threads are used.
+ */
+final class VirtualThreadSupport {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    // SingletonHolder idiom for lazy initialisation
+    private static class SupportHolder {
+        private static final VirtualThreadSupport SUPPORT = new VirtualThreadSupport();
+    }
+
+    // Thread.ofVirtual()
+    private final Method ofVirtual;
+
+    // Thread.Builder#name(String)
+    private final Method name;
+
+    // Thread.Builder#unstarted(Runnable)
+    private final Method unstarted;
+
+    // Only invoked by IODH class
+    private VirtualThreadSupport() {
+        Method ofVirtualMethod = null;
+        Method nameMethod = null;
+        Method unstartedMethod = null;
+        try {
+            ofVirtualMethod = Thread.class.getMethod("ofVirtual"); // $NON-NLS-1$
+            Class<?> builder = Class.forName("java.lang.Thread$Builder"); // $NON-NLS-1$
+            nameMethod = builder.getMethod("name", String.class); // $NON-NLS-1$
+            unstartedMethod = builder.getMethod("unstarted", Runnable.class); // $NON-NLS-1$
+        } catch (NoSuchMethodException | ClassNotFoundException e) {
+            log.warn("Virtual threads are not supported by this JVM (" + System.getProperty("java.version")
+                    + "), platform threads will be used");
+            ofVirtualMethod = null;
+        }
+        ofVirtual = ofVirtualMethod;
+        name = nameMethod;
+        unstarted = unstartedMethod;
+    }
+
+    private static VirtualThreadSupport getInstance() {
+        return SupportHolder.SUPPORT;
+    }
+
+    /**
+     * @return true if property <code>jmeterthread.virtual.threads</code> asks
+     *         for virtual threads, default false
+     */
+    static boolean isEnabled() {
+        return JMeterUtils.getPropDefault("jmeterthread.virtual.threads", false); // $NON-NLS-1$
+    }
+
+    /**
+     * @return true if the running JVM is able to create virtual threads
+     */
+    static boolean isAvailable() {
+        return getInstance().ofVirtual != null;
+    }
+
+    /**
+     * Create an unstarted thread to run the JMeterThread.
+     *
+     * @param jmThread the {@link JMeterThread} to run
+     * @param useVirtual true if a virtual thread should be used, if available
+     * @return the new (unstarted) thread
+     */
+    static Thread newThread(JMeterThread jmThread, boolean useVirtual) {
+        if (useVirtual && isAvailable()) {
+            Thread thread = getInstance().newVirtualThread(jmThread, jmThread.getThreadName());
+            if (thread != null) {
+                return thread;
+            }
+        }
+        Thread thread = new Thread(jmThread, jmThread.getThreadName());
+        thread.setDaemon(false); // the creating thread may be daemon, but we don't want sampler threads to be so too
+        return thread;
+    }
+
+    private Thread newVirtualThread(Runnable runnable, String threadName) {
+        try {
+            Object builder = ofVirtual.invoke(null);
+            builder = name.invoke(builder, threadName);
+            return (Thread) unstarted.invoke(builder, runnable);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            log.warn("Could not create virtual thread for " + threadName + ", using platform thread: " + e);
+            return null;
+        }
+    }
+}
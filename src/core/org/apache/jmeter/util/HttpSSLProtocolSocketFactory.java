@@ -26,6 +26,7 @@ import java.net.UnknownHostException;
 import java.security.GeneralSecurityException;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 
@@ -107,6 +108,35 @@ public class HttpSSLProtocolSocketFactory
         }
     }
 
+    /**
+     * Create a client engine for non-blocking connections, with the same
+     * context and protocols as the sockets of this factory.
+     * Slow sockets are not simulated.
+     *
+     * @param host the host name, used for SNI and session reuse
+     * @param port the port on the host
+     * @return the engine in client mode
+     * @throws IOException if the SSL context cannot be created
+     */
+    public SSLEngine createSSLEngine(String host, int port) throws IOException {
+        SSLEngine engine;
+        try {
+            engine = this.sslManager.getContext().createSSLEngine(host, port);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Rethrown as IOE", ex);
+        }
+        engine.setUseClientMode(true);
+        if (protocolList.length() > 0) {
+            try {
+                engine.setEnabledProtocols(protocols);
+            } catch (IllegalArgumentException e) {
+                log.warn("Could not set protocol list: " + protocolList + ".");
+                log.warn("Valid protocols are: " + join(engine.getSupportedProtocols()));
+            }
+        }
+        return engine;
+    }
+
     /*
      * Wraps the socket in a slow SSL socket if necessary
      */
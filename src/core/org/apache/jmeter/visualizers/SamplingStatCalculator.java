@@ -21,6 +21,8 @@ package org.apache.jmeter.visualizers;
 import java.util.Map;
 
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.math.HistogramStatCalculator;
 import org.apache.jorphan.math.StatCalculatorLong;
 
 /**
@@ -30,7 +32,15 @@ import org.apache.jorphan.math.StatCalculatorLong;
  *
  */
 public class SamplingStatCalculator {
-    private final StatCalculatorLong calculator = new StatCalculatorLong();
+    /**
+     * Number of significant digits of the percentiles if they are computed with a histogram,
+     * 0 to keep every distinct value and compute exact percentiles
+     */
+    private static final int HISTOGRAM_DIGITS =
+            JMeterUtils.getPropDefault("aggregate_rpt_histogram_digits", 0); // $NON-NLS-1$
+
+    private final StatCalculatorLong calculator = HISTOGRAM_DIGITS > 0
+            ? new HistogramStatCalculator(HISTOGRAM_DIGITS) : new StatCalculatorLong();
 
     private double maxThroughput;
 
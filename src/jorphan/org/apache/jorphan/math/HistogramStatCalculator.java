@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jorphan.math;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * StatCalculator for Long values which counts the values in a histogram
+ * instead of keeping every distinct value.
+ * <p>
+ * The buckets are log-linear, as in HdrHistogram: values lower than
+ * 2<sup>b</sup> are counted exactly, higher values are counted in buckets whose
+ * width is at most 1/2<sup>b-1</sup> of the value, where b is derived from
+ * the number of significant digits. So recording a value is O(1), the memory
+ * used only depends on the precision and on the magnitude of the largest value,
+ * and percentiles are accurate to the requested number of significant digits.
+ * <p>
+ * Count, mean, standard deviation, min and max are exact.
+ * Negative values are counted, but are all reported as the minimum.
+ * It is not threadsafe.
+ */
+public class HistogramStatCalculator extends StatCalculatorLong {
+
+    private final int significantDigits;
+
+    /** Number of values counted exactly, also number of sub-buckets of the first range */
+    private final int subBucketCount;
+
+    private final int subBucketHalfCount;
+
+    /** log2(subBucketHalfCount) */
+    private final int subBucketHalfCountMagnitude;
+
+    /** Grown as larger values are recorded */
+    private long[] counts;
+
+    private long negativeCount;
+
+    /**
+     * @param significantDigits the number of significant decimal digits of the
+     *            percentiles, between 1 and 5
+     */
+    public HistogramStatCalculator(int significantDigits) {
+        super();
+        if (significantDigits < 1 || significantDigits > 5) {
+            throw new IllegalArgumentException("significantDigits must be between 1 and 5: " + significantDigits);
+        }
+        this.significantDigits = significantDigits;
+        long largestExactValue = 2 * (long) Math.pow(10, significantDigits);
+        int magnitude = 64 - Long.numberOfLeadingZeros(largestExactValue - 1); // ceil(log2)
+        subBucketCount = 1 << magnitude;
+        subBucketHalfCount = subBucketCount / 2;
+        subBucketHalfCountMagnitude = magnitude - 1;
+        counts = new long[subBucketCount];
+    }
+
+    /**
+     * @return the number of significant decimal digits of the percentiles
+     */
+    public int getSignificantDigits() {
+        return significantDigits;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        counts = new long[subBucketCount];
+        negativeCount = 0;
+    }
+
+    /**
+     * @param value positive value
+     * @return the index of the bucket of the value
+     */
+    private int indexOf(long value) {
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - subBucketHalfCountMagnitude;
+        return (shift << subBucketHalfCountMagnitude) + (int) (value >>> shift);
+    }
+
+    /**
+     * @param index index of a bucket
+     * @return the highest value counted in the bucket
+     */
+    private long highestValueOf(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+        int shift = (index >>> subBucketHalfCountMagnitude) - 1;
+        long subBucket = index - ((long) shift << subBucketHalfCountMagnitude);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * @param index index of a bucket
+     * @return the value reported for the bucket, within the recorded min and max
+     */
+    private Long valueOf(int index) {
+        long value = Math.min(highestValueOf(index), getMax().longValue());
+        return Long.valueOf(Math.max(value, getMin().longValue()));
+    }
+
+    @Override
+    protected void updateValueCount(Long actualValue, long sampleCount) {
+        long value = actualValue.longValue();
+        if (value < 0) {
+            negativeCount += sampleCount;
+            return;
+        }
+        int index = indexOf(value);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, Math.min(counts.length * 2, indexOf(Long.MAX_VALUE) + 1)));
+        }
+        counts[index] += sampleCount;
+    }
+
+    @Override
+    public Long getPercentPoint(double percent) {
+        if (getCount() <= 0) {
+            return Long.valueOf(0);
+        }
+        if (percent >= 1.0) {
+            return getMax();
+        }
+        // use Math.round () instead of simple (long) to provide correct value rounding
+        long target = Math.round(getCount() * percent);
+        if (negativeCount > 0) {
+            target -= negativeCount;
+            if (target <= 0) {
+                return getMin();
+            }
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                target -= counts[i];
+                if (target <= 0) {
+                    return valueOf(i);
+                }
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public Map<Number, Number[]> getDistribution() {
+        Map<Number, Number[]> items = new HashMap<>();
+        if (negativeCount > 0) {
+            items.put(getMin(), new Number[] { getMin(), Long.valueOf(negativeCount) });
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                Long value = valueOf(i);
+                Number[] dis = items.get(value);
+                long count = counts[i] + (dis == null ? 0 : dis[1].longValue());
+                items.put(value, new Number[] { value, Long.valueOf(count) });
+            }
+        }
+        return items;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The merge is lossless if the other calculator is a histogram with the
+     * same precision.
+     */
+    @Override
+    public void addAll(StatCalculator<Long> calc) {
+        if (!(calc instanceof HistogramStatCalculator)
+                || ((HistogramStatCalculator) calc).significantDigits != significantDigits) {
+            super.addAll(calc);
+            return;
+        }
+        HistogramStatCalculator other = (HistogramStatCalculator) calc;
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        negativeCount += other.negativeCount;
+        addRunningValues(other);
+    }
+
+    @Override
+    protected void addValuesTo(StatCalculator<Long> target) {
+        if (negativeCount > 0) {
+            target.addEachValue(getMin(), negativeCount);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                target.addEachValue(valueOf(i), counts[i]);
+            }
+        }
+    }
+}
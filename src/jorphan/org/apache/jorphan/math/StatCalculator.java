@@ -96,9 +96,35 @@ public abstract class StatCalculator<T extends Number & Comparable<? super T>> {
     }
 
     public void addAll(StatCalculator<T> calc) {
-        for(Entry<T, MutableLong> ent : calc.valuesMap.entrySet()) {
-            addEachValue(ent.getKey(), ent.getValue().longValue());
+        calc.addValuesTo(this);
+    }
+
+    /**
+     * Add the values of this calculator to another one.
+     *
+     * @param target the calculator to update
+     */
+    protected void addValuesTo(StatCalculator<T> target) {
+        for(Entry<T, MutableLong> ent : valuesMap.entrySet()) {
+            target.addEachValue(ent.getKey(), ent.getValue().longValue());
+        }
+    }
+
+    /**
+     * Add the running values (count, sum, min, max...) of another calculator, but not its values.
+     * Allows sub-classes to merge their own representation of the values.
+     *
+     * @param calc the calculator to merge
+     */
+    protected void addRunningValues(StatCalculator<T> calc) {
+        if (calc.count <= 0) {
+            return;
         }
+        count += calc.count;
+        sum += calc.sum;
+        sumOfSquares += calc.sumOfSquares;
+        calculateDerivedValues(calc.max);
+        calculateDerivedValues(calc.min);
     }
 
     public T getMedian() {
@@ -264,7 +290,13 @@ public abstract class StatCalculator<T extends Number & Comparable<? super T>> {
         addValue(val, 1L);
     }
 
-    private void updateValueCount(T actualValue, long sampleCount) {
+    /**
+     * Record the number of samples having a value.
+     *
+     * @param actualValue the value
+     * @param sampleCount the number of samples with the value
+     */
+    protected void updateValueCount(T actualValue, long sampleCount) {
         MutableLong count = valuesMap.get(actualValue);
         if (count != null) {
             count.add(sampleCount);
@@ -26,6 +26,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
+import java.util.Objects;
 
 import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.httpclient.HttpMethod;
@@ -81,6 +82,9 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
      * @since 3.0 */
     private transient Map<String, CacheEntry> localCache;
 
+    /** Cache of the thread when the memory of the caches is limited, created on first use */
+    private transient Map<String, CacheEntry> boundedCache;
+
     public CacheManager() {
         setProperty(new BooleanProperty(CLEAR, false));
         setProperty(new BooleanProperty(USE_EXPIRES, false));
@@ -120,6 +124,24 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
         public Date getExpires() {
             return expires;
         }
+        // Equal entries are shared by the caches of the threads, see MemoryBoundedCache
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheEntry)) {
+                return false;
+            }
+            CacheEntry other = (CacheEntry) obj;
+            return Objects.equals(lastModified, other.lastModified)
+                    && Objects.equals(etag, other.etag)
+                    && Objects.equals(expires, other.expires);
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hash(lastModified, etag, expires);
+        }
     }
 
     /**
@@ -427,7 +449,17 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
     }
 
     private Map<String, CacheEntry> getCache() {
-        return localCache != null?localCache:threadCache.get();
+        if (localCache != null) {
+            return localCache;
+        }
+        if (MemoryBoundedCache.isEnabled()) {
+            // Each thread has its own clone of the Cache Manager
+            if (boundedCache == null) {
+                boundedCache = new MemoryBoundedCache(getMaxSize());
+            }
+            return boundedCache;
+        }
+        return threadCache.get();
     }
 
     public boolean getClearEachIteration() {
@@ -469,6 +501,9 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
 
     private void clearCache() {
         log.debug("Clear cache");
+        if (boundedCache != null) {
+            boundedCache.clear(); // Releases its memory, it may still be used by proxies
+        }
         threadCache = new InheritableThreadLocal<Map<String, CacheEntry>>(){
             @Override
             protected Map<String, CacheEntry> initialValue(){
@@ -496,6 +531,10 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
 
     @Override
     public void testEnded() {
+        if (MemoryBoundedCache.isEnabled()) {
+            log.info("HTTP caches: " + MemoryBoundedCache.toStatsString());
+            MemoryBoundedCache.clearAll();
+        }
     }
 
     @Override
@@ -504,6 +543,7 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
 
     @Override
     public void testEnded(String host) {
+        testEnded();
     }
 
     @Override
@@ -29,6 +29,7 @@ import java.io.PrintWriter;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.jmeter.config.ConfigTestElement;
@@ -38,7 +39,6 @@ import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.property.BooleanProperty;
 import org.apache.jmeter.testelement.property.CollectionProperty;
 import org.apache.jmeter.testelement.property.JMeterProperty;
-import org.apache.jmeter.testelement.property.PropertyIterator;
 import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
@@ -102,6 +102,9 @@ public class CookieManager extends ConfigTestElement implements TestStateListene
 
     private transient CollectionProperty initialCookies;
 
+    /** Cookies of the running thread, replaces the COOKIES property while not null */
+    private transient CookieStore cookieStore;
+
     /**
      * Defines the policy that is assumed when the JMX file does not contain an entry for it
      * MUST NOT BE CHANGED otherwise JMX files will not be correctly interpreted
@@ -134,6 +137,7 @@ public class CookieManager extends ConfigTestElement implements TestStateListene
     /** {@inheritDoc} */
     @Override
     public Object clone(){
+        getCookies(); // the clone must get the cookies of the running thread
         CookieManager clone = (CookieManager) super.clone();
         clone.initialCookies = initialCookies;
         clone.cookieHandler = cookieHandler;
@@ -149,10 +153,37 @@ public class CookieManager extends ConfigTestElement implements TestStateListene
     }
 
     public CollectionProperty getCookies() {
+        if (cookieStore != null) {
+            // Back to the property, as the caller may change it
+            setProperty(new CollectionProperty(COOKIES, cookieStore.getCookies()));
+            cookieStore = null;
+        }
         return (CollectionProperty) getProperty(COOKIES);
     }
 
+    /**
+     * Get the cookies indexed by domain, they replace the cookies of the
+     * property until {@link #getCookies()} is called.
+     */
+    private CookieStore getCookieStore() {
+        if (cookieStore == null) {
+            CookieStore store = new CookieStore();
+            for (JMeterProperty jMeterProperty : getCookies()) {
+                Cookie cookie = (Cookie) jMeterProperty.getObjectValue();
+                if (cookie != null) {
+                    store.add(cookie);
+                }
+            }
+            setProperty(new CollectionProperty(COOKIES, new ArrayList<>()));
+            cookieStore = store;
+        }
+        return cookieStore;
+    }
+
     public int getCookieCount() {// Used by GUI
+        if (cookieStore != null) {
+            return cookieStore.size();
+        }
         return getCookies().size();
     }
 
@@ -314,7 +345,7 @@ public class CookieManager extends ConfigTestElement implements TestStateListene
             if (log.isDebugEnabled()) {
                 log.debug("Add cookie to store " + c.toString());
             }
-            getCookies().addItem(c);
+            getCookieStore().add(c);
             if (SAVE_COOKIES)  {
                 JMeterContext context = getThreadContext();
                 if (context.isSamplingStarted()) {
@@ -336,6 +367,7 @@ public class CookieManager extends ConfigTestElement implements TestStateListene
      */
     private void clearCookies() {
         log.debug("Clear all cookies from store");
+        cookieStore = null;
         setProperty(new CollectionProperty(COOKIES, new ArrayList<>()));
     }
 
@@ -367,7 +399,13 @@ public class CookieManager extends ConfigTestElement implements TestStateListene
      * @return the value string for the cookie header (goes after "Cookie: ").
      */
     public String getCookieHeaderForURL(URL url) {
-        return cookieHandler.getCookieHeaderForURL(getCookies(), url, ALLOW_VARIABLE_COOKIES);
+        // Only the cookies of the domains of the host need to be matched by the handler
+        List<Cookie> candidates = getCookieStore().getCandidates(url.getHost(), System.currentTimeMillis());
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        return cookieHandler.getCookieHeaderForURL(new CollectionProperty(COOKIES, candidates), url,
+                ALLOW_VARIABLE_COOKIES);
     }
 
 
@@ -375,37 +413,16 @@ public class CookieManager extends ConfigTestElement implements TestStateListene
         cookieHandler.addCookieFromHeader(this, CHECK_COOKIES, cookieHeader, url);
     }
     /**
-     * Check if cookies match, i.e. name, path and domain are equal.
+     * Remove the cookie matching the new one, i.e. whose name, path and domain are equal.
      * <br/>
      * TODO - should we compare secure too?
-     * @param a
-     * @param b
-     * @return true if cookies match
+     * @param newCookie cookie to match
      */
-    private boolean match(Cookie a, Cookie b){
-        return
-        a.getName().equals(b.getName())
-        &&
-        a.getPath().equals(b.getPath())
-        &&
-        a.getDomain().equals(b.getDomain());
-    }
-
     void removeMatchingCookies(Cookie newCookie){
-        // Scan for any matching cookies
-        PropertyIterator iter = getCookies().iterator();
-        while (iter.hasNext()) {
-            Cookie cookie = (Cookie) iter.next().getObjectValue();
-            if (cookie == null) {// TODO is this possible?
-                continue;
-            }
-            if (match(cookie,newCookie)) {
-                if (log.isDebugEnabled()) {
-                    log.debug("New Cookie = " + newCookie.toString()
-                              + " removing matching Cookie " + cookie.toString());
-                }
-                iter.remove();
-            }
+        Cookie cookie = getCookieStore().remove(newCookie);
+        if (cookie != null && log.isDebugEnabled()) {
+            log.debug("New Cookie = " + newCookie.toString()
+                      + " removing matching Cookie " + cookie.toString());
         }
     }
 
@@ -445,6 +462,7 @@ public class CookieManager extends ConfigTestElement implements TestStateListene
         if (getClearEachIteration()) {
             log.debug("Initialise cookies from pre-defined list");
             // No need to call clear
+            cookieStore = null;
             setProperty(initialCookies.clone());
         }
     }
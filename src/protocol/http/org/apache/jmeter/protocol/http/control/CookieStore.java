@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.control;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Cookies of a running {@link CookieManager}, indexed by domain so that
+ * adding a cookie or finding the cookies to send to a host does not go
+ * through all the cookies.
+ * <p>
+ * Cookies whose domain is empty or contains variables cannot be indexed,
+ * they are candidates for any host. Expired cookies are removed when they
+ * are found as candidates.
+ * </p>
+ * <p>
+ * Not thread-safe, each thread has its own {@link CookieManager}.
+ * </p>
+ * @since 3.1
+ */
+final class CookieStore {
+
+    /** Suffix added by RFC 2965 to host names without dots */
+    private static final String LOCAL_DOMAIN = ".local"; // $NON-NLS-1$
+
+    private static final Comparator<Entry> INSERTION_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+        }
+    };
+
+    private static final class Entry {
+        private final Cookie cookie;
+
+        private final long sequence;
+
+        private Entry(Cookie cookie, long sequence) {
+            this.cookie = cookie;
+            this.sequence = sequence;
+        }
+    }
+
+    /** Cookies by domain in lower case without leading dot, then by {@link #key(Cookie)} */
+    private final Map<String, Map<String, Entry>> domains = new HashMap<>();
+
+    /** Cookies which cannot be indexed, by {@link #key(Cookie)} */
+    private final Map<String, Entry> unindexed = new LinkedHashMap<>();
+
+    private long sequence;
+
+    private int size;
+
+    /**
+     * Add the cookie, replacing the cookie with the same name, path and
+     * domain if any.
+     *
+     * @param cookie cookie to add
+     */
+    void add(Cookie cookie) {
+        Map<String, Entry> entries = getEntries(cookie, true);
+        String key = key(cookie);
+        // Removed first so that the cookie goes last, as a new one
+        if (entries.remove(key) == null) {
+            size++;
+        }
+        entries.put(key, new Entry(cookie, sequence++));
+    }
+
+    /**
+     * Remove the cookie with the same name, path and domain as the given one.
+     *
+     * @param cookie cookie to match
+     * @return the removed cookie, or null if none matched
+     */
+    Cookie remove(Cookie cookie) {
+        Map<String, Entry> entries = getEntries(cookie, false);
+        if (entries == null) {
+            return null;
+        }
+        Entry removed = entries.remove(key(cookie));
+        if (removed == null) {
+            return null;
+        }
+        size--;
+        if (entries.isEmpty() && entries != unindexed) {
+            domains.remove(indexDomain(cookie.getDomain()));
+        }
+        return removed.cookie;
+    }
+
+    /**
+     * Get the cookies which may be sent to the host, whether they are sent
+     * still depends on the cookie policy.
+     *
+     * @param host host of the request
+     * @param now current time in milliseconds, cookies expired at that time
+     *            are removed
+     * @return the cookies in the order they have been added
+     */
+    List<Cookie> getCandidates(String host, long now) {
+        List<Entry> candidates = new ArrayList<>();
+        int sources = collect(unindexed, candidates, now);
+        String domain = host.toLowerCase(Locale.ENGLISH);
+        if (domain.indexOf('.') < 0) {
+            sources += collect(domain + LOCAL_DOMAIN, candidates, now);
+        }
+        while (true) {
+            sources += collect(domain, candidates, now);
+            int dot = domain.indexOf('.');
+            if (dot < 0) {
+                break;
+            }
+            domain = domain.substring(dot + 1);
+        }
+        if (sources > 1) {
+            Collections.sort(candidates, INSERTION_ORDER);
+        }
+        return toCookies(candidates);
+    }
+
+    /**
+     * @return all the cookies in the order they have been added
+     */
+    List<Cookie> getCookies() {
+        List<Entry> entries = new ArrayList<>(size);
+        entries.addAll(unindexed.values());
+        for (Map<String, Entry> domainEntries : domains.values()) {
+            entries.addAll(domainEntries.values());
+        }
+        Collections.sort(entries, INSERTION_ORDER);
+        return toCookies(entries);
+    }
+
+    /**
+     * @return the number of cookies
+     */
+    int size() {
+        return size;
+    }
+
+    private int collect(String domain, List<Entry> candidates, long now) {
+        Map<String, Entry> entries = domains.get(domain);
+        if (entries == null) {
+            return 0;
+        }
+        int sources = collect(entries, candidates, now);
+        if (entries.isEmpty()) {
+            domains.remove(domain);
+        }
+        return sources;
+    }
+
+    private int collect(Map<String, Entry> entries, List<Entry> candidates, long now) {
+        int found = candidates.size();
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext();) {
+            Entry entry = iterator.next();
+            long expires = entry.cookie.getExpiresMillis();
+            if (expires != 0 && expires < now) {
+                iterator.remove();
+                size--;
+            } else {
+                candidates.add(entry);
+            }
+        }
+        return candidates.size() > found ? 1 : 0;
+    }
+
+    private Map<String, Entry> getEntries(Cookie cookie, boolean create) {
+        String domain = cookie.getDomain();
+        if (!isIndexable(domain)) {
+            return unindexed;
+        }
+        String indexDomain = indexDomain(domain);
+        Map<String, Entry> entries = domains.get(indexDomain);
+        if (entries == null && create) {
+            entries = new LinkedHashMap<>();
+            domains.put(indexDomain, entries);
+        }
+        return entries;
+    }
+
+    private static boolean isIndexable(String domain) {
+        return domain != null && domain.length() > 0 && domain.indexOf("${") < 0; // $NON-NLS-1$
+    }
+
+    private static String indexDomain(String domain) {
+        String indexDomain = domain.toLowerCase(Locale.ENGLISH);
+        return indexDomain.startsWith(".") ? indexDomain.substring(1) : indexDomain; // $NON-NLS-1$
+    }
+
+    /**
+     * Cookies match when their name, path and domain are equal
+     */
+    private static String key(Cookie cookie) {
+        return cookie.getName() + '\t' + cookie.getPath() + '\t' + cookie.getDomain();
+    }
+
+    private static List<Cookie> toCookies(Collection<Entry> entries) {
+        List<Cookie> cookies = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            cookies.add(entry.cookie);
+        }
+        return cookies;
+    }
+}
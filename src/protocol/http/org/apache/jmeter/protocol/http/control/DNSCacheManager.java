@@ -24,12 +24,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.conn.DnsResolver;
 import org.apache.http.impl.conn.SystemDefaultDnsResolver;
 import org.apache.jmeter.config.ConfigTestElement;
 import org.apache.jmeter.engine.event.LoopIterationEvent;
 import org.apache.jmeter.testelement.TestIterationListener;
+import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.property.BooleanProperty;
 import org.apache.jmeter.testelement.property.CollectionProperty;
 import org.apache.jmeter.testelement.property.JMeterProperty;
@@ -56,7 +58,8 @@ import org.xbill.DNS.Type;
  * @since 2.12
  */
 
-public class DNSCacheManager extends ConfigTestElement implements TestIterationListener, Serializable, DnsResolver {
+public class DNSCacheManager extends ConfigTestElement implements TestIterationListener, TestStateListener,
+        Serializable, DnsResolver {
     private static final long serialVersionUID = 2120L;
 
     private static final Logger log = LoggingManager.getLoggerForClass();
@@ -129,6 +132,14 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
      */
     @Override
     public InetAddress[] resolve(String host) throws UnknownHostException {
+        if (SharedDNSCache.isEnabled()) {
+            return SharedDNSCache.resolve(getResolverKey(), host, new SharedDNSCache.Lookup() {
+                @Override
+                public SharedDNSCache.Addresses lookup(String name) throws UnknownHostException {
+                    return requestLookup(name);
+                }
+            });
+        }
         if (cache.containsKey(host)) {
             if (log.isDebugEnabled()) {
                 log.debug("Cache hit thr#" + JMeterContextService.getContext().getThreadNum() + ": " + host + "=>"
@@ -136,7 +147,7 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
             }
             return cache.get(host);
         } else {
-            InetAddress[] addresses = requestLookup(host);
+            InetAddress[] addresses = requestLookup(host).getAddresses();
             if (log.isDebugEnabled()) {
                 log.debug("Cache miss thr#" + JMeterContextService.getContext().getThreadNum() + ": " + host + "=>"
                         + Arrays.toString(addresses));
@@ -146,12 +157,33 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
         }
     }
 
+    /**
+     * Identifies the resolver in the shared cache, so that managers using
+     * different DNS servers do not share their addresses. Built from the
+     * names of the servers, as each clone has its own resolver objects.
+     */
+    String getResolverKey() {
+        if (isUsingCustomServers()) {
+            StringBuilder key = new StringBuilder("servers:"); // $NON-NLS-1$
+            for (JMeterProperty server : getServers()) {
+                key.append(server.getStringValue()).append(',');
+            }
+            return key.toString();
+        }
+        return "system"; // $NON-NLS-1$
+    }
+
+    private boolean isUsingCustomServers() {
+        return isCustomResolver() && ((ExtendedResolver) resolver).getResolvers().length > 0;
+    }
+
     /**
      * Sends DNS request via system or custom DNS resolver
      */
-    private InetAddress[] requestLookup(String host) throws UnknownHostException {
+    private SharedDNSCache.Addresses requestLookup(String host) throws UnknownHostException {
         InetAddress[] addresses = null;
-        if (isCustomResolver() && ((ExtendedResolver) resolver).getResolvers().length > 0) {
+        long ttlMillis = -1; // The system resolver does not give the TTL
+        if (isUsingCustomServers()) {
             try {
                 Lookup lookup = new Lookup(host, Type.A);
                 lookup.setCache(lookupCache);
@@ -164,9 +196,12 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
                     throw new UnknownHostException("Failed to resolve host name: " + host);
                 }
                 addresses = new InetAddress[records.length];
+                long ttl = Long.MAX_VALUE;
                 for (int i = 0; i < records.length; i++) {
                     addresses[i] = ((ARecord) records[i]).getAddress();
+                    ttl = Math.min(ttl, records[i].getTTL());
                 }
+                ttlMillis = TimeUnit.SECONDS.toMillis(ttl);
             } catch (TextParseException tpe) {
                 log.debug("Failed to create Lookup object: " + tpe);
             }
@@ -177,7 +212,7 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
                         + ", resolved with system resolver into " + Arrays.toString(addresses));
             }
         }
-        return addresses;
+        return new SharedDNSCache.Addresses(addresses, ttlMillis);
     }
 
     /**
@@ -185,11 +220,46 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
      */
     @Override
     public void testIterationStart(LoopIterationEvent event) {
-        if (isClearEachIteration()) {
+        if (isClearEachIteration() && !SharedDNSCache.isEnabled()) {
             this.cache.clear();
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testStarted() {
+        // NOOP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testStarted(String host) {
+        // NOOP
+    }
+
+    /**
+     * {@inheritDoc} Empty the shared DNS cache if it is used
+     */
+    @Override
+    public void testEnded() {
+        if (SharedDNSCache.isEnabled() && SharedDNSCache.getSize() > 0) {
+            log.info("Shared DNS cache: " + SharedDNSCache.toStatsString());
+            SharedDNSCache.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testEnded(String host) {
+        testEnded();
+    }
+
     /**
      * {@inheritDoc}
      */
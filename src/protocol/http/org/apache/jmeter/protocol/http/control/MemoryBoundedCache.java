@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.control;
+
+import java.util.AbstractMap;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jmeter.protocol.http.control.CacheManager.CacheEntry;
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * Cache of a thread used by {@link CacheManager} when the property
+ * <code>cache_manager.max_bytes</code> is set: the estimated memory used by
+ * the caches of all threads is limited to this number of bytes.
+ * <p>
+ * Each cache still holds at most the maximum number of elements of its
+ * Cache Manager. When the limit of bytes is reached, the entries least
+ * recently used by any thread are removed, using the CLOCK approximation of
+ * LRU. Identical entries, such as those of the static resources downloaded
+ * by every thread, are shared by the caches instead of being copied.
+ * </p>
+ * <p>
+ * Reads do not lock, which matters as the cache is read for every request.
+ * </p>
+ * @since 3.1
+ */
+final class MemoryBoundedCache extends AbstractMap<String, CacheEntry> {
+
+    private static final long MAX_BYTES = JMeterUtils.getPropDefault("cache_manager.max_bytes", 0L); // $NON-NLS-1$
+
+    /** Estimated size of the objects holding an entry in a cache, without its strings */
+    private static final int ENTRY_OVERHEAD = 160;
+
+    /** The table of shared entries is emptied when it reaches this size */
+    private static final int MAX_SHARED_ENTRIES = 10000;
+
+    private static final AtomicLong TOTAL_BYTES = new AtomicLong();
+
+    private static final AtomicInteger LIVE_NODES = new AtomicInteger();
+
+    /** All the entries, for the limit of bytes */
+    private static final Clock CLOCK = new Clock();
+
+    private static final ConcurrentMap<CacheEntry, CacheEntry> SHARED_ENTRIES = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Node> nodes = new ConcurrentHashMap<>();
+
+    /** The entries of this cache, for its limit of entries */
+    private final Clock localClock = new Clock();
+
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    private static final class Node {
+        private final MemoryBoundedCache cache;
+
+        private final String key;
+
+        // Guarded by this for writes
+        private volatile CacheEntry entry;
+
+        // Guarded by this
+        private int bytes;
+
+        // Guarded by this
+        private boolean removed;
+
+        /** Set when read, cleared when CLOCK passes over the node */
+        private volatile boolean referenced;
+
+        private Node(MemoryBoundedCache cache, String key, CacheEntry entry, int bytes) {
+            this.cache = cache;
+            this.key = key;
+            this.entry = entry;
+            this.bytes = bytes;
+        }
+
+        private synchronized boolean isRemoved() {
+            return removed;
+        }
+    }
+
+    /**
+     * Queue of nodes scanned in turn to find the one to remove, giving a
+     * second chance to those referenced since the last scan.
+     */
+    private static final class Clock {
+        private final Queue<Node> queue = new ConcurrentLinkedQueue<>();
+
+        /** Nodes in the queue, including removed ones */
+        private final AtomicInteger queued = new AtomicInteger();
+
+        void add(Node node, int liveNodes) {
+            queue.add(node);
+            if (queued.incrementAndGet() > 2 * liveNodes + 1024) {
+                // Removed nodes are only dropped when they are polled
+                for (Iterator<Node> iterator = queue.iterator(); iterator.hasNext();) {
+                    if (iterator.next().isRemoved()) {
+                        iterator.remove();
+                        queued.decrementAndGet();
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the node to remove, null if there is none
+         */
+        Node nextVictim() {
+            int chances = 2 * queued.get() + 2;
+            Node node;
+            while ((node = queue.poll()) != null) {
+                queued.decrementAndGet();
+                if (node.isRemoved()) {
+                    continue;
+                }
+                if (node.referenced && chances-- > 0) {
+                    node.referenced = false;
+                    queue.add(node);
+                    queued.incrementAndGet();
+                    continue;
+                }
+                return node;
+            }
+            return null;
+        }
+
+        void clear() {
+            Node node;
+            while ((node = queue.poll()) != null) {
+                queued.decrementAndGet();
+                node.cache.removeNode(node);
+            }
+        }
+    }
+
+    /**
+     * @param maxEntries maximum number of entries of the cache
+     */
+    MemoryBoundedCache(int maxEntries) {
+        this(maxEntries, MAX_BYTES);
+    }
+
+    /**
+     * @param maxEntries maximum number of entries of the cache
+     * @param maxBytes maximum number of bytes of the caches of all threads
+     */
+    MemoryBoundedCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return true if the memory used by the caches is limited
+     */
+    static boolean isEnabled() {
+        return MAX_BYTES > 0;
+    }
+
+    @Override
+    public CacheEntry get(Object key) {
+        Node node = nodes.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        return node.entry;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return nodes.containsKey(key);
+    }
+
+    @Override
+    public CacheEntry put(String key, CacheEntry entry) {
+        CacheEntry shareable = shareable(entry);
+        CacheEntry shared = share(shareable);
+        // Entries shared with other caches are only counted once
+        int bytes = ENTRY_OVERHEAD + 2 * key.length() + (shared == shareable ? sizeOf(shared) : 0);
+        Node node = nodes.get(key);
+        if (node != null) {
+            synchronized (node) {
+                if (!node.removed) {
+                    CacheEntry previous = node.entry;
+                    TOTAL_BYTES.addAndGet(bytes - node.bytes);
+                    node.bytes = bytes;
+                    node.entry = shared;
+                    node.referenced = true;
+                    return previous;
+                }
+            }
+        }
+        node = new Node(this, key, shared, bytes);
+        Node previous = nodes.put(key, node);
+        if (previous != null) {
+            release(previous);
+        }
+        TOTAL_BYTES.addAndGet(bytes);
+        int live = LIVE_NODES.incrementAndGet();
+        CLOCK.add(node, live);
+        localClock.add(node, nodes.size());
+        evict();
+        return previous != null ? previous.entry : null;
+    }
+
+    @Override
+    public CacheEntry remove(Object key) {
+        Node node = nodes.remove(key);
+        if (node == null) {
+            return null;
+        }
+        release(node);
+        return node.entry;
+    }
+
+    @Override
+    public void clear() {
+        for (Node node : nodes.values()) {
+            removeNode(node);
+        }
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    @Override
+    public Set<Map.Entry<String, CacheEntry>> entrySet() {
+        Set<Map.Entry<String, CacheEntry>> entries = new HashSet<>();
+        for (Node node : nodes.values()) {
+            entries.add(new SimpleImmutableEntry<>(node.key, node.entry));
+        }
+        return entries;
+    }
+
+    private void evict() {
+        while (nodes.size() > maxEntries) {
+            Node victim = localClock.nextVictim();
+            if (victim == null) {
+                break;
+            }
+            removeNode(victim);
+        }
+        while (TOTAL_BYTES.get() > maxBytes) {
+            Node victim = CLOCK.nextVictim();
+            if (victim == null) {
+                break;
+            }
+            victim.cache.removeNode(victim);
+        }
+    }
+
+    private void removeNode(Node node) {
+        nodes.remove(node.key, node);
+        release(node);
+    }
+
+    private static void release(Node node) {
+        int bytes;
+        synchronized (node) {
+            if (node.removed) {
+                return;
+            }
+            node.removed = true;
+            bytes = node.bytes;
+        }
+        TOTAL_BYTES.addAndGet(-bytes);
+        LIVE_NODES.decrementAndGet();
+    }
+
+    /**
+     * @return the entry, with its expiry rounded down to the second as when
+     *         computed from max-age it differs by a few milliseconds between
+     *         threads
+     */
+    private static CacheEntry shareable(CacheEntry entry) {
+        Date expires = entry.getExpires();
+        if (expires != null && expires.getTime() % 1000 != 0) {
+            return new CacheEntry(entry.getLastModified(), new Date(expires.getTime() / 1000 * 1000),
+                    entry.getEtag());
+        }
+        return entry;
+    }
+
+    /**
+     * @return the entry equal to this one already used by a cache, or the
+     *         entry itself
+     */
+    private static CacheEntry share(CacheEntry shareable) {
+        if (SHARED_ENTRIES.size() >= MAX_SHARED_ENTRIES) {
+            SHARED_ENTRIES.clear(); // Entries already in caches stay shared
+        }
+        CacheEntry shared = SHARED_ENTRIES.putIfAbsent(shareable, shareable);
+        return shared != null ? shared : shareable;
+    }
+
+    private static int sizeOf(CacheEntry entry) {
+        return sizeOf(entry.getLastModified()) + sizeOf(entry.getEtag()) + (entry.getExpires() != null ? 24 : 0);
+    }
+
+    private static int sizeOf(String value) {
+        return value != null ? 40 + 2 * value.length() : 0;
+    }
+
+    /**
+     * Remove the entries of all the caches, at the end of the test.
+     */
+    static void clearAll() {
+        CLOCK.clear();
+        SHARED_ENTRIES.clear();
+    }
+
+    /**
+     * @return the estimated number of bytes used by the caches of all threads
+     */
+    static long getTotalBytes() {
+        return TOTAL_BYTES.get();
+    }
+
+    /**
+     * @return the number of entries in the caches of all threads
+     */
+    static int getTotalEntries() {
+        return LIVE_NODES.get();
+    }
+
+    static String toStatsString() {
+        return String.format(Locale.ENGLISH, "entries=%d bytes=%d max bytes=%d shared entries=%d", // $NON-NLS-1$
+                Integer.valueOf(getTotalEntries()), Long.valueOf(getTotalBytes()), Long.valueOf(MAX_BYTES),
+                Integer.valueOf(SHARED_ENTRIES.size()));
+    }
+}
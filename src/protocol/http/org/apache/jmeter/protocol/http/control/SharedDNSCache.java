@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.control;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * DNS cache shared by all the threads, used by {@link DNSCacheManager} when
+ * the property <code>DNSCacheManager.shared_cache</code> is true.
+ * <p>
+ * Addresses are kept for the TTL of their DNS records, or for
+ * <code>DNSCacheManager.shared_cache.default_ttl</code> seconds with the
+ * system resolver which does not give it. Threads asking for a name being
+ * resolved wait for that lookup instead of sending their own, and names
+ * still used are resolved again in the background when three quarters of
+ * their TTL have elapsed, so that threads do not wait for them.
+ * </p>
+ * @since 3.1
+ */
+public final class SharedDNSCache {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final boolean ENABLED =
+            JMeterUtils.getPropDefault("DNSCacheManager.shared_cache", false); // $NON-NLS-1$
+
+    private static final long DEFAULT_TTL_MS =
+            TimeUnit.SECONDS.toMillis(JMeterUtils.getPropDefault("DNSCacheManager.shared_cache.default_ttl", 60)); // $NON-NLS-1$
+
+    private static final int REFRESH_THREADS =
+            JMeterUtils.getPropDefault("DNSCacheManager.shared_cache.refresh_threads", 2); // $NON-NLS-1$
+
+    private static final ConcurrentMap<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    private static final AtomicLong HITS = new AtomicLong();
+
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private static final AtomicLong REFRESHES = new AtomicLong();
+
+    private static final AtomicLong LOOKUPS = new AtomicLong();
+
+    private static final AtomicLong LOOKUP_TIME = new AtomicLong();
+
+    private static final AtomicLong MAX_LOOKUP_TIME = new AtomicLong();
+
+    // Guarded by SharedDNSCache.class
+    private static ThreadPoolExecutor refreshExecutor;
+
+    static {
+        if (ENABLED) {
+            log.info("DNS Cache Manager uses a cache shared by all threads, default TTL=" + DEFAULT_TTL_MS + "ms");
+        }
+    }
+
+    /**
+     * Lookup of a name by a DNS resolver
+     */
+    interface Lookup {
+        /**
+         * @param host name to resolve
+         * @return the addresses of the name and their TTL
+         * @throws UnknownHostException if the name cannot be resolved
+         */
+        Addresses lookup(String host) throws UnknownHostException;
+    }
+
+    /**
+     * Addresses returned by a {@link Lookup}
+     */
+    static final class Addresses {
+        private final InetAddress[] addresses;
+
+        private final long expiresAt;
+
+        private final long refreshAt;
+
+        /**
+         * @param addresses addresses of the name
+         * @param ttlMillis time to live of the addresses in milliseconds, or
+         *            a negative value to use the default one
+         */
+        Addresses(InetAddress[] addresses, long ttlMillis) {
+            this.addresses = addresses;
+            long ttl = ttlMillis < 0 ? DEFAULT_TTL_MS : ttlMillis;
+            long resolvedAt = System.currentTimeMillis();
+            this.expiresAt = resolvedAt + ttl;
+            this.refreshAt = resolvedAt + ttl * 3 / 4;
+        }
+
+        /**
+         * @return addresses of the name
+         */
+        InetAddress[] getAddresses() {
+            return addresses;
+        }
+    }
+
+    private static final class Entry {
+        /** First lookup of the name, other threads wait for it */
+        private final FutureTask<Addresses> lookup;
+
+        private volatile Addresses addresses;
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(FutureTask<Addresses> lookup) {
+            this.lookup = lookup;
+        }
+    }
+
+    private SharedDNSCache() {
+        super();
+    }
+
+    /**
+     * @return true if the DNS Cache Managers share the cache
+     */
+    static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Get the addresses of the name from the cache, resolving it if it is
+     * missing or expired.
+     *
+     * @param resolverKey identifies the resolver, names are cached per resolver
+     * @param host name to resolve
+     * @param lookup lookup used to resolve the name
+     * @return the addresses of the name
+     * @throws UnknownHostException if the name cannot be resolved
+     */
+    static InetAddress[] resolve(String resolverKey, final String host, final Lookup lookup)
+            throws UnknownHostException {
+        final String key = resolverKey + '\n' + host;
+        while (true) {
+            Entry entry = ENTRIES.get(key);
+            if (entry != null) {
+                Addresses cached = entry.addresses;
+                long now = System.currentTimeMillis();
+                if (cached != null && now < cached.expiresAt) {
+                    HITS.incrementAndGet();
+                    if (now >= cached.refreshAt && entry.refreshing.compareAndSet(false, true)) {
+                        refresh(entry, host, lookup);
+                    }
+                    return cached.addresses;
+                }
+                if (cached == null) {
+                    // Being resolved by another thread
+                    HITS.incrementAndGet();
+                    return await(key, entry, host).addresses;
+                }
+                ENTRIES.remove(key, entry);
+            }
+            Entry newEntry = new Entry(new FutureTask<>(new Callable<Addresses>() {
+                @Override
+                public Addresses call() throws UnknownHostException {
+                    return timedLookup(host, lookup);
+                }
+            }));
+            if (ENTRIES.putIfAbsent(key, newEntry) == null) {
+                MISSES.incrementAndGet();
+                newEntry.lookup.run();
+                Addresses addresses = await(key, newEntry, host);
+                newEntry.addresses = addresses;
+                return addresses.addresses;
+            }
+            // Another thread added the name first, use its entry
+        }
+    }
+
+    private static Addresses await(String key, Entry entry, String host) throws UnknownHostException {
+        try {
+            return entry.lookup.get();
+        } catch (ExecutionException e) {
+            ENTRIES.remove(key, entry); // Let the next thread try again
+            Throwable cause = e.getCause();
+            if (cause instanceof UnknownHostException) {
+                throw (UnknownHostException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnknownHostException("Interrupted while resolving " + host); // $NON-NLS-1$
+        }
+    }
+
+    private static void refresh(final Entry entry, final String host, final Lookup lookup) {
+        getRefreshExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    entry.addresses = timedLookup(host, lookup);
+                    REFRESHES.incrementAndGet();
+                } catch (UnknownHostException | RuntimeException e) {
+                    // Keep the current addresses until they expire
+                    log.warn("Failed to refresh DNS cache entry " + host + ": " + e);
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            }
+        });
+    }
+
+    private static Addresses timedLookup(String host, Lookup lookup) throws UnknownHostException {
+        long start = System.nanoTime();
+        try {
+            return lookup.lookup(host);
+        } finally {
+            long time = System.nanoTime() - start;
+            LOOKUPS.incrementAndGet();
+            LOOKUP_TIME.addAndGet(time);
+            long max;
+            while (time > (max = MAX_LOOKUP_TIME.get()) && !MAX_LOOKUP_TIME.compareAndSet(max, time)) { // NOSONAR
+                // retry
+            }
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            int threads = Math.max(1, REFRESH_THREADS);
+            refreshExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "DNS cache refresh-" + threadCount.incrementAndGet()); // $NON-NLS-1$
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            refreshExecutor.allowCoreThreadTimeOut(true);
+        }
+        return refreshExecutor;
+    }
+
+    /**
+     * Remove all the names from the cache and reset the counters.
+     */
+    static void clear() {
+        ENTRIES.clear();
+        HITS.set(0);
+        MISSES.set(0);
+        REFRESHES.set(0);
+        LOOKUPS.set(0);
+        LOOKUP_TIME.set(0);
+        MAX_LOOKUP_TIME.set(0);
+    }
+
+    /**
+     * @return the number of names in the cache
+     */
+    public static int getSize() {
+        return ENTRIES.size();
+    }
+
+    /**
+     * @return the number of resolutions answered from the cache, including
+     *         those which waited for the lookup of another thread
+     */
+    public static long getHitCount() {
+        return HITS.get();
+    }
+
+    /**
+     * @return the number of resolutions which had to lookup the name
+     */
+    public static long getMissCount() {
+        return MISSES.get();
+    }
+
+    /**
+     * @return the number of names resolved again in the background before
+     *         they expired
+     */
+    public static long getRefreshCount() {
+        return REFRESHES.get();
+    }
+
+    /**
+     * @return the mean time of the lookups, in milliseconds
+     */
+    public static double getMeanLookupTime() {
+        long count = LOOKUPS.get();
+        return count == 0 ? 0 : LOOKUP_TIME.get() / (count * 1000000.0);
+    }
+
+    /**
+     * @return the longest time of a lookup, in milliseconds
+     */
+    public static double getMaxLookupTime() {
+        return MAX_LOOKUP_TIME.get() / 1000000.0;
+    }
+
+    /**
+     * @return the counters of the cache
+     */
+    static String toStatsString() {
+        return String.format(Locale.ENGLISH, "names=%d hits=%d misses=%d refreshes=%d lookup mean=%.3fms max=%.3fms", // $NON-NLS-1$
+                Integer.valueOf(getSize()), Long.valueOf(getHitCount()), Long.valueOf(getMissCount()),
+                Long.valueOf(getRefreshCount()), Double.valueOf(getMeanLookupTime()),
+                Double.valueOf(getMaxLookupTime()));
+    }
+}
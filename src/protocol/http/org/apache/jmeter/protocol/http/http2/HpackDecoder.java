@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jmeter.protocol.http.http2;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+
+/**
+ * Decodes HPACK header blocks, see RFC 7541.
+ * Not thread safe, blocks must be decoded in the order they are received.
+ */
+public final class HpackDecoder {
+
+    private final HpackTable table = new HpackTable(HpackTable.DEFAULT_MAX_SIZE);
+
+    /**
+     * @param block buffer holding the header block
+     * @param offset offset of the block in the buffer
+     * @param length length of the block
+     * @return the decoded headers, in the order of the block
+     * @throws IOException if the block is not valid
+     */
+    public List<Header> decode(byte[] block, int offset, int length) throws IOException {
+        List<Header> headers = new ArrayList<>();
+        int[] position = { offset };
+        int end = offset + length;
+        while (position[0] < end) {
+            int first = block[position[0]] & 0xFF;
+            if ((first & 0x80) != 0) {
+                // Indexed header field
+                int index = readInteger(block, position, end, 7);
+                headers.add(new BasicHeader(table.getName(index), table.getValue(index)));
+            } else if ((first & 0x40) != 0) {
+                // Literal with incremental indexing
+                Header header = readLiteral(block, position, end, 6);
+                table.add(header.getName(), header.getValue());
+                headers.add(header);
+            } else if ((first & 0x20) != 0) {
+                int size = readInteger(block, position, end, 5);
+                if (size > HpackTable.DEFAULT_MAX_SIZE) {
+                    throw new IOException("HPACK table size update above limit: " + size);
+                }
+                table.setMaxSize(size);
+            } else {
+                // Literal without indexing or never indexed
+                headers.add(readLiteral(block, position, end, 4));
+            }
+        }
+        return headers;
+    }
+
+    private Header readLiteral(byte[] block, int[] position, int end, int prefixBits) throws IOException {
+        int index = readInteger(block, position, end, prefixBits);
+        String name = index == 0 ? readString(block, position, end) : table.getName(index);
+        return new BasicHeader(name, readString(block, position, end));
+    }
+
+    /**
+     * Read an integer with an N-bit prefix, see RFC 7541 section 5.1.
+     */
+    static int readInteger(byte[] block, int[] position, int end, int prefixBits) throws IOException {
+        int max = (1 << prefixBits) - 1;
+        int value = block[position[0]++] & max;
+        if (value < max) {
+            return value;
+        }
+        int shift = 0;
+        int octet;
+        do {
+            if (position[0] >= end || shift > 21) {
+                throw new IOException("Invalid HPACK integer");
+            }
+            octet = block[position[0]++] & 0xFF;
+            value += (octet & 0x7F) << shift;
+            shift += 7;
+        } while ((octet & 0x80) != 0);
+        return value;
+    }
+
+    private static String readString(byte[] block, int[] position, int end) throws IOException {
+        if (position[0] >= end) {
+            throw new IOException("Truncated HPACK string");
+        }
+        boolean huffman = (block[position[0]] & 0x80) != 0;
+        int length = readInteger(block, position, end, 7);
+        if (length > end - position[0]) {
+            throw new IOException("Truncated HPACK string");
+        }
+        int start = position[0];
+        position[0] += length;
+        if (huffman) {
+            return new String(Huffman.decode(block, start, length), StandardCharsets.ISO_8859_1);
+        }
+        return new String(block, start, length, StandardCharsets.ISO_8859_1);
+    }
+}
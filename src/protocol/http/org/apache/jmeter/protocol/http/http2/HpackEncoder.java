@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jmeter.protocol.http.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.http.Header;
+
+/**
+ * Encodes header lists to HPACK header blocks, see RFC 7541.
+ * <p>
+ * Headers are added to the dynamic table so that repeated headers, cookies
+ * or user agent for instance, only take a few octets in the next requests.
+ * Credentials are never indexed. Strings are Huffman encoded when it makes
+ * them shorter.
+ * </p>
+ * Not thread safe, blocks must be sent in the order they are encoded.
+ */
+public final class HpackEncoder {
+
+    private final HpackTable table = new HpackTable(HpackTable.DEFAULT_MAX_SIZE);
+
+    /** Smallest size set since the last block, -1 if none */
+    private int minTableSize = -1;
+
+    private int pendingTableSize = -1;
+
+    /**
+     * Apply the SETTINGS_HEADER_TABLE_SIZE of the peer. The encoder never
+     * uses more than the default size.
+     *
+     * @param size maximum size of the dynamic table allowed by the peer
+     */
+    public void setMaxTableSize(int size) {
+        int newSize = Math.min(size, HpackTable.DEFAULT_MAX_SIZE);
+        if (newSize == table.getMaxSize() && pendingTableSize == -1) {
+            return;
+        }
+        minTableSize = minTableSize == -1 ? newSize : Math.min(minTableSize, newSize);
+        pendingTableSize = newSize;
+        table.setMaxSize(newSize);
+    }
+
+    /**
+     * @param headers headers to encode, names are converted to lower case
+     * @return the header block
+     */
+    public byte[] encode(List<Header> headers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * headers.size());
+        if (pendingTableSize != -1) {
+            // Signal the smallest size so that the peer evicts the same entries
+            if (minTableSize != pendingTableSize) {
+                writeInteger(out, 0x20, 5, minTableSize);
+            }
+            writeInteger(out, 0x20, 5, pendingTableSize);
+            minTableSize = -1;
+            pendingTableSize = -1;
+        }
+        for (Header header : headers) {
+            String name = header.getName().toLowerCase(Locale.ROOT);
+            String value = header.getValue() == null ? "" : header.getValue();
+            int index = table.find(name, value);
+            if (index > 0) {
+                writeInteger(out, 0x80, 7, index);
+            } else if (isSensitive(name)) {
+                // Literal never indexed
+                writeInteger(out, 0x10, 4, -index);
+                if (index == 0) {
+                    writeString(out, name);
+                }
+                writeString(out, value);
+            } else if (HpackTable.entrySize(name, value) > table.getMaxSize() / 2) {
+                // Literal without indexing, would evict too many entries
+                writeInteger(out, 0x00, 4, -index);
+                if (index == 0) {
+                    writeString(out, name);
+                }
+                writeString(out, value);
+            } else {
+                // Literal with incremental indexing
+                writeInteger(out, 0x40, 6, -index);
+                if (index == 0) {
+                    writeString(out, name);
+                }
+                writeString(out, value);
+                table.add(name, value);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isSensitive(String name) {
+        return "authorization".equals(name) || "proxy-authorization".equals(name); // $NON-NLS-1$ $NON-NLS-2$
+    }
+
+    /**
+     * Write an integer with an N-bit prefix, see RFC 7541 section 5.1.
+     */
+    static void writeInteger(ByteArrayOutputStream out, int flags, int prefixBits, int value) {
+        int max = (1 << prefixBits) - 1;
+        if (value < max) {
+            out.write(flags | value);
+            return;
+        }
+        out.write(flags | max);
+        int remaining = value - max;
+        while (remaining >= 0x80) {
+            out.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] octets = value.getBytes(StandardCharsets.ISO_8859_1);
+        int huffmanLength = Huffman.encodedLength(octets);
+        if (huffmanLength < octets.length) {
+            writeInteger(out, 0x80, 7, huffmanLength);
+            Huffman.encode(octets, out);
+        } else {
+            writeInteger(out, 0x00, 7, octets.length);
+            out.write(octets, 0, octets.length);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jmeter.protocol.http.http2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HPACK indexing table: the static table followed by a dynamic table, see
+ * RFC 7541 section 2.3. Not thread safe.
+ */
+final class HpackTable {
+
+    /** Size of the dynamic table if not changed by SETTINGS_HEADER_TABLE_SIZE */
+    static final int DEFAULT_MAX_SIZE = 4096;
+
+    /** Overhead of each entry added to the lengths of its name and value */
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private static final String[][] STATIC_TABLE = {
+        { ":authority", "" },
+        { ":method", "GET" },
+        { ":method", "POST" },
+        { ":path", "/" },
+        { ":path", "/index.html" },
+        { ":scheme", "http" },
+        { ":scheme", "https" },
+        { ":status", "200" },
+        { ":status", "204" },
+        { ":status", "206" },
+        { ":status", "304" },
+        { ":status", "400" },
+        { ":status", "404" },
+        { ":status", "500" },
+        { "accept-charset", "" },
+        { "accept-encoding", "gzip, deflate" },
+        { "accept-language", "" },
+        { "accept-ranges", "" },
+        { "accept", "" },
+        { "access-control-allow-origin", "" },
+        { "age", "" },
+        { "allow", "" },
+        { "authorization", "" },
+        { "cache-control", "" },
+        { "content-disposition", "" },
+        { "content-encoding", "" },
+        { "content-language", "" },
+        { "content-length", "" },
+        { "content-location", "" },
+        { "content-range", "" },
+        { "content-type", "" },
+        { "cookie", "" },
+        { "date", "" },
+        { "etag", "" },
+        { "expect", "" },
+        { "expires", "" },
+        { "from", "" },
+        { "host", "" },
+        { "if-match", "" },
+        { "if-modified-since", "" },
+        { "if-none-match", "" },
+        { "if-range", "" },
+        { "if-unmodified-since", "" },
+        { "last-modified", "" },
+        { "link", "" },
+        { "location", "" },
+        { "max-forwards", "" },
+        { "proxy-authenticate", "" },
+        { "proxy-authorization", "" },
+        { "range", "" },
+        { "referer", "" },
+        { "refresh", "" },
+        { "retry-after", "" },
+        { "server", "" },
+        { "set-cookie", "" },
+        { "strict-transport-security", "" },
+        { "transfer-encoding", "" },
+        { "user-agent", "" },
+        { "vary", "" },
+        { "via", "" },
+        { "www-authenticate", "" }
+    };
+
+    /** Index of name and value in the static table */
+    private static final Map<String, Integer> STATIC_ENTRIES = new HashMap<>();
+
+    /** Lowest index of each name in the static table */
+    private static final Map<String, Integer> STATIC_NAMES = new HashMap<>();
+
+    static {
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            STATIC_ENTRIES.put(key(STATIC_TABLE[i][0], STATIC_TABLE[i][1]), Integer.valueOf(i + 1));
+            STATIC_NAMES.put(STATIC_TABLE[i][0], Integer.valueOf(i + 1));
+        }
+    }
+
+    /** Dynamic entries, the newest last */
+    private final List<String[]> entries = new ArrayList<>();
+
+    private int size;
+
+    private int maxSize;
+
+    HpackTable(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    private static String key(String name, String value) {
+        return name + '\n' + value;
+    }
+
+    private String[] get(int index) throws IOException {
+        if (index > 0 && index <= STATIC_TABLE.length) {
+            return STATIC_TABLE[index - 1];
+        }
+        int dynamicIndex = index - STATIC_TABLE.length;
+        if (index <= 0 || dynamicIndex > entries.size()) {
+            throw new IOException("Invalid HPACK index: " + index);
+        }
+        return entries.get(entries.size() - dynamicIndex);
+    }
+
+    String getName(int index) throws IOException {
+        return get(index)[0];
+    }
+
+    String getValue(int index) throws IOException {
+        return get(index)[1];
+    }
+
+    /**
+     * @param name lower case name
+     * @param value value
+     * @return the index of the entry if the table holds the name and value,
+     *         minus the index of the name if it only holds the name, else 0
+     */
+    int find(String name, String value) {
+        Integer index = STATIC_ENTRIES.get(key(name, value));
+        if (index != null) {
+            return index.intValue();
+        }
+        int nameIndex = 0;
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            String[] entry = entries.get(i);
+            if (entry[0].equals(name)) {
+                int entryIndex = STATIC_TABLE.length + entries.size() - i;
+                if (entry[1].equals(value)) {
+                    return entryIndex;
+                }
+                if (nameIndex == 0) {
+                    nameIndex = entryIndex;
+                }
+            }
+        }
+        Integer staticName = STATIC_NAMES.get(name);
+        if (staticName != null) {
+            return -staticName.intValue();
+        }
+        return -nameIndex;
+    }
+
+    /**
+     * Add an entry to the dynamic table, evicting the oldest ones to make
+     * room for it. An entry larger than the table empties it.
+     *
+     * @param name name of the entry
+     * @param value value of the entry
+     */
+    void add(String name, String value) {
+        int entrySize = entrySize(name, value);
+        evict(maxSize - entrySize);
+        if (entrySize <= maxSize) {
+            entries.add(new String[] { name, value });
+            size += entrySize;
+        }
+    }
+
+    static int entrySize(String name, String value) {
+        return name.length() + value.length() + ENTRY_OVERHEAD;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        evict(maxSize);
+    }
+
+    private void evict(int targetSize) {
+        while (size > targetSize && !entries.isEmpty()) {
+            String[] entry = entries.remove(0);
+            size -= entrySize(entry[0], entry[1]);
+        }
+    }
+}
@@ -0,0 +1,1122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jmeter.protocol.http.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLEngineResult.Status;
+import javax.net.ssl.SSLParameters;
+
+import org.apache.http.Header;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Client side of an HTTP/2 connection, see RFC 7540.
+ * <p>
+ * Several requests can be sent at the same time by several threads: each one
+ * is sent on its own {@link Http2Stream} and the frames of the responses are
+ * demultiplexed by one of the {@link Http2Selector} threads shared by all the
+ * connections. The channel is non-blocking once the connection is created:
+ * frames are written by the sending thread as long as the socket accepts
+ * them, the rest by the selector thread. TLS is done with an {@link SSLEngine},
+ * which must negotiate "h2" with ALPN.
+ * </p>
+ * <p>
+ * Server push is disabled. Priorities are not used.
+ * </p>
+ */
+public final class Http2Connection implements Closeable {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final byte[] PREFACE =
+            "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII); // $NON-NLS-1$
+
+    private static final String H2 = "h2"; // $NON-NLS-1$
+
+    private static final byte[] EMPTY = new byte[0];
+
+    // Frame types
+    private static final int DATA = 0x0;
+    private static final int HEADERS = 0x1;
+    private static final int RST_STREAM = 0x3;
+    private static final int SETTINGS = 0x4;
+    private static final int PUSH_PROMISE = 0x5;
+    private static final int PING = 0x6;
+    private static final int GOAWAY = 0x7;
+    private static final int WINDOW_UPDATE = 0x8;
+    private static final int CONTINUATION = 0x9;
+
+    // Frame flags
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    // Settings
+    private static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    private static final int SETTINGS_ENABLE_PUSH = 0x2;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+
+    // Error codes
+    private static final int NO_ERROR = 0x0;
+    private static final int PROTOCOL_ERROR = 0x1;
+    private static final int CANCEL = 0x8;
+
+    private static final int FRAME_HEADER_LENGTH = 9;
+
+    private static final int DEFAULT_WINDOW_SIZE = 65535;
+
+    private static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+
+    private static final int MAX_FRAME_SIZE_LIMIT = (1 << 24) - 1;
+
+    /** Flow control window of each stream advertised to the server */
+    private static final int STREAM_WINDOW_SIZE = 1 << 20;
+
+    /** Flow control window of the connection advertised to the server */
+    private static final int CONNECTION_WINDOW_SIZE = 1 << 24;
+
+    /** Output not yet written above which the senders of request bodies wait */
+    private static final int MAX_PENDING_OUTPUT = 1 << 18;
+
+    // ALPN methods, only available since Java 8u252
+    private static final Method SET_APPLICATION_PROTOCOLS;
+    private static final Method GET_APPLICATION_PROTOCOL;
+
+    static {
+        Method setApplicationProtocols = null;
+        Method getApplicationProtocol = null;
+        try {
+            setApplicationProtocols = SSLParameters.class.getMethod("setApplicationProtocols", String[].class); // $NON-NLS-1$
+            getApplicationProtocol = SSLEngine.class.getMethod("getApplicationProtocol"); // $NON-NLS-1$
+        } catch (NoSuchMethodException e) {
+            log.info("ALPN is not supported by this JVM, HTTP/2 can only be used with http");
+        }
+        SET_APPLICATION_PROTOCOLS = setApplicationProtocols;
+        GET_APPLICATION_PROTOCOL = getApplicationProtocol;
+    }
+
+    private final SocketChannel channel;
+
+    /** null for h2c */
+    private final SSLEngine engine;
+
+    private final String name;
+
+    private final Http2Selector selector;
+
+    /** Set by the selector thread once the channel is registered */
+    private volatile SelectionKey key;
+
+    // Only used by the selector thread once the connection is created
+    /** Decrypted input, in write mode */
+    private ByteBuffer in;
+
+    /** Encrypted input, in write mode */
+    private ByteBuffer netIn;
+
+    private final HpackDecoder decoder = new HpackDecoder();
+
+    /** Header block being received in HEADERS and CONTINUATION frames */
+    private ByteArrayOutputStream headerBlock;
+
+    private int headerStreamId;
+
+    private boolean headerEndStream;
+
+    /** Lock ordering: writeLock, then this */
+    private final Object writeLock = new Object();
+
+    // Guarded by writeLock
+    private final HpackEncoder encoder = new HpackEncoder();
+
+    /** Frames not yet written, in write mode */
+    private ByteBuffer out;
+
+    /** Encrypted frames not yet written, in read mode */
+    private ByteBuffer netOut;
+
+    /** The selector thread writes the output once the channel is writable */
+    private boolean writeRequested;
+
+    private final Runnable enableWrite = new Runnable() {
+        @Override
+        public void run() {
+            SelectionKey selectionKey = key;
+            if (selectionKey != null && selectionKey.isValid()) {
+                selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    };
+
+    /** Streams waiting for a response or receiving it */
+    private final Map<Integer, Http2Stream> streams = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private int nextStreamId = 1;
+
+    /** Open streams and streams being opened */
+    private int activeStreams;
+
+    private long sendWindow = DEFAULT_WINDOW_SIZE;
+
+    private int initialSendWindow = DEFAULT_WINDOW_SIZE;
+
+    private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+
+    private long maxConcurrentStreams = Integer.MAX_VALUE;
+
+    private int unacknowledgedBytes;
+
+    private boolean goingAway;
+
+    private IOException failure;
+
+    /**
+     * Do the TLS handshake if needed, send the connection preface and hand
+     * the channel over to a selector thread.
+     *
+     * @param channel connected channel, in blocking mode
+     * @param engine client engine for https, null for h2c
+     * @param name name of the connection, used in logs
+     * @param timeout timeout in milliseconds of the TLS handshake, 0 for none
+     * @throws IOException if the handshake fails, if "h2" is not negotiated
+     *             or if the preface cannot be sent
+     */
+    public Http2Connection(SocketChannel channel, SSLEngine engine, String name, int timeout) throws IOException {
+        this.channel = channel;
+        this.engine = engine;
+        this.name = name;
+        int bufferSize = 2 * (FRAME_HEADER_LENGTH + DEFAULT_MAX_FRAME_SIZE);
+        if (engine != null) {
+            setApplicationProtocols(engine);
+            int packetSize = engine.getSession().getPacketBufferSize();
+            bufferSize = Math.max(bufferSize,
+                    engine.getSession().getApplicationBufferSize() + FRAME_HEADER_LENGTH + DEFAULT_MAX_FRAME_SIZE);
+            netIn = ByteBuffer.allocate(packetSize);
+            netOut = ByteBuffer.allocate(packetSize);
+            netOut.flip();
+        }
+        in = ByteBuffer.allocate(bufferSize);
+        out = ByteBuffer.allocate(bufferSize);
+        if (engine != null) {
+            handshake(timeout);
+        }
+        ByteArrayOutputStream settings = new ByteArrayOutputStream(12);
+        writeSetting(settings, SETTINGS_ENABLE_PUSH, 0);
+        writeSetting(settings, SETTINGS_INITIAL_WINDOW_SIZE, STREAM_WINDOW_SIZE);
+        synchronized (writeLock) {
+            ensureOutput(PREFACE.length);
+            out.put(PREFACE);
+            writeFrame(SETTINGS, 0, 0, settings.toByteArray());
+            writeFrame(WINDOW_UPDATE, 0, 0, intToBytes(CONNECTION_WINDOW_SIZE - DEFAULT_WINDOW_SIZE));
+            drain(); // blocking, so all is written
+        }
+        channel.configureBlocking(false);
+        selector = Http2Selector.next();
+        selector.execute(new Runnable() {
+            @Override
+            public void run() {
+                onRegistered();
+            }
+        });
+    }
+
+    /**
+     * @return true if the JVM can negotiate HTTP/2 over TLS
+     */
+    public static boolean isAlpnSupported() {
+        return SET_APPLICATION_PROTOCOLS != null;
+    }
+
+    private static void setApplicationProtocols(SSLEngine engine) throws IOException {
+        if (!isAlpnSupported()) {
+            throw new IOException("ALPN is not supported by this JVM, it is required by HTTP/2 over TLS");
+        }
+        SSLParameters parameters = engine.getSSLParameters();
+        try {
+            SET_APPLICATION_PROTOCOLS.invoke(parameters, (Object) new String[] { H2 });
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IOException("Could not negotiate HTTP/2 with ALPN", e);
+        }
+        engine.setSSLParameters(parameters);
+    }
+
+    private void handshake(int timeout) throws IOException {
+        channel.socket().setSoTimeout(timeout);
+        // Reads of the socket stream, unlike those of the channel, time out
+        InputStream input = channel.socket().getInputStream();
+        engine.beginHandshake();
+        HandshakeStatus status;
+        while ((status = engine.getHandshakeStatus()) != HandshakeStatus.NOT_HANDSHAKING) {
+            switch (status) {
+            case NEED_TASK:
+                runDelegatedTasks();
+                break;
+            case NEED_WRAP:
+                synchronized (writeLock) {
+                    drain();
+                }
+                break;
+            default:
+                netIn.flip();
+                SSLEngineResult result;
+                try {
+                    result = engine.unwrap(netIn, in);
+                } finally {
+                    netIn.compact();
+                }
+                if (result.getStatus() == Status.CLOSED) {
+                    throw new EOFException("Connection " + name + " closed during TLS handshake");
+                } else if (result.getStatus() == Status.BUFFER_OVERFLOW) {
+                    in = grow(in, in.position() + engine.getSession().getApplicationBufferSize());
+                } else if (result.getStatus() == Status.BUFFER_UNDERFLOW) {
+                    if (!netIn.hasRemaining()) {
+                        netIn = grow(netIn, netIn.capacity() + engine.getSession().getPacketBufferSize());
+                    }
+                    int count = input.read(netIn.array(), netIn.arrayOffset() + netIn.position(), netIn.remaining());
+                    if (count < 0) {
+                        throw new EOFException("Connection " + name + " closed during TLS handshake");
+                    }
+                    netIn.position(netIn.position() + count);
+                }
+                break;
+            }
+        }
+        channel.socket().setSoTimeout(0);
+        String protocol;
+        try {
+            protocol = (String) GET_APPLICATION_PROTOCOL.invoke(engine);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IOException("Could not negotiate HTTP/2 with ALPN", e);
+        }
+        if (!H2.equals(protocol)) {
+            throw new IOException("Server " + name + " did not negotiate HTTP/2 with ALPN");
+        }
+    }
+
+    private void runDelegatedTasks() {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * @return true if new streams can be opened on the connection
+     */
+    public synchronized boolean isUsable() {
+        return failure == null && !goingAway && nextStreamId > 0;
+    }
+
+    /**
+     * @return the number of streams which are open or being opened
+     */
+    public synchronized int getActiveStreams() {
+        return activeStreams;
+    }
+
+    /**
+     * Open a stream and send the request on it. Waits for the server to
+     * accept a new stream if it limits their number, and for flow control
+     * credit to send the body.
+     *
+     * @param headers request headers, pseudo headers first
+     * @param body request body, may be null
+     * @param timeout timeout in milliseconds to wait for the server, 0 for none
+     * @return the stream to read the response from
+     * @throws IOException if the connection fails or the timeout expires
+     */
+    public Http2Stream newStream(List<Header> headers, byte[] body, int timeout) throws IOException {
+        boolean hasBody = body != null && body.length > 0;
+        synchronized (this) {
+            long deadline = deadline(timeout);
+            while (failure == null && !goingAway && activeStreams >= maxConcurrentStreams) {
+                await(this, deadline);
+            }
+            checkUsable();
+            activeStreams++;
+        }
+        Http2Stream stream = null;
+        try {
+            synchronized (writeLock) {
+                synchronized (this) {
+                    checkUsable();
+                    stream = new Http2Stream(this, nextStreamId, initialSendWindow, timeout);
+                    nextStreamId += 2;
+                    streams.put(Integer.valueOf(stream.getId()), stream);
+                }
+                byte[] block = encoder.encode(headers);
+                int frameSize = getMaxFrameSize();
+                int offset = 0;
+                int type = HEADERS;
+                do {
+                    int length = Math.min(frameSize, block.length - offset);
+                    int flags = offset + length == block.length ? FLAG_END_HEADERS : 0;
+                    if (type == HEADERS && !hasBody) {
+                        flags |= FLAG_END_STREAM;
+                    }
+                    writeFrame(type, flags, stream.getId(), block, offset, length);
+                    offset += length;
+                    type = CONTINUATION;
+                } while (offset < block.length);
+                flush();
+            }
+        } catch (IOException e) {
+            if (stream == null) {
+                streamClosed();
+            } else {
+                fail(e);
+            }
+            throw e;
+        }
+        if (hasBody) {
+            writeData(stream, body, timeout);
+        }
+        return stream;
+    }
+
+    private void writeData(Http2Stream stream, byte[] body, int timeout) throws IOException {
+        int offset = 0;
+        while (offset < body.length) {
+            int length;
+            synchronized (this) {
+                long deadline = deadline(timeout);
+                while (failure == null && !stream.isDone() && (sendWindow <= 0 || stream.sendWindow <= 0)) {
+                    await(this, deadline);
+                }
+                checkFailure();
+                if (stream.isDone()) {
+                    // The server answered without waiting for the whole body
+                    break;
+                }
+                length = (int) Math.min(Math.min(body.length - offset, maxFrameSize),
+                        Math.min(sendWindow, stream.sendWindow));
+                sendWindow -= length;
+                stream.sendWindow -= length;
+            }
+            int flags = offset + length == body.length ? FLAG_END_STREAM : 0;
+            try {
+                synchronized (writeLock) {
+                    writeFrame(DATA, flags, stream.getId(), body, offset, length);
+                    flush();
+                    long deadline = deadline(timeout);
+                    while (pendingOutput() > MAX_PENDING_OUTPUT && !isFailed()) {
+                        await(writeLock, deadline);
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+                throw e;
+            }
+            offset += length;
+        }
+        if (offset < body.length) {
+            writeReset(stream.getId(), CANCEL);
+        }
+    }
+
+    /**
+     * Called as the data of a stream is read to send the flow control
+     * credit back to the server.
+     *
+     * @param stream stream whose data has been read, null for data of closed streams
+     * @param count number of octets read
+     */
+    void consumed(Http2Stream stream, int count) {
+        int connectionIncrement = 0;
+        int streamIncrement = 0;
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            unacknowledgedBytes += count;
+            if (unacknowledgedBytes >= CONNECTION_WINDOW_SIZE / 2) {
+                connectionIncrement = unacknowledgedBytes;
+                unacknowledgedBytes = 0;
+            }
+            if (stream != null && !stream.isDone()) {
+                stream.unacknowledgedBytes += count;
+                if (stream.unacknowledgedBytes >= STREAM_WINDOW_SIZE / 2) {
+                    streamIncrement = stream.unacknowledgedBytes;
+                    stream.unacknowledgedBytes = 0;
+                }
+            }
+        }
+        if (connectionIncrement > 0 || streamIncrement > 0) {
+            try {
+                synchronized (writeLock) {
+                    if (connectionIncrement > 0) {
+                        writeFrame(WINDOW_UPDATE, 0, 0, intToBytes(connectionIncrement));
+                    }
+                    if (streamIncrement > 0) {
+                        writeFrame(WINDOW_UPDATE, 0, stream.getId(), intToBytes(streamIncrement));
+                    }
+                    flush();
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Reset the stream if it is still open, and send back the flow control
+     * credit of the data it received which will not be read.
+     *
+     * @param stream the stream to cancel
+     */
+    void cancel(Http2Stream stream) {
+        if (streams.remove(Integer.valueOf(stream.getId())) != null) {
+            streamClosed();
+            stream.onError(new IOException("Stream " + stream.getId() + " cancelled"));
+            writeReset(stream.getId(), CANCEL);
+        }
+        // Else the connection window would shrink for good, until the server can no longer send any data
+        int unread = stream.discard();
+        if (unread > 0) {
+            consumed(null, unread);
+        }
+    }
+
+    private void writeReset(int streamId, int errorCode) {
+        try {
+            synchronized (writeLock) {
+                writeFrame(RST_STREAM, 0, streamId, intToBytes(errorCode));
+                flush();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private synchronized void streamClosed() {
+        activeStreams--;
+        if (goingAway && activeStreams == 0) {
+            closeChannel();
+        }
+        notifyAll();
+    }
+
+    private synchronized int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    private synchronized boolean isFailed() {
+        return failure != null;
+    }
+
+    private void checkUsable() throws IOException {
+        checkFailure();
+        if (goingAway) {
+            throw new IOException("Connection " + name + " is going away");
+        }
+        if (nextStreamId < 0) {
+            throw new IOException("Connection " + name + " has no more stream identifiers");
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException(failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Close the connection, streams still open fail.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+        }
+        try {
+            synchronized (writeLock) {
+                byte[] payload = new byte[8];
+                System.arraycopy(intToBytes(NO_ERROR), 0, payload, 4, 4);
+                writeFrame(GOAWAY, 0, 0, payload);
+                flush();
+            }
+        } catch (IOException e) { // NOSONAR Connection is closed anyway
+            log.debug("Could not send GOAWAY on " + name + ": " + e);
+        }
+        fail(new IOException("Connection " + name + " closed"));
+    }
+
+    /**
+     * Mark the connection as failed, fail its streams and close the channel.
+     */
+    private void fail(IOException e) {
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            failure = e;
+            notifyAll();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Connection " + name + " failed: " + e);
+        }
+        for (Http2Stream stream : streams.values()) {
+            stream.onError(e);
+        }
+        streams.clear();
+        synchronized (writeLock) {
+            writeLock.notifyAll();
+        }
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        JOrphanUtils.closeQuietly(channel);
+        if (selector != null) {
+            // The socket is only closed once the selector releases the channel
+            selector.wakeup();
+        }
+    }
+
+    private void onRegistered() {
+        try {
+            key = selector.register(channel, this);
+            readInput(); // what came with the end of the TLS handshake
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Called by the selector thread when the channel is ready.
+     *
+     * @param selectionKey key of the channel
+     */
+    void onSelected(SelectionKey selectionKey) {
+        try {
+            if (selectionKey.isReadable()) {
+                if (engine != null && !netIn.hasRemaining()) {
+                    netIn = grow(netIn, netIn.capacity() + engine.getSession().getPacketBufferSize());
+                }
+                if (channel.read(engine == null ? in : netIn) < 0) {
+                    throw new EOFException("Connection " + name + " closed by server");
+                }
+                readInput();
+            }
+            if (selectionKey.isValid() && selectionKey.isWritable()) {
+                synchronized (writeLock) {
+                    if (drain()) {
+                        writeRequested = false;
+                        selectionKey.interestOps(SelectionKey.OP_READ);
+                    }
+                    writeLock.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (CancelledKeyException e) {
+            fail(new IOException("Connection " + name + " closed", e));
+        } catch (RuntimeException e) {
+            log.warn("Unexpected error reading connection " + name, e);
+            fail(new IOException(e.getMessage(), e));
+        }
+    }
+
+    private void readInput() throws IOException {
+        if (engine == null) {
+            readFrames();
+            return;
+        }
+        netIn.flip();
+        try {
+            while (netIn.hasRemaining()) {
+                SSLEngineResult result = engine.unwrap(netIn, in);
+                if (result.getStatus() == Status.CLOSED) {
+                    throw new EOFException("Connection " + name + " closed by server");
+                } else if (result.getStatus() == Status.BUFFER_UNDERFLOW) {
+                    break;
+                } else if (result.getStatus() == Status.BUFFER_OVERFLOW) {
+                    readFrames();
+                    int applicationBufferSize = engine.getSession().getApplicationBufferSize();
+                    if (in.remaining() < applicationBufferSize) {
+                        in = grow(in, in.position() + applicationBufferSize);
+                    }
+                    continue;
+                }
+                readFrames();
+                HandshakeStatus status = result.getHandshakeStatus();
+                if (status == HandshakeStatus.NEED_TASK) {
+                    runDelegatedTasks();
+                } else if (status == HandshakeStatus.NEED_WRAP) {
+                    synchronized (writeLock) {
+                        flush();
+                    }
+                } else if (result.bytesConsumed() == 0) {
+                    break;
+                }
+            }
+        } finally {
+            netIn.compact();
+        }
+    }
+
+    /**
+     * Handle the complete frames of the input.
+     */
+    private void readFrames() throws IOException {
+        in.flip();
+        try {
+            while (in.remaining() >= FRAME_HEADER_LENGTH) {
+                int start = in.position();
+                int length = ((in.get(start) & 0xFF) << 16) | ((in.get(start + 1) & 0xFF) << 8)
+                        | (in.get(start + 2) & 0xFF);
+                if (length > DEFAULT_MAX_FRAME_SIZE) {
+                    throw protocolError("Frame larger than SETTINGS_MAX_FRAME_SIZE: " + length);
+                }
+                if (in.remaining() < FRAME_HEADER_LENGTH + length) {
+                    break;
+                }
+                int type = in.get(start + 3) & 0xFF;
+                int flags = in.get(start + 4) & 0xFF;
+                int streamId = in.getInt(start + 5) & 0x7FFFFFFF;
+                byte[] payload = new byte[length];
+                in.position(start + FRAME_HEADER_LENGTH);
+                in.get(payload);
+                onFrame(type, flags, streamId, payload);
+            }
+        } finally {
+            in.compact();
+        }
+    }
+
+    private void onFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+        int length = payload.length;
+        if (headerBlock != null && (type != CONTINUATION || streamId != headerStreamId)) {
+            throw protocolError("Expected CONTINUATION frame for stream " + headerStreamId);
+        }
+        switch (type) {
+        case DATA:
+            onData(streamId, flags, payload);
+            break;
+        case HEADERS:
+            int offset = 0;
+            int end = length;
+            if ((flags & FLAG_PADDED) != 0) {
+                offset = 1;
+                end -= length > 0 ? payload[0] & 0xFF : 0;
+            }
+            if ((flags & FLAG_PRIORITY) != 0) {
+                offset += 5;
+            }
+            if (end < offset) {
+                throw protocolError("Invalid HEADERS frame");
+            }
+            headerBlock = new ByteArrayOutputStream(end - offset);
+            headerBlock.write(payload, offset, end - offset);
+            headerStreamId = streamId;
+            headerEndStream = (flags & FLAG_END_STREAM) != 0;
+            if ((flags & FLAG_END_HEADERS) != 0) {
+                onHeaders(headerStreamId, headerBlock.toByteArray(), headerEndStream);
+                headerBlock = null;
+            }
+            break;
+        case CONTINUATION:
+            if (headerBlock == null) {
+                throw protocolError("Unexpected CONTINUATION frame");
+            }
+            headerBlock.write(payload, 0, length);
+            if ((flags & FLAG_END_HEADERS) != 0) {
+                onHeaders(headerStreamId, headerBlock.toByteArray(), headerEndStream);
+                headerBlock = null;
+            }
+            break;
+        case RST_STREAM:
+            onReset(streamId, bytesToInt(payload, 0));
+            break;
+        case SETTINGS:
+            if ((flags & FLAG_ACK) == 0) {
+                onSettings(payload);
+            }
+            break;
+        case PUSH_PROMISE:
+            throw protocolError("Unexpected PUSH_PROMISE, push is disabled");
+        case PING:
+            if ((flags & FLAG_ACK) == 0) {
+                synchronized (writeLock) {
+                    writeFrame(PING, FLAG_ACK, 0, payload);
+                    flush();
+                }
+            }
+            break;
+        case GOAWAY:
+            onGoAway(bytesToInt(payload, 0) & 0x7FFFFFFF, bytesToInt(payload, 4));
+            break;
+        case WINDOW_UPDATE:
+            onWindowUpdate(streamId, bytesToInt(payload, 0) & 0x7FFFFFFF);
+            break;
+        default:
+            // PRIORITY and unknown frames are ignored
+            break;
+        }
+    }
+
+    private void onData(int streamId, int flags, byte[] payload) throws IOException {
+        int offset = 0;
+        int end = payload.length;
+        if ((flags & FLAG_PADDED) != 0) {
+            offset = 1;
+            end -= payload.length > 0 ? payload[0] & 0xFF : 0;
+            if (end < offset) {
+                throw protocolError("Invalid DATA frame");
+            }
+        }
+        Http2Stream stream = streams.get(Integer.valueOf(streamId));
+        if (stream == null) {
+            // Cancelled stream, only the connection window matters
+            consumed(null, payload.length);
+            return;
+        }
+        if (!stream.onData(offset == 0 && end == payload.length ? payload : Arrays.copyOfRange(payload, offset, end),
+                (flags & FLAG_END_STREAM) != 0)) {
+            // Discarded while being cancelled
+            consumed(null, payload.length);
+        } else if (end - offset < payload.length) {
+            consumed(stream, payload.length - (end - offset));
+        }
+        if ((flags & FLAG_END_STREAM) != 0) {
+            endStream(stream);
+        }
+    }
+
+    private void onHeaders(int streamId, byte[] block, boolean endStream) throws IOException {
+        // Always decode to keep the HPACK table in sync
+        List<Header> fields = decoder.decode(block, 0, block.length);
+        Http2Stream stream = streams.get(Integer.valueOf(streamId));
+        if (stream != null) {
+            stream.onHeaders(fields, block.length, endStream);
+            if (endStream) {
+                endStream(stream);
+            }
+        }
+    }
+
+    private void endStream(Http2Stream stream) {
+        if (streams.remove(Integer.valueOf(stream.getId())) != null) {
+            streamClosed();
+        }
+    }
+
+    private void onReset(int streamId, int errorCode) {
+        Http2Stream stream = streams.remove(Integer.valueOf(streamId));
+        if (stream != null) {
+            stream.onError(new IOException("Stream " + streamId + " reset by server, error code " + errorCode));
+            streamClosed();
+        }
+    }
+
+    private void onSettings(byte[] payload) throws IOException {
+        int headerTableSize = -1;
+        String error = null;
+        synchronized (this) {
+            settings:
+            for (int i = 0; i + 6 <= payload.length; i += 6) {
+                int id = ((payload[i] & 0xFF) << 8) | (payload[i + 1] & 0xFF);
+                long value = bytesToInt(payload, i + 2) & 0xFFFFFFFFL;
+                switch (id) {
+                case SETTINGS_HEADER_TABLE_SIZE:
+                    headerTableSize = (int) Math.min(value, Integer.MAX_VALUE);
+                    break;
+                case SETTINGS_MAX_CONCURRENT_STREAMS:
+                    maxConcurrentStreams = value;
+                    break;
+                case SETTINGS_INITIAL_WINDOW_SIZE:
+                    if (value > Integer.MAX_VALUE) {
+                        error = "Invalid SETTINGS_INITIAL_WINDOW_SIZE: " + value;
+                        break settings;
+                    }
+                    int delta = (int) value - initialSendWindow;
+                    for (Http2Stream stream : streams.values()) {
+                        stream.sendWindow += delta;
+                    }
+                    initialSendWindow = (int) value;
+                    break;
+                case SETTINGS_MAX_FRAME_SIZE:
+                    if (value < DEFAULT_MAX_FRAME_SIZE || value > MAX_FRAME_SIZE_LIMIT) {
+                        error = "Invalid SETTINGS_MAX_FRAME_SIZE: " + value;
+                        break settings;
+                    }
+                    maxFrameSize = (int) value;
+                    break;
+                default:
+                    // Other settings do not apply to a client
+                    break;
+                }
+            }
+            notifyAll();
+        }
+        if (error != null) {
+            // Outside of this, as the GOAWAY is sent with writeLock, which is taken first
+            throw protocolError(error);
+        }
+        synchronized (writeLock) {
+            if (headerTableSize != -1) {
+                encoder.setMaxTableSize(headerTableSize);
+            }
+            writeFrame(SETTINGS, FLAG_ACK, 0, EMPTY);
+            flush();
+        }
+    }
+
+    private void onGoAway(int lastStreamId, int errorCode) {
+        if (log.isDebugEnabled()) {
+            log.debug("Connection " + name + " going away, last stream " + lastStreamId + ", error code " + errorCode);
+        }
+        List<Http2Stream> refused = new ArrayList<>();
+        synchronized (this) {
+            goingAway = true;
+            notifyAll();
+        }
+        for (Http2Stream stream : streams.values()) {
+            if (stream.getId() > lastStreamId) {
+                refused.add(stream);
+            }
+        }
+        for (Http2Stream stream : refused) {
+            if (streams.remove(Integer.valueOf(stream.getId())) != null) {
+                stream.onError(new IOException("Stream " + stream.getId() + " refused by GOAWAY, error code "
+                        + errorCode));
+                streamClosed();
+            }
+        }
+        synchronized (this) {
+            if (activeStreams == 0) {
+                closeChannel();
+            }
+        }
+    }
+
+    private synchronized void onWindowUpdate(int streamId, int increment) {
+        if (streamId == 0) {
+            sendWindow += increment;
+        } else {
+            Http2Stream stream = streams.get(Integer.valueOf(streamId));
+            if (stream != null) {
+                stream.sendWindow += increment;
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Send a GOAWAY and build the exception which fails the connection.
+     * Takes writeLock, so must not be called while holding this.
+     */
+    private IOException protocolError(String message) {
+        try {
+            synchronized (writeLock) {
+                // Last stream id is 0 as push is disabled
+                byte[] payload = new byte[8];
+                System.arraycopy(intToBytes(PROTOCOL_ERROR), 0, payload, 4, 4);
+                writeFrame(GOAWAY, 0, 0, payload);
+                flush();
+            }
+        } catch (IOException e) { // NOSONAR The protocol error is reported
+            log.debug("Could not send GOAWAY on " + name + ": " + e);
+        }
+        return new IOException("HTTP/2 protocol error on " + name + ": " + message);
+    }
+
+    /** Must be called with writeLock held */
+    private void writeFrame(int type, int flags, int streamId, byte[] payload) {
+        writeFrame(type, flags, streamId, payload, 0, payload.length);
+    }
+
+    /** Must be called with writeLock held */
+    private void writeFrame(int type, int flags, int streamId, byte[] payload, int offset, int length) {
+        ensureOutput(FRAME_HEADER_LENGTH + length);
+        out.put((byte) (length >>> 16));
+        out.put((byte) (length >>> 8));
+        out.put((byte) length);
+        out.put((byte) type);
+        out.put((byte) flags);
+        out.putInt(streamId);
+        out.put(payload, offset, length);
+    }
+
+    /** Must be called with writeLock held */
+    private void ensureOutput(int length) {
+        if (out.remaining() < length) {
+            out = grow(out, out.position() + length);
+        }
+    }
+
+    /** Must be called with writeLock held */
+    private int pendingOutput() {
+        return out.position() + (netOut == null ? 0 : netOut.remaining());
+    }
+
+    /**
+     * Write the output the socket accepts, the selector thread writes the
+     * rest. Must be called with writeLock held.
+     */
+    private void flush() throws IOException {
+        if (!writeRequested && !drain()) {
+            writeRequested = true;
+            selector.execute(enableWrite);
+        }
+    }
+
+    /**
+     * Write the output the socket accepts. Must be called with writeLock held.
+     *
+     * @return true if all the output has been written
+     */
+    private boolean drain() throws IOException {
+        if (engine == null) {
+            out.flip();
+            try {
+                channel.write(out);
+            } finally {
+                out.compact();
+            }
+            return out.position() == 0;
+        }
+        while (true) {
+            if (netOut.hasRemaining()) {
+                channel.write(netOut);
+                if (netOut.hasRemaining()) {
+                    return false;
+                }
+            }
+            if (out.position() == 0 && engine.getHandshakeStatus() != HandshakeStatus.NEED_WRAP) {
+                return true;
+            }
+            out.flip();
+            netOut.clear();
+            SSLEngineResult result;
+            try {
+                result = engine.wrap(out, netOut);
+            } finally {
+                out.compact();
+                netOut.flip();
+            }
+            if (result.getStatus() == Status.CLOSED) {
+                throw new EOFException("Connection " + name + " closed");
+            } else if (result.getStatus() == Status.BUFFER_OVERFLOW) {
+                netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+                netOut.flip();
+            }
+            if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+                runDelegatedTasks();
+            }
+        }
+    }
+
+    /**
+     * @param buffer buffer in write mode
+     * @param capacity minimum capacity
+     * @return a larger buffer in write mode with the content of the buffer
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(capacity, 2 * buffer.capacity()));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private static void writeSetting(ByteArrayOutputStream out, int id, int value) {
+        out.write(id >>> 8);
+        out.write(id);
+        out.write(intToBytes(value), 0, 4);
+    }
+
+    private static byte[] intToBytes(int value) {
+        return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+    }
+
+    private static int bytesToInt(byte[] buffer, int offset) throws IOException {
+        if (offset + 4 > buffer.length) {
+            throw new IOException("Truncated frame");
+        }
+        return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+                | ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+    }
+
+    /**
+     * @param timeout timeout in milliseconds, 0 for none
+     * @return the deadline for {@link #await(Object, long)}
+     */
+    static long deadline(int timeout) {
+        return timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+    }
+
+    /**
+     * Wait on the monitor, which must be held, until notified or until the
+     * deadline.
+     *
+     * @param monitor object to wait on
+     * @param deadline from {@link #deadline(int)}
+     * @throws IOException if the deadline has passed or the thread is interrupted
+     */
+    static void await(Object monitor, long deadline) throws IOException {
+        try {
+            if (deadline == 0) {
+                monitor.wait();
+                return;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new SocketTimeoutException("Read timed out");
+            }
+            monitor.wait(remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for HTTP/2 response");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
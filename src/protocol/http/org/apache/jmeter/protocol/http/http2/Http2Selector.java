@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jmeter.protocol.http.http2;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Thread doing the I/O of many {@link Http2Connection}s with a
+ * {@link Selector}.
+ * <p>
+ * A small set of them, started on first use, is shared by all the
+ * connections of the JVM: the number of threads does not grow with the number
+ * of connections, and a sampling thread only waits for its own response.
+ * Connections are spread over the selectors in turn.
+ * </p>
+ * <p>
+ * Only the HTTP/2 connections of {@link org.apache.jmeter.protocol.http.sampler.HTTP2Impl}
+ * are driven this way: the HTTP/1.1 connections of
+ * {@link org.apache.jmeter.protocol.http.sampler.HTTPHC4Impl} still use blocking
+ * I/O in the sampling thread.
+ * </p>
+ */
+final class Http2Selector implements Runnable {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final int SELECTOR_THREADS =
+            JMeterUtils.getPropDefault("httpsampler.http2.selector_threads", // $NON-NLS-1$
+                    Runtime.getRuntime().availableProcessors());
+
+    private static final AtomicInteger NEXT = new AtomicInteger();
+
+    // Guarded by Http2Selector.class
+    private static Http2Selector[] selectors;
+
+    private final Selector selector;
+
+    /** Tasks to run on the selector thread */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private Http2Selector(String name) throws IOException {
+        selector = Selector.open();
+        Thread thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the selector to use for a new connection
+     * @throws IOException if the selectors cannot be opened
+     */
+    static Http2Selector next() throws IOException {
+        Http2Selector[] all;
+        synchronized (Http2Selector.class) {
+            if (selectors == null) {
+                int count = Math.max(1, SELECTOR_THREADS);
+                Http2Selector[] opened = new Http2Selector[count];
+                for (int i = 0; i < count; i++) {
+                    opened[i] = new Http2Selector("HTTP/2 selector-" + (i + 1)); // $NON-NLS-1$
+                }
+                selectors = opened;
+                log.info("Started " + count + " HTTP/2 selector threads");
+            }
+            all = selectors;
+        }
+        return all[(NEXT.getAndIncrement() & Integer.MAX_VALUE) % all.length];
+    }
+
+    /**
+     * Run the task on the selector thread.
+     *
+     * @param task task to run, must not block
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Register the channel for reads, must be called on the selector thread.
+     *
+     * @param channel non-blocking channel
+     * @param connection connection notified when the channel is ready
+     * @return the key of the channel
+     * @throws ClosedChannelException if the channel has been closed
+     */
+    SelectionKey register(SelectableChannel channel, Http2Connection connection) throws ClosedChannelException {
+        return channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    /**
+     * Wake the selector up so that it releases the channels closed since the
+     * last selection.
+     */
+    void wakeup() {
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    runTask(task);
+                }
+                Set<SelectionKey> keys = selector.selectedKeys();
+                for (SelectionKey key : keys) {
+                    ((Http2Connection) key.attachment()).onSelected(key);
+                }
+                keys.clear();
+            } catch (IOException | RuntimeException e) {
+                log.error("Unexpected error in " + Thread.currentThread().getName(), e);
+            }
+        }
+    }
+
+    private static void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("Unexpected error in " + Thread.currentThread().getName(), e);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jmeter.protocol.http.http2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.http.Header;
+
+/**
+ * Exchange of a request and of its response on a {@link Http2Connection}.
+ * <p>
+ * The response is received by the selector thread of the connection and
+ * buffered until it is read with {@link #getInputStream()}. The flow
+ * control window of the stream is only increased as the response is read,
+ * so the server cannot send more than the window ahead of the reader.
+ * </p>
+ */
+public final class Http2Stream {
+
+    private static final String STATUS = ":status"; // $NON-NLS-1$
+
+    private final Http2Connection connection;
+
+    private final int id;
+
+    /** Read timeout in milliseconds, 0 for none */
+    private final int timeout;
+
+    /** Flow control window to send data, guarded by the connection */
+    long sendWindow;
+
+    /** Received data not yet acknowledged by a WINDOW_UPDATE, guarded by the connection */
+    int unacknowledgedBytes;
+
+    // Guarded by this
+    private List<Header> headers;
+
+    private final LinkedList<byte[]> chunks = new LinkedList<>();
+
+    private boolean endOfStream;
+
+    /** Set once the response is no longer read, see {@link #discard()} */
+    private boolean discarded;
+
+    private IOException failure;
+
+    private int headersSize;
+
+    private long dataSize;
+
+    Http2Stream(Http2Connection connection, int id, long sendWindow, int timeout) {
+        this.connection = connection;
+        this.id = id;
+        this.sendWindow = sendWindow;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return the identifier of the stream in the connection
+     */
+    public int getId() {
+        return id;
+    }
+
+    synchronized void onHeaders(List<Header> fields, int blockSize, boolean end) {
+        headersSize += blockSize;
+        // Interim 1xx responses are skipped, trailers are ignored
+        if (headers == null && !isInformational(fields)) {
+            headers = fields;
+        }
+        if (end) {
+            endOfStream = true;
+        }
+        notifyAll();
+    }
+
+    private static boolean isInformational(List<Header> fields) {
+        for (Header field : fields) {
+            if (STATUS.equals(field.getName())) {
+                return field.getValue().startsWith("1"); // $NON-NLS-1$
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return false if the data was not buffered as the stream is discarded
+     */
+    synchronized boolean onData(byte[] data, boolean end) {
+        if (discarded) {
+            return false;
+        }
+        dataSize += data.length;
+        if (data.length > 0) {
+            chunks.add(data);
+        }
+        if (end) {
+            endOfStream = true;
+        }
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Drop the data received and not yet read, and any data received later,
+     * as the response is no longer read.
+     *
+     * @return the number of octets dropped, whose flow control credit has
+     *         not been sent back yet
+     */
+    synchronized int discard() {
+        discarded = true;
+        int count = 0;
+        for (byte[] chunk : chunks) {
+            count += chunk.length;
+        }
+        chunks.clear();
+        notifyAll();
+        return count;
+    }
+
+    synchronized void onError(IOException e) {
+        if (failure == null && !endOfStream) {
+            failure = e;
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return true if the peer has sent all the response or the stream failed
+     */
+    synchronized boolean isDone() {
+        return endOfStream || failure != null;
+    }
+
+    /**
+     * Wait for the response headers.
+     *
+     * @return the response headers, pseudo headers included
+     * @throws IOException if the stream fails, or the timeout expires
+     */
+    public synchronized List<Header> awaitHeaders() throws IOException {
+        long deadline = Http2Connection.deadline(timeout);
+        while (headers == null) {
+            checkFailure();
+            if (endOfStream) {
+                throw new IOException("Stream " + id + " ended without response headers");
+            }
+            Http2Connection.await(this, deadline);
+        }
+        return headers;
+    }
+
+    /**
+     * @return the status code of the response, -1 if the headers have not
+     *         been received
+     */
+    public synchronized int getStatus() {
+        if (headers != null) {
+            for (Header header : headers) {
+                if (STATUS.equals(header.getName())) {
+                    try {
+                        return Integer.parseInt(header.getValue());
+                    } catch (NumberFormatException e) { // NOSONAR Reported as unknown status
+                        return -1;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the size of the header blocks received, as compressed by HPACK
+     */
+    public synchronized int getHeadersSize() {
+        return headersSize;
+    }
+
+    /**
+     * @return the number of octets of data received, padding excluded
+     */
+    public synchronized long getDataSize() {
+        return dataSize;
+    }
+
+    /**
+     * @return the body of the response, it can only be read once
+     */
+    public InputStream getInputStream() {
+        return new ResponseInputStream();
+    }
+
+    /**
+     * Reset the stream if the response has not been fully received, and drop
+     * the data which has not been read.
+     */
+    public void cancel() {
+        connection.cancel(this);
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException(failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * @return next chunk of data, null at the end of the stream
+     */
+    private synchronized byte[] nextChunk() throws IOException {
+        long deadline = Http2Connection.deadline(timeout);
+        while (chunks.isEmpty()) {
+            if (endOfStream) {
+                return null;
+            }
+            checkFailure();
+            Http2Connection.await(this, deadline);
+        }
+        return chunks.removeFirst();
+    }
+
+    private final class ResponseInputStream extends InputStream {
+        private byte[] chunk;
+        private int position;
+
+        private boolean fill() throws IOException {
+            while (chunk == null || position == chunk.length) {
+                chunk = nextChunk();
+                position = 0;
+                if (chunk == null) {
+                    return false;
+                }
+                connection.consumed(Http2Stream.this, chunk.length);
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return chunk[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return chunk == null ? 0 : chunk.length - position;
+        }
+    }
+}
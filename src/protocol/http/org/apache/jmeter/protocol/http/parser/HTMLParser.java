@@ -20,13 +20,17 @@ package org.apache.jmeter.protocol.http.parser;
 
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 
@@ -71,6 +75,13 @@ public abstract class HTMLParser extends BaseParser {
     public static final String DEFAULT_PARSER =
         "org.apache.jmeter.protocol.http.parser.LagartoBasedHtmlParser"; // $NON-NLS-1$
 
+    /** Maximum estimated size of the URLs cached for the pages already parsed, 0 (the default) to disable the cache */
+    private static final long CACHE_MAX_BYTES =
+            JMeterUtils.getPropDefault("htmlParser.cache.max_bytes", 0L); // $NON-NLS-1$
+
+    private static final ParsedLinksCache CACHE =
+            CACHE_MAX_BYTES > 0 ? new ParsedLinksCache(CACHE_MAX_BYTES) : null;
+
     /**
      * Protected constructor to prevent instantiation except from within
      * subclasses.
@@ -88,6 +99,9 @@ public abstract class HTMLParser extends BaseParser {
      * Malformed URLs can be reported to the caller by having the Iterator
      * return the corresponding RL String. Overall problems parsing the html
      * should be reported by throwing an HTMLParseException.
+     * <p>
+     * The URLs of the pages already parsed are cached when the property
+     * <code>htmlParser.cache.max_bytes</code> is greater than 0.
      * @param userAgent
      *            User Agent
      *
@@ -101,7 +115,21 @@ public abstract class HTMLParser extends BaseParser {
      */
     @Override
     public Iterator<URL> getEmbeddedResourceURLs(
-            String userAgent, byte[] html, URL baseUrl, String encoding) throws HTMLParseException {
+            final String userAgent, final byte[] html, final URL baseUrl, final String encoding)
+                    throws HTMLParseException {
+        if (CACHE != null) {
+            String key = getClass().getName() + '\n' + userAgent + '\n' + encoding + '\n'
+                    + baseUrl.toExternalForm() + '\n' + DigestUtils.md5Hex(html);
+            List<URLString> urls = CACHE.get(key, new ParsedLinksCache.Parsing() {
+                @Override
+                public List<URLString> parse() throws HTMLParseException {
+                    Collection<URLString> col = new LinkedHashSet<>();
+                    getEmbeddedResourceURLs(userAgent, html, baseUrl, new URLCollection(col), encoding);
+                    return new ArrayList<>(col);
+                }
+            });
+            return new URLCollection(urls).iterator();
+        }
         // The Set is used to ignore duplicated binary files.
         // Using a LinkedHashSet to avoid unnecessary overhead in iterating
         // the elements in the set later on. As a side-effect, this will keep
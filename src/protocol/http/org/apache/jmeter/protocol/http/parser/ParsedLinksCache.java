@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.parser;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the URLs extracted from HTML pages by {@link HTMLParser}, so that
+ * the same page downloaded again by any thread is not parsed again.
+ * <p>
+ * Pages are identified by a key built from a hash of their content and the
+ * parameters of the parsing. The estimated size of the cached URLs is
+ * limited to a number of bytes, the least recently used pages are removed
+ * first. Threads asking for a page being parsed by another thread wait for
+ * its URLs instead of parsing it too.
+ * </p>
+ * @since 3.1
+ */
+final class ParsedLinksCache {
+
+    /** Estimated size of the objects holding a page in the cache, without its key */
+    private static final int ENTRY_OVERHEAD = 120;
+
+    /** Estimated size of a {@link URLString} and its {@link java.net.URL}, without their strings */
+    private static final int URL_OVERHEAD = 160;
+
+    /**
+     * Parsing of a page, returning the URLs it contains
+     */
+    interface Parsing {
+        /**
+         * @return the URLs of the page
+         * @throws HTMLParseException when parsing the page fails
+         */
+        List<URLString> parse() throws HTMLParseException;
+    }
+
+    private static final class Entry {
+        private final List<URLString> urls;
+
+        private final long bytes;
+
+        private Entry(List<URLString> urls, long bytes) {
+            this.urls = urls;
+            this.bytes = bytes;
+        }
+    }
+
+    private final long maxBytes;
+
+    // Guarded by this, in access order
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Guarded by this
+    private long bytes;
+
+    /** Pages being parsed */
+    private final ConcurrentMap<String, FutureTask<List<URLString>>> parsings = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxBytes maximum estimated number of bytes of the cached URLs
+     */
+    ParsedLinksCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the URLs of the page from the cache, parsing it if it is missing.
+     *
+     * @param key identifies the page and the parameters of its parsing
+     * @param parsing parsing of the page
+     * @return the URLs of the page, not modifiable
+     * @throws HTMLParseException when parsing the page fails
+     */
+    List<URLString> get(String key, final Parsing parsing) throws HTMLParseException {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.urls;
+            }
+        }
+        FutureTask<List<URLString>> task = new FutureTask<>(new Callable<List<URLString>>() {
+            @Override
+            public List<URLString> call() throws HTMLParseException {
+                return Collections.unmodifiableList(parsing.parse());
+            }
+        });
+        FutureTask<List<URLString>> current = parsings.putIfAbsent(key, task);
+        if (current != null) {
+            // Being parsed by another thread
+            hits.incrementAndGet();
+            return await(current);
+        }
+        misses.incrementAndGet();
+        try {
+            task.run();
+            List<URLString> urls = await(task);
+            put(key, urls);
+            return urls;
+        } finally {
+            parsings.remove(key, task);
+        }
+    }
+
+    private synchronized void put(String key, List<URLString> urls) {
+        long size = ENTRY_OVERHEAD + 2L * key.length();
+        for (URLString url : urls) {
+            size += URL_OVERHEAD + 2L * url.toString().length();
+        }
+        if (size > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(urls, size));
+        bytes += size - (previous != null ? previous.bytes : 0);
+        for (Iterator<Entry> iterator = entries.values().iterator(); bytes > maxBytes && iterator.hasNext();) {
+            bytes -= iterator.next().bytes;
+            iterator.remove();
+        }
+    }
+
+    private static List<URLString> await(FutureTask<List<URLString>> task) throws HTMLParseException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof HTMLParseException) {
+                throw (HTMLParseException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new HTMLParseException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HTMLParseException(e);
+        }
+    }
+
+    /**
+     * Remove all the pages from the cache.
+     */
+    synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return the number of pages in the cache
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the estimated number of bytes of the cached URLs
+     */
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of pages found in the cache or being parsed
+     */
+    long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of pages which had to be parsed
+     */
+    long getMissCount() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.net.ssl.SSLEngine;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.jmeter.protocol.http.control.AuthManager;
+import org.apache.jmeter.protocol.http.control.CacheManager;
+import org.apache.jmeter.protocol.http.control.DNSCacheManager;
+import org.apache.jmeter.protocol.http.http2.Http2Connection;
+import org.apache.jmeter.protocol.http.http2.Http2Stream;
+import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.util.HttpSSLProtocolSocketFactory;
+import org.apache.jmeter.util.JsseSSLManager;
+import org.apache.jmeter.util.SSLManager;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * HTTP/2 implementation of the HTTP sampler.
+ * <p>
+ * Requests are built as by {@link HTTPHC4Impl}, then sent on a stream of an
+ * {@link Http2Connection}: "h2" is negotiated with ALPN for https, http uses
+ * prior knowledge (h2c). Connections are kept per thread and per host and
+ * reused by the next samples. When embedded resources are downloaded in
+ * parallel, the downloads are multiplexed on the connections of the sampling
+ * thread instead of opening new ones.
+ * </p>
+ * <p>
+ * The sampling thread waits for its response while the I/O of all the
+ * connections is done by a few shared selector threads, see the
+ * httpsampler.http2.selector_threads property. This is specific to HTTP/2:
+ * {@link HTTPHC4Impl} still does blocking I/O on its HTTP/1.1 connections, in
+ * the sampling thread.
+ * Proxies are not supported. ALPN needs Java 8u252 or later.
+ * </p>
+ * @since 3.1
+ */
+public class HTTP2Impl extends HTTPHC4Impl {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final String CONNECTIONS_TOKEN = "__jmeter.H2_CONNECTIONS__"; //$NON-NLS-1$
+
+    private static final HttpVersion HTTP_2_0 = new HttpVersion(2, 0);
+
+    /** Connection specific headers, they must not be sent with HTTP/2 */
+    private static final Set<String> CONNECTION_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade", "host")); // $NON-NLS-1$ $NON-NLS-2$ $NON-NLS-3$ $NON-NLS-4$ $NON-NLS-5$ $NON-NLS-6$
+
+    private static final ThreadLocal<Map<String, Http2Connection>> CONNECTIONS_PER_THREAD =
+            new ThreadLocal<Map<String, Http2Connection>>() {
+                @Override
+                protected Map<String, Http2Connection> initialValue() {
+                    // Shared with the threads downloading embedded resources
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private volatile Http2Stream currentStream; // Accessed from multiple threads
+
+    protected HTTP2Impl(HTTPSamplerBase testElement) {
+        super(testElement);
+    }
+
+    @Override
+    protected HTTPSampleResult sample(URL url, String method,
+            boolean areFollowingRedirect, int frameDepth) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Start : sample " + url.toString());
+            log.debug("method " + method+ " followingRedirect " + areFollowingRedirect + " depth " + frameDepth);
+        }
+
+        HTTPSampleResult res = createSampleResult(url, method);
+
+        HttpRequestBase httpRequest = null;
+        try {
+            if (isStaticProxy(url.getHost()) || isDynamicProxy(getProxyHost(), getProxyPortInt())) {
+                throw new IllegalArgumentException("Proxies are not supported by the HTTP/2 implementation");
+            }
+            httpRequest = createHttpRequest(url.toURI(), method);
+            setupRequest(url, httpRequest, res); // can throw IOException
+        } catch (Exception e) {
+            res.sampleStart();
+            res.sampleEnd();
+            errorResult(e, res);
+            return res;
+        }
+
+        res.sampleStart();
+
+        final CacheManager cacheManager = getCacheManager();
+        if (cacheManager != null && HTTPConstants.GET.equalsIgnoreCase(method)) {
+           if (cacheManager.inCache(url)) {
+               return updateSampleResultForResourceInCache(res);
+           }
+        }
+
+        Map<String, Http2Connection> connections = getConnections();
+        boolean shareConnections = false;
+        Http2Stream stream = null;
+        try {
+            handleMethod(method, res, httpRequest, null);
+            List<Header> requestHeaders = createRequestHeaders(url, method, httpRequest);
+            byte[] body = getRequestBody(httpRequest);
+            res.setRequestHeaders(getRequestHeaders(requestHeaders));
+
+            Http2Connection connection = getConnection(connections, url);
+            res.connectEnd();
+            if (getUseKeepAlive() && this.testElement.isConcurrentDwn()) {
+                // Embedded resources are multiplexed on the connections of this thread
+                shareConnections = JMeterContextService.getContext().getSamplerContext()
+                        .put(CONNECTIONS_TOKEN, connections) == null;
+            }
+
+            stream = connection.newStream(requestHeaders, body, getResponseTimeout());
+            currentStream = stream;
+            List<Header> responseHeaders = stream.awaitHeaders();
+            res.latencyEnd();
+
+            int statusCode = stream.getStatus();
+            String reason = EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, Locale.ENGLISH);
+            BasicHttpResponse httpResponse = new BasicHttpResponse(HTTP_2_0, statusCode, reason);
+            for (Header header : responseHeaders) {
+                if (!header.getName().startsWith(":")) { // $NON-NLS-1$
+                    httpResponse.addHeader(header);
+                }
+            }
+
+            Header contentType = httpResponse.getLastHeader(HTTPConstants.HEADER_CONTENT_TYPE);
+            if (contentType != null){
+                String ct = contentType.getValue();
+                res.setContentType(ct);
+                res.setEncodingAndType(ct);
+            }
+            res.setResponseData(readResponseBody(res, stream, httpResponse));
+
+            res.sampleEnd(); // Done with the sampling proper.
+            currentStream = null;
+
+            // Now collect the results into the HTTPSampleResult:
+            res.setResponseCode(Integer.toString(statusCode));
+            res.setResponseMessage(reason);
+            res.setSuccessful(isSuccessCode(statusCode));
+
+            res.setResponseHeaders(getResponseHeaders(httpResponse));
+            if (res.isRedirect()) {
+                final Header headerLocation = httpResponse.getLastHeader(HTTPConstants.HEADER_LOCATION);
+                if (headerLocation == null) { // HTTP protocol violation, but avoids NPE
+                    throw new IllegalArgumentException("Missing location header in redirect for " + method + " " + url);
+                }
+                res.setRedirectLocation(headerLocation.getValue());
+            }
+
+            // Sizes on the wire: header blocks are compressed by HPACK
+            res.setHeadersSize(stream.getHeadersSize());
+            res.setBodySize((int) stream.getDataSize());
+            if (log.isDebugEnabled()) {
+                log.debug("ResponseHeadersSize=" + res.getHeadersSize() + " Content-Length=" + res.getBodySize()
+                        + " Total=" + (res.getHeadersSize() + res.getBodySize()));
+            }
+
+            if (!getUseKeepAlive() && connection.getActiveStreams() == 0) {
+                connections.remove(getConnectionKey(url));
+                connection.close();
+            }
+
+            // Store any cookies received in the cookie manager:
+            saveConnectionCookies(httpResponse, res.getURL(), getCookieManager());
+
+            // Save cache information
+            if (cacheManager != null){
+                cacheManager.saveDetails(httpResponse, res);
+            }
+
+            // Follow redirects and download page resources if appropriate:
+            res = resultProcessing(areFollowingRedirect, frameDepth, res);
+
+        } catch (IOException e) {
+            log.debug("IOException", e);
+            if (res.getEndTime() == 0) {
+                res.sampleEnd();
+            }
+            errorResult(e, res);
+            return res;
+        } catch (RuntimeException e) {
+            log.debug("RuntimeException", e);
+            if (res.getEndTime() == 0) {
+                res.sampleEnd();
+            }
+            errorResult(e, res);
+            return res;
+        } finally {
+            currentStream = null;
+            if (stream != null) {
+                stream.cancel(); // Does nothing if the response has been read
+            }
+            if (shareConnections) {
+                JMeterContextService.getContext().getSamplerContext().remove(CONNECTIONS_TOKEN);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return the connections of the thread, or of the parent thread when
+     *         downloading embedded resources in parallel
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Http2Connection> getConnections() {
+        Map<String, Http2Connection> connections = (Map<String, Http2Connection>)
+                JMeterContextService.getContext().getSamplerContext().get(CONNECTIONS_TOKEN);
+        return connections != null ? connections : CONNECTIONS_PER_THREAD.get();
+    }
+
+    private static String getConnectionKey(URL url) {
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        return url.getProtocol().toLowerCase(Locale.ROOT) + "://" + url.getHost() + ":" + port; // $NON-NLS-1$ $NON-NLS-2$
+    }
+
+    private Http2Connection getConnection(Map<String, Http2Connection> connections, URL url) throws IOException {
+        String key = getConnectionKey(url);
+        synchronized (connections) {
+            Http2Connection connection = connections.get(key);
+            if (connection != null) {
+                if (connection.isUsable()) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Reusing the HTTP/2 connection " + connection);
+                    }
+                    return connection;
+                }
+                connections.remove(key);
+                connection.close();
+            }
+            connection = connect(url);
+            connections.put(key, connection);
+            return connection;
+        }
+    }
+
+    private Http2Connection connect(URL url) throws IOException {
+        String host = url.getHost();
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        boolean secure = HTTPConstants.PROTOCOL_HTTPS.equalsIgnoreCase(url.getProtocol());
+        if (secure && !Http2Connection.isAlpnSupported()) {
+            throw new IOException("ALPN is not supported by this JVM, it is required by HTTP/2 over TLS");
+        }
+        DNSCacheManager resolver = this.testElement.getDNSResolver();
+        InetAddress address = resolver != null ? resolver.resolve(host)[0] : InetAddress.getByName(host);
+        SocketChannel channel = SocketChannel.open();
+        try {
+            Socket socket = channel.socket();
+            InetAddress sourceAddress = getIpSourceAddress();
+            if (sourceAddress == null) {
+                sourceAddress = localAddress;
+            }
+            if (sourceAddress != null) {
+                socket.bind(new InetSocketAddress(sourceAddress, 0));
+            }
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(address, port), getConnectTimeout());
+            SSLEngine engine = null;
+            if (secure) {
+                engine = new HttpSSLProtocolSocketFactory((JsseSSLManager) SSLManager.getInstance())
+                        .createSSLEngine(host, port);
+            }
+            Http2Connection connection = new Http2Connection(channel, engine, host + ":" + port, // $NON-NLS-1$
+                    getResponseTimeout());
+            if (log.isDebugEnabled()) {
+                log.debug("Created new HTTP/2 connection " + connection);
+            }
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            JOrphanUtils.closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Convert the request to HTTP/2 headers: pseudo headers first, then the
+     * headers of the request without the connection specific ones.
+     */
+    private List<Header> createRequestHeaders(URL url, String method, HttpRequestBase httpRequest) throws IOException {
+        String authority;
+        HttpHost virtualHost = (HttpHost) httpRequest.getParams().getParameter(ClientPNames.VIRTUAL_HOST);
+        if (virtualHost != null) {
+            authority = virtualHost.toHostString();
+        } else {
+            authority = url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort(); // $NON-NLS-1$
+        }
+        String path = url.getFile();
+        List<Header> headers = new ArrayList<>();
+        headers.add(new BasicHeader(":method", method)); // $NON-NLS-1$
+        headers.add(new BasicHeader(":scheme", url.getProtocol().toLowerCase(Locale.ROOT))); // $NON-NLS-1$
+        headers.add(new BasicHeader(":authority", authority)); // $NON-NLS-1$
+        headers.add(new BasicHeader(":path", path.isEmpty() ? "/" : path)); // $NON-NLS-1$ $NON-NLS-2$
+        for (Header header : httpRequest.getAllHeaders()) {
+            String name = header.getName().toLowerCase(Locale.ROOT);
+            if (!CONNECTION_HEADERS.contains(name)) {
+                headers.add(new BasicHeader(name, header.getValue()));
+            }
+        }
+        AuthManager authManager = getAuthManager();
+        if (authManager != null && httpRequest.getFirstHeader(HTTPConstants.HEADER_AUTHORIZATION) == null) {
+            String authorization = authManager.getAuthHeaderForURL(url);
+            if (authorization != null) {
+                headers.add(new BasicHeader("authorization", authorization)); // $NON-NLS-1$
+            }
+        }
+        if (httpRequest instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) httpRequest).getEntity();
+            if (entity != null && entity.getContentType() != null
+                    && httpRequest.getFirstHeader(HTTPConstants.HEADER_CONTENT_TYPE) == null) {
+                headers.add(new BasicHeader("content-type", entity.getContentType().getValue())); // $NON-NLS-1$
+            }
+        }
+        return headers;
+    }
+
+    private static byte[] getRequestBody(HttpRequestBase httpRequest) throws IOException {
+        if (httpRequest instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) httpRequest).getEntity();
+            if (entity != null) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                entity.writeTo(body);
+                return body.toByteArray();
+            }
+        }
+        return null;
+    }
+
+    private byte[] readResponseBody(HTTPSampleResult res, Http2Stream stream, BasicHttpResponse httpResponse)
+            throws IOException {
+        InputStream in = stream.getInputStream();
+        int contentLength = -1;
+        Header contentEncoding = httpResponse.getLastHeader(HTTPConstants.HEADER_CONTENT_ENCODING);
+        if (contentEncoding != null && HTTPConstants.ENCODING_GZIP.equalsIgnoreCase(contentEncoding.getValue())) {
+            in = new GZIPInputStream(in);
+        } else if (contentEncoding != null && "deflate".equalsIgnoreCase(contentEncoding.getValue())) {
+            in = new InflaterInputStream(in);
+        } else {
+            Header length = httpResponse.getLastHeader(HTTPConstants.HEADER_CONTENT_LENGTH);
+            if (length != null) {
+                try {
+                    contentLength = Integer.parseInt(length.getValue().trim());
+                } catch (NumberFormatException e) { // NOSONAR Length is unknown
+                    contentLength = -1;
+                }
+            }
+        }
+        return readResponse(res, in, contentLength);
+    }
+
+    private static String getRequestHeaders(List<Header> headers) {
+        StringBuilder hdrs = new StringBuilder(150);
+        for (Header header : headers) {
+            // Exclude the COOKIE header, since cookie is reported separately in the sample
+            if (!HTTPConstants.HEADER_COOKIE.equalsIgnoreCase(header.getName())) {
+                hdrs.append(header.getName()).append(": ").append(header.getValue()).append("\n"); // $NON-NLS-1$ $NON-NLS-2$
+            }
+        }
+        return hdrs.toString();
+    }
+
+    private static String getResponseHeaders(BasicHttpResponse response) {
+        Header[] rh = response.getAllHeaders();
+        StringBuilder headerBuf = new StringBuilder(40 * (rh.length+1));
+        headerBuf.append(response.getStatusLine());
+        headerBuf.append("\n"); // $NON-NLS-1$
+        for (Header header : rh) {
+            headerBuf.append(header.getName()).append(": ").append(header.getValue()).append("\n"); // $NON-NLS-1$ $NON-NLS-2$
+        }
+        return headerBuf.toString();
+    }
+
+    @Override
+    protected void notifyFirstSampleAfterLoopRestart() {
+        super.notifyFirstSampleAfterLoopRestart();
+        if (!USE_CACHED_SSL_CONTEXT) {
+            // Start the new iteration with new TLS sessions
+            closeThreadLocalConnections();
+            ((JsseSSLManager) SSLManager.getInstance()).resetContext();
+        }
+    }
+
+    @Override
+    protected void threadFinished() {
+        closeThreadLocalConnections();
+        super.threadFinished();
+    }
+
+    private static void closeThreadLocalConnections() {
+        Map<String, Http2Connection> connections = CONNECTIONS_PER_THREAD.get();
+        for (Http2Connection connection : connections.values()) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    @Override
+    public boolean interrupt() {
+        Http2Stream stream = currentStream;
+        if (stream != null) {
+            currentStream = null; // don't try twice
+            stream.cancel();
+        }
+        return stream != null;
+    }
+}
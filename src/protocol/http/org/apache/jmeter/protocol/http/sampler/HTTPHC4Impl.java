@@ -75,6 +75,7 @@ import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.params.ClientPNames;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.protocol.ResponseContentEncoding;
+import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.DnsResolver;
 import org.apache.http.conn.params.ConnRoutePNames;
@@ -264,7 +265,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
     private static final HttpParams DEFAULT_HTTP_PARAMS;
 
     private static final String USER_TOKEN = "__jmeter.USER_TOKEN__"; //$NON-NLS-1$
-    
+
     static final String SAMPLER_RESULT_TOKEN = "__jmeter.SAMPLER_RESULT__"; //$NON-NLS-1$
     
     private static final String HTTPCLIENT_TOKEN = "__jmeter.HTTPCLIENT_TOKEN__";
@@ -333,28 +334,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
 
         HttpRequestBase httpRequest = null;
         try {
-            URI uri = url.toURI();
-            if (method.equals(HTTPConstants.POST)) {
-                httpRequest = new HttpPost(uri);
-            } else if (method.equals(HTTPConstants.GET)) {
-                httpRequest = new HttpGet(uri);
-            } else if (method.equals(HTTPConstants.PUT)) {
-                httpRequest = new HttpPut(uri);
-            } else if (method.equals(HTTPConstants.HEAD)) {
-                httpRequest = new HttpHead(uri);
-            } else if (method.equals(HTTPConstants.TRACE)) {
-                httpRequest = new HttpTrace(uri);
-            } else if (method.equals(HTTPConstants.OPTIONS)) {
-                httpRequest = new HttpOptions(uri);
-            } else if (method.equals(HTTPConstants.DELETE)) {
-                httpRequest = new HttpDelete(uri);
-            } else if (method.equals(HTTPConstants.PATCH)) {
-                httpRequest = new HttpPatch(uri);
-            } else if (HttpWebdav.isWebdavMethod(method)) {
-                httpRequest = new HttpWebdav(method, uri);
-            } else {
-                throw new IllegalArgumentException("Unexpected method: '"+method+"'");
-            }
+            httpRequest = createHttpRequest(url.toURI(), method);
             setupRequest(url, httpRequest, res); // can throw IOException
         } catch (Exception e) {
             res.sampleStart();
@@ -525,6 +505,11 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
                 log.debug("Found user token:"+userToken+" as JMeter variable:"+USER_TOKEN+", storing it in HttpContext");
             }
             localContext.setAttribute(HttpClientContext.USER_TOKEN, userToken);
+        } else if (SharedConnectionPool.isEnabled()) {
+            // No token, so that the threads reuse the stateless connections of each other.
+            // HttpClient sets the principal as the state of the connections authenticated
+            // with NTLM, Kerberos or a client certificate, so they are only reused by this principal
+            log.debug("No user token with a shared connection pool");
         } else {
             // It would be better to create a ClientSessionManager that would compute this value
             // for now it can be Thread.currentThread().getName() but must be changed when we would change 
@@ -567,6 +552,37 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
         }
     }
 
+    /**
+     * Create the request for the method
+     * @param uri URI of the request
+     * @param method HTTP Method
+     * @return the request
+     * @throws IllegalArgumentException if the method is not supported
+     */
+    protected HttpRequestBase createHttpRequest(URI uri, String method) {
+        if (method.equals(HTTPConstants.POST)) {
+            return new HttpPost(uri);
+        } else if (method.equals(HTTPConstants.GET)) {
+            return new HttpGet(uri);
+        } else if (method.equals(HTTPConstants.PUT)) {
+            return new HttpPut(uri);
+        } else if (method.equals(HTTPConstants.HEAD)) {
+            return new HttpHead(uri);
+        } else if (method.equals(HTTPConstants.TRACE)) {
+            return new HttpTrace(uri);
+        } else if (method.equals(HTTPConstants.OPTIONS)) {
+            return new HttpOptions(uri);
+        } else if (method.equals(HTTPConstants.DELETE)) {
+            return new HttpDelete(uri);
+        } else if (method.equals(HTTPConstants.PATCH)) {
+            return new HttpPatch(uri);
+        } else if (HttpWebdav.isWebdavMethod(method)) {
+            return new HttpWebdav(method, uri);
+        } else {
+            throw new IllegalArgumentException("Unexpected method: '"+method+"'");
+        }
+    }
+
     /**
      * Create HTTPSampleResult filling url, method and SampleLabel.
      * Monitor field is computed calling isMonitor()
@@ -761,7 +777,9 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
             httpClient = mapHttpClientPerHttpClientKey.get(key);
         }
 
-        if (httpClient != null && resetSSLContext && HTTPConstants.PROTOCOL_HTTPS.equalsIgnoreCase(url.getProtocol())) {
+        // Connections of a shared pool are not reset for each thread
+        if (httpClient != null && resetSSLContext && !SharedConnectionPool.isEnabled()
+                && HTTPConstants.PROTOCOL_HTTPS.equalsIgnoreCase(url.getProtocol())) {
             ((AbstractHttpClient) httpClient).clearRequestInterceptors(); 
             ((AbstractHttpClient) httpClient).clearResponseInterceptors(); 
             httpClient.getConnectionManager().closeIdleConnections(1L, TimeUnit.MICROSECONDS);
@@ -779,22 +797,13 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
             if (resolver == null) {
                 resolver = SystemDefaultDnsResolver.INSTANCE;
             }
-            MeasuringConnectionManager connManager = new MeasuringConnectionManager(
-                    createSchemeRegistry(), 
-                    resolver, 
-                    TIME_TO_LIVE,
-                    VALIDITY_AFTER_INACTIVITY_TIMEOUT);
-            
-            // Modern browsers use more connections per host than the current httpclient default (2)
-            // when using parallel download the httpclient and connection manager are shared by the downloads threads
-            // to be realistic JMeter must set an higher value to DefaultMaxPerRoute
-            if(concurrentDwn) {
-                try {
-                    int maxConcurrentDownloads = Integer.parseInt(this.testElement.getConcurrentPool());
-                    connManager.setDefaultMaxPerRoute(Math.max(maxConcurrentDownloads, connManager.getDefaultMaxPerRoute()));                
-                } catch (NumberFormatException nfe) {
-                   // no need to log -> will be done by the sampler
-                }
+            ClientConnectionManager connManager;
+            if (SharedConnectionPool.isEnabled()) {
+                // The pool resolves with the DNS Cache Manager of the thread which opens the connection
+                connManager = SharedConnectionPool.acquire(createSchemeRegistry(),
+                        TIME_TO_LIVE, VALIDITY_AFTER_INACTIVITY_TIMEOUT).getConnectionManager();
+            } else {
+                connManager = createConnectionManager(resolver, concurrentDwn);
             }
             
             httpClient = new DefaultHttpClient(connManager, clientParams) {
@@ -858,6 +867,33 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
         return httpClient;
     }
 
+    /**
+     * Create the connection manager of a client of the current thread
+     * @param resolver DNS resolver
+     * @param concurrentDwn true if the embedded resources are downloaded in parallel
+     * @return the connection manager
+     */
+    private MeasuringConnectionManager createConnectionManager(DnsResolver resolver, boolean concurrentDwn) {
+        MeasuringConnectionManager connManager = new MeasuringConnectionManager(
+                createSchemeRegistry(), 
+                resolver, 
+                TIME_TO_LIVE,
+                VALIDITY_AFTER_INACTIVITY_TIMEOUT);
+        
+        // Modern browsers use more connections per host than the current httpclient default (2)
+        // when using parallel download the httpclient and connection manager are shared by the downloads threads
+        // to be realistic JMeter must set an higher value to DefaultMaxPerRoute
+        if(concurrentDwn) {
+            try {
+                int maxConcurrentDownloads = Integer.parseInt(this.testElement.getConcurrentPool());
+                connManager.setDefaultMaxPerRoute(Math.max(maxConcurrentDownloads, connManager.getDefaultMaxPerRoute()));                
+            } catch (NumberFormatException nfe) {
+               // no need to log -> will be done by the sampler
+            }
+        }
+        return connManager;
+    }
+
     /**
      * Setup LazySchemeSocketFactory
      * @see "https://bz.apache.org/bugzilla/show_bug.cgi?id=58099"
@@ -1471,7 +1507,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
         }
     }
 
-    private void saveConnectionCookies(HttpResponse method, URL u, CookieManager cookieManager) {
+    protected void saveConnectionCookies(HttpResponse method, URL u, CookieManager cookieManager) {
         if (cookieManager != null) {
             Header[] hdrs = method.getHeaders(HTTPConstants.HEADER_SET_COOKIE);
             for (Header hdr : hdrs) {
@@ -1502,8 +1538,11 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
             for ( HttpClient cl : mapHttpClientPerHttpClientKey.values() ) {
                 ((AbstractHttpClient) cl).clearRequestInterceptors(); 
                 ((AbstractHttpClient) cl).clearResponseInterceptors();
-                ((AbstractHttpClient) cl).close();
-                cl.getConnectionManager().shutdown();
+                // A shared pool is only closed by the last thread using it
+                if (!SharedConnectionPool.release(cl.getConnectionManager())) {
+                    ((AbstractHttpClient) cl).close();
+                    cl.getConnectionManager().shutdown();
+                }
             }
             mapHttpClientPerHttpClientKey.clear();
         }
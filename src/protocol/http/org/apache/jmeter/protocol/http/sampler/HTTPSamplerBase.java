@@ -34,6 +34,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -64,6 +65,7 @@ import org.apache.jmeter.protocol.http.util.HTTPConstants;
 import org.apache.jmeter.protocol.http.util.HTTPConstantsInterface;
 import org.apache.jmeter.protocol.http.util.HTTPFileArg;
 import org.apache.jmeter.protocol.http.util.HTTPFileArgs;
+import org.apache.jmeter.protocol.http.util.PooledResponseBuffers;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
 import org.apache.jmeter.samplers.SampleResult;
@@ -195,6 +197,20 @@ public abstract class HTTPSamplerBase extends AbstractSampler
     private static final boolean IGNORE_EMBEDDED_RESOURCES_DATA =
             JMeterUtils.getPropDefault("httpsampler.embedded_resources_use_md5", false); // $NON-NLS-1$ // default value: false
 
+    /** Value of property httpsampler.discard_response_body: false, true or auto */
+    private static final String DISCARD_RESPONSE_BODY =
+            JMeterUtils.getPropDefault("httpsampler.discard_response_body", "false").trim(); // $NON-NLS-1$ // default value: false
+
+    private static final boolean DISCARD_RESPONSE_BODY_ALWAYS = "true".equalsIgnoreCase(DISCARD_RESPONSE_BODY); // $NON-NLS-1$
+
+    private static final boolean DISCARD_RESPONSE_BODY_AUTO = "auto".equalsIgnoreCase(DISCARD_RESPONSE_BODY); // $NON-NLS-1$
+
+    private static final boolean POOL_RESPONSE_BUFFERS =
+            JMeterUtils.getPropDefault("httpsampler.pool_response_buffers", false); // $NON-NLS-1$ // default value: false
+
+    private static final int POOLED_RESPONSE_BUFFER_MAX_SIZE =
+            JMeterUtils.getPropDefault("httpsampler.pooled_response_buffer.max_size", 256 * 1024); // $NON-NLS-1$
+
     public enum SourceType {
         HOSTNAME("web_testing_source_ip_hostname"), //$NON-NLS-1$
         DEVICE("web_testing_source_ip_device"), //$NON-NLS-1$
@@ -552,6 +568,32 @@ public abstract class HTTPSamplerBase extends AbstractSampler
         return this.getPropertyAsBoolean(MD5, false);
     }
 
+    /**
+     * Indicates whether the response body is read without being kept, according to
+     * property <code>httpsampler.discard_response_body</code>:
+     * <ul>
+     * <li><code>true</code>: always discarded</li>
+     * <li><code>auto</code>: discarded if nothing uses the response data of the sample,
+     * see {@link JMeterContext#isResponseDataUsed()}</li>
+     * <li><code>false</code> (default): never discarded</li>
+     * </ul>
+     * The body is never discarded when it is parsed to download embedded resources or
+     * when the sampler is a monitor.
+     *
+     * @return true if the response body should not be kept
+     */
+    public boolean isDiscardResponseBody() {
+        if (!(DISCARD_RESPONSE_BODY_ALWAYS || DISCARD_RESPONSE_BODY_AUTO)
+                || isImageParser() || isMonitor()) {
+            return false;
+        }
+        if (DISCARD_RESPONSE_BODY_ALWAYS) {
+            return true;
+        }
+        JMeterContext context = getThreadContext();
+        return context != null && !context.isResponseDataUsed();
+    }
+
     public void setMD5(boolean truth) {
         this.setProperty(MD5, truth, false);
     }
@@ -1443,6 +1485,7 @@ public abstract class HTTPSamplerBase extends AbstractSampler
      */
     @Override
     public void testEnded() {
+        ResourcesDownloader.getInstance().testEnded();
     }
 
     /**
@@ -1759,6 +1802,14 @@ public abstract class HTTPSamplerBase extends AbstractSampler
      * <p>
      * For the MD5 case, the result byte count is set to the size of the original response.
      * <p>
+     * If the response body is discarded (see {@link #isDiscardResponseBody()}), it is read
+     * without being kept: an empty array is returned and the result byte count and body size
+     * are set to the size of the response.
+     * <p>
+     * If property <code>httpsampler.pool_response_buffers</code> is true, the buffers used to read
+     * the response are reused by the thread (see {@link PooledResponseBuffers}), only the returned
+     * array is allocated.
+     * <p>
      * Closes the inputStream
      *
      * @param sampleResult sample to store information about the response into
@@ -1770,13 +1821,18 @@ public abstract class HTTPSamplerBase extends AbstractSampler
     public byte[] readResponse(SampleResult sampleResult, InputStream in, int length) throws IOException {
         
         OutputStream w = null;
+        PooledResponseBuffers buffers = POOL_RESPONSE_BUFFERS ? PooledResponseBuffers.get() : null;
         try {
-            byte[] readBuffer = new byte[8192]; // 8kB is the (max) size to have the latency ('the first packet')
+            byte[] readBuffer = buffers != null ? buffers.getReadBuffer()
+                    : new byte[PooledResponseBuffers.READ_BUFFER_SIZE]; // 8kB is the (max) size to have the latency ('the first packet')
             int bufferSize = 32;// Enough for MD5
 
             MessageDigest md = null;
             boolean knownResponseLength = length > 0;// may also happen if long value > int.max
-            if (useMD5()) {
+            boolean discard = isDiscardResponseBody();
+            if (discard) {
+                // only count the bytes
+            } else if (useMD5()) {
                 try {
                     md = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
                 } catch (NoSuchAlgorithmException e) {
@@ -1798,17 +1854,23 @@ public abstract class HTTPSamplerBase extends AbstractSampler
                 if (first) {
                     sampleResult.latencyEnd();
                     first = false;
-                    if(md == null) {
+                    if(md == null && !discard) {
                         if(knownResponseLength) {
+                            // returns its buffer without copy, nothing to pool
                             w = new DirectAccessByteArrayOutputStream(bufferSize);
                         }
+                        else if(buffers != null) {
+                            w = buffers.getBodyBuffer();
+                        }
                         else {
                             w = new org.apache.commons.io.output.ByteArrayOutputStream(bufferSize);
                         }
                     }
                 }
                 
-                if (md == null) {
+                if (discard) {
+                    totalBytes += bytesRead;
+                } else if (md == null) {
                     w.write(readBuffer, 0, bytesRead);
                 } else {
                     md.update(readBuffer, 0, bytesRead);
@@ -1820,6 +1882,12 @@ public abstract class HTTPSamplerBase extends AbstractSampler
                 sampleResult.latencyEnd();
                 return new byte[0];
             }
+
+            if (discard) {
+                sampleResult.setBytes(totalBytes);
+                sampleResult.setBodySize(totalBytes);
+                return new byte[0];
+            }
             
             if (md != null) {
                 byte[] md5Result = md.digest();
@@ -1831,6 +1899,9 @@ public abstract class HTTPSamplerBase extends AbstractSampler
         } finally {
             IOUtils.closeQuietly(in);
             IOUtils.closeQuietly(w);
+            if (buffers != null) {
+                buffers.trim(POOLED_RESPONSE_BUFFER_MAX_SIZE);
+            }
         }
     }
 
@@ -1840,8 +1911,9 @@ public abstract class HTTPSamplerBase extends AbstractSampler
      * @return byte array
      */
     private byte[] toByteArray(OutputStream w) {
-        if(w instanceof DirectAccessByteArrayOutputStream) {
-            return ((DirectAccessByteArrayOutputStream) w).toByteArray();
+        // DirectAccessByteArrayOutputStream or pooled body buffer
+        if(w instanceof ByteArrayOutputStream) {
+            return ((ByteArrayOutputStream) w).toByteArray();
         }
         
         if(w instanceof org.apache.commons.io.output.ByteArrayOutputStream) {
@@ -1971,7 +2043,7 @@ public abstract class HTTPSamplerBase extends AbstractSampler
      * Callable class to sample asynchronously resources embedded
      *
      */
-    private static class ASyncSample implements Callable<AsynSamplerResultHolder> {
+    private static class ASyncSample implements ResourcesDownloader.ResourceTask {
         private final URL url;
         private final String method;
         private final boolean areFollowingRedirect;
@@ -2000,6 +2072,12 @@ public abstract class HTTPSamplerBase extends AbstractSampler
             this.jmeterContextOfParentThread = JMeterContextService.getContext();
         }
 
+        @Override
+        public String getHostKey() {
+            int port = url.getPort();
+            return url.getHost().toLowerCase(Locale.ENGLISH) + ':' + (port == -1 ? url.getDefaultPort() : port);
+        }
+
         @Override
         public AsynSamplerResultHolder call() {
             JMeterContextService.replaceContext(jmeterContextOfParentThread);
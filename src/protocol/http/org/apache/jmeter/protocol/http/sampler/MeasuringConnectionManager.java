@@ -61,7 +61,17 @@ public class MeasuringConnectionManager extends JMeterPoolingClientConnectionMan
     @Override
     public ClientConnectionRequest requestConnection(final HttpRoute route, final Object state) {
         ClientConnectionRequest res = super.requestConnection(route, state);
-        return new MeasuringConnectionRequest(res);
+        return new MeasuringConnectionRequest(this, res);
+    }
+
+    /**
+     * Called once a connection has been leased from the pool.
+     * Does nothing, subclasses can override it to gather statistics.
+     *
+     * @param waitNanos time spent waiting for the connection, in nanoseconds
+     */
+    protected void connectionLeased(long waitNanos) {
+        // NOOP
     }
 
     /**
@@ -80,14 +90,18 @@ public class MeasuringConnectionManager extends JMeterPoolingClientConnectionMan
      * An adapter class to pass {@link SampleResult} into {@link MeasuredConnection}
      */
     private static class MeasuringConnectionRequest implements ClientConnectionRequest {
+        private final MeasuringConnectionManager manager;
         private final ClientConnectionRequest handler;
-        public MeasuringConnectionRequest(ClientConnectionRequest res) {
+        public MeasuringConnectionRequest(MeasuringConnectionManager manager, ClientConnectionRequest res) {
+            this.manager = manager;
             handler = res;
         }
 
         @Override
         public ManagedClientConnection getConnection(long timeout, TimeUnit tunit) throws InterruptedException, ConnectionPoolTimeoutException {
+            long start = System.nanoTime();
             ManagedClientConnection res = handler.getConnection(timeout, tunit);
+            manager.connectionLeased(System.nanoTime() - start);
             return new MeasuredConnection(res);
         }
 
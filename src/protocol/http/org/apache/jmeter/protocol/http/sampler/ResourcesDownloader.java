@@ -19,15 +19,26 @@
 package org.apache.jmeter.protocol.http.sampler;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jmeter.testelement.property.CollectionProperty;
 import org.apache.jmeter.util.JMeterUtils;
@@ -57,6 +68,18 @@ import org.apache.log.Logger;
  * the Future list only contains task that have been scheduled in the threadpool.<br>
  * The status of those futures are either done or cancelled<br>
  * <br>
+ * By default threads are created as needed. When the property
+ * <code>httpsampler.parallel_download_pool_size</code> is set, the pool has
+ * this fixed number of threads and the downloads wait in a queue. As each
+ * sampler has at most its number of parallel downloads in the pool, the
+ * queue is shared fairly between the threads of the test.<br>
+ * When the property <code>httpsampler.parallel_download_max_per_host</code>
+ * is set, a sampler downloads at most this number of resources of the same
+ * host at a time, as browsers do.<br>
+ * The resources of a frame downloaded by the pool are downloaded one after
+ * the other by the thread of the pool, as waiting for other threads of a
+ * fixed pool which may all be waiting in the same way would never end.<br>
+ * <br>
  *  
  *  Future enhancements :
  *  <ul>
@@ -72,10 +95,16 @@ public class ResourcesDownloader {
     /** this is the maximum time that excess idle threads will wait for new tasks before terminating */
     private static final long THREAD_KEEP_ALIVE_TIME = JMeterUtils.getPropDefault("httpsampler.parallel_download_thread_keepalive_inseconds", 60L);
     
+    /** number of threads of the pool, 0 to create them as needed */
+    private static final int POOL_SIZE = JMeterUtils.getPropDefault("httpsampler.parallel_download_pool_size", 0); // $NON-NLS-1$
+
+    /** maximum number of parallel downloads of a sampler from the same host, 0 for no limit */
+    private static final int MAX_PER_HOST = JMeterUtils.getPropDefault("httpsampler.parallel_download_max_per_host", 0); // $NON-NLS-1$
+
     private static final int MIN_POOL_SIZE = 1;
     private static final int MAX_POOL_SIZE = Integer.MAX_VALUE;
     
-    private static final ResourcesDownloader INSTANCE = new ResourcesDownloader();
+    private static final ResourcesDownloader INSTANCE = new ResourcesDownloader(POOL_SIZE, MAX_PER_HOST);
     
     public static ResourcesDownloader getInstance() {
         return INSTANCE;
@@ -84,16 +113,107 @@ public class ResourcesDownloader {
     
     private ThreadPoolExecutor concurrentExecutor = null;
 
-    private ResourcesDownloader() {
+    private final int poolSize;
+
+    private final int maxPerHost;
+
+    /** downloads waiting to start */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger maxQueued = new AtomicInteger();
+
+    private final AtomicLong tasks = new AtomicLong();
+
+    private final AtomicLong waitTime = new AtomicLong();
+
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    /** set while a thread of the pool runs a download */
+    private final ThreadLocal<Boolean> inPool = new ThreadLocal<>();
+
+    /**
+     * Download of a resource, whose number of parallel downloads from the
+     * same host may be limited
+     */
+    interface ResourceTask extends Callable<AsynSamplerResultHolder> {
+        /**
+         * @return the host and port of the resource
+         */
+        String getHostKey();
+    }
+
+    /**
+     * Task measuring the time it waited before it started
+     */
+    private final class TimedTask implements Callable<AsynSamplerResultHolder> {
+        private final Callable<AsynSamplerResultHolder> task;
+
+        private final String hostKey;
+
+        private final long queuedAt = System.nanoTime();
+
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private TimedTask(Callable<AsynSamplerResultHolder> task) {
+            this.task = task;
+            this.hostKey = maxPerHost > 0 && task instanceof ResourceTask ? ((ResourceTask) task).getHostKey() : null;
+        }
+
+        @Override
+        public AsynSamplerResultHolder call() throws Exception {
+            if (dequeue()) {
+                long wait = System.nanoTime() - queuedAt;
+                waitTime.addAndGet(wait);
+                long max;
+                while (wait > (max = maxWaitTime.get()) && !maxWaitTime.compareAndSet(max, wait)) { // NOSONAR
+                    // retry
+                }
+            }
+            if (inPool.get() != null) {
+                // run by runInCallingThread
+                return task.call();
+            }
+            inPool.set(Boolean.TRUE);
+            try {
+                return task.call();
+            } finally {
+                inPool.remove();
+            }
+        }
+
+        /**
+         * @return true if the task was still counted as queued
+         */
+        private boolean dequeue() {
+            if (started.compareAndSet(false, true)) {
+                queued.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param poolSize number of threads of the pool, 0 to create them as needed
+     * @param maxPerHost maximum number of parallel downloads of a sampler
+     *            from the same host, 0 for no limit
+     */
+    ResourcesDownloader(int poolSize, int maxPerHost) {
+        this.poolSize = poolSize;
+        this.maxPerHost = maxPerHost;
         init();
     }
     
     
     private void init() {
-        LOG.info("Creating ResourcesDownloader with keepalive_inseconds:"+THREAD_KEEP_ALIVE_TIME);
+        LOG.info("Creating ResourcesDownloader with keepalive_inseconds:"+THREAD_KEEP_ALIVE_TIME
+                + (poolSize > 0 ? ", pool_size:" + poolSize : "")
+                + (maxPerHost > 0 ? ", max_per_host:" + maxPerHost : ""));
+        BlockingQueue<Runnable> queue = poolSize > 0 ? new LinkedBlockingQueue<Runnable>() : new SynchronousQueue<Runnable>();
         ThreadPoolExecutor exec = new ThreadPoolExecutor(
-                MIN_POOL_SIZE, MAX_POOL_SIZE, THREAD_KEEP_ALIVE_TIME, TimeUnit.SECONDS,
-                new SynchronousQueue<Runnable>(),
+                poolSize > 0 ? poolSize : MIN_POOL_SIZE, poolSize > 0 ? poolSize : MAX_POOL_SIZE,
+                THREAD_KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                queue,
                 new ThreadFactory() {
                     @Override
                     public Thread newThread(final Runnable r) {
@@ -105,6 +225,10 @@ public class ResourcesDownloader {
                 }) {
 
         };
+        if (poolSize > 0) {
+            // The size of the pool does not change, idle threads still end
+            exec.allowCoreThreadTimeOut(true);
+        }
         concurrentExecutor = exec;
     }
     
@@ -113,7 +237,7 @@ public class ResourcesDownloader {
      * it should be called at the end of a test
      */
     public void shrink() {
-        if(concurrentExecutor.getPoolSize() > MIN_POOL_SIZE) {
+        if(poolSize <= 0 && concurrentExecutor.getPoolSize() > MIN_POOL_SIZE) {
             // drain the queue
             concurrentExecutor.purge();
             List<Runnable> drainList = new ArrayList<>();
@@ -138,6 +262,21 @@ public class ResourcesDownloader {
             // do not immediately restore the MaximumPoolSize as it will block the release of the threads
         }
     }
+
+    /**
+     * Log the statistics of the downloads, reset them and shrink the thread
+     * pool. Called at the end of a test, only the first call logs.
+     */
+    public void testEnded() {
+        if (tasks.get() > 0) {
+            LOG.info("Parallel downloads of embedded resources: " + toStatsString());
+            tasks.set(0);
+            waitTime.set(0);
+            maxWaitTime.set(0);
+            maxQueued.set(queued.get());
+        }
+        shrink();
+    }
     
     // probablyTheBestMethodNameInTheUniverseYeah!
     /**
@@ -158,43 +297,74 @@ public class ResourcesDownloader {
             return submittedTasks;
         }
         
-        // restore MaximumPoolSize original value
-        concurrentExecutor.setMaximumPoolSize(MAX_POOL_SIZE);
+        if (poolSize <= 0 && concurrentExecutor.getMaximumPoolSize() != MAX_POOL_SIZE) {
+            // restore MaximumPoolSize original value after shrink()
+            concurrentExecutor.setMaximumPoolSize(MAX_POOL_SIZE);
+        }
         
         if(LOG.isDebugEnabled()) {
-            LOG.debug("PoolSize=" + concurrentExecutor.getPoolSize()+" LargestPoolSize=" + concurrentExecutor.getLargestPoolSize());
+            LOG.debug("PoolSize=" + concurrentExecutor.getPoolSize()+" LargestPoolSize=" + concurrentExecutor.getLargestPoolSize()
+                    + " Queued=" + queued.get());
         }
         
         CompletionService<AsynSamplerResultHolder> completionService = new ExecutorCompletionService<>(concurrentExecutor);
-        int remainingTasksToTake = list.size();
+        List<TimedTask> timedTasks = new ArrayList<>(list.size());
+        for (Callable<AsynSamplerResultHolder> task : list) {
+            timedTasks.add(new TimedTask(task));
+        }
+        List<TimedTask> pendingTasks = new LinkedList<>(timedTasks);
+        tasks.addAndGet(timedTasks.size());
+        int queuedTasks = queued.addAndGet(timedTasks.size());
+        int max;
+        while (queuedTasks > (max = maxQueued.get()) && !maxQueued.compareAndSet(max, queuedTasks)) { // NOSONAR
+            // retry
+        }
+        if (poolSize > 0 && inPool.get() != null) {
+            // Nested download, e.g. of a frame, which must not wait for the threads of the pool
+            return runInCallingThread(timedTasks);
+        }
+        int maxRunningTasks = Math.max(1, maxConcurrentDownloads);
+        Map<Future<AsynSamplerResultHolder>, String> hostOfTask = new HashMap<>();
+        Map<String, AtomicInteger> runningTasksOfHost = new HashMap<>();
+        int runningTasks = 0;
         
         try {
-            // push the task in the threadpool until <maxConcurrentDownloads> is reached
-            int i = 0;
-            for (i = 0; i < Math.min(maxConcurrentDownloads, list.size()); i++) {
-                Callable<AsynSamplerResultHolder> task = list.get(i);
-                submittedTasks.add(completionService.submit(task));
-            }
-            
-            // push the remaining tasks but ensure we use at most <maxConcurrentDownloads> threads
-            // wait for a previous download to finish before submitting a new one
-            for (; i < list.size(); i++) {
-                Callable<AsynSamplerResultHolder> task = list.get(i);
-                completionService.take();
-                remainingTasksToTake--;
-                submittedTasks.add(completionService.submit(task));
-            }
-            
-            // all the resources downloads are in the thread pool queue
-            // wait for the completion of all downloads
-            while (remainingTasksToTake > 0) {
-                completionService.take();
-                remainingTasksToTake--;
+            while (!pendingTasks.isEmpty() || runningTasks > 0) {
+                // push the tasks in the threadpool until <maxConcurrentDownloads> is reached,
+                // skipping those of the hosts which already have <maxPerHost> downloads
+                for (Iterator<TimedTask> iterator = pendingTasks.iterator(); 
+                        runningTasks < maxRunningTasks && iterator.hasNext();) {
+                    TimedTask task = iterator.next();
+                    AtomicInteger runningTasksForHost = null;
+                    if (task.hostKey != null) {
+                        runningTasksForHost = runningTasksOfHost.get(task.hostKey);
+                        if (runningTasksForHost == null) {
+                            runningTasksForHost = new AtomicInteger();
+                            runningTasksOfHost.put(task.hostKey, runningTasksForHost);
+                        } else if (runningTasksForHost.get() >= maxPerHost) {
+                            continue;
+                        }
+                        runningTasksForHost.incrementAndGet();
+                    }
+                    iterator.remove();
+                    Future<AsynSamplerResultHolder> future = completionService.submit(task);
+                    submittedTasks.add(future);
+                    hostOfTask.put(future, task.hostKey);
+                    runningTasks++;
+                }
+                
+                // wait for a previous download to finish before submitting a new one
+                Future<AsynSamplerResultHolder> done = completionService.take();
+                runningTasks--;
+                String hostKey = hostOfTask.get(done);
+                if (hostKey != null) {
+                    runningTasksOfHost.get(hostKey).decrementAndGet();
+                }
             }
         }
         finally {
             //bug 51925 : Calling Stop on Test leaks executor threads when concurrent download of resources is on
-            if(remainingTasksToTake > 0) {
+            if(runningTasks > 0) {
                 if(LOG.isDebugEnabled()) {
                     LOG.debug("Interrupted while waiting for resource downloads : cancelling remaining tasks");
                 }
@@ -204,10 +374,81 @@ public class ResourcesDownloader {
                     }
                 }
             }
+            // tasks not submitted or cancelled before they started are no longer queued
+            for (TimedTask task : timedTasks) {
+                task.dequeue();
+            }
         }
         
         return submittedTasks;
     }
+
+    private static List<Future<AsynSamplerResultHolder>> runInCallingThread(List<TimedTask> timedTasks)
+            throws InterruptedException {
+        List<Future<AsynSamplerResultHolder>> doneTasks = new ArrayList<>(timedTasks.size());
+        try {
+            for (TimedTask task : timedTasks) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                FutureTask<AsynSamplerResultHolder> future = new FutureTask<>(task);
+                future.run();
+                doneTasks.add(future);
+            }
+        } finally {
+            // tasks which did not run are no longer queued
+            for (TimedTask task : timedTasks) {
+                task.dequeue();
+            }
+        }
+        return doneTasks;
+    }
+
+    /**
+     * @return the number of downloads waiting to start
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return the highest number of downloads waiting to start
+     */
+    public int getMaxQueueDepth() {
+        return maxQueued.get();
+    }
+
+    /**
+     * @return the number of downloads scheduled since the start of the test
+     */
+    public long getTaskCount() {
+        return tasks.get();
+    }
+
+    /**
+     * @return the mean time the downloads waited before they started, in milliseconds
+     */
+    public double getMeanWaitTime() {
+        long count = tasks.get();
+        return count == 0 ? 0 : waitTime.get() / (count * 1000000.0);
+    }
+
+    /**
+     * @return the longest time a download waited before it started, in milliseconds
+     */
+    public double getMaxWaitTime() {
+        return maxWaitTime.get() / 1000000.0;
+    }
+
+    /**
+     * @return the statistics of the downloads
+     */
+    public String toStatsString() {
+        return String.format(Locale.ENGLISH, "tasks=%d queue depth=%d max=%d wait mean=%.3fms max=%.3fms threads=%d largest=%d", // $NON-NLS-1$
+                Long.valueOf(getTaskCount()), Integer.valueOf(getQueueDepth()), Integer.valueOf(getMaxQueueDepth()),
+                Double.valueOf(getMeanWaitTime()), Double.valueOf(getMaxWaitTime()),
+                Integer.valueOf(concurrentExecutor.getPoolSize()), Integer.valueOf(concurrentExecutor.getLargestPoolSize()));
+    }
     
     
     /**
@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.pool.PoolStats;
+import org.apache.jmeter.samplers.Sampler;
+import org.apache.jmeter.threads.AbstractThreadGroup;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Pool of HttpClient 4 connections shared by the threads of a thread group
+ * or of the whole test, as a client of a service would use, instead of the
+ * connections of each thread.
+ * <p>
+ * Used when the property <code>httpclient4.pool.scope</code> is
+ * <code>thread_group</code> or <code>test</code>. Each thread still has its
+ * own HttpClient, so cookies and authentication are still per thread, but any
+ * thread can reuse the connections opened by the others. The pool is closed
+ * once the last thread using it has finished.
+ * </p>
+ * <p>
+ * A connection is opened by the thread which needs it, which resolves the
+ * host with the DNS Cache Manager of its sampler, and may then be reused by
+ * the other threads of the pool whatever their DNS Cache Manager.
+ * </p>
+ * <p>
+ * The time spent waiting for a connection and the use of the pool are logged
+ * every <code>httpclient4.pool.stats_interval</code> seconds and when the
+ * pool is closed, they can also be read with {@link #getPools()}.
+ * </p>
+ * @since 3.1
+ */
+public final class SharedConnectionPool {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final String SCOPE_THREAD_GROUP = "thread_group"; // $NON-NLS-1$
+
+    private static final String SCOPE_TEST = "test"; // $NON-NLS-1$
+
+    private static final String SCOPE =
+            JMeterUtils.getPropDefault("httpclient4.pool.scope", "thread"); // $NON-NLS-1$ $NON-NLS-2$
+
+    private static final boolean ENABLED = SCOPE_THREAD_GROUP.equals(SCOPE) || SCOPE_TEST.equals(SCOPE);
+
+    private static final int MAX_TOTAL = JMeterUtils.getPropDefault("httpclient4.pool.max_total", 200); // $NON-NLS-1$
+
+    private static final int MAX_PER_ROUTE = JMeterUtils.getPropDefault("httpclient4.pool.max_per_route", 20); // $NON-NLS-1$
+
+    private static final long STATS_INTERVAL_MS =
+            TimeUnit.SECONDS.toMillis(JMeterUtils.getPropDefault("httpclient4.pool.stats_interval", 60)); // $NON-NLS-1$
+
+    /** Open pools by name, also guards their reference counts */
+    private static final Map<String, SharedConnectionPool> POOLS = new HashMap<>();
+
+    /**
+     * Resolves the hosts with the DNS Cache Manager of the sampler of the
+     * current thread, as those of the threads are not thread safe
+     */
+    private static final DnsResolver CURRENT_SAMPLER_RESOLVER = new DnsResolver() {
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            Sampler sampler = JMeterContextService.getContext().getCurrentSampler();
+            if (sampler instanceof HTTPSamplerBase) {
+                DnsResolver resolver = ((HTTPSamplerBase) sampler).getDNSResolver();
+                if (resolver != null) {
+                    return resolver.resolve(host);
+                }
+            }
+            return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+        }
+    };
+
+    static {
+        if (ENABLED) {
+            log.info("HttpClient4 connections are pooled per " + SCOPE + ", max total=" + MAX_TOTAL
+                    + ", max per route=" + MAX_PER_ROUTE);
+        }
+    }
+
+    private final String name;
+
+    private final MeasuringConnectionManager connectionManager;
+
+    /** HttpClients using the pool, guarded by POOLS */
+    private int references;
+
+    private final AtomicLong leaseCount = new AtomicLong();
+
+    private final AtomicLong totalLeaseWait = new AtomicLong();
+
+    private final AtomicLong maxLeaseWait = new AtomicLong();
+
+    private final AtomicLong nextStatsTime = new AtomicLong();
+
+    private SharedConnectionPool(String name, SchemeRegistry schemeRegistry, DnsResolver resolver,
+            int timeToLive, int validateAfterInactivity) {
+        this.name = name;
+        this.connectionManager = new MeasuringConnectionManager(schemeRegistry, resolver, timeToLive,
+                validateAfterInactivity) {
+            @Override
+            protected void connectionLeased(long waitNanos) {
+                leased(waitNanos);
+            }
+        };
+        connectionManager.setMaxTotal(MAX_TOTAL);
+        connectionManager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        nextStatsTime.set(System.currentTimeMillis() + STATS_INTERVAL_MS);
+    }
+
+    /**
+     * @return true if the HttpClient 4 connections are shared by several threads
+     */
+    static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Get the pool of the current thread, opening it if needed. It must be
+     * released by {@link #release(ClientConnectionManager)} once no more used.
+     *
+     * @param schemeRegistry schemes of the connections, if the pool is opened
+     * @param timeToLive time to live of the connections in milliseconds
+     * @param validateAfterInactivity connections idle for longer than this
+     *            number of milliseconds are checked before being reused
+     * @return the pool
+     */
+    static SharedConnectionPool acquire(SchemeRegistry schemeRegistry, int timeToLive,
+            int validateAfterInactivity) {
+        String name = SCOPE_TEST;
+        if (SCOPE_THREAD_GROUP.equals(SCOPE)) {
+            AbstractThreadGroup threadGroup = JMeterContextService.getContext().getThreadGroup();
+            if (threadGroup != null) {
+                name = getPoolName(threadGroup);
+            }
+        }
+        return acquire(name, schemeRegistry, CURRENT_SAMPLER_RESOLVER, timeToLive, validateAfterInactivity);
+    }
+
+    /**
+     * Thread groups may have the same name, so the name of their pool also
+     * identifies the instance shared by their threads
+     */
+    static String getPoolName(AbstractThreadGroup threadGroup) {
+        return threadGroup.getName() + "@" + Integer.toHexString(System.identityHashCode(threadGroup)); // $NON-NLS-1$
+    }
+
+    static SharedConnectionPool acquire(String name, SchemeRegistry schemeRegistry, DnsResolver resolver,
+            int timeToLive, int validateAfterInactivity) {
+        synchronized (POOLS) {
+            SharedConnectionPool pool = POOLS.get(name);
+            if (pool == null) {
+                pool = new SharedConnectionPool(name, schemeRegistry, resolver, timeToLive, validateAfterInactivity);
+                POOLS.put(name, pool);
+                log.info("Opened HttpClient4 connection pool " + name);
+            }
+            pool.references++;
+            return pool;
+        }
+    }
+
+    /**
+     * Release the pool of the connection manager, the pool is closed when it
+     * has been released as many times as it has been acquired.
+     *
+     * @param connectionManager connection manager of an HttpClient
+     * @return false if the connection manager does not belong to a shared pool
+     */
+    static boolean release(ClientConnectionManager connectionManager) {
+        SharedConnectionPool released = null;
+        synchronized (POOLS) {
+            for (SharedConnectionPool pool : POOLS.values()) {
+                if (pool.connectionManager == connectionManager) {
+                    released = pool;
+                    break;
+                }
+            }
+            if (released == null) {
+                return false;
+            }
+            if (--released.references > 0) {
+                return true;
+            }
+            POOLS.remove(released.name);
+        }
+        log.info("Closing HttpClient4 connection pool " + released.toStatsString());
+        released.connectionManager.shutdown();
+        return true;
+    }
+
+    /**
+     * @return the pools currently open
+     */
+    public static List<SharedConnectionPool> getPools() {
+        synchronized (POOLS) {
+            return new ArrayList<>(POOLS.values());
+        }
+    }
+
+    private void leased(long waitNanos) {
+        leaseCount.incrementAndGet();
+        totalLeaseWait.addAndGet(waitNanos);
+        long max;
+        while (waitNanos > (max = maxLeaseWait.get()) && !maxLeaseWait.compareAndSet(max, waitNanos)) { // NOSONAR
+            // retry
+        }
+        if (STATS_INTERVAL_MS > 0) {
+            long now = System.currentTimeMillis();
+            long next = nextStatsTime.get();
+            if (now >= next && nextStatsTime.compareAndSet(next, now + STATS_INTERVAL_MS)) {
+                log.info("HttpClient4 connection pool " + toStatsString());
+            }
+        }
+    }
+
+    /**
+     * @return the name of the pool, the thread group name followed by its
+     *         identity hash code or "test"
+     */
+    public String getName() {
+        return name;
+    }
+
+    ClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    /**
+     * @return the connections leased, available and the requests waiting for one
+     */
+    public PoolStats getTotalStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * @return the number of connections leased since the pool has been opened
+     */
+    public long getLeaseCount() {
+        return leaseCount.get();
+    }
+
+    /**
+     * @return the mean time spent waiting for a connection, in milliseconds
+     */
+    public double getMeanLeaseWait() {
+        long count = leaseCount.get();
+        return count == 0 ? 0 : totalLeaseWait.get() / (count * 1000000.0);
+    }
+
+    /**
+     * @return the longest time spent waiting for a connection, in milliseconds
+     */
+    public double getMaxLeaseWait() {
+        return maxLeaseWait.get() / 1000000.0;
+    }
+
+    private String toStatsString() {
+        PoolStats stats = getTotalStats();
+        return String.format(Locale.ENGLISH, "%s: leased=%d available=%d pending=%d max=%d, leases=%d wait mean=%.3fms max=%.3fms", // $NON-NLS-1$
+                name, Integer.valueOf(stats.getLeased()), Integer.valueOf(stats.getAvailable()),
+                Integer.valueOf(stats.getPending()), Integer.valueOf(stats.getMax()),
+                Long.valueOf(getLeaseCount()), Double.valueOf(getMeanLeaseWait()), Double.valueOf(getMaxLeaseWait()));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jmeter.protocol.http.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Buffers reused by a thread to read response bodies, so that reading a
+ * response only allocates the returned byte array.
+ * <p>
+ * Instances are not thread-safe, each thread gets its own with {@link #get()}
+ * and must be done with the buffers before it reads another response.
+ * </p>
+ *
+ * @since 3.1
+ */
+public final class PooledResponseBuffers {
+
+    /** 8kB is the (max) size to have the latency ('the first packet') */
+    public static final int READ_BUFFER_SIZE = 8192;
+
+    private static final int INITIAL_BODY_SIZE = 4 * 1024;
+
+    private static final ThreadLocal<PooledResponseBuffers> BUFFERS = new ThreadLocal<PooledResponseBuffers>() {
+        @Override
+        protected PooledResponseBuffers initialValue() {
+            return new PooledResponseBuffers();
+        }
+    };
+
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+
+    private final BodyBuffer bodyBuffer = new BodyBuffer();
+
+    private PooledResponseBuffers() {
+        super();
+    }
+
+    /**
+     * @return the buffers of the current thread
+     */
+    public static PooledResponseBuffers get() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * @return the buffer to read the response stream into
+     */
+    public byte[] getReadBuffer() {
+        return readBuffer;
+    }
+
+    /**
+     * Get the buffer which accumulates the body, emptied.
+     *
+     * @return the body buffer, {@link ByteArrayOutputStream#toByteArray()}
+     *         returns a copy of its content
+     */
+    public ByteArrayOutputStream getBodyBuffer() {
+        bodyBuffer.reset();
+        return bodyBuffer;
+    }
+
+    /**
+     * Release the memory of the body buffer if it has grown larger than the
+     * specified size, so that a thread does not keep a large buffer after
+     * reading a large response.
+     *
+     * @param maxRetainedSize
+     *            the maximum size of the buffer kept for the next responses
+     */
+    public void trim(int maxRetainedSize) {
+        bodyBuffer.trim(maxRetainedSize);
+    }
+
+    /**
+     * @return the size of the body buffer
+     */
+    int getBodyBufferCapacity() {
+        return bodyBuffer.capacity();
+    }
+
+    /**
+     * Growable buffer whose memory can be released
+     */
+    private static final class BodyBuffer extends ByteArrayOutputStream {
+
+        private BodyBuffer() {
+            super(INITIAL_BODY_SIZE);
+        }
+
+        private void trim(int maxRetainedSize) {
+            if (buf.length > maxRetainedSize) {
+                count = 0;
+                buf = new byte[Math.min(INITIAL_BODY_SIZE, maxRetainedSize)];
+            }
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+    }
+}
@@ -24,9 +24,14 @@ package org.apache.jmeter.config;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.jmeter.junit.JMeterTestCase;
 import org.apache.jmeter.services.FileServer;
@@ -224,6 +229,43 @@ public class TestCVSDataSet extends JMeterTestCase {
         return csv;
     }
 
+    @Test
+    public void testShuffledEachRowOnce() {
+        CSVDataSet csv = initCSV();
+        csv.setAccessMode("accessMode.shuffle");
+        csv.setRecycle(false);
+        List<String> read = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            csv.iterationStart(null);
+            read.add(threadVars.get("a"));
+        }
+        Collections.sort(read);
+        assertEquals(Arrays.asList("a1", "a2", "a3", "a4"), read);
+        csv.iterationStart(null);
+        assertEquals("<EOF>", threadVars.get("a"));
+    }
+
+    @Test
+    public void testRandomAndPartition() {
+        CSVDataSet csv = initCSV();
+        csv.setAccessMode("accessMode.random");
+        List<String> rows = Arrays.asList("a1", "a2", "a3", "a4");
+        for (int i = 0; i < 10; i++) {
+            csv.iterationStart(null);
+            assertTrue(rows.contains(threadVars.get("a")));
+        }
+
+        // Without thread group, the thread is alone and gets all the rows
+        csv = initCSV();
+        csv.setAccessMode("accessMode.partition");
+        for (String row : rows) {
+            csv.iterationStart(null);
+            assertEquals(row, threadVars.get("a"));
+        }
+        csv.iterationStart(null);
+        assertEquals("a1", threadVars.get("a"));
+    }
+
     @Test
     public void testShareMode(){
         
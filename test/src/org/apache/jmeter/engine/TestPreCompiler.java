@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.engine;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jmeter.assertions.ResponseAssertion;
+import org.apache.jmeter.control.GenericController;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.testelement.TestPlan;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jorphan.collections.HashTree;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPreCompiler extends JMeterTestCase {
+
+    @Before
+    public void setUp() {
+        JMeterContextService.getContext().setVariables(new JMeterVariables());
+    }
+
+    private static ResponseAssertion assertion(String name, String pattern) {
+        ResponseAssertion assertion = new ResponseAssertion();
+        assertion.setName(name);
+        assertion.setTestFieldResponseData();
+        assertion.setToContainsType();
+        assertion.addTestString(pattern);
+        return assertion;
+    }
+
+    @Test
+    public void testStaticElementsShared() throws Exception {
+        ListedHashTree tree = new ListedHashTree();
+        TestPlan plan = new TestPlan();
+        GenericController controller = new GenericController();
+        ResponseAssertion staticAssertion = assertion("static", "Welcome");
+        ResponseAssertion dynamicAssertion = assertion("dynamic", "Welcome ${user}");
+        tree.add(plan, controller);
+        tree.getTree(plan).add(controller, staticAssertion);
+        tree.getTree(plan).add(controller, dynamicAssertion);
+
+        tree.traverse(new PreCompiler());
+        assertTrue(staticAssertion.isSharedByThreads());
+        assertFalse(dynamicAssertion.isSharedByThreads());
+        assertFalse(controller.isSharedByThreads());
+
+        TreeCloner cloner = new TreeCloner();
+        tree.traverse(cloner);
+        Object[] cloned = assertionsOf(cloner.getClonedTree());
+        assertSame(staticAssertion, cloned[0]);
+        assertNotSame(dynamicAssertion, cloned[1]);
+
+        // Cloned anyway when NoThreadClone is not honoured
+        TreeCloner validationCloner = new TreeCloner(false);
+        tree.traverse(validationCloner);
+        assertNotSame(staticAssertion, assertionsOf(validationCloner.getClonedTree())[0]);
+    }
+
+    /**
+     * @return the children of the controller under the test plan
+     */
+    private static Object[] assertionsOf(HashTree tree) {
+        HashTree planTree = tree.getTree(tree.getArray()[0]);
+        return planTree.getTree(planTree.getArray()[0]).getArray();
+    }
+}
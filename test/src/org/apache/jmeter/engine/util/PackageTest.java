@@ -21,7 +21,10 @@
  */
 package org.apache.jmeter.engine.util;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
@@ -230,4 +233,47 @@ public class PackageTest extends JMeterTestCase {
         assertEquals("hello world", newProp.getStringValue());
     }
 
+    @Test
+    public void testCompiledForms() throws Exception {
+        CompoundVariable constant = new CompoundVariable("plain \\${text}");
+        assertEquals("plain ${text}", constant.execute());
+        assertArrayEquals(new String[0], constant.getVariableNames());
+
+        CompoundVariable variable = new CompoundVariable("${server}");
+        assertSame(jmctx.getVariables().get("server"), variable.execute());
+        assertArrayEquals(new String[] { "server" }, variable.getVariableNames());
+        assertEquals("${undefined}", new CompoundVariable("${undefined}").execute());
+
+        CompoundVariable concatenation = new CompoundVariable("http://${server}/${my_regex}?q=${__javaScript(1+1)}");
+        assertEquals("http://jakarta.apache.org/.*?q=2", concatenation.execute());
+        assertNull(concatenation.getVariableNames());
+        assertEquals("http://jakarta.apache.org/.*?q=2", concatenation.getFunction().execute());
+
+        concatenation.clear();
+        assertEquals("", concatenation.execute());
+    }
+
+    @Test
+    public void testVariablesOnlyCachedUntilChanged() throws Exception {
+        StringProperty prop = new StringProperty("url", "http://${server}/${path}");
+        JMeterProperty newProp = transformer.transformValue(prop);
+        newProp.setRunningVersion(true);
+        jmctx.getVariables().put("path", "a");
+        String value = newProp.getStringValue();
+        assertEquals("http://jakarta.apache.org/a", value);
+        newProp.recoverRunningVersion(null);
+        assertSame(value, newProp.getStringValue());
+
+        jmctx.getVariables().put("path", "b");
+        assertEquals("http://jakarta.apache.org/b", newProp.getStringValue());
+        jmctx.getVariables().remove("path");
+        assertEquals("http://jakarta.apache.org/${path}", newProp.getStringValue());
+
+        // Value set while running is kept until the running version is recovered
+        newProp.setObjectValue("set");
+        assertEquals("set", newProp.getStringValue());
+        newProp.recoverRunningVersion(null);
+        assertEquals("http://jakarta.apache.org/${path}", newProp.getStringValue());
+    }
+
 }
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestCookieStore {
+
+    private static String names(List<Cookie> cookies) {
+        List<String> names = new ArrayList<>();
+        for (Cookie cookie : cookies) {
+            names.add(cookie.getName());
+        }
+        return names.toString();
+    }
+
+    @Test
+    public void testCandidatesOfHost() {
+        CookieStore store = new CookieStore();
+        store.add(new Cookie("a", "1", "www.example.com", "/", false, 0));
+        store.add(new Cookie("b", "1", ".Example.com", "/", false, 0));
+        store.add(new Cookie("c", "1", "other.com", "/", false, 0));
+        store.add(new Cookie("d", "1", "${host}", "/", false, 0));
+        store.add(new Cookie("e", "1", "example.com", "/path", false, 0));
+        store.add(new Cookie("f", "1", "localhost.local", "/", false, 0));
+        assertEquals(6, store.size());
+        assertEquals("[a, b, d, e]", names(store.getCandidates("WWW.example.com", System.currentTimeMillis())));
+        assertEquals("[b, d, e]", names(store.getCandidates("example.com", System.currentTimeMillis())));
+        assertEquals("[d, f]", names(store.getCandidates("localhost", System.currentTimeMillis())));
+        assertEquals("[a, b, c, d, e, f]", names(store.getCookies()));
+    }
+
+    @Test
+    public void testReplaceAndRemove() {
+        CookieStore store = new CookieStore();
+        Cookie first = new Cookie("a", "1", "example.com", "/", false, 0);
+        store.add(first);
+        store.add(new Cookie("b", "1", "example.com", "/", false, 0));
+        store.add(new Cookie("a", "2", "example.com", "/", false, 0));
+        store.add(new Cookie("a", "3", "example.com", "/other", false, 0));
+        assertEquals(3, store.size());
+        assertEquals("[b, a, a]", names(store.getCandidates("example.com", System.currentTimeMillis())));
+        assertEquals("2", store.getCookies().get(1).getValue());
+
+        assertEquals("2", store.remove(first).getValue());
+        assertNull(store.remove(first));
+        assertEquals(2, store.size());
+        assertSame(null, store.remove(new Cookie("a", "1", "example.org", "/", false, 0)));
+    }
+
+    @Test
+    public void testExpiredCookiesRemoved() {
+        CookieStore store = new CookieStore();
+        long now = System.currentTimeMillis();
+        store.add(new Cookie("session", "1", "example.com", "/", false, 0));
+        store.add(new Cookie("expired", "1", "example.com", "/", false, now / 1000 - 10));
+        store.add(new Cookie("valid", "1", "example.com", "/", false, now / 1000 + 10));
+        assertEquals(3, store.size());
+        assertEquals("[session, valid]", names(store.getCandidates("example.com", now)));
+        assertEquals(2, store.size());
+        assertEquals("[session, valid]", names(store.getCookies()));
+    }
+}
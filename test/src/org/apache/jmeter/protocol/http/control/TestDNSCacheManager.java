@@ -18,6 +18,8 @@
 
 package org.apache.jmeter.protocol.http.control;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.fail;
 
 import java.net.UnknownHostException;
@@ -42,4 +44,21 @@ public class TestDNSCacheManager extends JMeterTestCase {
         }
     }
 
+    @Test
+    public void testResolverKeyOfClones() {
+        DNSCacheManager original = new DNSCacheManager();
+        original.setCustomResolver(true);
+        original.addServer("127.0.0.98");
+        original.addServer("127.0.0.99");
+        DNSCacheManager clone1 = (DNSCacheManager) original.clone();
+        DNSCacheManager clone2 = (DNSCacheManager) original.clone();
+        // The threads share the cache of the same servers
+        assertEquals(clone1.getResolverKey(), clone2.getResolverKey());
+        DNSCacheManager other = new DNSCacheManager();
+        other.setCustomResolver(true);
+        other.addServer("127.0.0.97");
+        assertNotEquals(clone1.getResolverKey(), ((DNSCacheManager) other.clone()).getResolverKey());
+        assertEquals("system", new DNSCacheManager().getResolverKey());
+    }
+
 }
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.apache.jmeter.protocol.http.control.CacheManager.CacheEntry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMemoryBoundedCache {
+
+    private static final String LAST_MODIFIED = "Mon, 17 Oct 2016 10:00:00 GMT";
+
+    @Before
+    @After
+    public void clearAll() {
+        MemoryBoundedCache.clearAll();
+    }
+
+    private static CacheEntry entry(String etag) {
+        return new CacheEntry(LAST_MODIFIED, null, etag);
+    }
+
+    @Test
+    public void testEqualEntriesShared() {
+        MemoryBoundedCache first = new MemoryBoundedCache(100, 1000000);
+        MemoryBoundedCache second = new MemoryBoundedCache(100, 1000000);
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        first.put("http://localhost/a", new CacheEntry(LAST_MODIFIED, new Date(now + 1), "a"));
+        long bytes = MemoryBoundedCache.getTotalBytes();
+        second.put("http://localhost/a", new CacheEntry(LAST_MODIFIED, new Date(now + 2), "a"));
+        assertSame(first.get("http://localhost/a"), second.get("http://localhost/a"));
+        assertEquals(now, first.get("http://localhost/a").getExpires().getTime());
+        // Only the key is counted for the shared entry
+        assertTrue(MemoryBoundedCache.getTotalBytes() - bytes < bytes);
+        assertEquals(2, MemoryBoundedCache.getTotalEntries());
+
+        second.clear();
+        assertTrue(second.isEmpty());
+        assertEquals(bytes, MemoryBoundedCache.getTotalBytes());
+        assertNotNull(first.get("http://localhost/a"));
+    }
+
+    @Test
+    public void testLimitOfEntries() {
+        MemoryBoundedCache cache = new MemoryBoundedCache(3, 1000000);
+        for (int i = 0; i < 3; i++) {
+            cache.put("http://localhost/" + i, entry(Integer.toString(i)));
+        }
+        cache.get("http://localhost/0");
+        cache.put("http://localhost/3", entry("3"));
+        assertEquals(3, cache.size());
+        // The entry read is kept
+        assertNotNull(cache.get("http://localhost/0"));
+        assertNull(cache.get("http://localhost/1"));
+        assertNotNull(cache.get("http://localhost/3"));
+    }
+
+    @Test
+    public void testLimitOfBytesForAllCaches() {
+        MemoryBoundedCache first = new MemoryBoundedCache(1000, 5000);
+        MemoryBoundedCache second = new MemoryBoundedCache(1000, 5000);
+        for (int i = 0; i < 100; i++) {
+            first.put("http://localhost/first/" + i, entry("first" + i));
+            second.put("http://localhost/second/" + i, entry("second" + i));
+            assertTrue(MemoryBoundedCache.getTotalBytes() <= 5000);
+        }
+        assertTrue(first.size() > 0);
+        assertTrue(second.size() > 0);
+        assertTrue(first.size() + second.size() < 100);
+        assertEquals(first.size() + second.size(), MemoryBoundedCache.getTotalEntries());
+        // The most recent entries are kept
+        assertNotNull(first.get("http://localhost/first/99"));
+        assertNull(first.get("http://localhost/first/0"));
+    }
+}
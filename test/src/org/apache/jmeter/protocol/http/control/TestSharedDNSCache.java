@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestSharedDNSCache {
+
+    /**
+     * Lookup counting its calls, which waits for {@link #release} and
+     * returns a new address each time
+     */
+    private static class CountingLookup implements SharedDNSCache.Lookup {
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final long ttlMillis;
+
+        CountingLookup(long ttlMillis) {
+            this.ttlMillis = ttlMillis;
+        }
+
+        @Override
+        public SharedDNSCache.Addresses lookup(String host) throws UnknownHostException {
+            int n = count.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new UnknownHostException(host);
+            }
+            if ("unknown".equals(host)) {
+                throw new UnknownHostException(host);
+            }
+            return new SharedDNSCache.Addresses(
+                    new InetAddress[] { InetAddress.getByAddress(host, new byte[] { 10, 0, 0, (byte) n }) },
+                    ttlMillis);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        SharedDNSCache.clear();
+    }
+
+    @Test
+    public void testConcurrentLookupsCoalesced() throws Exception {
+        final CountingLookup lookup = new CountingLookup(60000);
+        final InetAddress[][] results = new InetAddress[10][];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        results[index] = SharedDNSCache.resolve("test", "host.example", lookup);
+                    } catch (UnknownHostException e) { // NOSONAR Checked by the results
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        Thread.sleep(100);
+        lookup.release.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+        assertEquals(1, lookup.count.get());
+        for (InetAddress[] result : results) {
+            assertSame(results[0], result);
+        }
+        assertSame(results[0], SharedDNSCache.resolve("test", "host.example", lookup));
+        assertEquals(1, SharedDNSCache.getMissCount());
+        assertEquals(results.length, SharedDNSCache.getHitCount());
+        assertTrue(SharedDNSCache.getMaxLookupTime() >= SharedDNSCache.getMeanLookupTime());
+        // Names are cached per resolver
+        SharedDNSCache.resolve("other", "host.example", lookup);
+        assertEquals(2, lookup.count.get());
+    }
+
+    @Test
+    public void testExpiredAndRefreshed() throws Exception {
+        CountingLookup lookup = new CountingLookup(2000);
+        lookup.release.countDown();
+        InetAddress[] first = SharedDNSCache.resolve("test", "host.example", lookup);
+        // Refreshed in the background after 3/4 of the TTL
+        Thread.sleep(1600);
+        assertSame(first, SharedDNSCache.resolve("test", "host.example", lookup));
+        for (int i = 0; i < 100 && SharedDNSCache.getRefreshCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, SharedDNSCache.getRefreshCount());
+        InetAddress[] refreshed = SharedDNSCache.resolve("test", "host.example", lookup);
+        assertEquals(2, refreshed[0].getAddress()[3]);
+        assertEquals(1, SharedDNSCache.getMissCount());
+        // Resolved again once expired
+        Thread.sleep(2100);
+        assertEquals(3, SharedDNSCache.resolve("test", "host.example", lookup)[0].getAddress()[3]);
+        assertEquals(2, SharedDNSCache.getMissCount());
+    }
+
+    @Test
+    public void testFailureNotCached() throws Exception {
+        CountingLookup lookup = new CountingLookup(60000);
+        lookup.release.countDown();
+        for (int i = 1; i <= 2; i++) {
+            try {
+                SharedDNSCache.resolve("test", "unknown", lookup);
+                fail("Expected an UnknownHostException");
+            } catch (UnknownHostException e) {
+                assertEquals(i, lookup.count.get());
+            }
+        }
+        assertEquals(0, SharedDNSCache.getSize());
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.http2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.junit.Test;
+
+public class TestHpack {
+
+    private static byte[] hex(String value) {
+        String digits = value.replace(" ", "");
+        byte[] bytes = new byte[digits.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(digits.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static List<Header> headers(String... namesAndValues) {
+        List<Header> headers = new ArrayList<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            headers.add(new BasicHeader(namesAndValues[i], namesAndValues[i + 1]));
+        }
+        return headers;
+    }
+
+    private static void assertHeadersEquals(List<Header> expected, List<Header> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+        }
+    }
+
+    // Requests with Huffman coding from RFC 7541 appendix C.4
+    private static final String[] BLOCKS = {
+        "8286 8441 8cf1 e3c2 e5f2 3a6b a0ab 90f4 ff",
+        "8286 84be 5886 a8eb 1064 9cbf",
+        "8287 85bf 4088 25a8 49e9 5ba9 7d7f 8925 a849 e95b b8e8 b4bf"
+    };
+
+    @SuppressWarnings("unchecked")
+    private static final List<Header>[] REQUESTS = new List[] {
+        headers(":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com"),
+        headers(":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com",
+                "cache-control", "no-cache"),
+        headers(":method", "GET", ":scheme", "https", ":path", "/index.html", ":authority", "www.example.com",
+                "custom-key", "custom-value")
+    };
+
+    @Test
+    public void testDecodeRfcExamples() throws Exception {
+        HpackDecoder decoder = new HpackDecoder();
+        for (int i = 0; i < BLOCKS.length; i++) {
+            byte[] block = hex(BLOCKS[i]);
+            assertHeadersEquals(REQUESTS[i], decoder.decode(block, 0, block.length));
+        }
+    }
+
+    @Test
+    public void testEncodeRfcExamples() throws Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        for (int i = 0; i < BLOCKS.length; i++) {
+            assertArrayEquals("block " + i, hex(BLOCKS[i]), encoder.encode(REQUESTS[i]));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder();
+        char[] large = new char[3000];
+        Arrays.fill(large, 'v');
+        List<Header> request = headers(":method", "POST", ":path", "/a?b=c%20d", "Cookie", "JSESSIONID=1234567890",
+                "authorization", "Basic dXNlcjpwYXNz", "x-large", new String(large), "x-binary", "\u0000\u007fÿ");
+        for (int i = 0; i < 3; i++) {
+            byte[] block = encoder.encode(request);
+            List<Header> decoded = decoder.decode(block, 0, block.length);
+            assertEquals("cookie", decoded.get(2).getName());
+            decoded.set(2, new BasicHeader("Cookie", decoded.get(2).getValue()));
+            assertHeadersEquals(request, decoded);
+            if (i > 0) {
+                // Only the large header and the credentials are not indexed
+                assertTrue("Block too large: " + block.length, block.length < large.length + 40);
+            }
+        }
+        encoder.setMaxTableSize(0);
+        byte[] block = encoder.encode(request);
+        assertEquals(0x20, block[0]);
+        assertHeadersEquals(request.subList(0, 2), decoder.decode(block, 0, block.length).subList(0, 2));
+    }
+
+    @Test
+    public void testHuffmanAllOctets() throws Exception {
+        byte[] octets = new byte[256];
+        for (int i = 0; i < octets.length; i++) {
+            octets[i] = (byte) i;
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        Huffman.encode(octets, encoded);
+        assertEquals(Huffman.encodedLength(octets), encoded.size());
+        assertArrayEquals(octets, Huffman.decode(encoded.toByteArray(), 0, encoded.size()));
+    }
+
+    @Test
+    public void testInvalidBlocks() throws Exception {
+        HpackDecoder decoder = new HpackDecoder();
+        for (String block : new String[] { "be", "7f", "4085", "0f2f" }) {
+            byte[] bytes = hex(block);
+            try {
+                decoder.decode(bytes, 0, bytes.length);
+                fail("Expected an IOException for " + block);
+            } catch (IOException e) { // NOSONAR Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.http2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestHttp2Connection {
+
+    private static final int RESPONSE_SIZE = 100000;
+
+    /** Flow control window of a stream, as set by the client */
+    private static final int STREAM_WINDOW_SIZE = 1 << 20;
+
+    private ServerSocket serverSocket;
+
+    private Thread server;
+
+    private volatile Throwable serverError;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverSocket.close();
+        if (server != null) {
+            server.join(10000);
+        }
+        assertNull("Server failed: " + serverError, serverError);
+    }
+
+    /**
+     * Start a server answering the requests, once it has received them all,
+     * in the reverse order. GET gets {@link #RESPONSE_SIZE} bytes depending on
+     * the stream id, POST gets the number of bytes it sent.
+     */
+    private void startServer(final int requestCount) {
+        server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket socket = serverSocket.accept()) {
+                    serve(socket, requestCount);
+                } catch (Throwable e) { // NOSONAR Checked by tearDown
+                    serverError = e;
+                }
+            }
+        });
+        server.start();
+    }
+
+    private static void serve(Socket socket, int requestCount) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        byte[] preface = new byte[24];
+        in.readFully(preface);
+        assertEquals("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n", new String(preface, StandardCharsets.US_ASCII));
+        writeFrame(out, 0x4, 0, 0, new byte[0]);
+        HpackDecoder decoder = new HpackDecoder();
+        HpackEncoder encoder = new HpackEncoder();
+        Map<Integer, Long> received = new LinkedHashMap<>();
+        List<Integer> complete = new ArrayList<>();
+        while (complete.size() < requestCount) {
+            int length = (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+            int type = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            Integer streamId = Integer.valueOf(in.readInt());
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            if (type == 0x4 && (flags & 0x1) == 0) {
+                writeFrame(out, 0x4, 0x1, 0, new byte[0]);
+            } else if (type == 0x1) {
+                List<Header> headers = decoder.decode(payload, 0, length);
+                assertEquals(":method", headers.get(0).getName());
+                received.put(streamId, headers.get(0).getValue().equals("GET") ? Long.valueOf(-1) : Long.valueOf(0));
+            } else if (type == 0x0) {
+                received.put(streamId, Long.valueOf(received.get(streamId).longValue() + length));
+                if (length > 0) {
+                    writeFrame(out, 0x8, 0, 0, intToBytes(length));
+                    writeFrame(out, 0x8, 0, streamId.intValue(), intToBytes(length));
+                }
+            }
+            if ((type == 0x0 || type == 0x1) && (flags & 0x1) != 0) {
+                complete.add(streamId);
+            }
+        }
+        Collections.reverse(complete);
+        for (Integer streamId : complete) {
+            long count = received.get(streamId).longValue();
+            byte[] body = count < 0 ? responseBody(streamId.intValue())
+                    : Long.toString(count).getBytes(StandardCharsets.US_ASCII);
+            byte[] block = encoder.encode(Arrays.<Header>asList(new BasicHeader(":status", "200")));
+            writeFrame(out, 0x1, 0x4, streamId.intValue(), block);
+            for (int offset = 0; offset < body.length; offset += 16384) {
+                int length = Math.min(16384, body.length - offset);
+                writeFrame(out, 0x0, offset + length == body.length ? 0x1 : 0, streamId.intValue(),
+                        Arrays.copyOfRange(body, offset, offset + length));
+            }
+        }
+        out.flush();
+        // Wait for the GOAWAY of the client
+        while (in.read() != -1) { // NOSONAR
+        }
+    }
+
+    /**
+     * Answer GET requests one after the other, in the limits of the connection
+     * flow control window: the first ones get a full stream window of data,
+     * without ending the stream, the last one gets a short body.
+     */
+    private static void serveFlowControlled(Socket socket, int unendedCount) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        in.readFully(new byte[24]);
+        writeFrame(out, 0x4, 0, 0, new byte[0]);
+        HpackEncoder encoder = new HpackEncoder();
+        long window = 65535;
+        int requests = 0;
+        int streamId = 0;
+        int pending = 0;
+        while (true) {
+            int length = (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+            int type = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            int frameStreamId = in.readInt();
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            if (type == 0x4 && (flags & 0x1) == 0) {
+                writeFrame(out, 0x4, 0x1, 0, new byte[0]);
+            } else if (type == 0x8 && frameStreamId == 0) {
+                window += new DataInputStream(new ByteArrayInputStream(payload)).readInt();
+            } else if (type == 0x1) {
+                requests++;
+                streamId = frameStreamId;
+                pending = requests <= unendedCount ? STREAM_WINDOW_SIZE : 10;
+                byte[] block = encoder.encode(Arrays.<Header>asList(new BasicHeader(":status", "200")));
+                writeFrame(out, 0x1, 0x4, streamId, block);
+            }
+            while (pending > 0 && window > 0) {
+                int size = (int) Math.min(Math.min(16384, pending), window);
+                pending -= size;
+                window -= size;
+                writeFrame(out, 0x0, pending == 0 && requests > unendedCount ? 0x1 : 0, streamId, new byte[size]);
+            }
+            if (pending == 0 && requests > unendedCount) {
+                break;
+            }
+        }
+        out.flush();
+        // Wait for the GOAWAY of the client
+        while (in.read() != -1) { // NOSONAR
+        }
+    }
+
+    private static byte[] responseBody(int streamId) {
+        byte[] body = new byte[RESPONSE_SIZE];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (i + streamId);
+        }
+        return body;
+    }
+
+    private static void writeFrame(OutputStream out, int type, int flags, int streamId, byte[] payload)
+            throws IOException {
+        out.write(payload.length >>> 16);
+        out.write(payload.length >>> 8);
+        out.write(payload.length);
+        out.write(type);
+        out.write(flags);
+        out.write(intToBytes(streamId));
+        out.write(payload);
+    }
+
+    private static byte[] intToBytes(int value) {
+        return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+    }
+
+    private Http2Connection connect() throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort()));
+        return new Http2Connection(channel, null, "test", 10000);
+    }
+
+    private static List<Header> request(String method) {
+        return Arrays.<Header>asList(new BasicHeader(":method", method), new BasicHeader(":scheme", "http"),
+                new BasicHeader(":authority", "localhost"), new BasicHeader(":path", "/"));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testMultiplexedStreams() throws Exception {
+        startServer(4);
+        try (Http2Connection connection = connect()) {
+            List<Http2Stream> gets = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                gets.add(connection.newStream(request("GET"), null, 10000));
+            }
+            // Larger than the default flow control windows and than the pending output limit
+            byte[] body = new byte[2000000];
+            Http2Stream post = connection.newStream(request("POST"), body, 10000);
+            assertEquals(4, connection.getActiveStreams());
+            for (Http2Stream stream : gets) {
+                stream.awaitHeaders();
+                assertEquals(200, stream.getStatus());
+                assertArrayEquals(responseBody(stream.getId()), readFully(stream.getInputStream()));
+                assertEquals(RESPONSE_SIZE, stream.getDataSize());
+            }
+            post.awaitHeaders();
+            assertEquals("2000000", new String(readFully(post.getInputStream()), StandardCharsets.US_ASCII));
+            assertEquals(0, connection.getActiveStreams());
+            assertTrue(connection.isUsable());
+        }
+    }
+
+    @Test
+    public void testCancelUnreadStreams() throws Exception {
+        // Enough data to fill the connection window
+        final int cancelledCount = 16;
+        server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket socket = serverSocket.accept()) {
+                    serveFlowControlled(socket, cancelledCount);
+                } catch (Throwable e) { // NOSONAR Checked by tearDown
+                    serverError = e;
+                }
+            }
+        });
+        server.start();
+        try (Http2Connection connection = connect()) {
+            for (int i = 0; i < cancelledCount; i++) {
+                Http2Stream stream = connection.newStream(request("GET"), null, 10000);
+                stream.awaitHeaders();
+                long deadline = System.currentTimeMillis() + 10000;
+                while (stream.getDataSize() < STREAM_WINDOW_SIZE && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+                assertEquals(STREAM_WINDOW_SIZE, stream.getDataSize());
+                // Data left unread
+                stream.cancel();
+            }
+            // Needs the flow control credit of the cancelled streams
+            Http2Stream stream = connection.newStream(request("GET"), null, 10000);
+            stream.awaitHeaders();
+            assertEquals(10, readFully(stream.getInputStream()).length);
+            assertTrue(connection.isUsable());
+        }
+    }
+
+    @Test
+    public void testServerClose() throws Exception {
+        server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket socket = serverSocket.accept()) {
+                    // Wait for the request, then close
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    in.readFully(new byte[24]);
+                    int type;
+                    do {
+                        byte[] header = new byte[9];
+                        in.readFully(header);
+                        type = header[3];
+                        in.readFully(new byte[((header[0] & 0xff) << 16) | ((header[1] & 0xff) << 8)
+                                | (header[2] & 0xff)]);
+                    } while (type != 0x1);
+                } catch (Throwable e) { // NOSONAR Checked by tearDown
+                    serverError = e;
+                }
+            }
+        });
+        server.start();
+        try (Http2Connection connection = connect()) {
+            Http2Stream stream = connection.newStream(request("GET"), null, 10000);
+            try {
+                stream.awaitHeaders();
+                fail("Expected an IOException");
+            } catch (IOException e) { // NOSONAR Expected
+            }
+            assertTrue(!connection.isUsable());
+        }
+    }
+
+    @Test
+    public void testInvalidSettings() throws Exception {
+        server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket socket = serverSocket.accept()) {
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    in.readFully(new byte[24]);
+                    // SETTINGS_MAX_FRAME_SIZE smaller than allowed
+                    byte[] settings = new byte[] { 0, 5, 0, 0, 0, 1 };
+                    writeFrame(socket.getOutputStream(), 0x4, 0, 0, settings);
+                    int type;
+                    do {
+                        byte[] header = new byte[9];
+                        in.readFully(header);
+                        type = header[3];
+                        in.readFully(new byte[((header[0] & 0xff) << 16) | ((header[1] & 0xff) << 8)
+                                | (header[2] & 0xff)]);
+                    } while (type != 0x7);
+                } catch (Throwable e) { // NOSONAR Checked by tearDown
+                    serverError = e;
+                }
+            }
+        });
+        server.start();
+        try (Http2Connection connection = connect()) {
+            try {
+                Http2Stream stream = connection.newStream(request("GET"), null, 10000);
+                stream.awaitHeaders();
+                fail("Expected an IOException");
+            } catch (IOException e) { // NOSONAR Expected
+            }
+            assertTrue(!connection.isUsable());
+        }
+        // The server got the GOAWAY
+        server.join(10000);
+        assertTrue(!server.isAlive());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestParsedLinksCache {
+
+    /**
+     * Parsing counting its calls, which waits for {@link #release}
+     */
+    private static class CountingParsing implements ParsedLinksCache.Parsing {
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final String url;
+
+        CountingParsing(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public List<URLString> parse() throws HTMLParseException {
+            count.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+                if (url == null) {
+                    throw new HTMLParseException("Failed");
+                }
+                List<URLString> urls = new ArrayList<>();
+                urls.add(new URLString(new URL(url)));
+                return urls;
+            } catch (InterruptedException | java.net.MalformedURLException e) {
+                throw new HTMLParseException(e);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentParsingsCoalesced() throws Exception {
+        final ParsedLinksCache cache = new ParsedLinksCache(100000);
+        final CountingParsing parsing = new CountingParsing("http://localhost/a.png");
+        final List<List<URLString>> results = Collections.synchronizedList(new ArrayList<List<URLString>>());
+        Thread[] threads = new Thread[10];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        results.add(cache.get("page", parsing));
+                    } catch (HTMLParseException e) { // NOSONAR Checked by the results
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        Thread.sleep(100);
+        parsing.release.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+        assertEquals(1, parsing.count.get());
+        assertEquals(threads.length, results.size());
+        for (List<URLString> result : results) {
+            assertSame(results.get(0), result);
+        }
+        assertSame(results.get(0), cache.get("page", parsing));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(threads.length, cache.getHitCount());
+    }
+
+    @Test
+    public void testLimitOfBytes() throws Exception {
+        ParsedLinksCache cache = new ParsedLinksCache(2000);
+        for (int i = 0; i < 20; i++) {
+            CountingParsing parsing = new CountingParsing("http://localhost/" + i + ".png");
+            parsing.release.countDown();
+            cache.get("page" + i, parsing);
+            assertTrue(cache.getBytes() <= 2000);
+        }
+        assertTrue(cache.size() > 1);
+        assertTrue(cache.size() < 20);
+        // The least recently used pages are removed
+        CountingParsing parsing = new CountingParsing("http://localhost/0.png");
+        parsing.release.countDown();
+        cache.get("page19", parsing);
+        cache.get("page0", parsing);
+        assertEquals(1, parsing.count.get());
+        cache.clear();
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testFailureNotCached() throws Exception {
+        ParsedLinksCache cache = new ParsedLinksCache(100000);
+        CountingParsing parsing = new CountingParsing(null);
+        parsing.release.countDown();
+        for (int i = 1; i <= 2; i++) {
+            try {
+                cache.get("page", parsing);
+                fail("Expected an HTMLParseException");
+            } catch (HTMLParseException e) {
+                assertEquals(i, parsing.count.get());
+            }
+        }
+        assertEquals(0, cache.size());
+    }
+}
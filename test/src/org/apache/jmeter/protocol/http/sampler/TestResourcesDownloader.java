@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.protocol.http.sampler.ResourcesDownloader.AsynSamplerResultHolder;
+import org.apache.jmeter.testelement.property.CollectionProperty;
+import org.junit.Test;
+
+public class TestResourcesDownloader {
+
+    /**
+     * Records the highest number of tasks running at the same time, in total
+     * and per host
+     */
+    private static class Downloads {
+        private final AtomicInteger running = new AtomicInteger();
+
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        private final ConcurrentMap<String, AtomicInteger> runningOfHost = new ConcurrentHashMap<>();
+
+        private final ConcurrentMap<String, AtomicInteger> maxRunningOfHost = new ConcurrentHashMap<>();
+
+        Callable<AsynSamplerResultHolder> task(final String host) {
+            runningOfHost.putIfAbsent(host, new AtomicInteger());
+            maxRunningOfHost.putIfAbsent(host, new AtomicInteger());
+            return new ResourcesDownloader.ResourceTask() {
+                @Override
+                public String getHostKey() {
+                    return host;
+                }
+
+                @Override
+                public AsynSamplerResultHolder call() throws Exception {
+                    updateMax(maxRunning, running.incrementAndGet());
+                    updateMax(maxRunningOfHost.get(host), runningOfHost.get(host).incrementAndGet());
+                    try {
+                        Thread.sleep(20);
+                    } finally {
+                        runningOfHost.get(host).decrementAndGet();
+                        running.decrementAndGet();
+                    }
+                    return new AsynSamplerResultHolder(new HTTPSampleResult(), new CollectionProperty());
+                }
+            };
+        }
+
+        private static void updateMax(AtomicInteger max, int value) {
+            int current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) { // NOSONAR
+                // retry
+            }
+        }
+    }
+
+    @Test
+    public void testMaxPerHost() throws Exception {
+        ResourcesDownloader downloader = new ResourcesDownloader(10, 2);
+        Downloads downloads = new Downloads();
+        List<Callable<AsynSamplerResultHolder>> list = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            list.add(downloads.task("a:80"));
+            list.add(downloads.task("b:80"));
+        }
+        List<Future<AsynSamplerResultHolder>> futures = downloader.invokeAllAndAwaitTermination(6, list);
+        assertEquals(list.size(), futures.size());
+        for (Future<AsynSamplerResultHolder> future : futures) {
+            assertTrue(future.isDone());
+        }
+        assertTrue(downloads.maxRunning.get() <= 4);
+        assertEquals(2, downloads.maxRunningOfHost.get("a:80").get());
+        assertEquals(2, downloads.maxRunningOfHost.get("b:80").get());
+        assertEquals(list.size(), downloader.getTaskCount());
+        assertEquals(0, downloader.getQueueDepth());
+        assertTrue(downloader.getMaxQueueDepth() >= list.size());
+        assertTrue(downloader.getMaxWaitTime() >= downloader.getMeanWaitTime());
+    }
+
+    @Test
+    public void testMaxConcurrentDownloadsWithFixedPool() throws Exception {
+        ResourcesDownloader downloader = new ResourcesDownloader(2, 0);
+        Downloads downloads = new Downloads();
+        List<Callable<AsynSamplerResultHolder>> list = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            list.add(downloads.task("a:80"));
+        }
+        List<Future<AsynSamplerResultHolder>> futures = downloader.invokeAllAndAwaitTermination(6, list);
+        assertEquals(list.size(), futures.size());
+        // Limited by the threads of the pool, the other tasks waited in its queue
+        assertEquals(2, downloads.maxRunning.get());
+        assertEquals(0, downloader.getQueueDepth());
+        downloader.testEnded();
+        assertEquals(0, downloader.getTaskCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testNestedFramesWithFixedPool() throws Exception {
+        final ResourcesDownloader downloader = new ResourcesDownloader(2, 0);
+        final Downloads downloads = new Downloads();
+        List<Callable<AsynSamplerResultHolder>> frames = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            // A frame which downloads its resources and a nested frame, as HTTPSamplerBase.sample does
+            frames.add(new Callable<AsynSamplerResultHolder>() {
+                @Override
+                public AsynSamplerResultHolder call() throws Exception {
+                    List<Callable<AsynSamplerResultHolder>> resources = new ArrayList<>();
+                    resources.add(downloads.task("a:80"));
+                    resources.add(new Callable<AsynSamplerResultHolder>() {
+                        @Override
+                        public AsynSamplerResultHolder call() throws Exception {
+                            List<Callable<AsynSamplerResultHolder>> nested = new ArrayList<>();
+                            nested.add(downloads.task("b:80"));
+                            nested.add(downloads.task("b:80"));
+                            assertEquals(2, downloader.invokeAllAndAwaitTermination(2, nested).size());
+                            return new AsynSamplerResultHolder(new HTTPSampleResult(), new CollectionProperty());
+                        }
+                    });
+                    resources.add(downloads.task("a:80"));
+                    List<Future<AsynSamplerResultHolder>> futures = downloader.invokeAllAndAwaitTermination(2, resources);
+                    for (Future<AsynSamplerResultHolder> future : futures) {
+                        future.get();
+                    }
+                    return new AsynSamplerResultHolder(new HTTPSampleResult(), new CollectionProperty());
+                }
+            });
+        }
+        // All the threads of the pool download a frame at the same time
+        List<Future<AsynSamplerResultHolder>> futures = downloader.invokeAllAndAwaitTermination(4, frames);
+        assertEquals(frames.size(), futures.size());
+        for (Future<AsynSamplerResultHolder> future : futures) {
+            future.get();
+        }
+        assertEquals(4 + 4 * 3 + 4 * 2, downloader.getTaskCount());
+        assertEquals(0, downloader.getQueueDepth());
+    }
+}
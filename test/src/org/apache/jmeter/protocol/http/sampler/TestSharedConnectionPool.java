@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.pool.PoolStats;
+import org.apache.jmeter.threads.ThreadGroup;
+import org.junit.Test;
+
+public class TestSharedConnectionPool {
+
+    private static SharedConnectionPool acquire(String name) {
+        SchemeRegistry registry = new SchemeRegistry();
+        registry.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
+        return SharedConnectionPool.acquire(name, registry, SystemDefaultDnsResolver.INSTANCE, 2000, 2000);
+    }
+
+    @Test
+    public void testClosedByLastRelease() throws Exception {
+        SharedConnectionPool pool = acquire("testClosedByLastRelease");
+        assertSame(pool, acquire("testClosedByLastRelease"));
+        assertTrue(SharedConnectionPool.getPools().contains(pool));
+
+        assertTrue(SharedConnectionPool.release(pool.getConnectionManager()));
+        assertTrue(SharedConnectionPool.getPools().contains(pool));
+        assertTrue(SharedConnectionPool.release(pool.getConnectionManager()));
+        assertFalse(SharedConnectionPool.getPools().contains(pool));
+        assertFalse(SharedConnectionPool.release(pool.getConnectionManager()));
+    }
+
+    private static ManagedClientConnection open(ClientConnectionManager manager, HttpRoute route, Object state)
+            throws Exception {
+        ManagedClientConnection connection = manager.requestConnection(route, state).getConnection(1, TimeUnit.SECONDS);
+        if (!connection.isOpen()) {
+            connection.open(route, new BasicHttpContext(), new BasicHttpParams());
+        }
+        return connection;
+    }
+
+    private static void release(ManagedClientConnection connection, Object state) throws IOException {
+        connection.setState(state);
+        connection.markReusable();
+        connection.setIdleDuration(10, TimeUnit.SECONDS);
+        connection.releaseConnection();
+    }
+
+    @Test
+    public void testStatefulConnectionsNotShared() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            SharedConnectionPool pool = acquire("testStatefulConnectionsNotShared");
+            try {
+                ClientConnectionManager manager = pool.getConnectionManager();
+                HttpRoute route = new HttpRoute(new HttpHost("127.0.0.1", server.getLocalPort()));
+                // Authenticated for a user, as set by HttpClient for NTLM or client certificates
+                ManagedClientConnection stateful = open(manager, route, null);
+                release(stateful, "user1");
+                ManagedClientConnection connection = manager.requestConnection(route, null)
+                        .getConnection(1, TimeUnit.SECONDS);
+                assertFalse("Stateful connection leased without user token", connection.isOpen());
+                connection.releaseConnection();
+                connection = manager.requestConnection(route, "user2").getConnection(1, TimeUnit.SECONDS);
+                assertFalse("Stateful connection leased to another user", connection.isOpen());
+                connection.releaseConnection();
+                connection = manager.requestConnection(route, "user1").getConnection(1, TimeUnit.SECONDS);
+                assertTrue(connection.isOpen());
+                release(connection, "user1");
+
+                // Stateless connections are shared
+                release(open(manager, route, null), null);
+                connection = manager.requestConnection(route, null).getConnection(1, TimeUnit.SECONDS);
+                assertTrue(connection.isOpen());
+                connection.releaseConnection();
+            } finally {
+                SharedConnectionPool.release(pool.getConnectionManager());
+            }
+        }
+    }
+
+    @Test
+    public void testLeaseStatistics() throws Exception {
+        SharedConnectionPool pool = acquire("testLeaseStatistics");
+        try {
+            HttpRoute route = new HttpRoute(new HttpHost("localhost", 80));
+            ManagedClientConnection connection = pool.getConnectionManager().requestConnection(route, null)
+                    .getConnection(1, TimeUnit.SECONDS);
+            PoolStats stats = pool.getTotalStats();
+            assertEquals(1, stats.getLeased());
+            assertEquals(200, stats.getMax());
+            assertEquals(1, pool.getLeaseCount());
+            assertTrue(pool.getMaxLeaseWait() >= pool.getMeanLeaseWait());
+            connection.releaseConnection();
+            assertEquals(0, pool.getTotalStats().getLeased());
+        } finally {
+            SharedConnectionPool.release(pool.getConnectionManager());
+        }
+    }
+
+    @Test
+    public void testPoolNameOfThreadGroupsWithSameName() throws Exception {
+        ThreadGroup group1 = new ThreadGroup();
+        group1.setName("Thread Group");
+        ThreadGroup group2 = new ThreadGroup();
+        group2.setName("Thread Group");
+        assertEquals(SharedConnectionPool.getPoolName(group1), SharedConnectionPool.getPoolName(group1));
+        assertNotEquals(SharedConnectionPool.getPoolName(group1), SharedConnectionPool.getPoolName(group2));
+        assertTrue(SharedConnectionPool.getPoolName(group1).startsWith("Thread Group@"));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TestPooledResponseBuffers {
+
+    @Test
+    public void testBuffersAreReusedByThread() throws Exception {
+        PooledResponseBuffers buffers = PooledResponseBuffers.get();
+        assertSame(buffers, PooledResponseBuffers.get());
+        assertSame(buffers.getReadBuffer(), PooledResponseBuffers.get().getReadBuffer());
+
+        final AtomicReference<PooledResponseBuffers> other = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other.set(PooledResponseBuffers.get());
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotSame(buffers, other.get());
+    }
+
+    @Test
+    public void testBodyBufferIsEmptiedAndCopied() throws Exception {
+        PooledResponseBuffers buffers = PooledResponseBuffers.get();
+        ByteArrayOutputStream body = buffers.getBodyBuffer();
+        body.write(new byte[] { 1, 2, 3 });
+        byte[] first = body.toByteArray();
+        body = buffers.getBodyBuffer();
+        body.write(new byte[] { 4, 5 });
+        assertArrayEquals(new byte[] { 1, 2, 3 }, first);
+        assertArrayEquals(new byte[] { 4, 5 }, body.toByteArray());
+    }
+
+    @Test
+    public void testTrimReleasesLargeBuffer() throws Exception {
+        PooledResponseBuffers buffers = PooledResponseBuffers.get();
+        ByteArrayOutputStream body = buffers.getBodyBuffer();
+        body.write(new byte[100000]);
+        buffers.trim(200000);
+        // kept for the next responses
+        assertTrue(buffers.getBodyBufferCapacity() >= 100000);
+        assertEquals(0, buffers.getBodyBuffer().size());
+        int capacity = buffers.getBodyBufferCapacity();
+        buffers.trim(capacity);
+        assertEquals(capacity, buffers.getBodyBufferCapacity());
+        buffers.trim(1000);
+        assertEquals(1000, buffers.getBodyBufferCapacity());
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBinarySampleWriter {
+
+    private static final SampleMetadata METADATA = new SampleMetadata(',',
+            "timeStamp", "elapsed", "label", "responseCode", "success", "bytes");
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        // We have to initialize JMeterUtils
+        JMeterUtils.loadJMeterProperties("jmeter.properties");
+        file = File.createTempFile("results", ".jtlb");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static List<String[]> createRows(int count) {
+        List<String[]> rows = new ArrayList<>();
+        long timeStamp = 1470000000000L;
+        for (int i = 0; i < count; i++) {
+            timeStamp += i % 7;
+            rows.add(new String[] { Long.toString(timeStamp), Integer.toString(i % 250),
+                    "label " + (i % 5), i % 10 == 0 ? "500" : "200",
+                    Boolean.toString(i % 10 != 0), Integer.toString(1000 + i) });
+        }
+        // Values which cannot be stored as numbers or need quoting in CSV
+        rows.add(new String[] { "2016/08/01 10:00:00.123", "007", "a,\"quoted\"\nlabel", "",
+                "false", "-5" });
+        rows.add(new String[] { "-1", "99999999999999999999", "été 中文", "null",
+                "true", "-0" });
+        return rows;
+    }
+
+    private static List<String[]> readRows(SampleReader reader) {
+        List<String[]> rows = new ArrayList<>();
+        try {
+            Sample sample;
+            while ((sample = reader.readSample()) != null) {
+                String[] data = new String[reader.getMetadata().getColumnCount()];
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = sample.getData(i);
+                }
+                rows.add(data);
+            }
+        } finally {
+            reader.close();
+        }
+        return rows;
+    }
+
+    private static void assertRowsEquals(List<String[]> expected, List<String[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals("row " + i, expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        List<String[]> rows = createRows(1000);
+        try (BinarySampleWriter writer = new BinarySampleWriter(new FileOutputStream(file), METADATA, true, 100)) {
+            for (String[] row : rows) {
+                writer.write(row);
+            }
+        }
+        assertTrue(BinarySampleReader.isBinaryFile(file));
+        BinarySampleReader reader = new BinarySampleReader(file);
+        assertEquals(6, reader.getMetadata().getColumnCount());
+        assertEquals("label", reader.getMetadata().getColumnName(2));
+        assertEquals(1470000000000L, reader.peek().getTimestamp());
+        assertRowsEquals(rows, readRows(reader));
+    }
+
+    @Test
+    public void testAppendAndTruncatedBlock() throws Exception {
+        List<String[]> rows = createRows(10);
+        try (BinarySampleWriter writer = new BinarySampleWriter(file, METADATA)) {
+            for (String[] row : rows) {
+                writer.write(row);
+            }
+        }
+        assertTrue(BinarySampleReader.hasMetadata(file, METADATA));
+        assertFalse(BinarySampleReader.hasMetadata(file, new SampleMetadata(',', "timeStamp")));
+        try (BinarySampleWriter writer = new BinarySampleWriter(new FileOutputStream(file, true), METADATA,
+                false, BinarySampleWriter.DEFAULT_BLOCK_SIZE)) {
+            for (String[] row : rows) {
+                writer.write(row);
+            }
+        }
+        List<String[]> expected = new ArrayList<>(rows);
+        expected.addAll(rows);
+        assertRowsEquals(expected, readRows(new BinarySampleReader(file)));
+
+        // Simulate a crash during the write of the last block
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+        assertRowsEquals(rows, readRows(new BinarySampleReader(file)));
+    }
+
+    @Test
+    public void testConvertFromAndToCsv() throws Exception {
+        File csv = File.createTempFile("results", ".csv");
+        File csvCopy = File.createTempFile("results", ".csv");
+        try {
+            List<String[]> rows = createRows(100);
+            try (CsvSampleWriter writer = new CsvSampleWriter(csv, METADATA)) {
+                writer.writeHeader();
+                for (String[] row : rows) {
+                    writer.write(new Sample(0, METADATA, row));
+                }
+            }
+            assertFalse(BinarySampleReader.isBinaryFile(csv));
+            assertEquals(rows.size(), BinarySampleConverter.csvToBinary(csv, file, ','));
+            assertTrue("Binary file should be smaller than CSV", file.length() < csv.length());
+            assertRowsEquals(rows, readRows(new BinarySampleReader(file)));
+
+            assertEquals(rows.size(), BinarySampleConverter.binaryToCsv(file, csvCopy));
+            assertEquals(new String(Files.readAllBytes(csv.toPath()), StandardCharsets.UTF_8),
+                    new String(Files.readAllBytes(csvCopy.toPath()), StandardCharsets.UTF_8));
+        } finally {
+            csv.delete();
+            csvCopy.delete();
+        }
+    }
+
+    /**
+     * @return the number of open file descriptors of this process on the file
+     */
+    private int countOpenDescriptors() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> descriptors = Files.newDirectoryStream(Paths.get("/proc/self/fd"))) {
+            for (Path descriptor : descriptors) {
+                try {
+                    if (Files.isSameFile(file.toPath(), Files.readSymbolicLink(descriptor))) {
+                        count++;
+                    }
+                } catch (IOException e) { // NOSONAR Closed meanwhile, e.g. the directory stream
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testFileClosedWhenFirstBlockInvalid() throws Exception {
+        Assume.assumeTrue("Needs /proc/self/fd", new File("/proc/self/fd").isDirectory());
+        new BinarySampleWriter(file, METADATA).close();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true))) {
+            // Sample count, raw and compressed lengths, then data which cannot be inflated
+            out.writeInt(1);
+            out.writeInt(10);
+            out.writeInt(4);
+            out.writeInt(0x12345678);
+        }
+        int openBefore = countOpenDescriptors();
+        try {
+            new BinarySampleReader(file);
+            fail("Expected a SampleException");
+        } catch (SampleException e) { // NOSONAR Expected
+        }
+        assertEquals(openBefore, countOpenDescriptors());
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        new BinarySampleWriter(file, METADATA).close();
+        BinarySampleReader reader = new BinarySampleReader(file);
+        assertNull(reader.readSample());
+        assertFalse(reader.hasNext());
+        reader.close();
+    }
+}
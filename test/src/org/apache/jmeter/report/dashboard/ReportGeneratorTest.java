@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.report.dashboard;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleComparator;
+import org.apache.jmeter.report.processor.FieldSampleComparator;
+import org.apache.jmeter.report.processor.OrderedSampleConsumer;
+import org.apache.jmeter.report.processor.graph.impl.ResponseTimeOverTimeGraphConsumer;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReportGeneratorTest extends JMeterTestCase {
+
+    private static final String GRAPH_PREFIX = "jmeter.reportgenerator.graph.orderedTest.";
+
+    private static final String OUTPUT_DIR = "jmeter.reportgenerator.exporter.html.property.output_dir";
+
+    private static final String TEMP_DIR = "jmeter.reportgenerator.temp_dir";
+
+    private static final String SORT_MAX_HEAP_RATIO = "jmeter.reportgenerator.sort_max_heap_ratio";
+
+    private File directory;
+
+    /**
+     * Graph needing the samples in the order of their time stamps, which
+     * records the time stamps of the samples it consumes
+     */
+    public static class OrderedGraph extends ResponseTimeOverTimeGraphConsumer implements OrderedSampleConsumer {
+        static final List<Long> TIME_STAMPS = Collections.synchronizedList(new ArrayList<Long>());
+
+        @Override
+        public SampleComparator getSampleComparator() {
+            return new FieldSampleComparator(CSVSaveService.TIME_STAMP);
+        }
+
+        @Override
+        public void consume(Sample sample, int channel) {
+            TIME_STAMPS.add(Long.valueOf(sample.getTimestamp()));
+            super.consume(sample, channel);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("ReportGeneratorTest").toFile();
+        OrderedGraph.TIME_STAMPS.clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Properties props = JMeterUtils.getJMeterProperties();
+        for (String key : new String[] { GRAPH_PREFIX + "classname", GRAPH_PREFIX + "title", OUTPUT_DIR, TEMP_DIR,
+                SORT_MAX_HEAP_RATIO }) {
+            props.remove(key);
+        }
+        FileUtils.deleteQuietly(directory);
+    }
+
+    @Test
+    public void testOrderedGraphConsumesSortedSamples() throws Exception {
+        // Samples of several threads are written in the order they end
+        long start = 1460000000000L;
+        long[] offsets = { 500, 100, 900, 300, 700, 200, 800, 400, 600, 0 };
+        File results = new File(directory, "results.csv");
+        try (PrintWriter writer = new PrintWriter(results, "UTF-8")) {
+            writer.println(CSVSaveService.printableFieldNamesToString());
+            for (long offset : offsets) {
+                SampleResult result = new SampleResult(start + offset, 10);
+                result.setSaveConfig(SampleSaveConfiguration.staticConfig());
+                result.setSampleLabel("label");
+                result.setResponseCodeOK();
+                result.setSuccessful(true);
+                result.setThreadName("Thread Group 1-1");
+                writer.println(CSVSaveService.resultToDelimitedString(new SampleEvent(result, "Thread Group")));
+            }
+        }
+        JMeterUtils.setProperty(GRAPH_PREFIX + "classname", OrderedGraph.class.getName());
+        JMeterUtils.setProperty(GRAPH_PREFIX + "title", "Ordered");
+        JMeterUtils.setProperty(OUTPUT_DIR, new File(directory, "report").getAbsolutePath());
+        JMeterUtils.setProperty(TEMP_DIR, new File(directory, "temp").getAbsolutePath());
+        // Sort in temporary files as with more samples than the heap can hold
+        JMeterUtils.setProperty(SORT_MAX_HEAP_RATIO, "0");
+
+        new ReportGenerator(results.getAbsolutePath(), null).generate();
+
+        List<Long> expected = new ArrayList<>();
+        for (long offset : offsets) {
+            expected.add(Long.valueOf(start + offset));
+        }
+        Collections.sort(expected);
+        assertEquals(expected, OrderedGraph.TIME_STAMPS);
+    }
+}
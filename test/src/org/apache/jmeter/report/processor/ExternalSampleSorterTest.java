@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleMetadata;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExternalSampleSorterTest {
+
+    private static final SampleMetadata METADATA = new SampleMetadata(',', "timeStamp", "label");
+
+    private File workingDirectory;
+
+    /**
+     * Consumer which records the samples it consumes
+     */
+    private static class RecordingConsumer extends AbstractSampleConsumer {
+        private final List<Long> timeStamps = new ArrayList<>();
+
+        @Override
+        public void startConsuming() {
+            // NOOP
+        }
+
+        @Override
+        public void consume(Sample s, int channel) {
+            timeStamps.add(Long.valueOf(s.getData(0)));
+        }
+
+        @Override
+        public void stopConsuming() {
+            // NOOP
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        // We have to initialize JMeterUtils
+        JMeterUtils.loadJMeterProperties("jmeter.properties");
+        workingDirectory = Files.createTempDirectory("sorter").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(workingDirectory);
+    }
+
+    private List<Long> sort(double maxHeapRatio, List<Long> timeStamps) {
+        ExternalSampleSorter sorter = new ExternalSampleSorter(new FieldSampleComparator("timeStamp"));
+        sorter.setMaxHeapRatio(maxHeapRatio);
+        sorter.setChunkSize(50000);
+        RecordingConsumer recorder = new RecordingConsumer();
+        sorter.addSampleConsumer(recorder);
+        SampleContext context = new SampleContext();
+        context.setWorkingDirectory(workingDirectory);
+        sorter.setSampleContext(context);
+        sorter.setConsumedMetadata(METADATA, 0);
+        sorter.startConsuming();
+        long row = 0;
+        for (Long timeStamp : timeStamps) {
+            sorter.consume(new Sample(row++, METADATA, timeStamp.toString(), "label"), 0);
+        }
+        sorter.stopConsuming();
+        return recorder.timeStamps;
+    }
+
+    private static List<Long> createTimeStamps(int count) {
+        List<Long> timeStamps = new ArrayList<>();
+        Random random = new Random(3);
+        for (int i = 0; i < count; i++) {
+            timeStamps.add(Long.valueOf(1470000000000L + random.nextInt(1000000)));
+        }
+        return timeStamps;
+    }
+
+    @Test
+    public void testSortInMemory() {
+        List<Long> timeStamps = createTimeStamps(120000);
+        List<Long> sorted = sort(1.0, timeStamps);
+        Collections.sort(timeStamps);
+        Assert.assertEquals(timeStamps, sorted);
+    }
+
+    @Test
+    public void testSortWithChunkFiles() {
+        List<Long> timeStamps = createTimeStamps(120000);
+        List<Long> sorted = sort(0.0, timeStamps);
+        Collections.sort(timeStamps);
+        Assert.assertEquals(timeStamps, sorted);
+    }
+
+    @Test
+    public void testSortNoSample() {
+        Assert.assertTrue(sort(1.0, new ArrayList<Long>()).isEmpty());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleException;
+import org.apache.jmeter.report.core.SampleMetadata;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelSampleConsumerTest {
+
+    private static final SampleMetadata METADATA = new SampleMetadata(',', "label");
+
+    @Before
+    public void setUp() throws Exception {
+        // We have to initialize JMeterUtils
+        JMeterUtils.loadJMeterProperties("jmeter.properties");
+    }
+
+    /**
+     * Consumer which records the samples it consumes
+     */
+    private static class RecordingConsumer extends AbstractSampleConsumer {
+        private final List<Sample> samples = new ArrayList<>();
+        private final int failAt;
+        private Thread consumingThread;
+        private Thread stoppingThread;
+
+        RecordingConsumer(int failAt) {
+            this.failAt = failAt;
+        }
+
+        @Override
+        public void startConsuming() {
+            // NOOP
+        }
+
+        @Override
+        public void consume(Sample s, int channel) {
+            if (samples.size() == failAt) {
+                throw new IllegalStateException("failure");
+            }
+            consumingThread = Thread.currentThread();
+            samples.add(s);
+        }
+
+        @Override
+        public void stopConsuming() {
+            stoppingThread = Thread.currentThread();
+        }
+    }
+
+    private static ParallelSampleConsumer createParallelConsumer(int threads, List<RecordingConsumer> consumers) {
+        ParallelSampleConsumer parallel = new ParallelSampleConsumer(threads);
+        for (RecordingConsumer consumer : consumers) {
+            parallel.addSampleConsumer(consumer);
+        }
+        SampleContext context = new SampleContext();
+        parallel.setSampleContext(context);
+        parallel.setConsumedMetadata(METADATA, 0);
+        return parallel;
+    }
+
+    @Test
+    public void testAllConsumersGetAllSamplesInOrder() {
+        List<RecordingConsumer> consumers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            consumers.add(new RecordingConsumer(-1));
+        }
+        ParallelSampleConsumer parallel = createParallelConsumer(3, consumers);
+        List<Sample> samples = new ArrayList<>();
+        parallel.startConsuming();
+        for (int i = 0; i < 2500; i++) {
+            Sample sample = new Sample(i, METADATA, "label" + i);
+            samples.add(sample);
+            parallel.consume(sample, 0);
+        }
+        parallel.stopConsuming();
+        for (RecordingConsumer consumer : consumers) {
+            Assert.assertEquals(samples, consumer.samples);
+            Assert.assertNotSame(Thread.currentThread(), consumer.consumingThread);
+            Assert.assertSame(consumer.consumingThread, consumer.stoppingThread);
+        }
+        // Consumers 0 and 3 share the same worker
+        Assert.assertSame(consumers.get(0).consumingThread, consumers.get(3).consumingThread);
+        Assert.assertNotSame(consumers.get(0).consumingThread, consumers.get(1).consumingThread);
+    }
+
+    @Test
+    public void testConsumerFailureIsReported() {
+        List<RecordingConsumer> consumers = new ArrayList<>();
+        consumers.add(new RecordingConsumer(-1));
+        consumers.add(new RecordingConsumer(10));
+        ParallelSampleConsumer parallel = createParallelConsumer(2, consumers);
+        parallel.startConsuming();
+        // More samples than the workers queues can hold
+        Sample sample = new Sample(0, METADATA, "label");
+        for (int i = 0; i < 100000; i++) {
+            parallel.consume(sample, 0);
+        }
+        try {
+            parallel.stopConsuming();
+            Assert.fail("Expected SampleException");
+        } catch (SampleException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertEquals(100000, consumers.get(0).samples.size());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleException;
+import org.apache.jmeter.report.core.SampleMetadata;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamingSampleSourceTest {
+
+    private static final SampleMetadata METADATA = new SampleMetadata(',', "label");
+
+    @Before
+    public void setUp() throws Exception {
+        // We have to initialize JMeterUtils
+        JMeterUtils.loadJMeterProperties("jmeter.properties");
+    }
+
+    /**
+     * Consumer which records the labels of the samples it consumes
+     */
+    private static class RecordingConsumer extends AbstractSampleConsumer {
+        private final List<String> labels = Collections.synchronizedList(new ArrayList<String>());
+        private final int failAt;
+        private boolean started;
+        private boolean stopped;
+
+        RecordingConsumer(int failAt) {
+            this.failAt = failAt;
+        }
+
+        @Override
+        public void startConsuming() {
+            started = true;
+        }
+
+        @Override
+        public void consume(Sample s, int channel) {
+            if (labels.size() == failAt) {
+                throw new IllegalStateException("failure");
+            }
+            labels.add(s.getData(0));
+        }
+
+        @Override
+        public void stopConsuming() {
+            stopped = true;
+        }
+    }
+
+    private static Thread start(final StreamingSampleSource source, final List<Throwable> errors) {
+        source.setSampleContext(new SampleContext());
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    source.run();
+                } catch (SampleException e) {
+                    errors.add(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void testSamplesPushedByThreadsAreProduced() throws Exception {
+        final StreamingSampleSource source = new StreamingSampleSource(METADATA, 10);
+        RecordingConsumer consumer = new RecordingConsumer(-1);
+        source.addSampleConsumer(consumer);
+        List<Throwable> errors = new ArrayList<>();
+        Thread thread = start(source, errors);
+
+        Thread[] pushers = new Thread[4];
+        for (int i = 0; i < pushers.length; i++) {
+            final String prefix = "thread" + i + "-";
+            pushers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        Assert.assertTrue(source.push(new String[] { prefix + j }));
+                    }
+                }
+            });
+            pushers[i].start();
+        }
+        for (Thread pusher : pushers) {
+            pusher.join();
+        }
+        source.stop();
+        thread.join();
+
+        Assert.assertTrue(errors.isEmpty());
+        Assert.assertTrue(consumer.started);
+        Assert.assertTrue(consumer.stopped);
+        Assert.assertEquals(4000, source.getSampleCount());
+        Assert.assertEquals(4000, new HashSet<>(consumer.labels).size());
+        // Samples of a thread keep their order
+        Set<String> previous = new HashSet<>();
+        for (String label : consumer.labels) {
+            int index = Integer.parseInt(label.substring(label.indexOf('-') + 1));
+            if (index > 0) {
+                Assert.assertTrue(previous.contains(label.substring(0, label.indexOf('-') + 1) + (index - 1)));
+            }
+            previous.add(label);
+        }
+        Assert.assertFalse("Source is stopped", source.push(new String[] { "late" }));
+    }
+
+    @Test
+    public void testConsumerFailureIsReported() throws Exception {
+        StreamingSampleSource source = new StreamingSampleSource(METADATA, 10);
+        RecordingConsumer consumer = new RecordingConsumer(5);
+        source.addSampleConsumer(consumer);
+        List<Throwable> errors = new ArrayList<>();
+        Thread thread = start(source, errors);
+        // More samples than the queue can hold, pushing must not block after the failure
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(source.push(new String[] { "label" + i }));
+        }
+        source.stop();
+        thread.join();
+
+        Assert.assertEquals(1, errors.size());
+        Assert.assertTrue(errors.get(0).getCause() instanceof IllegalStateException);
+        Assert.assertEquals(5, consumer.labels.size());
+        Assert.assertFalse(consumer.stopped);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.reporters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAsyncResultWriter {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("async", ".csv");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final AsyncResultWriter writer = new AsyncResultWriter(file.getAbsolutePath(), false,
+                StandardCharsets.UTF_8, 10, AsyncResultWriter.Policy.BLOCK, 4096);
+        final int threads = 4;
+        final int records = 1000;
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int threadNum = t;
+            producers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < records; i++) {
+                        writer.write(threadNum + "," + i + "\n");
+                    }
+                }
+            };
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        writer.close();
+        assertFalse(writer.checkError());
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(threads * records, writer.getWrittenCount());
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(threads * records, lines.size());
+        Set<String> unique = new HashSet<>(lines);
+        assertEquals("Records must not be mixed up", threads * records, unique.size());
+    }
+
+    @Test
+    public void testFlushAndAppend() throws Exception {
+        AsyncResultWriter writer = new AsyncResultWriter(file.getAbsolutePath(), false,
+                StandardCharsets.UTF_8, 100, AsyncResultWriter.Policy.DROP, 4096);
+        writer.write("header\n");
+        writer.flush();
+        assertEquals(1, Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size());
+        writer.close();
+        assertFalse("Records are refused once closed", writer.write("late\n"));
+
+        writer = new AsyncResultWriter(file.getAbsolutePath(), true,
+                StandardCharsets.UTF_8, 100, AsyncResultWriter.Policy.DROP, 4096);
+        // Larger than the batch buffer
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("0123456789");
+        }
+        sb.append('\n');
+        writer.write(sb);
+        writer.close();
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("header", lines.get(0));
+        assertEquals(10000, lines.get(1).length());
+    }
+}
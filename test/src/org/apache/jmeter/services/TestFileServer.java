@@ -25,11 +25,18 @@ package org.apache.jmeter.services;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.jmeter.junit.JMeterTestCase;
 import org.junit.After;
@@ -171,6 +178,86 @@ public class TestFileServer extends JMeterTestCase {
         }
     }
 
+    @Test
+    public void testDataSource() throws Exception {
+        final String infile = findTestPath("testfiles/test.csv");
+        assertNull("Bigger than the maximum size", FS.reserveDataSource(infile, null, "small", ",", false, false, 10));
+        final CSVDataSource source = FS.reserveDataSource(infile, null, "a", ",", false, false, 1000);
+        assertSame(source, FS.reserveDataSource(infile, null, "a", ",", false, false, 1000));
+        assertEquals(4, source.getRowCount());
+        assertEquals(Arrays.asList("a1", "b1", "c1", "d1"), Arrays.asList(source.next(true)));
+
+        // The other aliases have their own cursor
+        CSVDataSource other = FS.reserveDataSource(infile, null, "b", ",", false, false, 1000);
+        assertEquals("a1", other.next(true)[0]);
+
+        // Each row is read by one thread only
+        final List<String> read = Collections.synchronizedList(new ArrayList<String>());
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        String[] row;
+                        while ((row = source.next(false)).length > 0) {
+                            read.add(row[0]);
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Collections.sort(read);
+        assertEquals(Arrays.asList("a2", "a3", "a4"), read);
+        assertEquals(0, source.next(false).length);
+
+        FS.closeFiles();
+        assertEquals("a1", FS.reserveDataSource(infile, null, "a", ",", false, false, 1000).next(true)[0]);
+    }
+
+    @Test
+    public void testMappedDataSource() throws Exception {
+        File file = File.createTempFile("mapped", ".csv");
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write("A|B\r\na1|b1\r\n\r\n\"a|3\"|b3\n\u00e74|b4".getBytes("UTF-8"));
+            }
+            String name = file.getAbsolutePath();
+            CSVDataSource mapped = FS.reserveMappedDataSource(name, "UTF-8", "mapped", "|", true, true);
+            CSVDataSource read = FS.reserveDataSource(name, "UTF-8", "read", "|", true, true, 1000);
+            assertEquals("A|B", mapped.getHeaderLine());
+            assertEquals(4, mapped.getRowCount());
+            assertEquals(read.getRowCount(), mapped.getRowCount());
+            for (int i = 0; i < mapped.getRowCount(); i++) {
+                assertEquals(Arrays.asList(read.get(i)), Arrays.asList(mapped.get(i)));
+            }
+            assertEquals(Arrays.asList("a|3", "b3"), Arrays.asList(mapped.get(2)));
+            assertEquals("\u00e74", mapped.get(3)[0]);
+
+            List<String> shuffled = new ArrayList<>();
+            String[] row;
+            while ((row = mapped.nextShuffled(false)).length > 0) {
+                shuffled.add(Arrays.toString(row));
+            }
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < read.getRowCount(); i++) {
+                expected.add(Arrays.toString(read.next(false)));
+            }
+            Collections.sort(shuffled);
+            Collections.sort(expected);
+            assertEquals(expected, shuffled);
+        } finally {
+            FS.closeFiles();
+            file.delete(); // may fail while the file is mapped on Windows
+        }
+    }
+
     @Test
     public void testResolvingPaths() {
         final File anchor = new File(findTestPath("testfiles/empty.csv"));
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.testbeans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jmeter.engine.util.CompoundVariable;
+import org.apache.jmeter.testelement.property.FunctionProperty;
+import org.apache.jmeter.testelement.property.IntegerProperty;
+import org.apache.jmeter.timers.ConstantThroughputTimer;
+import org.junit.Test;
+
+public class TestBeanHelperTest {
+
+    @Test
+    public void testPrepareSetsPrimitiveProperties() throws Exception {
+        ConstantThroughputTimer timer = new ConstantThroughputTimer();
+        timer.setProperty("throughput", "120.0");
+        timer.setProperty(new IntegerProperty("calcMode", 2));
+        TestBeanHelper.prepare(timer);
+        assertEquals(120.0, timer.getThroughput(), 0.0);
+        assertEquals(2, timer.getCalcMode());
+        assertFalse("Only running versions are prepared once", timer.isTestBeanPrepared());
+    }
+
+    @Test
+    public void testStaticRunningVersionIsPreparedOnce() throws Exception {
+        ConstantThroughputTimer timer = new ConstantThroughputTimer();
+        timer.setProperty("throughput", "120.0");
+        timer.setRunningVersion(true);
+        TestBeanHelper.prepare(timer);
+        assertTrue(timer.isTestBeanPrepared());
+        assertEquals(120.0, timer.getThroughput(), 0.0);
+
+        timer.setThroughput(1.0); // bypass the properties
+        TestBeanHelper.prepare(timer);
+        assertEquals("Bean should not have been prepared again", 1.0, timer.getThroughput(), 0.0);
+
+        timer.setProperty("throughput", "60.0");
+        assertFalse(timer.isTestBeanPrepared());
+        TestBeanHelper.prepare(timer);
+        assertEquals(60.0, timer.getThroughput(), 0.0);
+        assertTrue(timer.isTestBeanPrepared());
+
+        timer.recoverRunningVersion();
+        TestBeanHelper.prepare(timer);
+        assertEquals(120.0, timer.getThroughput(), 0.0);
+    }
+
+    @Test
+    public void testFunctionPropertyIsAlwaysPrepared() throws Exception {
+        ConstantThroughputTimer timer = new ConstantThroughputTimer();
+        timer.setProperty(new FunctionProperty("throughput", new CompoundVariable("30.0")));
+        timer.setRunningVersion(true);
+        TestBeanHelper.prepare(timer);
+        assertEquals(30.0, timer.getThroughput(), 0.0);
+        assertFalse(timer.isTestBeanPrepared());
+
+        timer.setThroughput(1.0);
+        TestBeanHelper.prepare(timer);
+        assertEquals(30.0, timer.getThroughput(), 0.0);
+    }
+}
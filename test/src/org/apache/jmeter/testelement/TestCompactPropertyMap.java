@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.testelement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.testelement.property.JMeterProperty;
+import org.apache.jmeter.testelement.property.NullProperty;
+import org.apache.jmeter.testelement.property.PropertyIterator;
+import org.apache.jmeter.testelement.property.StringProperty;
+import org.junit.Test;
+
+public class TestCompactPropertyMap {
+
+    private static List<String> names(Map<String, JMeterProperty> map) {
+        List<String> names = new ArrayList<>();
+        for (JMeterProperty property : map.values()) {
+            names.add(property.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testOrderKeptLikeLinkedHashMap() {
+        Map<String, JMeterProperty> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            String name = "name" + i;
+            expected.put(name, new StringProperty(name, "value" + i));
+        }
+        CompactPropertyMap map = new CompactPropertyMap(expected);
+        assertEquals(expected, map);
+        // Names built at run time are found too
+        assertSame(expected.get("name3"), map.get(new StringBuilder("name").append(3).toString()));
+
+        map.remove("name3");
+        expected.remove("name3");
+        map.put("added", new StringProperty("added", "x"));
+        expected.put("added", new StringProperty("added", "x"));
+        map.put("name0", new StringProperty("name0", "y"));
+        expected.put("name0", new StringProperty("name0", "y"));
+        assertEquals(names(expected), names(map));
+        assertEquals(expected, map);
+
+        for (Iterator<Map.Entry<String, JMeterProperty>> iterator = map.entrySet().iterator(); iterator.hasNext();) {
+            if (iterator.next().getKey().startsWith("name")) {
+                iterator.remove();
+            }
+        }
+        assertEquals(1, map.size());
+        assertNull(map.get("name5"));
+        assertEquals("x", map.get("added").getStringValue());
+    }
+
+    @Test
+    public void testRunningCopy() {
+        ConfigTestElement element = new ConfigTestElement();
+        element.setProperty("a", "1");
+        element.setProperty("b", "2");
+        element.setRunningVersion(true);
+        ConfigTestElement copy = (ConfigTestElement) element.clone();
+
+        // Temporary properties are removed by recoverRunningVersion
+        ConfigTestElement config = new ConfigTestElement();
+        config.setProperty("c", "3");
+        copy.addConfigElement(config);
+        copy.setProperty("a", "changed");
+        assertEquals("3", copy.getPropertyAsString("c"));
+        assertEquals("changed", copy.getPropertyAsString("a"));
+        copy.recoverRunningVersion();
+        assertTrue(copy.getProperty("c") instanceof NullProperty);
+        assertEquals("1", copy.getPropertyAsString("a"));
+        assertEquals("2", copy.getPropertyAsString("b"));
+
+        copy.setRunningVersion(false);
+        copy.setProperty("d", "4");
+        List<String> names = new ArrayList<>();
+        for (PropertyIterator iterator = copy.propertyIterator(); iterator.hasNext();) {
+            names.add(iterator.next().getName());
+        }
+        assertEquals(3, names.size());
+        assertEquals("d", names.get(2));
+    }
+
+    private static Map<?, ?> getPropertyMap(AbstractTestElement element) throws Exception {
+        Field field = AbstractTestElement.class.getDeclaredField("propMap");
+        field.setAccessible(true);
+        return (Map<?, ?>) field.get(element);
+    }
+
+    @Test
+    public void testSharedElement() throws Exception {
+        ConfigTestElement element = new ConfigTestElement();
+        element.setProperty("a", "1");
+        element.setProperty("b", "2");
+        Map<?, ?> synchronizedMap = getPropertyMap(element);
+        element.setSharedByThreads(true);
+        element.setRunningVersion(true);
+        assertTrue(getPropertyMap(element) instanceof CompactPropertyMap);
+        assertEquals("1", element.getPropertyAsString("a"));
+        assertEquals("2", element.getPropertyAsString("b"));
+
+        element.setRunningVersion(false);
+        assertSame(synchronizedMap.getClass(), getPropertyMap(element).getClass());
+        element.setProperty("c", "3");
+        assertEquals("3", element.getPropertyAsString("c"));
+    }
+}
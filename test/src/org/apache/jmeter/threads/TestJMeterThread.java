@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.control.LoopController;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jmeter.timers.Timer;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.junit.Test;
+
+public class TestJMeterThread extends JMeterTestCase {
+
+    private static final long TIMER_DELAY = 60000;
+
+    private static final AtomicInteger SAMPLES = new AtomicInteger();
+
+    public static class CountingSampler extends AbstractSampler {
+        private static final long serialVersionUID = 240L;
+
+        @Override
+        public SampleResult sample(Entry e) {
+            SAMPLES.incrementAndGet();
+            SampleResult result = new SampleResult();
+            result.setSuccessful(true);
+            return result;
+        }
+    }
+
+    public static class LongTimer extends AbstractTestElement implements Timer {
+        private static final long serialVersionUID = 240L;
+
+        @Override
+        public long delay() {
+            return TIMER_DELAY;
+        }
+    }
+
+    @Test
+    public void testStopDuringTimerDelay() throws Exception {
+        LoopController loop = new LoopController();
+        loop.setLoops(1);
+        loop.setContinueForever(false);
+        ThreadGroup threadGroup = new ThreadGroup();
+        threadGroup.setSamplerController(loop);
+        ListedHashTree tree = new ListedHashTree();
+        tree.add(threadGroup);
+        tree.add(threadGroup, new LongTimer());
+        tree.add(threadGroup, new CountingSampler());
+        TestCompiler.initialize();
+        SAMPLES.set(0);
+
+        JMeterThread jmeterThread = new JMeterThread(tree, new JMeterThreadMonitor() {
+            @Override
+            public void threadFinished(JMeterThread thread) {
+                // NOOP
+            }
+        }, new ListenerNotifier());
+        jmeterThread.setThreadGroup(threadGroup);
+        jmeterThread.setThreadName("testStopDuringTimerDelay");
+        Thread thread = new Thread(jmeterThread);
+        thread.start();
+        // Wait for the thread to be parked by the timer
+        long deadline = System.currentTimeMillis() + 10000;
+        while (thread.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Thread.State.TIMED_WAITING, thread.getState());
+
+        long start = System.nanoTime();
+        jmeterThread.stop();
+        thread.join(5000);
+        assertFalse("Thread still delayed by the timer after stop", thread.isAlive());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < TIMER_DELAY / 10);
+        assertEquals("Sample run after the thread was stopped", 0, SAMPLES.get());
+    }
+}
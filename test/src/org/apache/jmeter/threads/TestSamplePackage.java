@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jmeter.assertions.Assertion;
+import org.apache.jmeter.assertions.ResponseAssertion;
+import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.control.Controller;
+import org.apache.jmeter.processor.PostProcessor;
+import org.apache.jmeter.processor.PreProcessor;
+import org.apache.jmeter.reporters.ResultCollector;
+import org.apache.jmeter.reporters.Summariser;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.timers.Timer;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSamplePackage {
+
+    @Before
+    public void setUp() throws Exception {
+        // We have to initialize JMeterUtils
+        JMeterUtils.loadJMeterProperties("jmeter.properties");
+    }
+
+    private static SamplePackage createPackage(List<SampleListener> listeners, List<Assertion> assertions) {
+        return new SamplePackage(Collections.<ConfigTestElement> emptyList(), listeners,
+                Collections.<Timer> emptyList(), assertions, Collections.<PostProcessor> emptyList(),
+                Collections.<PreProcessor> emptyList(), Collections.<Controller> emptyList());
+    }
+
+    @Test
+    public void testResponseDataNotUsedBySummaryListeners() {
+        List<SampleListener> listeners = new ArrayList<>();
+        listeners.add(new ResultCollector());
+        listeners.add(new Summariser());
+        assertFalse(createPackage(listeners, Collections.<Assertion> emptyList()).isResponseDataUsed());
+    }
+
+    @Test
+    public void testResponseDataUsed() {
+        ResultCollector collector = new ResultCollector();
+        SampleSaveConfiguration config = new SampleSaveConfiguration();
+        config.setResponseData(true);
+        collector.setSaveConfig(config);
+        assertTrue(createPackage(Collections.<SampleListener> singletonList(collector),
+                Collections.<Assertion> emptyList()).isResponseDataUsed());
+
+        assertTrue(createPackage(Collections.<SampleListener> emptyList(),
+                Collections.<Assertion> singletonList(new ResponseAssertion())).isResponseDataUsed());
+
+        // Listeners are considered to use the data unless they tell otherwise
+        SampleListener listener = new SampleListener() {
+            @Override
+            public void sampleOccurred(SampleEvent e) {
+            }
+
+            @Override
+            public void sampleStarted(SampleEvent e) {
+            }
+
+            @Override
+            public void sampleStopped(SampleEvent e) {
+            }
+        };
+        assertTrue(createPackage(Collections.singletonList(listener),
+                Collections.<Assertion> emptyList()).isResponseDataUsed());
+    }
+}
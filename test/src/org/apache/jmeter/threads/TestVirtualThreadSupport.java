@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestVirtualThreadSupport extends JMeterTestCase {
+
+    private static final String VIRTUAL_THREADS = "jmeterthread.virtual.threads";
+
+    @After
+    public void tearDown() {
+        JMeterUtils.getJMeterProperties().remove(VIRTUAL_THREADS);
+    }
+
+    private static JMeterThread newJMeterThread(String name) {
+        ListedHashTree tree = new ListedHashTree();
+        tree.add(new ThreadGroup());
+        JMeterThread jmeterThread = new JMeterThread(tree, null, null);
+        jmeterThread.setThreadName(name);
+        return jmeterThread;
+    }
+
+    /**
+     * @return whether the thread is virtual, always false before Java 21
+     */
+    private static boolean isVirtual(Thread thread) throws Exception {
+        Method isVirtual;
+        try {
+            isVirtual = Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) { // NOSONAR
+            return false;
+        }
+        return ((Boolean) isVirtual.invoke(thread)).booleanValue();
+    }
+
+    private static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) { // NOSONAR
+            return false;
+        }
+    }
+
+    @Test
+    public void testEnabledByProperty() {
+        assertFalse(VirtualThreadSupport.isEnabled());
+        JMeterUtils.setProperty(VIRTUAL_THREADS, "true");
+        assertTrue(VirtualThreadSupport.isEnabled());
+        JMeterUtils.setProperty(VIRTUAL_THREADS, "false");
+        assertFalse(VirtualThreadSupport.isEnabled());
+    }
+
+    @Test
+    public void testPlatformThreadWhenDisabled() throws Exception {
+        Thread thread = VirtualThreadSupport.newThread(newJMeterThread("disabled 1-1"), false);
+        assertEquals("disabled 1-1", thread.getName());
+        assertFalse(isVirtual(thread));
+        assertFalse(thread.isDaemon());
+        assertEquals(Thread.State.NEW, thread.getState());
+    }
+
+    @Test
+    public void testVirtualThreadOrFallback() throws Exception {
+        assertEquals(hasVirtualThreads(), VirtualThreadSupport.isAvailable());
+        Thread thread = VirtualThreadSupport.newThread(newJMeterThread("enabled 1-1"), true);
+        assertEquals("enabled 1-1", thread.getName());
+        assertEquals(Thread.State.NEW, thread.getState());
+        if (VirtualThreadSupport.isAvailable()) {
+            assertTrue(isVirtual(thread));
+        } else {
+            // e.g. Java 8: platform thread, as when disabled
+            assertFalse(isVirtual(thread));
+            assertFalse(thread.isDaemon());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSamplerMetric {
+
+    @Before
+    public void setUp() throws Exception {
+        // We have to initialize JMeterUtils
+        JMeterUtils.loadJMeterProperties("jmeter.properties");
+    }
+
+    private static SampleResult createResult(long time, boolean success) {
+        SampleResult result = SampleResult.createTestSample(time);
+        result.setSuccessful(success);
+        result.setSampleCount(1);
+        result.setErrorCount(success ? 0 : 1);
+        return result;
+    }
+
+    @Test
+    public void testTimedWindowComputesInterval() {
+        SamplerMetric metric = new SamplerMetric(true);
+        for (int i = 1; i <= 1000; i++) {
+            metric.add(createResult(i, i % 10 != 0));
+        }
+        assertEquals(1000, metric.getTotal());
+        assertEquals(900, metric.getSuccesses());
+        assertEquals(100, metric.getFailures());
+        assertEquals(1000, metric.getHits());
+        assertEquals(1, metric.getAllMinTime(), 0.0);
+        assertEquals(1000, metric.getAllMaxTime(), 0.0);
+        assertEquals(500.5, metric.getAllMean(), 0.0);
+        assertEquals(900, metric.getAllPercentile(90), 0.0);
+        assertEquals(990, metric.getAllPercentile(99), 0.0);
+        assertEquals(10, metric.getKoMinTime(), 0.0);
+        assertEquals(999, metric.getOkMaxTime(), 0.0);
+
+        // Samples added while reading are kept for the next interval
+        metric.add(createResult(5000, true));
+        assertEquals(1000, metric.getTotal());
+        metric.resetForTimeInterval();
+
+        assertEquals(1, metric.getTotal());
+        assertEquals(5000, metric.getAllPercentile(50), 0.0);
+        assertTrue(Double.isNaN(metric.getKoMean()));
+        metric.resetForTimeInterval();
+        assertEquals(0, metric.getTotal());
+    }
+
+    @Test
+    public void testTimedWindowConcurrentAdds() throws Exception {
+        final SamplerMetric metric = new SamplerMetric(true);
+        final int threadCount = 4;
+        final int samplesPerThread = 20000;
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < samplesPerThread; j++) {
+                        metric.add(createResult(j % 100, true));
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        long total = 0;
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+            total += metric.getTotal();
+            metric.resetForTimeInterval();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        total += metric.getTotal();
+        assertEquals(threadCount * samplesPerThread, total);
+    }
+
+    @Test
+    public void testFixedWindowKeepsPercentiles() {
+        SamplerMetric metric = new SamplerMetric(false);
+        metric.add(createResult(100, true));
+        metric.add(createResult(200, false));
+        assertEquals(2, metric.getTotal());
+        metric.resetForTimeInterval();
+        assertEquals(0, metric.getTotal());
+        assertEquals(200, metric.getAllMaxTime(), 0.0);
+    }
+}
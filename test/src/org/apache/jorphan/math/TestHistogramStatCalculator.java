@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jorphan.math;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestHistogramStatCalculator {
+
+    @Test
+    public void testSmallValuesAreExact() {
+        HistogramStatCalculator calc = new HistogramStatCalculator(2);
+        StatCalculatorLong exact = new StatCalculatorLong();
+        for (long i = 1; i <= 200; i++) {
+            calc.addValue(i);
+            exact.addValue(i);
+        }
+        assertEquals(200, calc.getCount());
+        assertEquals(exact.getMean(), calc.getMean(), 0.0);
+        assertEquals(exact.getStandardDeviation(), calc.getStandardDeviation(), 0.0);
+        assertEquals(1, calc.getMin().longValue());
+        assertEquals(200, calc.getMax().longValue());
+        assertEquals(exact.getMedian(), calc.getMedian());
+        assertEquals(exact.getPercentPoint(0.9), calc.getPercentPoint(0.9));
+        assertEquals(exact.getPercentPoint(0.99), calc.getPercentPoint(0.99));
+        assertEquals(200, calc.getPercentPoint(1.0).longValue());
+    }
+
+    @Test
+    public void testPercentilesWithinPrecision() {
+        Random random = new Random(42);
+        for (int digits = 1; digits <= 4; digits++) {
+            HistogramStatCalculator calc = new HistogramStatCalculator(digits);
+            StatCalculatorLong exact = new StatCalculatorLong();
+            for (int i = 0; i < 50000; i++) {
+                long value = (long) Math.abs(random.nextGaussian() * 2000000);
+                calc.addValue(value);
+                exact.addValue(value);
+            }
+            double maxError = Math.pow(10, -digits);
+            for (double percent : new double[] { 0.1, 0.5, 0.9, 0.95, 0.99, 0.999 }) {
+                long expected = exact.getPercentPoint(percent).longValue();
+                long actual = calc.getPercentPoint(percent).longValue();
+                assertTrue("digits=" + digits + " percent=" + percent + " expected:" + expected + " actual:" + actual,
+                        Math.abs(actual - expected) <= expected * maxError);
+            }
+            assertEquals(exact.getMax(), calc.getMax());
+            assertEquals(exact.getMin(), calc.getMin());
+        }
+    }
+
+    @Test
+    public void testMergeIsLossless() {
+        HistogramStatCalculator all = new HistogramStatCalculator(3);
+        HistogramStatCalculator first = new HistogramStatCalculator(3);
+        HistogramStatCalculator second = new HistogramStatCalculator(3);
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            long value = random.nextInt(100000);
+            all.addValue(value);
+            if (i % 2 == 0) {
+                first.addValue(value);
+            } else {
+                second.addValue(value * 1000); // grow the buckets of the second one
+                all.addValue(value * 1000);
+                second.addValue(value);
+            }
+        }
+        HistogramStatCalculator merged = new HistogramStatCalculator(3);
+        merged.addAll(first);
+        merged.addAll(second);
+        assertEquals(all.getCount(), merged.getCount());
+        assertEquals(all.getMean(), merged.getMean(), 1e-6);
+        assertEquals(all.getStandardDeviation(), merged.getStandardDeviation(), 1e-6);
+        assertEquals(all.getMin(), merged.getMin());
+        assertEquals(all.getMax(), merged.getMax());
+        for (double percent : new double[] { 0.01, 0.5, 0.9, 0.99 }) {
+            assertEquals(all.getPercentPoint(percent), merged.getPercentPoint(percent));
+        }
+        assertEquals(all.getDistribution().size(), merged.getDistribution().size());
+    }
+
+    @Test
+    public void testMergeWithExactCalculator() {
+        StatCalculatorLong exact = new StatCalculatorLong();
+        exact.addValue(5);
+        exact.addValue(5);
+        exact.addValue(150000);
+        HistogramStatCalculator calc = new HistogramStatCalculator(2);
+        calc.addAll(exact);
+        assertEquals(3, calc.getCount());
+        assertEquals(5, calc.getMedian().longValue());
+        assertEquals(150000, calc.getMax().longValue());
+
+        StatCalculatorLong target = new StatCalculatorLong();
+        target.addAll(calc);
+        assertEquals(3, target.getCount());
+        assertEquals(5, target.getMin().longValue());
+        assertEquals(150000, target.getMax().longValue());
+        Map<Number, Number[]> distribution = target.getDistribution();
+        assertEquals(2, distribution.get(Long.valueOf(5))[1].intValue());
+    }
+
+    @Test
+    public void testNegativeAndAggregateValues() {
+        HistogramStatCalculator calc = new HistogramStatCalculator(2);
+        assertEquals(0, calc.getPercentPoint(0.5).longValue());
+        calc.addValue(-10);
+        calc.addValue(40, 4); // 4 samples of 10
+        calc.addValue(20);
+        assertEquals(6, calc.getCount());
+        assertEquals(-10, calc.getMin().longValue());
+        assertEquals(-10, calc.getPercentPoint(0.1).longValue());
+        assertEquals(10, calc.getMedian().longValue());
+        assertEquals(20, calc.getMax().longValue());
+        calc.clear();
+        assertEquals(0, calc.getCount());
+        assertEquals(0, calc.getDistribution().size());
+    }
+}